@@ -0,0 +1,78 @@
+package sdf.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sdf.ATermConstructor;
+import sdf.ATermConstructorWithSkip;
+import sdf.CompiledSdfParser;
+import sdf.GeneratedGrammar;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.ParseResult.AnnotationPolicy;
+import sdf.SdfDSL;
+import aterm.ATerm;
+import de.tud.stg.parlex.ast.IAbstractNode;
+
+/**
+ * Measures building the AST from a parse tree using {@link ATermConstructor} and
+ * {@link ATermConstructorWithSkip}. The parse tree is created once per trial.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ATermConstructorBenchmark {
+
+	@Param({ "ARITH_EXPR", "ARITH_EXPR_WITH_PRIORITIES", "BNF_LANG", "ATERM_LANG" })
+	public BenchmarkGrammar grammar;
+
+	@Param({ "1", "4", "16", "64" })
+	public int size;
+
+	@Param({ "FULL", "NONE" })
+	public AnnotationPolicy annotationPolicy;
+
+	private GeneratedGrammar generatedGrammar;
+	private IAbstractNode parseTree;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SdfDSL sdf = new SdfDSL();
+		grammar.define(sdf);
+		CompiledSdfParser parser = sdf.compile(grammar.getTopLevelModule());
+
+		ParseResult result = parser.parse(grammar.generateInput(size), ASTAlgorithm.CONS);
+		if (!result.isValid()) {
+			throw new IllegalStateException("Invalid input for " + grammar);
+		}
+		generatedGrammar = parser.getGeneratedGrammar();
+		parseTree = result.getParseTree();
+	}
+
+	@Benchmark
+	public ATerm consTree() {
+		return new ATermConstructor(generatedGrammar, parseTree, annotationPolicy).constructTree();
+	}
+
+	@Benchmark
+	public ATerm consTreeWithSkip() {
+		return new ATermConstructorWithSkip(generatedGrammar, parseTree, annotationPolicy).constructTree();
+	}
+
+}
@@ -0,0 +1,537 @@
+package sdf.benchmark;
+
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Hiddens;
+import sdf.model.Import;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Priority;
+import sdf.model.PriorityGroup;
+import sdf.model.Production;
+import sdf.model.SortSymbol;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+
+/**
+ * The grammars used by the benchmarks. These are the example grammars from
+ * <code>de.tud.stg.tigerseye.sdfdsl.languagetestbench</code> (ArithExpr, ArithExprWithPriorities,
+ * BNFLang and ATermLang), defined using the methods of {@link SdfDSL} so that the benchmarks
+ * do not depend on the DSL frontend.
+ *
+ * <p>Each grammar can also generate inputs of a given size. The size is the number of
+ * repetitions of a fixed snippet, so the length of the input grows linearly with the size.
+ *
+ */
+public enum BenchmarkGrammar {
+
+	/**
+	 * <pre>
+	 * {@code
+	 * module ArithExpr
+	 * exports
+	 * context-free start-symbols Expr
+	 * sorts Expr Number Term Factor
+	 *
+	 * lexical syntax
+	 * [0-9]+				-> Number
+	 * [ ]+					-> LAYOUT
+	 *
+	 * context-free syntax
+	 * Expr "+" Term		-> Expr
+	 * Expr "-" Term		-> Expr
+	 * Term					-> Expr
+	 * Term "*" Factor		-> Term
+	 * Term "/" Factor		-> Term
+	 * Factor				-> Term
+	 * Number				-> Factor
+	 * "(" Expr ")"			-> Factor
+	 * }
+	 * </pre>
+	 */
+	ARITH_EXPR("ArithExpr") {
+		@Override
+		public void define(SdfDSL sdf) {
+			Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+					sdf.production(new Symbol[] { sdf.sortSymbol("Expr"),
+							sdf.caseSensitiveLiteralSymbol("+"), sdf.sortSymbol("Term") },
+							sdf.sortSymbol("Expr")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("Expr"),
+							sdf.caseSensitiveLiteralSymbol("-"), sdf.sortSymbol("Term") },
+							sdf.sortSymbol("Expr")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("Term") },
+							sdf.sortSymbol("Expr")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("Term"),
+							sdf.caseSensitiveLiteralSymbol("*"), sdf.sortSymbol("Factor") },
+							sdf.sortSymbol("Term")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("Term"),
+							sdf.caseSensitiveLiteralSymbol("/"), sdf.sortSymbol("Factor") },
+							sdf.sortSymbol("Term")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("Factor") },
+							sdf.sortSymbol("Term")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("Number") },
+							sdf.sortSymbol("Factor")),
+					sdf.production(new Symbol[] { sdf.caseSensitiveLiteralSymbol("("),
+							sdf.sortSymbol("Expr"), sdf.caseSensitiveLiteralSymbol(")") },
+							sdf.sortSymbol("Factor")), });
+
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") }),
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("Expr"),
+							sdf.sortSymbol("Number"), sdf.sortSymbol("Term"), sdf.sortSymbol("Factor") }),
+					arithLexicalSyntax(sdf),
+					cfSyntax });
+
+			sdf.moduleWithoutParameters(new ModuleId(getTopLevelModule()),
+					new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		}
+
+		@Override
+		public String generateInput(int size) {
+			return generateArithInput(size);
+		}
+	},
+
+	/**
+	 * <pre>
+	 * {@code
+	 * module ArithExprWithPriorities
+	 * exports
+	 * context-free start-symbols Expr
+	 * sorts Expr Number
+	 *
+	 * lexical syntax
+	 * [0-9]+				-> Number
+	 * [ ]+					-> LAYOUT
+	 *
+	 * context-free syntax
+	 * Expr "+" Expr		-> Expr {left}
+	 * Expr "-" Expr		-> Expr {left}
+	 * Expr "*" Expr		-> Expr {left}
+	 * Expr "/" Expr		-> Expr {left}
+	 * Number				-> Expr
+	 * "(" Expr ")"			-> Expr
+	 *
+	 * context-free priorities
+	 * &#123;
+	 *   Expr "*" Expr		-> Expr {left}
+	 *   Expr "/" Expr		-> Expr {left}
+	 * &#125; > &#123;
+	 *   Expr "+" Expr		-> Expr {left}
+	 *   Expr "-" Expr		-> Expr {left}
+	 * &#125;
+	 * }
+	 * </pre>
+	 */
+	ARITH_EXPR_WITH_PRIORITIES("ArithExprWithPriorities") {
+		@Override
+		public void define(SdfDSL sdf) {
+			Production prodPlus = binaryOperator(sdf, "+");
+			Production prodMinus = binaryOperator(sdf, "-");
+			Production prodMult = binaryOperator(sdf, "*");
+			Production prodDiv = binaryOperator(sdf, "/");
+
+			Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+					prodPlus,
+					prodMinus,
+					prodMult,
+					prodDiv,
+					sdf.production(new Symbol[] { sdf.sortSymbol("Number") },
+							sdf.sortSymbol("Expr")),
+					sdf.production(new Symbol[] { sdf.caseSensitiveLiteralSymbol("("),
+							sdf.sortSymbol("Expr"), sdf.caseSensitiveLiteralSymbol(")") },
+							sdf.sortSymbol("Expr")), });
+
+			GrammarElement cfPriorities = sdf.contextFreePriorities(new Priority[] {
+					sdf.priority(new PriorityGroup[] {
+							sdf.priorityGroup(new Production[] { prodMult, prodDiv }),
+							sdf.priorityGroup(new Production[] { prodPlus, prodMinus }) }) });
+
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") }),
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("Expr"),
+							sdf.sortSymbol("Number") }),
+					arithLexicalSyntax(sdf),
+					cfSyntax,
+					cfPriorities });
+
+			sdf.moduleWithoutParameters(new ModuleId(getTopLevelModule()),
+					new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		}
+
+		private Production binaryOperator(SdfDSL sdf, String operator) {
+			return sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Expr"),
+					sdf.caseSensitiveLiteralSymbol(operator), sdf.sortSymbol("Expr") },
+					sdf.sortSymbol("Expr"), new ATerm[] { sdf.customATerm("left") });
+		}
+
+		@Override
+		public String generateInput(int size) {
+			return generateArithInput(size);
+		}
+	},
+
+	/**
+	 * The BNF grammar from the SDF library (see BNFLang.sdf.dsl).
+	 * Element Element -> Element is only defined once.
+	 */
+	BNF_LANG("languages/bnf/syntax/BNF") {
+		@Override
+		public void define(SdfDSL sdf) {
+			defineWhitespace(sdf);
+
+			Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+					sdf.production(new Symbol[] { sdf.caseSensitiveLiteralSymbol("<"),
+							sdf.repetitionSymbolAtLeastOnce(sdf.characterClassComplement(
+									sdf.characterClassSymbol("\\<\\>"))),
+							sdf.caseSensitiveLiteralSymbol(">") },
+							sdf.sortSymbol("NonTerminal")),
+					sdf.production(new Symbol[] {
+							sdf.characterClassComplement(sdf.characterClassSymbol("\\<\\ \\t\\|\\[\\]\\{\\}")),
+							sdf.repetitionSymbolAtLeastZero(sdf.characterClassComplement(
+									sdf.characterClassSymbol("\\ \\t\\n"))) },
+							sdf.sortSymbol("Terminal")),
+					sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("...") },
+							sdf.sortSymbol("Terminal"), new ATerm[] { sdf.customATerm("reject") }),
+					sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("::=") },
+							sdf.sortSymbol("Terminal"), new ATerm[] { sdf.customATerm("reject") }), });
+
+			Production prodEllipsis = sdf.production(new Symbol[] { sdf.sortSymbol("Element"),
+					sdf.caseSensitiveLiteralSymbol("...") }, sdf.sortSymbol("Element"));
+			Production prodSequence = sdf.productionWithAttributes(new Symbol[] {
+					sdf.sortSymbol("Element"), sdf.sortSymbol("Element") },
+					sdf.sortSymbol("Element"), new ATerm[] { sdf.customATerm("left") });
+
+			String[] literalElements = { "|", "[", "]", "{", "}", "<", ">", "...", "::=" };
+			Production[] nonAssocGroup = new Production[literalElements.length + 1];
+			for (int i = 0; i < literalElements.length; i++) {
+				nonAssocGroup[i] = sdf.production(new Symbol[] {
+						sdf.caseSensitiveLiteralSymbol(literalElements[i]) }, sdf.sortSymbol("Element"));
+			}
+			nonAssocGroup[literalElements.length] = prodSequence;
+
+			Production[] cfProductions = new Production[] {
+					sdf.production(new Symbol[] { sdf.sortSymbol("NonTerminal"),
+							sdf.caseSensitiveLiteralSymbol("::="), sdf.sortSymbol("Elements") },
+							sdf.sortSymbol("Rule")),
+					sdf.production(new Symbol[] { alternatives(sdf) }, sdf.sortSymbol("Elements")),
+					sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastZero(sdf.sortSymbol("Rule")) },
+							sdf.sortSymbol("Rules")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("NonTerminal") }, sdf.sortSymbol("Element")),
+					sdf.production(new Symbol[] { sdf.sortSymbol("Terminal") }, sdf.sortSymbol("Element")),
+					sdf.production(new Symbol[] { sdf.caseSensitiveLiteralSymbol("["), alternatives(sdf),
+							sdf.caseSensitiveLiteralSymbol("]") }, sdf.sortSymbol("Element")),
+					sdf.production(new Symbol[] { sdf.caseSensitiveLiteralSymbol("{"), alternatives(sdf),
+							sdf.caseSensitiveLiteralSymbol("}") }, sdf.sortSymbol("Element")),
+					prodEllipsis };
+			Production[] allCfProductions = new Production[cfProductions.length + nonAssocGroup.length];
+			System.arraycopy(cfProductions, 0, allCfProductions, 0, cfProductions.length);
+			System.arraycopy(nonAssocGroup, 0, allCfProductions, cfProductions.length, nonAssocGroup.length);
+
+			GrammarElement cfPriorities = sdf.contextFreePriorities(new Priority[] {
+					sdf.priority(new PriorityGroup[] {
+							sdf.priorityGroup(prodEllipsis),
+							sdf.priorityGroup(prodSequence) }),
+					sdf.priority(new PriorityGroup[] {
+							sdf.priorityGroupWithAssociativityAnnotation(
+									sdf.customATerm("non-assoc"), nonAssocGroup) }) });
+
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("Rule"), sdf.sortSymbol("Rules"),
+							sdf.sortSymbol("NonTerminal"), sdf.sortSymbol("Terminal"),
+							sdf.sortSymbol("Element"), sdf.sortSymbol("Elements") }),
+					lexSyntax,
+					sdf.contextFreeSyntax(allCfProductions),
+					cfPriorities });
+
+			Hiddens hiddens = sdf.hiddens(new GrammarElement[] {
+					sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Rules") }) });
+
+			sdf.moduleWithoutParameters(new ModuleId(getTopLevelModule()),
+					new Imports[] { imports(sdf, "basic/Whitespace") },
+					new ExportOrHiddenSection[] { hiddens, exports });
+		}
+
+		private Symbol alternatives(SdfDSL sdf) {
+			return sdf.listSymbolAtLeastOnce(sdf.sortSymbol("Element"), sdf.caseSensitiveLiteralSymbol("|"));
+		}
+
+		@Override
+		public String generateInput(int size) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 1; i <= size; i++) {
+				sb.append("<expr").append(i).append("> ::= <num> | <expr").append(i)
+						.append("> + <term> | [ <sign> ] <digit> {<digit>}\n");
+			}
+			return sb.toString();
+		}
+	},
+
+	/**
+	 * The ATerm grammar from the SDF library (see ATermLang.sdf.dsl), consisting of the modules
+	 * ATerms, IntCon, RealCon, Whitespace, NatCon, StrCon and IdentifierCon.
+	 */
+	ATERM_LANG("languages/aterm/syntax/ATerms") {
+		@Override
+		public void define(SdfDSL sdf) {
+			defineWhitespace(sdf);
+			defineNatCon(sdf);
+			defineStrCon(sdf);
+			defineIdentifierCon(sdf);
+			defineIntCon(sdf);
+			defineRealCon(sdf);
+
+			Syntax afunSyntax = sdf.contextFreeSyntax(new Production[] {
+					sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("StrCon") },
+							sdf.sortSymbol("AFun"), new ATerm[] { sdf.consATerm("quoted") }),
+					sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("IdCon") },
+							sdf.sortSymbol("AFun"), new ATerm[] { sdf.consATerm("unquoted") }), });
+
+			Syntax atermSyntax = sdf.contextFreeSyntax(new Production[] {
+					sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("IntCon") },
+							sdf.sortSymbol("ATerm"), new ATerm[] { sdf.consATerm("int") }),
+					sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("RealCon") },
+							sdf.sortSymbol("ATerm"), new ATerm[] { sdf.consATerm("real") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.labeledSymbol("fun", sdf.sortSymbol("AFun")) },
+							sdf.sortSymbol("ATerm"), new ATerm[] { sdf.consATerm("fun") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.labeledSymbol("fun", sdf.sortSymbol("AFun")),
+							sdf.caseSensitiveLiteralSymbol("("),
+							sdf.labeledSymbol("args", sdf.listSymbolAtLeastOnce(sdf.sortSymbol("ATerm"),
+									sdf.caseSensitiveLiteralSymbol(","))),
+							sdf.caseSensitiveLiteralSymbol(")") },
+							sdf.sortSymbol("ATerm"), new ATerm[] { sdf.consATerm("appl") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.caseSensitiveLiteralSymbol("<"),
+							sdf.labeledSymbol("type", sdf.sortSymbol("ATerm")),
+							sdf.caseSensitiveLiteralSymbol(">") },
+							sdf.sortSymbol("ATerm"), new ATerm[] { sdf.consATerm("placeholder") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.caseSensitiveLiteralSymbol("["),
+							sdf.labeledSymbol("elems", sdf.listSymbolAtLeastZero(sdf.sortSymbol("ATerm"),
+									sdf.caseSensitiveLiteralSymbol(","))),
+							sdf.caseSensitiveLiteralSymbol("]") },
+							sdf.sortSymbol("ATerm"), new ATerm[] { sdf.consATerm("list") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.labeledSymbol("trm", sdf.sortSymbol("ATerm")),
+							sdf.sortSymbol("Annotation") },
+							sdf.sortSymbol("ATerm"), new ATerm[] { sdf.consATerm("annotated") }), });
+
+			Syntax annotationSyntax = sdf.contextFreeSyntax(new Production[] {
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.caseSensitiveLiteralSymbol("{"),
+							sdf.labeledSymbol("annos", sdf.listSymbolAtLeastOnce(sdf.sortSymbol("ATerm"),
+									sdf.caseSensitiveLiteralSymbol(","))),
+							sdf.caseSensitiveLiteralSymbol("}") },
+							sdf.sortSymbol("Annotation"), new ATerm[] { sdf.consATerm("default") }), });
+
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("AFun"), sdf.sortSymbol("ATerm"),
+							sdf.sortSymbol("Annotation") }),
+					afunSyntax,
+					atermSyntax,
+					annotationSyntax });
+
+			Hiddens hiddens = sdf.hiddens(new GrammarElement[] {
+					sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("ATerm") }) });
+
+			sdf.moduleWithoutParameters(new ModuleId(getTopLevelModule()),
+					new Imports[] { imports(sdf, "languages/aterm/syntax/IntCon",
+							"languages/aterm/syntax/RealCon", "basic/StrCon", "basic/IdentifierCon") },
+					new ExportOrHiddenSection[] { exports, hiddens });
+		}
+
+		private void defineIntCon(SdfDSL sdf) {
+			Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+					sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("NatCon") },
+							sdf.sortSymbol("IntCon"), new ATerm[] { sdf.consATerm("natural") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.labeledSymbol("pos", sdf.caseSensitiveLiteralSymbol("+")),
+							sdf.sortSymbol("NatCon") },
+							sdf.sortSymbol("IntCon"), new ATerm[] { sdf.consATerm("positive") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.labeledSymbol("neg", sdf.caseSensitiveLiteralSymbol("-")),
+							sdf.sortSymbol("NatCon") },
+							sdf.sortSymbol("IntCon"), new ATerm[] { sdf.consATerm("negative") }), });
+
+			Hiddens hiddens = sdf.hiddens(new GrammarElement[] {
+					sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("IntCon") }) });
+
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("IntCon") }),
+					cfSyntax });
+
+			sdf.moduleWithoutParameters(new ModuleId("languages/aterm/syntax/IntCon"),
+					new Imports[] { imports(sdf, "basic/Whitespace", "basic/NatCon") },
+					new ExportOrHiddenSection[] { hiddens, exports });
+		}
+
+		private void defineRealCon(SdfDSL sdf) {
+			Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+					sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("e"),
+							sdf.sortSymbol("IntCon") },
+							sdf.sortSymbol("OptExp"), new ATerm[] { sdf.consATerm("present") }),
+					sdf.productionWithAttributes(sdf.sortSymbol("OptExp"),
+							new ATerm[] { sdf.consATerm("absent") }),
+					sdf.productionWithAttributes(new Symbol[] {
+							sdf.labeledSymbol("base", sdf.sortSymbol("IntCon")),
+							sdf.caseSensitiveLiteralSymbol("."),
+							sdf.labeledSymbol("decimal", sdf.sortSymbol("NatCon")),
+							sdf.labeledSymbol("exp", sdf.sortSymbol("OptExp")) },
+							sdf.sortSymbol("RealCon"), new ATerm[] { sdf.consATerm("real-con") }), });
+
+			Hiddens hiddens = sdf.hiddens(new GrammarElement[] {
+					sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("RealCon") }) });
+
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("OptExp"),
+							sdf.sortSymbol("RealCon") }),
+					cfSyntax });
+
+			sdf.moduleWithoutParameters(new ModuleId("languages/aterm/syntax/RealCon"),
+					new Imports[] { imports(sdf, "languages/aterm/syntax/IntCon") },
+					new ExportOrHiddenSection[] { hiddens, exports });
+		}
+
+		private void defineNatCon(SdfDSL sdf) {
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("NatCon") }),
+					sdf.lexicalSyntax(new Production[] {
+							sdf.productionWithAttributes(new Symbol[] {
+									sdf.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("0-9")) },
+									sdf.sortSymbol("NatCon"), new ATerm[] { sdf.consATerm("digits") }), }) });
+
+			sdf.moduleWithoutParameters(new ModuleId("basic/NatCon"),
+					new ExportOrHiddenSection[] { exports });
+		}
+
+		private void defineStrCon(SdfDSL sdf) {
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("StrCon"),
+							sdf.sortSymbol("StrChar") }),
+					sdf.lexicalSyntax(new Production[] {
+							strChar(sdf, new Symbol[] { sdf.caseSensitiveLiteralSymbol("\\n") }, "newline"),
+							strChar(sdf, new Symbol[] { sdf.caseSensitiveLiteralSymbol("\\t") }, "tab"),
+							strChar(sdf, new Symbol[] { sdf.caseSensitiveLiteralSymbol("\\\"") }, "quote"),
+							strChar(sdf, new Symbol[] { sdf.caseSensitiveLiteralSymbol("\\\\") }, "backslash"),
+							strChar(sdf, new Symbol[] { sdf.caseSensitiveLiteralSymbol("\\"),
+									sdf.labeledSymbol("a", sdf.characterClassSymbol("0-9")),
+									sdf.labeledSymbol("b", sdf.characterClassSymbol("0-9")),
+									sdf.labeledSymbol("c", sdf.characterClassSymbol("0-9")) }, "decimal"),
+							strChar(sdf, new Symbol[] { sdf.characterClassComplement(
+									sdf.characterClassSymbol("\\0-\\31\\n\\t\\\"\\\\")) }, "normal"),
+							sdf.productionWithAttributes(new Symbol[] {
+									sdf.characterClassSymbol("\\\""),
+									sdf.labeledSymbol("chars", sdf.repetitionSymbolAtLeastZero(
+											sdf.sortSymbol("StrChar"))),
+									sdf.characterClassSymbol("\\\"") },
+									sdf.sortSymbol("StrCon"), new ATerm[] { sdf.consATerm("default") }), }) });
+
+			sdf.moduleWithoutParameters(new ModuleId("basic/StrCon"),
+					new ExportOrHiddenSection[] { exports });
+		}
+
+		private Production strChar(SdfDSL sdf, Symbol[] lhs, String cons) {
+			return sdf.productionWithAttributes(lhs, sdf.sortSymbol("StrChar"),
+					new ATerm[] { sdf.consATerm(cons) });
+		}
+
+		private void defineIdentifierCon(SdfDSL sdf) {
+			Exports exports = sdf.exports(new GrammarElement[] {
+					sdf.sortsDeclaration(new SortSymbol[] { sdf.sortSymbol("IdCon") }),
+					sdf.lexicalSyntax(new Production[] {
+							sdf.productionWithAttributes(new Symbol[] {
+									sdf.labeledSymbol("head", sdf.characterClassSymbol("A-Za-z")),
+									sdf.labeledSymbol("tail", sdf.repetitionSymbolAtLeastZero(
+											sdf.characterClassSymbol("A-Za-z\\-0-9"))) },
+									sdf.sortSymbol("IdCon"), new ATerm[] { sdf.consATerm("default") }), }) });
+
+			sdf.moduleWithoutParameters(new ModuleId("basic/IdentifierCon"),
+					new ExportOrHiddenSection[] { exports });
+		}
+
+		@Override
+		public String generateInput(int size) {
+			StringBuilder sb = new StringBuilder("[");
+			for (int i = 1; i <= size; i++) {
+				if (i > 1) {
+					sb.append(", ");
+				}
+				sb.append("f").append(i).append("(1, -2, +3, 4.5e6, \"s").append(i)
+						.append("\\t\", [a, b{x}], <int>){ann(").append(i).append(")}");
+			}
+			return sb.append("]").toString();
+		}
+	};
+
+	private final String topLevelModule;
+
+	private BenchmarkGrammar(String topLevelModule) {
+		this.topLevelModule = topLevelModule;
+	}
+
+	/**
+	 * @return the name of the top-level module of this grammar
+	 */
+	public String getTopLevelModule() {
+		return topLevelModule;
+	}
+
+	/**
+	 * Registers the modules of this grammar in the given SdfDSL instance.
+	 *
+	 * @param sdf	the SdfDSL instance
+	 */
+	public abstract void define(SdfDSL sdf);
+
+	/**
+	 * Generates a valid input for this grammar. The length of the input is proportional to the size.
+	 *
+	 * @param size	the number of repetitions of the snippet used for this grammar, at least 1
+	 * @return an input string
+	 */
+	public abstract String generateInput(int size);
+
+	private static Syntax arithLexicalSyntax(SdfDSL sdf) {
+		return sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("0-9")) }, sdf.sortSymbol("Number")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol(" ")) }, sdf.sortSymbol("LAYOUT")), });
+	}
+
+	private static String generateArithInput(int size) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= size; i++) {
+			if (i > 1) {
+				sb.append(" + ");
+			}
+			sb.append(i).append(" * 8 - (15 / (16+").append(i).append("))");
+		}
+		return sb.toString();
+	}
+
+	private static void defineWhitespace(SdfDSL sdf) {
+		Exports exports = sdf.exports(new GrammarElement[] {
+				sdf.lexicalSyntax(new Production[] {
+						sdf.productionWithAttributes(new Symbol[] {
+								sdf.characterClassSymbol("\\ \\t\\n\\r") },
+								sdf.sortSymbol("LAYOUT"), new ATerm[] { sdf.consATerm("whitespace") }), }) });
+
+		sdf.moduleWithoutParameters(new ModuleId("basic/Whitespace"),
+				new ExportOrHiddenSection[] { exports });
+	}
+
+	private static Imports imports(SdfDSL sdf, String... moduleNames) {
+		Import[] importList = new Import[moduleNames.length];
+		for (int i = 0; i < moduleNames.length; i++) {
+			importList[i] = sdf.importModuleWithoutParameters(new ModuleId(moduleNames[i]));
+		}
+		return sdf.importsStatement(importList);
+	}
+
+}
@@ -0,0 +1,20 @@
+package sdf.benchmark;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the benchmarks. Without arguments, all benchmarks in this package are run.
+ * Otherwise the arguments are passed to JMH, e.g. <code>ParserBenchmark -p grammar=ATERM_LANG</code>
+ * runs only the parser benchmarks for the ATerm grammar (use <code>-h</code> for all options).
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			args = new String[] { BenchmarkRunner.class.getPackage().getName() + "\\..*" };
+		}
+		Main.main(args);
+	}
+
+}
@@ -0,0 +1,77 @@
+package sdf.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import aterm.ATerm;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.SdfDSL;
+
+/**
+ * Compares building the AST of large inputs from the chart of the earley parser
+ * ({@link ASTAlgorithm#CONS_WITH_SKIP}) and from the earley sets of the recognizer
+ * ({@link ASTAlgorithm#CONS_WITH_SKIP_FROM_CHART}), which never creates the chart or the parse tree.
+ *
+ * <p>Run the benchmark with the GC profiler (<code>-prof gc</code>) to compare the allocation per
+ * operation, e.g. <code>ChartMemoryBenchmark -prof gc</code>. Besides allocating less, a result
+ * built from the earley sets does not keep them, while a result of the earley parser keeps its chart.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ChartMemoryBenchmark {
+
+	@Param({ "ARITH_EXPR" })
+	public BenchmarkGrammar grammar;
+
+	@Param({ "64", "256", "1024" })
+	public int size;
+
+	private String input;
+	private CompiledSdfParser parser;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SdfDSL sdf = new SdfDSL();
+		grammar.define(sdf);
+		input = grammar.generateInput(size);
+		parser = sdf.compile(grammar.getTopLevelModule());
+
+		ATerm expected = parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP).getConsTree();
+		if (expected == null) {
+			throw new IllegalStateException("Invalid input for " + grammar + ": " + input);
+		}
+		if (!expected.equals(parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP_FROM_CHART).getConsTree())) {
+			throw new IllegalStateException("Different ASTs for " + grammar + ": " + input);
+		}
+	}
+
+	@Benchmark
+	public ATerm buildAstFromParseTree() {
+		return parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP).getConsTree();
+	}
+
+	@Benchmark
+	public ATerm buildAstFromChart() {
+		return parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP_FROM_CHART).getConsTree();
+	}
+
+}
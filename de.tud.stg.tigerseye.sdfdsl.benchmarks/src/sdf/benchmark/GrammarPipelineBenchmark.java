@@ -0,0 +1,83 @@
+package sdf.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sdf.GeneratedGrammar;
+import sdf.GrammarCleaner;
+import sdf.ModuleMerger;
+import sdf.SdfDSL;
+import sdf.SdfToParlexGrammarConverter;
+import sdf.model.Module;
+
+/**
+ * Measures the stages of the grammar generation separately: merging the imported modules,
+ * converting the SDF model to a parlex grammar and cleaning the grammar. Each stage
+ * works on the precomputed result of the previous stage.
+ *
+ * <p>{@link #generateGrammar()} measures all stages together, as done by
+ * {@link SdfDSL#getGrammar(String)} when the caches are empty.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GrammarPipelineBenchmark {
+
+	@Param({ "ARITH_EXPR", "ARITH_EXPR_WITH_PRIORITIES", "BNF_LANG", "ATERM_LANG" })
+	public BenchmarkGrammar grammar;
+
+	private SdfDSL sdf;
+	private Module topLevelModule;
+	private Module mergedModule;
+	private GeneratedGrammar generatedGrammar;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		sdf = new SdfDSL();
+		grammar.define(sdf);
+
+		topLevelModule = sdf.getModule(grammar.getTopLevelModule());
+		mergedModule = new ModuleMerger(sdf).processModule(topLevelModule);
+		generatedGrammar = new SdfToParlexGrammarConverter(sdf).getGrammar(mergedModule);
+	}
+
+	@Benchmark
+	public Module mergeModules() {
+		// a new merger (with an empty merge cache) for each invocation
+		return new ModuleMerger(sdf).processModule(topLevelModule);
+	}
+
+	@Benchmark
+	public GeneratedGrammar convertGrammar() {
+		return new SdfToParlexGrammarConverter(sdf).getGrammar(mergedModule);
+	}
+
+	@Benchmark
+	public GeneratedGrammar cleanGrammar() {
+		return GrammarCleaner.clean(generatedGrammar);
+	}
+
+	@Benchmark
+	public GeneratedGrammar generateGrammar() {
+		sdf.getGrammarCache().clear();
+		sdf.getModuleMergeCache().clear();
+		return sdf.getGrammar(grammar.getTopLevelModule());
+	}
+
+}
@@ -0,0 +1,134 @@
+package sdf.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sdf.ATermConstructor;
+import sdf.CompiledSdfParser;
+import sdf.GeneratedGrammar;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.ParseResult.AnnotationPolicy;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.Symbol;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermList;
+import de.tud.stg.parlex.ast.IAbstractNode;
+
+/**
+ * Measures parsing a single separated list with up to 100k elements, and building its AST, with
+ * the right-recursive and the left-recursive expansion of lists
+ * (see {@link SdfDSL#setLeftRecursiveListsEnabled(boolean)}).
+ *
+ * <pre>
+ * {@code
+ * module Lists
+ * exports
+ * context-free start-symbols Program
+ *
+ * lexical syntax
+ * [0-9]+						-> Number
+ * [\ ]+						-> LAYOUT
+ *
+ * context-free syntax
+ * {Number ","}+				-> Program {cons("Program")}
+ * }
+ * </pre>
+ *
+ * <p>The earley parser needs time quadratic in the length of the list for the right-recursive expansion,
+ * so it is only measured with the left-recursive expansion by default. Use
+ * <code>-p leftRecursiveLists=false,true -p size=1000,10000</code> to compare both expansions.
+ * The parse tree of a list is as deep as the list is long, so the benchmarks are run with a large stack.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g", "-Xss256m" })
+public class ListBenchmark {
+
+	private static final String MAIN_MODULE_NAME = "Lists";
+
+	@Param({ "true" })
+	public boolean leftRecursiveLists;
+
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	private String input;
+	private CompiledSdfParser parser;
+	private GeneratedGrammar generatedGrammar;
+	private IAbstractNode parseTree;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SdfDSL sdf = new SdfDSL();
+		Exports exports = sdf.exports(new GrammarElement[] {
+				sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Program") }),
+				sdf.lexicalSyntax(new Production[] {
+						sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+								.characterClassSymbol("0-9")) }, sdf.sortSymbol("Number")),
+						sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+								.characterClassSymbol("\\ ")) }, sdf.sortSymbol("LAYOUT")), }),
+				sdf.contextFreeSyntax(new Production[] {
+						sdf.productionWithAttributes(new Symbol[] { sdf.listSymbolAtLeastOnce(
+								sdf.sortSymbol("Number"), sdf.caseSensitiveLiteralSymbol(",")) },
+								sdf.sortSymbol("Program"), new ATerm[] { sdf.consATerm("Program") }), }) });
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		sdf.setLeftRecursiveListsEnabled(leftRecursiveLists);
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= size; i++) {
+			if (i > 1) {
+				sb.append(", ");
+			}
+			sb.append(i);
+		}
+		input = sb.toString();
+
+		parser = sdf.compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse(input, ASTAlgorithm.CONS, AnnotationPolicy.NONE);
+		if (!result.isValid()) {
+			throw new IllegalStateException("Invalid input");
+		}
+		ATermList elements = (ATermList)((ATermAppl)result.getConsTree()).getArgument(0);
+		if (elements.getLength() != size) {
+			throw new IllegalStateException("Unexpected number of list elements: " + elements.getLength());
+		}
+		generatedGrammar = parser.getGeneratedGrammar();
+		parseTree = result.getParseTree();
+	}
+
+	@Benchmark
+	public ATerm parse() {
+		return parser.parse(input, ASTAlgorithm.CONS, AnnotationPolicy.NONE).getConsTree();
+	}
+
+	@Benchmark
+	public ATerm consTree() {
+		return new ATermConstructor(generatedGrammar, parseTree, AnnotationPolicy.NONE).constructTree();
+	}
+
+}
@@ -0,0 +1,74 @@
+package sdf.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.SdfDSL;
+import de.tud.stg.parlex.parser.earley.Chart;
+
+/**
+ * Measures the earley parser with and without oracles (see {@link SdfDSL#setOraclesEnabled(boolean)}).
+ * Only the chart is created, the parse tree and the AST are not built
+ * (see {@link ATermConstructorBenchmark}).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "ARITH_EXPR", "ARITH_EXPR_WITH_PRIORITIES", "BNF_LANG", "ATERM_LANG" })
+	public BenchmarkGrammar grammar;
+
+	@Param({ "1", "4", "16", "64" })
+	public int size;
+
+	private String input;
+	private CompiledSdfParser parserWithOracles;
+	private CompiledSdfParser parserWithoutOracles;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SdfDSL sdf = new SdfDSL();
+		grammar.define(sdf);
+		input = grammar.generateInput(size);
+
+		sdf.setOraclesEnabled(true);
+		parserWithOracles = sdf.compile(grammar.getTopLevelModule());
+		sdf.setOraclesEnabled(false);
+		parserWithoutOracles = sdf.compile(grammar.getTopLevelModule());
+
+		if (!parserWithOracles.parse(input, ASTAlgorithm.CONS).isValid()) {
+			throw new IllegalStateException("Invalid input for " + grammar + ": " + input);
+		}
+	}
+
+	@Benchmark
+	public Chart parseWithOracles() {
+		// the AST is built lazily, so only the chart is created
+		return parserWithOracles.parse(input, ASTAlgorithm.CONS).getParseChart();
+	}
+
+	@Benchmark
+	public Chart parseWithoutOracles() {
+		return parserWithoutOracles.parse(input, ASTAlgorithm.CONS).getParseChart();
+	}
+
+}
@@ -0,0 +1,90 @@
+package sdf.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import aterm.ATerm;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.PriorityFilter;
+import sdf.SdfDSL;
+import de.tud.stg.parlex.parser.earley.Chart;
+
+/**
+ * Compares parsing with priorities applied after parsing (the default) and while parsing
+ * (see {@link SdfDSL#setPriorityFilteringEnabled(boolean)} and {@link PriorityFilter}).
+ *
+ * <p>parlex does not expose the number of chart items, run the benchmark with the GC profiler
+ * (<code>-prof gc</code>) to compare the allocation per operation, which is dominated by the chart.
+ * The <code>parse*</code> benchmarks only create the chart, the <code>parseAndBuildAst*</code>
+ * benchmarks include the disambiguation done while the AST is built.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PriorityFilterBenchmark {
+
+	@Param({ "ARITH_EXPR_WITH_PRIORITIES" })
+	public BenchmarkGrammar grammar;
+
+	@Param({ "1", "4", "16", "64" })
+	public int size;
+
+	private String input;
+	private CompiledSdfParser unfilteredParser;
+	private CompiledSdfParser filteredParser;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SdfDSL sdf = new SdfDSL();
+		grammar.define(sdf);
+		input = grammar.generateInput(size);
+
+		sdf.setPriorityFilteringEnabled(false);
+		unfilteredParser = sdf.compile(grammar.getTopLevelModule());
+		sdf.setPriorityFilteringEnabled(true);
+		filteredParser = sdf.compile(grammar.getTopLevelModule());
+
+		if (!filteredParser.parse(input, ASTAlgorithm.CONS).isValid()) {
+			throw new IllegalStateException("Invalid input for " + grammar + ": " + input);
+		}
+	}
+
+	@Benchmark
+	public Chart parseUnfiltered() {
+		return unfilteredParser.parse(input, ASTAlgorithm.CONS).getParseChart();
+	}
+
+	@Benchmark
+	public Chart parseFiltered() {
+		return filteredParser.parse(input, ASTAlgorithm.CONS).getParseChart();
+	}
+
+	@Benchmark
+	public ATerm parseAndBuildAstUnfiltered() {
+		return unfilteredParser.parse(input, ASTAlgorithm.CONS).getConsTree();
+	}
+
+	@Benchmark
+	public ATerm parseAndBuildAstFiltered() {
+		return filteredParser.parse(input, ASTAlgorithm.CONS).getConsTree();
+	}
+
+}
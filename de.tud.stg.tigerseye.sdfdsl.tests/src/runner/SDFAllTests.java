@@ -6,12 +6,30 @@ import org.junit.runners.Suite.SuiteClasses;
 
 import sdf.general.GrammarTest1;
 import sdf.general.GrammarTest2;
+import sdf.test.ATermSerializerTest;
+import sdf.test.AmbiguityTest;
+import sdf.test.AnnotationPolicyTest;
 import sdf.test.ArithExprSdfTest;
 import sdf.test.CharacterClassTest;
+import sdf.test.CharacterSetTest;
+import sdf.test.CompiledSdfParserTest;
+import sdf.test.ErrorRecoveryTest;
+import sdf.test.GrammarCacheTest;
+import sdf.test.GrammarCleanerTest;
+import sdf.test.GrammarSerializerTest;
 import sdf.test.ImportTest;
+import sdf.test.IncrementalReparseTest;
+import sdf.test.InvalidInputPrescreeningTest;
+import sdf.test.ListExpansionTest;
+import sdf.test.MappedInputTest;
+import sdf.test.ParallelConversionTest;
+import sdf.test.ParseStageListenerTest;
+import sdf.test.PreLexingTest;
+import sdf.test.PriorityFilterTest;
 import sdf.test.SdfDslGrammarTest;
 import sdf.test.SimpleArithExprSdfTest;
 import sdf.test.SimpleSdfTest;
+import sdf.test.SymbolInterningTest;
 import de.tud.stg.popart.builder.tests.dsls.sdf.BnfDSLGrammarTest;
 import de.tud.stg.popart.builder.tests.dsls.sdf.BnfDSLSimplerGrammarTest;
 import de.tud.stg.popart.builder.tests.dsls.sdf.BnfDSLVerySimpleGrammarTest;
@@ -34,6 +52,24 @@ import de.tud.stg.popart.builder.tests.dsls.sdf.ImprovedBnfDSLGrammarTest;
 	ArithExprSdfTest.class, //
 	GrammarTest1.class, //
 	GrammarTest2.class, //
+	GrammarCacheTest.class, //
+	CompiledSdfParserTest.class, //
+	GrammarCleanerTest.class, //
+	GrammarSerializerTest.class, //
+	AnnotationPolicyTest.class, //
+	CharacterSetTest.class, //
+	PreLexingTest.class, //
+	PriorityFilterTest.class, //
+	ParallelConversionTest.class, //
+	SymbolInterningTest.class, //
+	ErrorRecoveryTest.class, //
+	IncrementalReparseTest.class, //
+	AmbiguityTest.class, //
+	InvalidInputPrescreeningTest.class, //
+	ParseStageListenerTest.class, //
+	MappedInputTest.class, //
+	ATermSerializerTest.class, //
+	ListExpansionTest.class, //
 
 	
 })
@@ -0,0 +1,77 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import sdf.ATermSerializer;
+import sdf.ATermSerializer.Format;
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.ParseResult.AnnotationPolicy;
+import aterm.ATerm;
+
+/**
+ * Tests writing ASTs in the shared ATerm formats and reading them again, using the
+ * {@link TestGrammars#createSums() Sums} grammar.
+ *
+ */
+public class ATermSerializerTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.SUMS;
+
+	private CompiledSdfParser createParser() {
+		return TestGrammars.createSums().compile(MAIN_MODULE_NAME);
+	}
+
+	private String createInput(int size) {
+		StringBuilder sb = new StringBuilder("0");
+		for (int i = 1; i <= size; i++) {
+			sb.append(" + ").append(i % 10);
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		CompiledSdfParser parser = createParser();
+		String input = createInput(500);
+		for (AnnotationPolicy policy : AnnotationPolicy.values()) {
+			ParseResult result = parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP, policy);
+			for (Format format : Format.values()) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				result.writeConsTree(out, format);
+				ATerm tree = ATermSerializer.read(new ByteArrayInputStream(out.toByteArray()));
+				// maximal sharing: the same term is read
+				assertSame(policy + " " + format, result.getConsTree(), tree);
+			}
+		}
+	}
+
+	@Test
+	public void testSeveralTermsInOneStream() throws IOException {
+		CompiledSdfParser parser = createParser();
+		ATerm first = parser.parse("1 + 2").getConsTree();
+		ATerm second = parser.parse(createInput(100)).getConsTree();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ATermSerializer.write(first, out, Format.SAF);
+		ATermSerializer.write(second, out, Format.SAF);
+		InputStream in = new ByteArrayInputStream(out.toByteArray());
+		assertSame(first, ATermSerializer.read(in));
+		assertSame(second, ATermSerializer.read(in));
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testReadTextualTerm() throws IOException {
+		ATerm tree = createParser().parse("1 + 2").getConsTree();
+		assertSame(tree, ATermSerializer.read(new ByteArrayInputStream(tree.toString().getBytes("UTF-8"))));
+	}
+}
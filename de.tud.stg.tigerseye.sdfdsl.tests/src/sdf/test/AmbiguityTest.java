@@ -0,0 +1,242 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import sdf.Ambiguity;
+import sdf.CompiledSdfParser;
+import sdf.ParseForest;
+import sdf.ParseResult;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+
+/**
+ * Tests the ambiguities and parse forests of an ambiguous grammar.
+ *
+ * <pre>
+ * {@code
+ * module Ambiguous
+ * exports
+ * context-free start-symbols Expr
+ *
+ * lexical syntax
+ * [a-z]						-> Id
+ * [\ \t\n]+					-> LAYOUT
+ *
+ * context-free syntax
+ * Expr "+" Expr				-> Expr {cons("Plus")}
+ * Id							-> Expr {cons("Var")}
+ * }
+ * </pre>
+ *
+ * The annotations of the rules are tested with a grammar reserving a keyword:
+ *
+ * <pre>
+ * {@code
+ * module Keywords
+ * exports
+ * context-free start-symbols Expr
+ *
+ * lexical syntax
+ * [a-z]+						-> Id
+ *
+ * context-free syntax
+ * "if"							-> Id {reject}
+ * Id							-> Expr {cons("Var")}
+ * "if"							-> Expr {cons("If")}
+ * "x"							-> Expr {cons("X"), prefer}
+ * }
+ * </pre>
+ *
+ */
+public class AmbiguityTest {
+	private static final String MAIN_MODULE_NAME = "Ambiguous";
+	private static final String KEYWORDS_MODULE_NAME = "Keywords";
+
+	private Production prodPlus;
+
+	private SdfDSL createSdf(boolean leftAssociative) {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.characterClassSymbol("a-z") }, sdf.sortSymbol("Id")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("\\ \\t\\n")) }, sdf.sortSymbol("LAYOUT")), });
+
+		ATerm[] plusAttributes = leftAssociative
+				? new ATerm[] { sdf.customATerm("left"), sdf.consATerm("Plus") }
+				: new ATerm[] { sdf.consATerm("Plus") };
+		prodPlus = sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Expr"),
+				sdf.caseSensitiveLiteralSymbol("+"), sdf.sortSymbol("Expr") },
+				sdf.sortSymbol("Expr"), plusAttributes);
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				prodPlus,
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Id") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Var") }), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		sdf.setPriorityFilteringEnabled(leftAssociative);
+		return sdf;
+	}
+
+	private SdfDSL createKeywordsSdf() {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("a-z")) }, sdf.sortSymbol("Id")), });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("if") },
+						sdf.sortSymbol("Id"), new ATerm[] { sdf.customATerm("reject") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Id") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Var") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("if") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("If") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("x") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("X"), sdf.customATerm("prefer") }), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId(KEYWORDS_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		return sdf;
+	}
+
+	@Test
+	public void testAmbiguity() {
+		CompiledSdfParser parser = createSdf(false).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("a+b+c");
+		assertTrue(result.isValid());
+
+		List<Ambiguity> ambiguities = result.getAmbiguities();
+		assertEquals(1, ambiguities.size());
+		Ambiguity ambiguity = ambiguities.get(0);
+		assertEquals(0, ambiguity.getStart());
+		assertEquals(5, ambiguity.getEnd());
+		assertEquals("a+b+c", ambiguity.getText());
+		assertEquals(2, ambiguity.getAlternativeCount());
+		assertEquals(1, ambiguity.getRules().size());
+		assertEquals(1, ambiguity.getProductions().size());
+		assertEquals(prodPlus, ambiguity.getProductions().get(0));
+	}
+
+	@Test
+	public void testNestedAmbiguities() {
+		CompiledSdfParser parser = createSdf(false).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("a+b+c+d");
+
+		List<Ambiguity> ambiguities = result.getAmbiguities();
+		assertEquals(3, ambiguities.size());
+		assertEquals("a+b+c+d", ambiguities.get(0).getText());
+		assertEquals(3, ambiguities.get(0).getAlternativeCount());
+		// ambiguities are reported from left to right
+		assertEquals("a+b+c", ambiguities.get(1).getText());
+		assertEquals("b+c+d", ambiguities.get(2).getText());
+
+		ParseForest forest = result.getParseForest();
+		assertFalse(forest.isTruncated());
+		assertEquals(5, forest.getTreeCount());
+		assertEquals(1, forest.getAmbiguities(1).size());
+	}
+
+	@Test
+	public void testUnambiguousInput() {
+		CompiledSdfParser parser = createSdf(false).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("a + b");
+
+		assertTrue(result.getAmbiguities().isEmpty());
+		ParseForest forest = result.getParseForest();
+		assertEquals(1, forest.getTreeCount());
+		assertEquals(0, forest.getRoot().getStart());
+		assertEquals(5, forest.getRoot().getEnd());
+		assertFalse(forest.getRoot().isAmbiguous());
+	}
+
+	@Test
+	public void testPriorityFiltering() {
+		CompiledSdfParser parser = createSdf(true).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("a+b+c+d");
+
+		// the forest only contains the derivations allowed by the filtered grammar
+		assertTrue(result.getAmbiguities().isEmpty());
+		assertEquals(1, result.getParseForest().getTreeCount());
+	}
+
+	@Test
+	public void testRejectedKeyword() {
+		CompiledSdfParser parser = createKeywordsSdf().compile(KEYWORDS_MODULE_NAME);
+		ParseResult result = parser.parse("if");
+		assertTrue(result.isValid());
+
+		// "if" is not an Id, so it is only derived by the keyword production
+		assertTrue(result.getAmbiguities().isEmpty());
+		assertEquals(1, result.getParseForest().getTreeCount());
+
+		result = parser.parse("iff");
+		assertTrue(result.getAmbiguities().isEmpty());
+		assertEquals(1, result.getParseForest().getTreeCount());
+	}
+
+	@Test
+	public void testPreferredProduction() {
+		CompiledSdfParser parser = createKeywordsSdf().compile(KEYWORDS_MODULE_NAME);
+		ParseResult result = parser.parse("x");
+		assertTrue(result.isValid());
+
+		// "x" is also an Id, but the preferred production is the only derivation
+		assertTrue(result.getAmbiguities().isEmpty());
+		assertEquals(1, result.getParseForest().getTreeCount());
+	}
+
+	@Test
+	public void testTruncatedForest() {
+		CompiledSdfParser parser = createSdf(false).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("a+b+c+d+e+f+g+h");
+
+		ParseForest complete = result.getParseForest();
+		assertFalse(complete.isTruncated());
+		// Catalan number C(7)
+		assertEquals(429, complete.getTreeCount());
+
+		ParseForest truncated = result.getParseForest(complete.getNodeCount() / 2);
+		assertNotNull(truncated);
+		assertTrue(truncated.isTruncated());
+		assertTrue(truncated.getNodeCount() <= complete.getNodeCount() / 2);
+	}
+
+	@Test
+	public void testInvalidInput() {
+		CompiledSdfParser parser = createSdf(false).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("a++b");
+
+		assertFalse(result.isValid());
+		assertNull(result.getParseForest());
+		assertTrue(result.getAmbiguities().isEmpty());
+	}
+}
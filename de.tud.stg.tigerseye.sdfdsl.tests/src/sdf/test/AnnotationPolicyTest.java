@@ -0,0 +1,169 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.ParseResult.AnnotationPolicy;
+import sdf.SdfDSL;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermFactory;
+import aterm.ATermInt;
+import aterm.ATermList;
+import aterm.pure.SingletonFactory;
+
+/**
+ * Tests that the annotation policies only change the annotations of the AST,
+ * including lists that are flattened, and that the side table provides the productions.
+ * The tests use the {@link TestGrammars#createSums() Sums} grammar.
+ *
+ */
+public class AnnotationPolicyTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.SUMS;
+	private static final String[] INPUTS = { "1", "1+2+3", "(1 + 2) + 3 + 4", "((1))" };
+	private ATermFactory factory = SingletonFactory.getInstance();
+	private ATerm annLabel = factory.parse("label");
+	private SdfDSL sdf;
+
+	@Before
+	public void setUp() {
+		sdf = TestGrammars.createSums();
+	}
+
+	/**
+	 * Removes all annotations from a term (except for labels, if requested).
+	 */
+	private ATerm removeAnnotations(ATerm term, boolean keepLabels) {
+		ATerm result;
+		if (term instanceof ATermAppl) {
+			ATermAppl appl = (ATermAppl)term;
+			ATerm[] args = new ATerm[appl.getArity()];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = removeAnnotations(appl.getArgument(i), keepLabels);
+			}
+			result = factory.makeAppl(appl.getAFun(), args);
+		} else if (term instanceof ATermList) {
+			ATermList list = (ATermList)term;
+			ATermList newList = factory.makeList();
+			for (int i = list.getLength() - 1; i >= 0; i--) {
+				newList = factory.makeList(removeAnnotations(list.elementAt(i), keepLabels), newList);
+			}
+			result = newList;
+		} else {
+			result = term.removeAnnotations();
+		}
+
+		ATerm label = term.getAnnotation(annLabel);
+		if (keepLabels && label != null) {
+			result = result.setAnnotation(annLabel, label);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the first application with the given name in a term (depth-first), or null.
+	 */
+	private ATermAppl findAppl(ATerm term, String name) {
+		if (term instanceof ATermAppl) {
+			ATermAppl appl = (ATermAppl)term;
+			if (appl.getName().equals(name)) {
+				return appl;
+			}
+			for (int i = 0; i < appl.getArity(); i++) {
+				ATermAppl result = findAppl(appl.getArgument(i), name);
+				if (result != null) {
+					return result;
+				}
+			}
+		} else if (term instanceof ATermList) {
+			ATermList list = (ATermList)term;
+			for (int i = 0; i < list.getLength(); i++) {
+				ATermAppl result = findAppl(list.elementAt(i), name);
+				if (result != null) {
+					return result;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testPoliciesOnlyChangeAnnotations() {
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+
+		for (ASTAlgorithm algorithm : ASTAlgorithm.values()) {
+			for (String input : INPUTS) {
+				ATerm full = parser.parse(input, algorithm, AnnotationPolicy.FULL).getConsTree();
+				ATerm labels = parser.parse(input, algorithm, AnnotationPolicy.LABELS).getConsTree();
+				ATerm none = parser.parse(input, algorithm, AnnotationPolicy.NONE).getConsTree();
+
+				assertEquals(removeAnnotations(full, true).toString(), labels.toString());
+				assertEquals(removeAnnotations(full, false).toString(), none.toString());
+			}
+		}
+	}
+
+	@Test
+	public void testLabelsArePreserved() {
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		ATermAppl paren = findAppl(parser.parse("(1)", ASTAlgorithm.CONS_WITH_SKIP,
+				AnnotationPolicy.LABELS).getConsTree(), "Paren");
+
+		assertNotNull(paren);
+		assertEquals("\"e\"", paren.getArgument(0).getAnnotation(annLabel).toString());
+		assertTrue(paren.getAnnotations().isEmpty());
+	}
+
+	@Test
+	public void testProductionsAreAvailableFromSideTable() {
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		ATerm annProduction = factory.parse("production");
+
+		ParseResult full = parser.parse("(1)+2", ASTAlgorithm.CONS_WITH_SKIP, AnnotationPolicy.FULL);
+		ParseResult none = parser.parse("(1)+2", ASTAlgorithm.CONS_WITH_SKIP, AnnotationPolicy.NONE);
+
+		ATerm root = none.getConsTree();
+		assertTrue(root.getAnnotations().isEmpty());
+		assertNotNull(none.getRuleDescriptor(root));
+		assertEquals("Plus", none.getRuleDescriptor(root).getConsName());
+		ATermAppl productionString = (ATermAppl)full.getConsTree().getAnnotation(annProduction);
+		assertEquals(productionString.getName(), none.getProduction(root).toString());
+
+		// no side table for the full annotation policy
+		assertNull(full.getRuleDescriptor(full.getConsTree()));
+	}
+
+	@Test
+	public void testIndexedPolicyResolvesProductions() {
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		ATerm annProduction = factory.parse("production");
+		ATerm annProductionIndex = factory.parse("productionIndex");
+
+		ParseResult full = parser.parse("(1+2)", ASTAlgorithm.CONS_WITH_SKIP, AnnotationPolicy.FULL);
+		ParseResult indexed = parser.parse("(1+2)", ASTAlgorithm.CONS_WITH_SKIP, AnnotationPolicy.INDEXED);
+
+		ATerm fullRoot = full.getConsTree();
+		ATerm indexedRoot = indexed.getConsTree();
+		assertEquals(removeAnnotations(fullRoot, false), removeAnnotations(indexedRoot, false));
+		assertNull(indexedRoot.getAnnotation(annProduction));
+		assertEquals(fullRoot.getAnnotation(annProductionIndex), indexedRoot.getAnnotation(annProductionIndex));
+		assertEquals(fullRoot.getAnnotation(annProduction), indexed.getProductionString(indexedRoot));
+		assertEquals(fullRoot.getAnnotation(annProduction), full.getProductionString(fullRoot));
+
+		// the ids refer to the production index of the grammar
+		assertSame(full.getProductionIndex(), indexed.getProductionIndex());
+		int id = ((ATermInt)indexedRoot.getAnnotation(annProductionIndex)).getInt();
+		assertEquals(id, indexed.getProductionIndex().getIndex(indexed.getProductionIndex().getProduction(id)));
+		assertEquals(((ATermAppl)fullRoot.getAnnotation(annProduction)).getName(),
+				indexed.getProductionIndex().getProduction(id).toString());
+	}
+}
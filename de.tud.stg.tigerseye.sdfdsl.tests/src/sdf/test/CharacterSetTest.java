@@ -0,0 +1,88 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import sdf.SdfDSL;
+import sdf.model.CharacterClass;
+import sdf.util.CharacterSet;
+
+/**
+ * Tests the character sets used for character classes, in particular that the operators are
+ * evaluated on sets and that the generated regular expressions match the same characters.
+ *
+ */
+public class CharacterSetTest {
+	private SdfDSL sdf = new SdfDSL();
+
+	/**
+	 * Checks that the set and its regular expression agree for all Latin-1 characters and some others.
+	 */
+	private void assertMatchesRegexp(CharacterSet set) {
+		Pattern pattern = Pattern.compile("[" + set.toRegexpPattern() + "]");
+		int[] others = { 0x100, 0x3b1, 0x4e00, 0xfffd, 0x1f600, Character.MAX_CODE_POINT };
+		for (int c = 0; c < 256 + others.length; c++) {
+			int ch = c < 256 ? c : others[c - 256];
+			String str = new String(Character.toChars(ch));
+			assertEquals("character " + ch + " in " + set, set.contains(ch), pattern.matcher(str).matches());
+		}
+	}
+
+	@Test
+	public void testParseEscapes() {
+		CharacterSet whitespace = CharacterSet.parse("\\ \\t\\n\\r");
+		assertEquals(CharacterSet.of(' ').union(CharacterSet.of('\t')).union(CharacterSet.of('\n'))
+				.union(CharacterSet.of('\r')), whitespace);
+
+		CharacterSet control = CharacterSet.parse("\\0-\\31");
+		assertEquals(CharacterSet.range(0, 31), control);
+
+		CharacterSet identifier = CharacterSet.parse("A-Za-z\\-0-9");
+		assertTrue(identifier.contains('-'));
+		assertTrue(identifier.contains('q'));
+		assertFalse(identifier.contains('_'));
+		assertEquals(4, identifier.getRangeCount());
+
+		assertMatchesRegexp(whitespace);
+		assertMatchesRegexp(identifier);
+	}
+
+	@Test
+	public void testOperators() {
+		CharacterSet digits = CharacterSet.parse("0-9");
+
+		assertEquals(CharacterSet.range('0', '7'), digits.difference(CharacterSet.parse("8-9")));
+		assertEquals(CharacterSet.range('d', 'f'), CharacterSet.parse("a-f").intersection(CharacterSet.parse("d-q")));
+		assertEquals(CharacterSet.parse("0-9a-zA-Z"), digits.union(CharacterSet.parse("a-zA-Z")));
+		assertEquals(digits, digits.complement().complement());
+		assertTrue(digits.intersection(digits.complement()).isEmpty());
+		assertEquals(CharacterSet.ALL, digits.union(digits.complement()));
+
+		assertMatchesRegexp(digits.complement());
+		assertMatchesRegexp(CharacterSet.EMPTY);
+		assertMatchesRegexp(CharacterSet.ALL);
+	}
+
+	@Test
+	public void testCharacterClassOperators() {
+		// the complement of [a-z] / [m] contains m
+		CharacterClass cc = sdf.characterClassComplement(sdf.characterClassSymbol("a-z"));
+		assertFalse(cc.getCharacterSet().contains('m'));
+
+		CharacterClass difference = sdf.characterClassDifference(sdf.characterClassSymbol("a-z"),
+				sdf.characterClassSymbol("m"));
+		CharacterSet notDifference = difference.getCharacterSet().complement();
+		assertTrue(notDifference.contains('m'));
+		assertFalse(notDifference.contains('a'));
+		assertMatchesRegexp(notDifference);
+
+		// the regular expression is a flat list of ranges
+		assertEquals("0-7", sdf.characterClassDifference(sdf.characterClassSymbol("0-9"),
+				sdf.characterClassSymbol("8-9")).getRegexpPattern());
+	}
+}
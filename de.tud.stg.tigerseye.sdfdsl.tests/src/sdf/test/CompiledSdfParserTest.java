@@ -0,0 +1,252 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sdf.BatchParseResult;
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+import de.tud.stg.parlex.ast.IAbstractNode;
+
+/**
+ * Tests that a compiled parser can be reused for multiple inputs and from multiple threads.
+ *
+ * <pre>
+ * {@code
+ * module SimpleArithExpr
+ * exports
+ * context-free start-symbols Expr
+ *
+ * lexical syntax
+ * [0-9]+				-> Number
+ * [ ]+					-> LAYOUT
+ *
+ * context-free syntax
+ * Expr "+" Number		-> Expr {cons("Plus")}
+ * Expr "-" Number		-> Expr {cons("Minus")}
+ * Number				-> Expr
+ * }
+ * </pre>
+ *
+ */
+public class CompiledSdfParserTest {
+	private static final String MAIN_MODULE_NAME = "SimpleArithExpr";
+	private static final String[] INPUTS = { "1", "1+2", "3 - 4 + 5", "10 + 20 - 30 + 40 - 50" };
+	private SdfDSL sdf;
+
+	@Before
+	public void setUp() {
+		sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("0-9")) }, sdf.sortSymbol("Number")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol(" ")) }, sdf.sortSymbol("LAYOUT")), });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Expr"),
+						sdf.caseSensitiveLiteralSymbol("+"), sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Plus") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Expr"),
+						sdf.caseSensitiveLiteralSymbol("-"), sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Minus") }),
+				sdf.production(new Symbol[] { sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr")), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+	}
+
+	@Test
+	public void testCompiledParserMatchesParseString() {
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+
+		for (String input : INPUTS) {
+			ParseResult expected = sdf.parseString(MAIN_MODULE_NAME, input);
+			ParseResult actual = parser.parse(input);
+
+			assertTrue(actual.isValid());
+			assertSame(parser.getGeneratedGrammar(), actual.getGeneratedGrammar());
+			assertEquals(expected.getConsTree().toString(), actual.getConsTree().toString());
+		}
+	}
+
+	@Test
+	public void testParseTreeAfterConsTree() {
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+
+		for (String input : INPUTS) {
+			ParseResult expected = parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP);
+			ParseResult actual = parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP);
+
+			// the parse tree extracted to build the AST is not kept, but can still be requested
+			assertTrue(actual.isValid());
+			assertEquals(expected.getConsTree().toString(), actual.getConsTree().toString());
+			IAbstractNode parseTree = actual.getParseTree();
+			assertNotNull(parseTree);
+			assertSame(parseTree, actual.getParseTree());
+		}
+	}
+
+	@Test
+	public void testConsTreeFromChart() {
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+
+		for (String input : INPUTS) {
+			ParseResult expected = parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP);
+			ParseResult actual = parser.parse(input, ASTAlgorithm.CONS_WITH_SKIP_FROM_CHART);
+
+			assertTrue(actual.isValid());
+			assertEquals(expected.getConsTree().toString(), actual.getConsTree().toString());
+			// the parse tree is not needed for the AST, but can still be requested
+			assertNotNull(actual.getParseTree());
+		}
+	}
+
+	@Test
+	public void testConcurrentParsing() throws Exception {
+		final CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			List<Future<String>> futures = new ArrayList<Future<String>>();
+			for (int i = 0; i < 100; i++) {
+				final String input = INPUTS[i % INPUTS.length];
+				futures.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						ParseResult result = parser.parse(input);
+						assertTrue(result.isValid());
+						return result.getConsTree().toString();
+					}
+				}));
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				String expected = parser.parse(INPUTS[i % INPUTS.length]).getConsTree().toString();
+				assertEquals(expected, futures.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParseAll() {
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 0; i < 50; i++) {
+			inputs.add(INPUTS[i % INPUTS.length]);
+		}
+		inputs.add("1 +");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<BatchParseResult> results;
+		try {
+			results = sdf.parseAll(MAIN_MODULE_NAME, inputs, executor);
+		} finally {
+			executor.shutdown();
+		}
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+
+		assertEquals(inputs.size(), results.size());
+		for (int i = 0; i < inputs.size() - 1; i++) {
+			BatchParseResult result = results.get(i);
+			assertEquals(i, result.getIndex());
+			assertEquals(inputs.get(i), result.getInput());
+			assertTrue(result.isCompleted());
+			assertTrue(result.isValid());
+			assertTrue(result.getParseTimeNanos() > 0);
+			assertEquals(parser.parse(inputs.get(i)).getConsTree().toString(),
+					result.getParseResult().getConsTree().toString());
+		}
+
+		// an invalid input is not a failure
+		BatchParseResult invalid = results.get(inputs.size() - 1);
+		assertTrue(invalid.isCompleted());
+		assertFalse(invalid.isValid());
+		assertNotNull(invalid.getParseResult());
+	}
+
+	@Test
+	public void testParseAllReportsFailuresPerInput() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			// parsing null fails, but the other inputs are parsed anyway
+			List<BatchParseResult> results = sdf.parseAll(MAIN_MODULE_NAME,
+					Arrays.asList("1+2", null, "3"), executor);
+
+			assertEquals(3, results.size());
+			assertTrue(results.get(0).isValid());
+			assertFalse(results.get(1).isCompleted());
+			assertNull(results.get(1).getParseResult());
+			assertNotNull(results.get(1).getException());
+			assertTrue(results.get(2).isValid());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParseAllReportsStackOverflowPerInput() {
+		// threads with a small stack, so that building the AST of a long input overflows the stack
+		ExecutorService executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(null, r, "small-stack", 64 * 1024);
+			}
+		});
+
+		StringBuilder deep = new StringBuilder("1");
+		for (int i = 0; i < 20000; i++) {
+			deep.append("+1");
+		}
+
+		try {
+			List<BatchParseResult> results = sdf.parseAll(MAIN_MODULE_NAME,
+					Arrays.asList("1+2", deep.toString(), "3"), executor);
+
+			assertEquals(3, results.size());
+			assertTrue(results.get(0).isValid());
+			assertFalse(results.get(1).isCompleted());
+			assertTrue(results.get(1).getException() instanceof StackOverflowError);
+			assertTrue(results.get(2).isValid());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
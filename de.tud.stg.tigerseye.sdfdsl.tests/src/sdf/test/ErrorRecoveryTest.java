@@ -0,0 +1,137 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import sdf.ParseError;
+import sdf.ParseResult;
+import sdf.SdfDSL;
+import de.tud.stg.parlex.core.Category;
+import de.tud.stg.parlex.core.ICategory;
+
+/**
+ * Tests the errors and partial ASTs reported for invalid inputs when error recovery is enabled,
+ * using the {@link TestGrammars#createAssignments() Assignments} grammar.
+ *
+ */
+public class ErrorRecoveryTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.ASSIGNMENTS;
+
+	private SdfDSL createSdf() {
+		SdfDSL sdf = TestGrammars.createAssignments();
+		sdf.setErrorRecoveryEnabled(true);
+		return sdf;
+	}
+
+	private static boolean containsLiteral(List<ICategory<String>> terminals, String text) {
+		for (ICategory<String> terminal : terminals) {
+			if (terminal.getClass() == Category.class && terminal.getName().equals(text)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testValidInput() {
+		ParseResult result = createSdf().parseString(MAIN_MODULE_NAME, "x=1; y=(x+z)");
+
+		assertTrue(result.isValid());
+		assertTrue(result.getErrors().isEmpty());
+		assertNull(result.getPartialConsTree());
+	}
+
+	@Test
+	public void testErrorPosition() {
+		SdfDSL sdf = createSdf();
+		ParseResult result = sdf.parseString(MAIN_MODULE_NAME, "x=1;\ny=+2");
+
+		assertFalse(result.isValid());
+		assertEquals(1, result.getErrors().size());
+		ParseError error = result.getErrors().get(0);
+		assertEquals(7, error.getOffset());
+		assertEquals(2, error.getLine());
+		assertEquals(3, error.getColumn());
+		assertFalse(error.isUnexpectedEndOfInput());
+		assertTrue(containsLiteral(error.getExpectedTerminals(), "("));
+		assertFalse(containsLiteral(error.getExpectedTerminals(), "+"));
+	}
+
+	@Test
+	public void testPartialConsTree() {
+		SdfDSL sdf = createSdf();
+		ParseResult result = sdf.parseString(MAIN_MODULE_NAME, "x=1; y=+2");
+		ParseResult prefix = sdf.parseString(MAIN_MODULE_NAME, "x=1");
+
+		assertNotNull(result.getPartialConsTree());
+		assertEquals(prefix.getConsTree().toString(), result.getPartialConsTree().toString());
+	}
+
+	@Test
+	public void testUnexpectedEndOfInput() {
+		ParseResult result = createSdf().parseString(MAIN_MODULE_NAME, "x=(1");
+
+		assertEquals(1, result.getErrors().size());
+		ParseError error = result.getErrors().get(0);
+		assertEquals(4, error.getOffset());
+		assertTrue(error.isUnexpectedEndOfInput());
+		assertTrue(containsLiteral(error.getExpectedTerminals(), ")"));
+	}
+
+	@Test
+	public void testErrorInsideString() {
+		// the character class ~[\"] must not hide the terminals expected inside the string
+		String input = "x=\"a; y=1";
+		ParseResult result = createSdf().parseString(MAIN_MODULE_NAME, input);
+
+		assertEquals(1, result.getErrors().size());
+		ParseError error = result.getErrors().get(0);
+		assertEquals(input.length(), error.getOffset());
+		assertTrue(error.isUnexpectedEndOfInput());
+		assertTrue(containsLiteral(error.getExpectedTerminals(), "\""));
+		assertFalse(containsLiteral(error.getExpectedTerminals(), ";"));
+		assertFalse(containsLiteral(error.getExpectedTerminals(), "("));
+	}
+
+	@Test
+	public void testErrorInsideStringWithPreLexing() {
+		SdfDSL sdf = createSdf();
+		sdf.setPreLexingEnabled(true);
+		ParseResult result = sdf.parseString(MAIN_MODULE_NAME, "x=1;\ny=\"a\"b");
+
+		assertEquals(1, result.getErrors().size());
+		ParseError error = result.getErrors().get(0);
+		assertEquals(10, error.getOffset());
+		assertTrue(containsLiteral(error.getExpectedTerminals(), ";"));
+		assertFalse(containsLiteral(error.getExpectedTerminals(), "\""));
+	}
+
+	@Test
+	public void testMultipleErrors() {
+		ParseResult result = createSdf().parseString(MAIN_MODULE_NAME, "x=+1; y=2; z=*3");
+
+		List<ParseError> errors = result.getErrors();
+		assertEquals(2, errors.size());
+		assertEquals(2, errors.get(0).getOffset());
+		assertEquals(6, errors.get(0).getResumeOffset());
+		assertEquals(13, errors.get(1).getOffset());
+		assertNull(result.getPartialConsTree());
+	}
+
+	@Test
+	public void testRecoveryDisabled() {
+		SdfDSL sdf = createSdf();
+		sdf.setErrorRecoveryEnabled(false);
+		ParseResult result = sdf.parseString(MAIN_MODULE_NAME, "x=+1");
+
+		assertFalse(result.isValid());
+		assertTrue(result.getErrors().isEmpty());
+	}
+}
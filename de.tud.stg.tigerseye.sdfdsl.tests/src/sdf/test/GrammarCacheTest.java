@@ -0,0 +1,200 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.GeneratedGrammar;
+import sdf.GrammarCache;
+import sdf.ParseResult;
+import sdf.ProductionMapping;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Import;
+import sdf.model.Imports;
+import sdf.model.LiteralSymbol;
+import sdf.model.Module;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import de.tud.stg.parlex.core.Rule;
+
+/**
+ * Tests the grammar cache of SdfDSL, including the invalidation of cached grammars
+ * when an (imported) module is registered again or modified in place.
+ *
+ * <pre>
+ * {@code
+ * module test/Numbers
+ * exports
+ *   lexical syntax
+ *     [0-9]+	-> Number
+ *     [ ]+		-> LAYOUT
+ *
+ * module Sum
+ * imports test/Numbers
+ * exports
+ *   context-free start-symbols Sum
+ *   context-free syntax
+ *     Number "+" Number	-> Sum
+ * }
+ * </pre>
+ *
+ */
+public class GrammarCacheTest {
+	private static final String MAIN_MODULE_NAME = "Sum";
+	private SdfDSL sdf;
+	private LiteralSymbol plus;
+
+	@Before
+	public void setUp() {
+		sdf = new SdfDSL();
+		setUpNumbersModule();
+		setUpSumModule();
+	}
+
+	private Module setUpNumbersModule() {
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("0-9")) }, sdf.sortSymbol("Number")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol(" ")) }, sdf.sortSymbol("LAYOUT")), });
+
+		Exports exports = sdf.exports(new GrammarElement[] { lexSyntax });
+
+		return sdf.moduleWithoutParameters(new ModuleId("test/Numbers"),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+	}
+
+	private Module setUpSumModule() {
+		plus = sdf.caseSensitiveLiteralSymbol("+");
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.sortSymbol("Number"),
+						plus,
+						sdf.sortSymbol("Number") }, sdf.sortSymbol("Sum")), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Sum") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, cfSyntax });
+
+		Imports imports = sdf.importsStatement(new Import[] { sdf
+				.importModuleWithoutParameters(new ModuleId("test/Numbers")) });
+
+		return sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] { imports }, new ExportOrHiddenSection[] { exports });
+	}
+
+	@Test
+	public void testGrammarIsReused() {
+		GrammarCache cache = sdf.getGrammarCache();
+
+		GeneratedGrammar first = sdf.getGrammar(MAIN_MODULE_NAME);
+		GeneratedGrammar second = sdf.getGrammar(MAIN_MODULE_NAME);
+
+		assertSame(first, second);
+		assertTrue(first.isImmutable());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReturnedGrammarIsImmutable() {
+		GeneratedGrammar grammar = sdf.getGrammar(MAIN_MODULE_NAME);
+		grammar.setProductionMappings(new HashMap<Rule, ProductionMapping>());
+	}
+
+	@Test
+	public void testCopiesAreIndependent() {
+		GeneratedGrammar copy = sdf.getGrammar(MAIN_MODULE_NAME).copy();
+		assertFalse(copy.isImmutable());
+		copy.setProductionMappings(new HashMap<Rule, ProductionMapping>());
+
+		GeneratedGrammar second = sdf.getGrammar(MAIN_MODULE_NAME);
+		assertEquals(1, sdf.getGrammarCache().getHits());
+		assertFalse(second.getProductionMappings().isEmpty());
+		assertTrue(sdf.parseString(MAIN_MODULE_NAME, "1 + 2").isValid());
+	}
+
+	@Test
+	public void testUnrelatedModificationKeepsGrammar() {
+		GeneratedGrammar first = sdf.getGrammar(MAIN_MODULE_NAME);
+
+		// modify an element that is not part of a registered module
+		sdf.caseSensitiveLiteralSymbol("*").setText("/");
+
+		assertSame(first, sdf.getGrammar(MAIN_MODULE_NAME));
+		assertEquals(1, sdf.getGrammarCache().getMisses());
+	}
+
+	@Test
+	public void testModifyingModuleInPlaceInvalidatesGrammar() {
+		assertTrue(sdf.parseString(MAIN_MODULE_NAME, "1 + 2").isValid());
+
+		// modify the module without registering it again
+		plus.setText("-");
+
+		assertFalse(sdf.parseString(MAIN_MODULE_NAME, "1 + 2").isValid());
+		assertTrue(sdf.parseString(MAIN_MODULE_NAME, "1 - 2").isValid());
+		assertEquals(2, sdf.getGrammarCache().getMisses());
+	}
+
+	@Test
+	public void testCleanedAndUncleanedGrammarsAreCachedSeparately() {
+		GeneratedGrammar cleaned = sdf.getGrammar(MAIN_MODULE_NAME, true);
+		GeneratedGrammar uncleaned = sdf.getGrammar(MAIN_MODULE_NAME, false);
+
+		assertNotSame(cleaned, uncleaned);
+		assertEquals(2, sdf.getGrammarCache().size());
+	}
+
+	@Test
+	public void testReRegisteringImportedModuleInvalidatesGrammar() {
+		GeneratedGrammar first = sdf.getGrammar(MAIN_MODULE_NAME);
+
+		// register test/Numbers again
+		setUpNumbersModule();
+		assertEquals(0, sdf.getGrammarCache().size());
+
+		GeneratedGrammar second = sdf.getGrammar(MAIN_MODULE_NAME);
+		assertNotSame(first, second);
+		assertEquals(2, sdf.getGrammarCache().getMisses());
+	}
+
+	@Test
+	public void testParsingUsesCachedGrammar() {
+		ParseResult result1 = sdf.parseString(MAIN_MODULE_NAME, "1 + 2");
+		ParseResult result2 = sdf.parseString(MAIN_MODULE_NAME, "3+4");
+
+		assertTrue(result1.isValid());
+		assertTrue(result2.isValid());
+		assertSame(result1.getGeneratedGrammar(), result2.getGeneratedGrammar());
+		assertEquals(1, sdf.getGrammarCache().getMisses());
+		assertEquals(1, sdf.getGrammarCache().getHits());
+	}
+
+	@Test
+	public void testCompiledParserIsReused() {
+		CompiledSdfParser first = sdf.compile(MAIN_MODULE_NAME);
+		assertSame(first, sdf.compile(MAIN_MODULE_NAME));
+
+		sdf.setErrorRecoveryEnabled(true);
+		CompiledSdfParser second = sdf.compile(MAIN_MODULE_NAME);
+		assertNotSame(first, second);
+		assertTrue(second.isErrorRecoveryEnabled());
+		assertSame(second, sdf.compile(MAIN_MODULE_NAME));
+		assertEquals(1, sdf.getGrammarCache().getMisses());
+	}
+}
@@ -0,0 +1,139 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.ParseResult.AnnotationPolicy;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.pure.SingletonFactory;
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+
+/**
+ * Tests the removal of non-terminals that can only be expanded to epsilon.
+ * The Pair module does not define any layout, so <code>&lt;LAYOUT?-CF&gt;</code>
+ * can be removed from the cleaned grammar.
+ *
+ * <pre>
+ * {@code
+ * module Pair
+ * exports
+ * context-free start-symbols Pair
+ *
+ * lexical syntax
+ * [0-9]+									-> Number
+ *
+ * context-free syntax
+ * left:Number "," right:Number			-> Pair {cons("Pair")}
+ *
+ * module SpacedPair
+ * (same as Pair, with the additional lexical production)
+ * [ ]+										-> LAYOUT
+ * }
+ * </pre>
+ *
+ */
+public class GrammarCleanerTest {
+	private static final String OPT_LAYOUT = "<LAYOUT?-CF>";
+	private SdfDSL sdf;
+
+	@Before
+	public void setUp() {
+		sdf = new SdfDSL();
+		setUpPairModule("Pair", false);
+		setUpPairModule("SpacedPair", true);
+	}
+
+	private void setUpPairModule(String name, boolean withLayout) {
+		Production numberProduction = sdf.production(new Symbol[] { sdf
+				.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("0-9")) },
+				sdf.sortSymbol("Number"));
+		Production layoutProduction = sdf.production(new Symbol[] { sdf
+				.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol(" ")) },
+				sdf.sortSymbol("LAYOUT"));
+
+		Syntax lexSyntax = sdf.lexicalSyntax(withLayout
+				? new Production[] { numberProduction, layoutProduction }
+				: new Production[] { numberProduction });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] {
+						sdf.labeledSymbol("left", sdf.sortSymbol("Number")),
+						sdf.caseSensitiveLiteralSymbol(","),
+						sdf.labeledSymbol("right", sdf.sortSymbol("Number")) },
+						sdf.sortSymbol("Pair"), new ATerm[] { sdf.consATerm("Pair") }), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Pair") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId(name),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+	}
+
+	private boolean hasCategory(Grammar grammar, String name) {
+		for (ICategory<String> cat : grammar.getCategories()) {
+			if (cat.getName().equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	@Test
+	public void testEpsilonOnlyLayoutIsRemoved() {
+		assertTrue(hasCategory(sdf.getGrammar("Pair", false).getGrammar(), OPT_LAYOUT));
+		assertFalse(hasCategory(sdf.getGrammar("Pair", true).getGrammar(), OPT_LAYOUT));
+	}
+
+	@Test
+	public void testLayoutIsKeptIfDefined() {
+		assertTrue(hasCategory(sdf.getGrammar("SpacedPair", true).getGrammar(), OPT_LAYOUT));
+
+		ParseResult result = sdf.parseString("SpacedPair", "1 , 2");
+		assertTrue(result.isValid());
+	}
+
+	@Test
+	public void testLabelsArePreserved() {
+		ParseResult result = sdf.parseString("Pair", "1,2");
+		assertTrue(result.isValid());
+
+		ATerm label = SingletonFactory.getInstance().parse("label");
+		ATermAppl pair = (ATermAppl)result.getConsTree();
+		assertEquals("Pair", pair.getName());
+		assertEquals(2, pair.getArity());
+		assertEquals("\"left\"", pair.getArgument(0).getAnnotation(label).toString());
+		assertEquals("\"right\"", pair.getArgument(1).getAnnotation(label).toString());
+	}
+
+	@Test
+	public void testAnnotationsNameOriginalRules() {
+		CompiledSdfParser uncleaned = new CompiledSdfParser("Pair", sdf.getGrammar("Pair", false));
+		CompiledSdfParser cleaned = new CompiledSdfParser("Pair", sdf.getGrammar("Pair", true));
+
+		ParseResult expected = uncleaned.parse("1,2", ASTAlgorithm.CONS, AnnotationPolicy.FULL);
+		ParseResult actual = cleaned.parse("1,2", ASTAlgorithm.CONS, AnnotationPolicy.FULL);
+		assertTrue(expected.isValid());
+		assertTrue(actual.isValid());
+		assertEquals(expected.getConsTree(), actual.getConsTree());
+	}
+}
@@ -0,0 +1,163 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.GeneratedGrammar;
+import sdf.GrammarSerializer;
+import sdf.ParseResult;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Priorities;
+import sdf.model.Priority;
+import sdf.model.PriorityGroup;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+
+/**
+ * Tests saving and loading generated grammars. The grammar uses cons attributes,
+ * labels, associativity and priorities, which all have to survive the round trip.
+ *
+ * <pre>
+ * {@code
+ * module Calc
+ * exports
+ * context-free start-symbols Expr
+ *
+ * lexical syntax
+ * [0-9]+								-> Number
+ * [ ]+									-> LAYOUT
+ *
+ * context-free syntax
+ * l:Expr "+" r:Expr					-> Expr {left, cons("Plus")}
+ * l:Expr "*" r:Expr					-> Expr {left, cons("Times")}
+ * Number								-> Expr {cons("Num")}
+ *
+ * context-free priorities
+ * l:Expr "*" r:Expr -> Expr > l:Expr "+" r:Expr -> Expr
+ * }
+ * </pre>
+ *
+ */
+public class GrammarSerializerTest {
+	private static final String MAIN_MODULE_NAME = "Calc";
+	private static final String[] INPUTS = { "1", "1+2*3", "1 * 2 + 3 * 4 + 5" };
+	private SdfDSL sdf;
+
+	@Before
+	public void setUp() {
+		sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("0-9")) }, sdf.sortSymbol("Number")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol(" ")) }, sdf.sortSymbol("LAYOUT")), });
+
+		Production prodPlus = sdf.productionWithAttributes(new Symbol[] {
+				sdf.labeledSymbol("l", sdf.sortSymbol("Expr")),
+				sdf.caseSensitiveLiteralSymbol("+"),
+				sdf.labeledSymbol("r", sdf.sortSymbol("Expr")) },
+				sdf.sortSymbol("Expr"),
+				new ATerm[] { sdf.customATerm("left"), sdf.consATerm("Plus") });
+
+		Production prodTimes = sdf.productionWithAttributes(new Symbol[] {
+				sdf.labeledSymbol("l", sdf.sortSymbol("Expr")),
+				sdf.caseSensitiveLiteralSymbol("*"),
+				sdf.labeledSymbol("r", sdf.sortSymbol("Expr")) },
+				sdf.sortSymbol("Expr"),
+				new ATerm[] { sdf.customATerm("left"), sdf.consATerm("Times") });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				prodPlus,
+				prodTimes,
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Num") }), });
+
+		Priorities cfPriorities = sdf.contextFreePriorities(new Priority[] {
+				sdf.priority(new PriorityGroup[] {
+						sdf.priorityGroup(new Production[] { prodTimes }),
+						sdf.priorityGroup(new Production[] { prodPlus }) }) });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax, cfPriorities });
+
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+	}
+
+	private void assertSameParseResults(GeneratedGrammar loaded) {
+		GeneratedGrammar original = sdf.getGrammar(MAIN_MODULE_NAME);
+
+		assertEquals(original.getGrammar().getRules().size(), loaded.getGrammar().getRules().size());
+		assertEquals(original.getGrammar().getCategories().size(), loaded.getGrammar().getCategories().size());
+		assertEquals(original.getProductionMappings().size(), loaded.getProductionMappings().size());
+
+		CompiledSdfParser parser = new CompiledSdfParser(MAIN_MODULE_NAME, loaded);
+		for (String input : INPUTS) {
+			ParseResult expected = sdf.parseString(MAIN_MODULE_NAME, input);
+			ParseResult actual = parser.parse(input);
+
+			assertTrue(actual.isValid());
+			assertEquals(expected.getConsTree().toString(), actual.getConsTree().toString());
+		}
+	}
+
+	@Test
+	public void testRoundTripInMemory() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GrammarSerializer.write(sdf.getGrammar(MAIN_MODULE_NAME), out);
+
+		assertSameParseResults(GrammarSerializer.read(ByteBuffer.wrap(out.toByteArray())));
+	}
+
+	@Test
+	public void testSaveAndLoadFile() throws IOException {
+		File file = File.createTempFile("Calc", ".grammar");
+		file.deleteOnExit();
+
+		sdf.saveGrammar(MAIN_MODULE_NAME, file.getPath());
+
+		assertSameParseResults(GrammarSerializer.load(file));
+	}
+
+	@Test
+	public void testInvalidDataIsRejected() {
+		try {
+			GrammarSerializer.read(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			GrammarSerializer.write(sdf.getGrammar(MAIN_MODULE_NAME), out);
+			byte[] truncated = new byte[out.size() / 2];
+			System.arraycopy(out.toByteArray(), 0, truncated, 0, truncated.length);
+			GrammarSerializer.read(ByteBuffer.wrap(truncated));
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package sdf.test;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 
@@ -7,6 +8,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import sdf.GeneratedGrammar;
+import sdf.ModuleMergeCache;
 import sdf.ParseResult;
 import sdf.SdfDSL;
 import sdf.model.ExportOrHiddenSection;
@@ -300,4 +302,19 @@ public class ImportTest {
 		System.out.println(result.getParseTree());
 		System.out.println();
 	}
+
+	@Test
+	public void testMergedModulesAreReusedAcrossBuilds() {
+		ModuleMergeCache mergeCache = sdf.getModuleMergeCache();
+		long misses = mergeCache.getMisses();
+		
+		// force the grammar to be generated again
+		sdf.getGrammarCache().clear();
+		GeneratedGrammar rebuilt = sdf.getGrammar(MAIN_MODULE_NAME, true);
+		
+		// ArithExpr2 (including its imports) is not merged again
+		assertEquals(misses, mergeCache.getMisses());
+		assertEquals(1, mergeCache.getHits());
+		assertEquals(generatedGrammar.getGrammar().getRules().size(), rebuilt.getGrammar().getRules().size());
+	}
 }
@@ -0,0 +1,172 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+
+/**
+ * Tests that reparsing an edited input gives the same AST as parsing the edited input completely,
+ * using the {@link TestGrammars#createAssignments() Assignments} grammar.
+ *
+ */
+public class IncrementalReparseTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.ASSIGNMENTS;
+	private static final String INPUT = "x=1; y=(a+b); z=(c)";
+
+	private CompiledSdfParser createParser() {
+		return TestGrammars.createAssignments().compile(MAIN_MODULE_NAME);
+	}
+
+	/**
+	 * Creates a parser for the ambiguous grammar:
+	 *
+	 * <pre>
+	 * {@code
+	 * module AmbiguousSums
+	 * exports
+	 * context-free start-symbols Expr
+	 *
+	 * lexical syntax
+	 * [0-9]+				-> Number
+	 *
+	 * context-free syntax
+	 * Expr "+" Expr		-> Expr {cons("Plus")}
+	 * Number				-> Expr {cons("Num")}
+	 * "(" Expr ")"			-> Expr {cons("Paren")}
+	 * }
+	 * </pre>
+	 */
+	private CompiledSdfParser createAmbiguousParser() {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("0-9")) },
+						sdf.sortSymbol("Number")), });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Expr"),
+						sdf.caseSensitiveLiteralSymbol("+"), sdf.sortSymbol("Expr") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Plus") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Num") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("("),
+						sdf.sortSymbol("Expr"), sdf.caseSensitiveLiteralSymbol(")") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Paren") }), });
+
+		Exports exports = sdf.exports(new GrammarElement[] {
+				sdf.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") }), lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId("AmbiguousSums"),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		return sdf.compile("AmbiguousSums");
+	}
+
+	private ParseResult assertSameAsFullParse(CompiledSdfParser parser, ParseResult previous, int offset,
+			int removedLength, String insertedText) {
+		ParseResult result = parser.reparse(previous, offset, removedLength, insertedText);
+		String input = previous.getInput();
+		String expectedInput = input.substring(0, offset) + insertedText + input.substring(offset + removedLength);
+		ParseResult expected = parser.parse(expectedInput);
+
+		assertEquals(expectedInput, result.getInput());
+		assertEquals(expected.isValid(), result.isValid());
+		if (expected.isValid()) {
+			assertEquals(expected.getConsTree().toString(), result.getConsTree().toString());
+		}
+		return result;
+	}
+
+	@Test
+	public void testEditInsideNode() {
+		CompiledSdfParser parser = createParser();
+		ParseResult previous = parser.parse(INPUT);
+		assertTrue(previous.isValid());
+
+		// y=(a+b+c)
+		ParseResult result = assertSameAsFullParse(parser, previous, 11, 0, "+c");
+		assertTrue(result.isValid());
+		assertNotNull(result.getParseTree());
+	}
+
+	@Test
+	public void testSequenceOfEdits() {
+		CompiledSdfParser parser = createParser();
+		ParseResult result = parser.parse(INPUT);
+
+		// y=(a+bb)
+		result = assertSameAsFullParse(parser, result, 10, 0, "b");
+		// z=(cd)
+		result = assertSameAsFullParse(parser, result, 19, 0, "d");
+		// z=(42)
+		result = assertSameAsFullParse(parser, result, 18, 2, "42");
+		// x=1; y=(a+bb); z=(42); w=0
+		result = assertSameAsFullParse(parser, result, result.getInput().length(), 0, "; w=0");
+		assertEquals("x=1; y=(a+bb); z=(42); w=0", result.getInput());
+	}
+
+	@Test
+	public void testEditBetweenNodes() {
+		CompiledSdfParser parser = createParser();
+		ParseResult previous = parser.parse(INPUT);
+
+		// y=(a+b)+c, the value of y is created by a different rule
+		ParseResult result = assertSameAsFullParse(parser, previous, 12, 0, "+c");
+		assertTrue(result.isValid());
+		// y=(a)+b)
+		assertSameAsFullParse(parser, previous, 9, 0, ")");
+	}
+
+	@Test
+	public void testInvalidEdit() {
+		CompiledSdfParser parser = createParser();
+		ParseResult previous = parser.parse(INPUT);
+
+		ParseResult result = assertSameAsFullParse(parser, previous, 9, 0, "+");
+		assertFalse(result.isValid());
+
+		// an edit of an invalid input parses the whole input
+		assertSameAsFullParse(parser, result, 9, 1, "");
+	}
+
+	@Test
+	public void testUnchangedInput() {
+		CompiledSdfParser parser = createParser();
+		ParseResult previous = parser.parse(INPUT);
+
+		assertSame(previous, parser.reparse(previous, 8, 1, "a"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEditOutsideInput() {
+		CompiledSdfParser parser = createParser();
+		parser.reparse(parser.parse(INPUT), INPUT.length(), 1, "");
+	}
+
+	@Test
+	public void testAmbiguousInput() {
+		CompiledSdfParser parser = createAmbiguousParser();
+		ParseResult previous = parser.parse("1+(2+3)+4");
+		assertTrue(previous.isValid());
+
+		// 1+(2+3+5)+4, the sums outside of the parentheses are ambiguous, so the whole input is parsed again
+		ParseResult result = assertSameAsFullParse(parser, previous, 6, 0, "+5");
+		assertTrue(result.isValid());
+	}
+}
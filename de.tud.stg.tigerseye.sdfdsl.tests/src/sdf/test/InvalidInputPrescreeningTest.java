@@ -0,0 +1,85 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.SdfDSL;
+
+/**
+ * Tests that the recognizer accepts the same inputs as the earley parser, and that invalid inputs
+ * are rejected before parsing if invalid input pre-screening is enabled. The tests use the
+ * {@link TestGrammars#createSums() Sums} grammar.
+ *
+ */
+public class InvalidInputPrescreeningTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.SUMS;
+
+	private static final String[] VALID_INPUTS = { "1", "1+2", "12 + (3 + 45) + 6", " ( ( 7 ) ) " };
+	private static final String[] INVALID_INPUTS = { "", "+", "1+", "(1", "1 2", "(1))", "a" };
+
+	private SdfDSL createSdf(boolean preLexingEnabled) {
+		SdfDSL sdf = TestGrammars.createSums();
+		sdf.setPreLexingEnabled(preLexingEnabled);
+		return sdf;
+	}
+
+	private void assertSameAsParser(CompiledSdfParser parser) {
+		for (String input : VALID_INPUTS) {
+			assertTrue(input, parser.parse(input).isValid());
+			assertTrue(input, parser.recognize(input));
+		}
+		for (String input : INVALID_INPUTS) {
+			assertFalse(input, parser.parse(input).isValid());
+			assertFalse(input, parser.recognize(input));
+		}
+	}
+
+	@Test
+	public void testRecognize() {
+		assertSameAsParser(createSdf(false).compile(MAIN_MODULE_NAME));
+	}
+
+	@Test
+	public void testRecognizeWithPreLexing() {
+		assertSameAsParser(createSdf(true).compile(MAIN_MODULE_NAME));
+	}
+
+	@Test
+	public void testLongInput() {
+		CompiledSdfParser parser = createSdf(false).compile(MAIN_MODULE_NAME);
+		StringBuilder sb = new StringBuilder("0");
+		for (int i = 1; i <= 2000; i++) {
+			sb.append(" + (").append(i).append(" + 1)");
+		}
+		assertTrue(parser.recognize(sb.toString()));
+		sb.append(" +");
+		assertFalse(parser.recognize(sb.toString()));
+	}
+
+	@Test
+	public void testInvalidInputPrescreeningEnabled() {
+		SdfDSL sdf = createSdf(false);
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		sdf.setInvalidInputPrescreeningEnabled(true);
+		sdf.setErrorRecoveryEnabled(true);
+		CompiledSdfParser prescreeningParser = sdf.compile(MAIN_MODULE_NAME);
+		assertTrue(prescreeningParser.isInvalidInputPrescreeningEnabled());
+
+		ParseResult valid = prescreeningParser.parse("1 + (2 + 3)");
+		assertTrue(valid.isValid());
+		assertEquals(parser.parse("1 + (2 + 3)").getConsTree(), valid.getConsTree());
+
+		ParseResult invalid = prescreeningParser.parse("1 + (2 +");
+		assertFalse(invalid.isValid());
+		// the chart and the errors are still available
+		assertNotNull(invalid.getParseChart());
+		assertFalse(invalid.getParseChart().isValidParse());
+		assertFalse(invalid.getErrors().isEmpty());
+	}
+}
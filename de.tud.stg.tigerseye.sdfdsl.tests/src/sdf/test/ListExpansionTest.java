@@ -0,0 +1,147 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.ParseResult.AnnotationPolicy;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermList;
+import aterm.pure.SingletonFactory;
+
+/**
+ * Tests that separated lists create the same ASTs (apart from the rule annotations) with and without
+ * the left-recursive expansion, and that long lists and repetitions are turned into flat lists.
+ *
+ * <pre>
+ * {@code
+ * module Lists
+ * exports
+ * context-free start-symbols Program
+ *
+ * lexical syntax
+ * [0-9]+						-> Number
+ * [\ \t\n]+					-> LAYOUT
+ *
+ * context-free syntax
+ * "[" {Number ","}* "]"		-> List {cons("List")}
+ * List+						-> Program {cons("Program")}
+ * }
+ * </pre>
+ *
+ */
+public class ListExpansionTest {
+	private static final String MAIN_MODULE_NAME = "Lists";
+
+	private static final String[] INPUTS = { "[]", "[1]", "[1,2]", "[1, 2, 3]", "[12 , 3] [] [4,5]",
+			"[1] [2] [3] [4]" };
+
+	private SdfDSL createSdf(boolean leftRecursiveListsEnabled) {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("0-9")) },
+						sdf.sortSymbol("Number")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("\\ \\t\\n")) }, sdf.sortSymbol("LAYOUT")), });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("["),
+						sdf.listSymbolAtLeastZero(sdf.sortSymbol("Number"), sdf.caseSensitiveLiteralSymbol(",")),
+						sdf.caseSensitiveLiteralSymbol("]") },
+						sdf.sortSymbol("List"), new ATerm[] { sdf.consATerm("List") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf.sortSymbol("List")) },
+						sdf.sortSymbol("Program"), new ATerm[] { sdf.consATerm("Program") }), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Program") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		sdf.setLeftRecursiveListsEnabled(leftRecursiveListsEnabled);
+		return sdf;
+	}
+
+	private String generateList(int size) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 1; i <= size; i++) {
+			if (i > 1) {
+				sb.append(", ");
+			}
+			sb.append(i);
+		}
+		return sb.append("]").toString();
+	}
+
+	@Test
+	public void testSameTrees() {
+		CompiledSdfParser parser = createSdf(false).compile(MAIN_MODULE_NAME);
+		CompiledSdfParser leftParser = createSdf(true).compile(MAIN_MODULE_NAME);
+		for (ASTAlgorithm algorithm : new ASTAlgorithm[] { ASTAlgorithm.CONS, ASTAlgorithm.CONS_WITH_SKIP }) {
+			// with the policies FULL and INDEXED, the RHS annotations of the lists are different
+			for (AnnotationPolicy policy : new AnnotationPolicy[] { AnnotationPolicy.NONE, AnnotationPolicy.LABELS }) {
+				for (String input : INPUTS) {
+					ParseResult result = parser.parse(input, algorithm, policy);
+					ParseResult leftResult = leftParser.parse(input, algorithm, policy);
+					assertTrue(input, result.isValid());
+					assertTrue(input, leftResult.isValid());
+					assertEquals(input, result.getConsTree(), leftResult.getConsTree());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFlatList() {
+		CompiledSdfParser parser = createSdf(true).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("[1, 2, 3]", ASTAlgorithm.CONS, AnnotationPolicy.NONE);
+		assertEquals(SingletonFactory.getInstance().parse("Program(List([\"1\",\"2\",\"3\"]))"), result.getConsTree());
+	}
+
+	@Test
+	public void testLongList() {
+		int size = 2000;
+		String input = generateList(size);
+		for (boolean leftRecursive : new boolean[] { false, true }) {
+			CompiledSdfParser parser = createSdf(leftRecursive).compile(MAIN_MODULE_NAME);
+			ParseResult result = parser.parse(input, ASTAlgorithm.CONS, AnnotationPolicy.NONE);
+			assertTrue(result.isValid());
+			ATermAppl list = (ATermAppl)((ATermAppl)result.getConsTree()).getArgument(0);
+			ATermList elements = (ATermList)list.getArgument(0);
+			assertEquals(size, elements.getLength());
+			assertEquals("1", ((ATermAppl)elements.getFirst()).getName());
+			assertEquals(String.valueOf(size), ((ATermAppl)elements.getLast()).getName());
+		}
+	}
+
+	@Test
+	public void testLongRepetition() {
+		int size = 2000;
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= size; i++) {
+			sb.append("[").append(i).append("] ");
+		}
+		CompiledSdfParser parser = createSdf(true).compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse(sb.toString(), ASTAlgorithm.CONS_WITH_SKIP, AnnotationPolicy.NONE);
+		assertTrue(result.isValid());
+		ATermList lists = (ATermList)((ATermAppl)result.getConsTree()).getArgument(0);
+		assertEquals(size, lists.getLength());
+	}
+}
@@ -0,0 +1,91 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.MappedCharSequence;
+import sdf.ParseResult;
+import sdf.SdfDSL;
+
+/**
+ * Tests parsing and recognizing files and other character sequences that are not strings,
+ * using the {@link TestGrammars#createSums() Sums} grammar.
+ *
+ */
+public class MappedInputTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.SUMS;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File createFile(String content) throws IOException {
+		File file = File.createTempFile("sdf-input", ".txt");
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes(UTF8));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private String createLongInput(int size) {
+		StringBuilder sb = new StringBuilder("0");
+		for (int i = 1; i <= size; i++) {
+			sb.append(" + (").append(i).append(" + 1)\n");
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testParseFile() throws IOException {
+		SdfDSL sdf = TestGrammars.createSums();
+		String input = "1 + (2 + 3)\n+ 4";
+		ParseResult expected = sdf.parseString(MAIN_MODULE_NAME, input);
+		ParseResult result = sdf.parseFile(MAIN_MODULE_NAME, createFile(input), UTF8);
+
+		assertTrue(result.isValid());
+		assertEquals(expected.getConsTree(), result.getConsTree());
+		assertEquals(input, result.getInput());
+	}
+
+	@Test
+	public void testRecognizeLongFile() throws IOException {
+		CompiledSdfParser parser = TestGrammars.createSums().compile(MAIN_MODULE_NAME);
+		// several windows of the mapped file
+		String input = createLongInput(20000);
+		File file = createFile(input);
+		MappedCharSequence chars = MappedCharSequence.open(file, UTF8);
+		assertEquals(input.length(), chars.length());
+		assertEquals(input, chars.toString());
+
+		assertTrue(parser.recognize(file, UTF8));
+		assertFalse(parser.recognize(createFile(input + "+"), UTF8));
+	}
+
+	@Test
+	public void testParseCharSequence() {
+		SdfDSL sdf = TestGrammars.createSums();
+		sdf.setInvalidInputPrescreeningEnabled(true);
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+
+		StringBuilder valid = new StringBuilder("(1) + 2");
+		assertEquals(parser.parse(valid.toString()).getConsTree(), parser.parse(valid).getConsTree());
+
+		StringBuilder invalid = new StringBuilder("(1) + ");
+		ParseResult result = parser.parse(invalid);
+		assertFalse(result.isValid());
+		// the chart is created from the input when it is requested
+		assertEquals("(1) + ", result.getInput());
+		assertFalse(result.getParseChart().isValidParse());
+	}
+}
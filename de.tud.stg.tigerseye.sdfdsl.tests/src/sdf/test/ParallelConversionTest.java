@@ -0,0 +1,184 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdf.GeneratedGrammar;
+import sdf.ParseResult;
+import sdf.ProductionMapping;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Hiddens;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.Rule;
+
+/**
+ * Tests that converting the productions in parallel generates the same grammar as the sequential
+ * conversion. The module has more productions than are converted by a single task, and the
+ * production <code>"kw0" Id [;] -&gt; Stmt</code> is defined twice. The rules of all tasks must
+ * share one category instance per name, e.g. for <code>Id</code> and <code>[;]</code>.
+ *
+ * <pre>
+ * {@code
+ * module Keywords
+ * exports
+ * context-free start-symbols Program
+ *
+ * lexical syntax
+ * [a-z]+						-> Id
+ * [ ]+							-> LAYOUT
+ *
+ * context-free syntax
+ * "kw0" Id [;]					-> Stmt {cons("Kw0")}
+ * ...
+ * "kw199" Id [;]				-> Stmt {cons("Kw199")}
+ * Stmt+						-> Program {cons("Program")}
+ *
+ * hiddens
+ * context-free syntax
+ * "kw0" Id [;]					-> Stmt {cons("Kw0")}
+ * }
+ * </pre>
+ *
+ */
+public class ParallelConversionTest {
+	private static final String MAIN_MODULE_NAME = "Keywords";
+	private static final int KEYWORDS = 200;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	private SdfDSL createSdf() {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("a-z")) }, sdf.sortSymbol("Id")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol(" ")) }, sdf.sortSymbol("LAYOUT")), });
+
+		Production[] productions = new Production[KEYWORDS + 1];
+		for (int i = 0; i < KEYWORDS; i++) {
+			productions[i] = keywordProduction(sdf, i);
+		}
+		productions[KEYWORDS] = sdf.productionWithAttributes(new Symbol[] {
+				sdf.repetitionSymbolAtLeastOnce(sdf.sortSymbol("Stmt")) },
+				sdf.sortSymbol("Program"), new ATerm[] { sdf.consATerm("Program") });
+		Syntax cfSyntax = sdf.contextFreeSyntax(productions);
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Program") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+		Hiddens hiddens = sdf.hiddens(new GrammarElement[] {
+				sdf.contextFreeSyntax(new Production[] { keywordProduction(sdf, 0) }) });
+
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports, hiddens });
+		return sdf;
+	}
+
+	private Production keywordProduction(SdfDSL sdf, int i) {
+		return sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("kw" + i),
+				sdf.sortSymbol("Id"), sdf.characterClassSymbol(";") }, sdf.sortSymbol("Stmt"),
+				new ATerm[] { sdf.consATerm("Kw" + i) });
+	}
+
+	private List<String> getRuleStrings(GeneratedGrammar grammar) {
+		List<String> rules = new ArrayList<String>();
+		for (IRule<String> rule : grammar.getGrammar().getRules()) {
+			rules.add(rule.toString() + " " + ((Rule)rule).getAnnotations());
+		}
+		Collections.sort(rules);
+		return rules;
+	}
+
+	private List<String> getMappingStrings(GeneratedGrammar grammar) {
+		List<String> mappings = new ArrayList<String>();
+		for (Map.Entry<Rule, ProductionMapping> entry : grammar.getProductionMappings().entrySet()) {
+			mappings.add(entry.getKey() + " " + entry.getValue().getProduction());
+		}
+		Collections.sort(mappings);
+		return mappings;
+	}
+
+	@Test
+	public void testSameGrammar() {
+		GeneratedGrammar sequential = createSdf().getGrammar(MAIN_MODULE_NAME, false);
+		SdfDSL sdf = createSdf();
+		sdf.setConversionExecutor(executor);
+		GeneratedGrammar parallel = sdf.getGrammar(MAIN_MODULE_NAME, false);
+
+		assertEquals(getRuleStrings(sequential), getRuleStrings(parallel));
+		assertEquals(getMappingStrings(sequential), getMappingStrings(parallel));
+		assertEquals(sequential.getGrammar().getCategories().size(), parallel.getGrammar().getCategories().size());
+		assertEquals(sequential.getGrammar().getStartRule().toString(), parallel.getGrammar().getStartRule().toString());
+		assertEquals(KEYWORDS + 3, parallel.getProductionMappings().size());
+	}
+
+	@Test
+	public void testOneCategoryInstancePerName() {
+		SdfDSL sdf = createSdf();
+		sdf.setConversionExecutor(executor);
+		Grammar grammar = sdf.getGrammar(MAIN_MODULE_NAME, false).getGrammar();
+
+		Map<String, ICategory<String>> categories = new HashMap<String, ICategory<String>>();
+		for (ICategory<String> cat : grammar.getCategories()) {
+			assertNull(cat.toString(), categories.put(cat.isTerminal() + cat.getName(), cat));
+		}
+		for (IRule<String> rule : grammar.getRules()) {
+			assertSame(rule.toString(), categories.get(rule.getLhs().isTerminal() + rule.getLhs().getName()), rule.getLhs());
+			for (ICategory<String> cat : rule.getRhs()) {
+				assertSame(rule.toString(), categories.get(cat.isTerminal() + cat.getName()), cat);
+			}
+		}
+		assertTrue(categories.containsKey("false<Id-CF>"));
+		assertTrue(categories.containsKey("true[\\x3b]"));
+	}
+
+	@Test
+	public void testSameConsTrees() {
+		SdfDSL sdf = createSdf();
+		sdf.setConversionExecutor(executor);
+		String input = "kw0 a; kw64 b; kw199 c;";
+
+		ParseResult expected = createSdf().parseString(MAIN_MODULE_NAME, input);
+		ParseResult actual = sdf.parseString(MAIN_MODULE_NAME, input);
+
+		assertTrue(actual.isValid());
+		assertEquals(expected.getConsTree().toString(), actual.getConsTree().toString());
+	}
+}
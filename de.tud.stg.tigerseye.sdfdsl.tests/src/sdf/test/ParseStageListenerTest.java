@@ -0,0 +1,132 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.ParseResult;
+import sdf.ParseResult.ASTAlgorithm;
+import sdf.ParseStageEvent;
+import sdf.ParseStageEvent.Counter;
+import sdf.ParseStageEvent.Stage;
+import sdf.ParseStageListener;
+import sdf.SdfDSL;
+
+/**
+ * Tests that the stages of generating the grammar and parsing an input are reported to the
+ * {@link ParseStageListener}, using the {@link TestGrammars#createSums() Sums} grammar.
+ *
+ */
+public class ParseStageListenerTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.SUMS;
+
+	private static class RecordingListener implements ParseStageListener {
+		private final List<ParseStageEvent> events = new ArrayList<ParseStageEvent>();
+
+		@Override
+		public synchronized void stageCompleted(ParseStageEvent event) {
+			events.add(event);
+		}
+
+		List<Stage> getStages() {
+			List<Stage> stages = new ArrayList<Stage>();
+			for (ParseStageEvent event : events) {
+				stages.add(event.getStage());
+			}
+			return stages;
+		}
+
+		ParseStageEvent getEvent(Stage stage) {
+			for (ParseStageEvent event : events) {
+				if (event.getStage() == stage) {
+					return event;
+				}
+			}
+			throw new AssertionError("No event for " + stage);
+		}
+	}
+
+	@Test
+	public void testStages() {
+		SdfDSL sdf = TestGrammars.createSums();
+		RecordingListener listener = new RecordingListener();
+		sdf.setParseStageListener(listener);
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		assertTrue(parser.parse("1+2+3").isValid());
+
+		List<Stage> stages = listener.getStages();
+		for (Stage stage : new Stage[] { Stage.MERGE, Stage.CONVERSION, Stage.CLEANING,
+				Stage.ORACLE_DETECTION, Stage.CHART, Stage.PARSE_TREE, Stage.CONS_TREE }) {
+			assertTrue(stage.toString(), stages.contains(stage));
+		}
+		// priority filtering is disabled by default
+		assertFalse(stages.contains(Stage.PRIORITY_FILTERING));
+		assertTrue(stages.indexOf(Stage.MERGE) < stages.indexOf(Stage.CHART));
+		assertTrue(stages.indexOf(Stage.CHART) < stages.indexOf(Stage.CONS_TREE));
+
+		assertEquals(1, listener.getEvent(Stage.MERGE).getCount(Counter.MODULES));
+		assertEquals(5, listener.getEvent(Stage.CHART).getCount(Counter.INPUT_LENGTH));
+		assertTrue(listener.getEvent(Stage.CONS_TREE).getCount(Counter.TREE_NODES) > 0);
+		assertEquals(-1, listener.getEvent(Stage.CHART).getCount(Counter.TREE_NODES));
+		assertEquals(MAIN_MODULE_NAME, listener.getEvent(Stage.CHART).getTopLevelModuleName());
+		ParseStageEvent cleaning = listener.getEvent(Stage.CLEANING);
+		assertTrue(cleaning.getCount(Counter.RULES_AFTER) <= cleaning.getCount(Counter.RULES_BEFORE));
+	}
+
+	@Test
+	public void testPriorityFiltering() {
+		SdfDSL sdf = TestGrammars.createSums();
+		RecordingListener listener = new RecordingListener();
+		sdf.setParseStageListener(listener);
+		sdf.setPriorityFilteringEnabled(true);
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		assertTrue(parser.parse("1+2+3").isValid());
+
+		List<Stage> stages = listener.getStages();
+		assertTrue(stages.contains(Stage.PRIORITY_FILTERING));
+		assertTrue(stages.indexOf(Stage.CLEANING) < stages.indexOf(Stage.PRIORITY_FILTERING));
+		assertTrue(stages.indexOf(Stage.PRIORITY_FILTERING) < stages.indexOf(Stage.CHART));
+	}
+
+	@Test
+	public void testRecognition() {
+		SdfDSL sdf = TestGrammars.createSums();
+		RecordingListener listener = new RecordingListener();
+		sdf.setParseStageListener(listener);
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		assertTrue(parser.recognize("1+2"));
+
+		ParseStageEvent recognition = listener.getEvent(Stage.RECOGNITION);
+		assertEquals(3, recognition.getCount(Counter.INPUT_LENGTH));
+		assertTrue(recognition.getCount(Counter.CHART_ITEMS) > 0);
+	}
+
+	@Test
+	public void testConsTreeFromChart() {
+		SdfDSL sdf = TestGrammars.createSums();
+		RecordingListener listener = new RecordingListener();
+		sdf.setParseStageListener(listener);
+		CompiledSdfParser parser = sdf.compile(MAIN_MODULE_NAME);
+		ParseResult result = parser.parse("1+(2+3)", ASTAlgorithm.CONS_WITH_SKIP_FROM_CHART);
+		assertTrue(result.isValid());
+
+		// the AST is built from the earley sets of the recognizer, the earley parser does not run
+		List<Stage> stages = listener.getStages();
+		assertTrue(stages.contains(Stage.RECOGNITION));
+		assertTrue(stages.contains(Stage.CONS_TREE));
+		assertFalse(stages.contains(Stage.CHART));
+		assertFalse(stages.contains(Stage.PARSE_TREE));
+
+		// the chart is only created when it is requested
+		result.getParseTree();
+		assertTrue(listener.getStages().contains(Stage.CHART));
+
+		assertFalse(parser.parse("1+", ASTAlgorithm.CONS_WITH_SKIP_FROM_CHART).isValid());
+	}
+}
@@ -0,0 +1,129 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import org.junit.Test;
+
+import sdf.ParseResult;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+
+/**
+ * Tests that pre-lexing of regular lexical symbols generates a smaller grammar
+ * without changing the generated ASTs, using the {@link TestGrammars#createAssignments() Assignments} grammar.
+ *
+ * <p>A token that can be extended by the following characters must not be created, since
+ * it would change the accepted language:
+ *
+ * <pre>
+ * {@code
+ * module Names
+ * exports
+ * context-free start-symbols Name
+ *
+ * lexical syntax
+ * [a-z]+ "x"					-> Name {cons("Name")}
+ * }
+ * </pre>
+ *
+ */
+public class PreLexingTest {
+	private static final String MAIN_MODULE_NAME = TestGrammars.ASSIGNMENTS;
+	private static final String[] INPUTS = { "x=1", "x1 = y + z2 ; y=2.5", "s = 'a b'% comment\n+ t",
+		"a=b;b=c;c=0.125" };
+
+	private SdfDSL createSdf(boolean preLexing) {
+		SdfDSL sdf = TestGrammars.createAssignments();
+		sdf.setPreLexingEnabled(preLexing);
+		return sdf;
+	}
+
+	private SdfDSL createNamesSdf(boolean preLexing) {
+		SdfDSL sdf = new SdfDSL();
+		sdf.setPreLexingEnabled(preLexing);
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] {
+						sdf.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("a-z")),
+						sdf.caseSensitiveLiteralSymbol("x") },
+						sdf.sortSymbol("Name"), new ATerm[] { sdf.consATerm("Name") }), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Name") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId("Names"),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		return sdf;
+	}
+
+	@Test
+	public void testSameConsTrees() {
+		SdfDSL scannerless = createSdf(false);
+		SdfDSL preLexing = createSdf(true);
+
+		for (String input : INPUTS) {
+			ParseResult expected = scannerless.parseString(MAIN_MODULE_NAME, input);
+			ParseResult actual = preLexing.parseString(MAIN_MODULE_NAME, input);
+
+			assertTrue(input, expected.isValid());
+			assertTrue(input, actual.isValid());
+			assertEquals(input, expected.getConsTree().toString(), actual.getConsTree().toString());
+		}
+	}
+
+	@Test
+	public void testInvalidInputs() {
+		SdfDSL preLexing = createSdf(true);
+
+		assertTrue(!preLexing.parseString(MAIN_MODULE_NAME, "x=").isValid());
+		assertTrue(!preLexing.parseString(MAIN_MODULE_NAME, "x=1.").isValid());
+		assertTrue(!preLexing.parseString(MAIN_MODULE_NAME, "x='a").isValid());
+	}
+
+	@Test
+	public void testExtensibleTokenKeepsLanguage() {
+		SdfDSL scannerless = createNamesSdf(false);
+		SdfDSL preLexing = createNamesSdf(true);
+
+		for (String input : new String[] { "abx", "ax", "xx", "axbx" }) {
+			ParseResult expected = scannerless.parseString("Names", input);
+			ParseResult actual = preLexing.parseString("Names", input);
+
+			assertTrue(input, expected.isValid());
+			assertTrue(input, actual.isValid());
+			assertEquals(input, expected.getConsTree().toString(), actual.getConsTree().toString());
+		}
+		assertTrue(!preLexing.parseString("Names", "x").isValid());
+		assertTrue(!preLexing.parseString("Names", "ab").isValid());
+	}
+
+	@Test
+	public void testFewerRules() {
+		int scannerless = createSdf(false).getGrammar(MAIN_MODULE_NAME).getGrammar().getRules().size();
+		int preLexing = createSdf(true).getGrammar(MAIN_MODULE_NAME).getGrammar().getRules().size();
+
+		assertTrue(preLexing < scannerless);
+	}
+
+	@Test
+	public void testOptionClearsGrammarCache() {
+		SdfDSL sdf = createSdf(false);
+		sdf.getGrammar(MAIN_MODULE_NAME);
+		assertEquals(1, sdf.getGrammarCache().size());
+
+		sdf.setPreLexingEnabled(true);
+		assertEquals(0, sdf.getGrammarCache().size());
+	}
+}
@@ -0,0 +1,197 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sdf.CompiledSdfParser;
+import sdf.GeneratedGrammar;
+import sdf.GrammarSerializer;
+import sdf.PriorityConflictTable;
+import sdf.PriorityFilter;
+import sdf.ProductionMapping;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Priorities;
+import sdf.model.Priority;
+import sdf.model.PriorityGroup;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+import de.tud.stg.parlex.core.Rule;
+
+/**
+ * Tests the priority conflict table and that encoding it into the grammar does not change
+ * the generated ASTs.
+ *
+ * <pre>
+ * {@code
+ * module Calc
+ * exports
+ * context-free start-symbols Expr
+ *
+ * lexical syntax
+ * [0-9]+								-> Number
+ * [ ]+									-> LAYOUT
+ *
+ * context-free syntax
+ * l:Expr "+" r:Expr					-> Expr {left, cons("Plus")}
+ * l:Expr "*" r:Expr					-> Expr {left, cons("Times")}
+ * Number								-> Expr {cons("Num")}
+ * "(" Expr ")"							-> Expr
+ *
+ * context-free priorities
+ * l:Expr "*" r:Expr -> Expr > l:Expr "+" r:Expr -> Expr
+ * }
+ * </pre>
+ *
+ */
+public class PriorityFilterTest {
+	private static final String MAIN_MODULE_NAME = "Calc";
+	private static final String[] INPUTS = { "1", "1+2*3", "1*2+3", "1 * 2 + 3 * 4 + 5", "1+2+3", "1*2*3",
+		"(1+2)*3", "1*(2*3)" };
+	private SdfDSL sdf;
+	private Production prodPlus, prodTimes;
+
+	@Before
+	public void setUp() {
+		sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("0-9")) }, sdf.sortSymbol("Number")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol(" ")) }, sdf.sortSymbol("LAYOUT")), });
+
+		prodPlus = sdf.productionWithAttributes(new Symbol[] {
+				sdf.labeledSymbol("l", sdf.sortSymbol("Expr")),
+				sdf.caseSensitiveLiteralSymbol("+"),
+				sdf.labeledSymbol("r", sdf.sortSymbol("Expr")) },
+				sdf.sortSymbol("Expr"),
+				new ATerm[] { sdf.customATerm("left"), sdf.consATerm("Plus") });
+
+		prodTimes = sdf.productionWithAttributes(new Symbol[] {
+				sdf.labeledSymbol("l", sdf.sortSymbol("Expr")),
+				sdf.caseSensitiveLiteralSymbol("*"),
+				sdf.labeledSymbol("r", sdf.sortSymbol("Expr")) },
+				sdf.sortSymbol("Expr"),
+				new ATerm[] { sdf.customATerm("left"), sdf.consATerm("Times") });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				prodPlus,
+				prodTimes,
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Num") }),
+				sdf.production(new Symbol[] { sdf.caseSensitiveLiteralSymbol("("),
+						sdf.sortSymbol("Expr"), sdf.caseSensitiveLiteralSymbol(")") },
+						sdf.sortSymbol("Expr")), });
+
+		Priorities cfPriorities = sdf.contextFreePriorities(new Priority[] {
+				sdf.priority(new PriorityGroup[] {
+						sdf.priorityGroup(new Production[] { prodTimes }),
+						sdf.priorityGroup(new Production[] { prodPlus }) }) });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax, cfPriorities });
+
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+	}
+
+	private Rule getRule(GeneratedGrammar grammar, Production production) {
+		for (Map.Entry<Rule, ProductionMapping> entry : grammar.getProductionMappings().entrySet()) {
+			if (entry.getValue().getProduction().equals(production)) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	private void assertSameConsTrees(CompiledSdfParser expectedParser, CompiledSdfParser actualParser) {
+		for (String input : INPUTS) {
+			ATerm expected = expectedParser.parse(input).getConsTree();
+			ATerm actual = actualParser.parse(input).getConsTree();
+
+			assertNotNull(input, actual);
+			assertEquals(input, expected.toString(), actual.toString());
+		}
+	}
+
+	@Test
+	public void testConflictTable() {
+		GeneratedGrammar grammar = sdf.getGrammar(MAIN_MODULE_NAME);
+		Rule plus = getRule(grammar, prodPlus);
+		Rule times = getRule(grammar, prodTimes);
+		int right = times.getRhs().size() - 1;
+
+		PriorityConflictTable table = PriorityConflictTable.create(grammar.getGrammar());
+
+		// priority
+		assertTrue(table.isForbidden(times, 0, plus));
+		assertTrue(table.isForbidden(times, right, plus));
+		assertFalse(table.isForbidden(plus, 0, times));
+		assertFalse(table.isForbidden(plus, right, times));
+		// left associativity
+		assertTrue(table.isForbidden(plus, right, plus));
+		assertTrue(table.isForbidden(times, right, times));
+		assertFalse(table.isForbidden(plus, 0, plus));
+		assertFalse(table.isForbidden(times, 0, times));
+
+		assertEquals(4, table.size());
+		assertTrue(table.getForbiddenRules(plus, 0).isEmpty());
+	}
+
+	@Test
+	public void testSameConsTrees() {
+		CompiledSdfParser unfiltered = sdf.compile(MAIN_MODULE_NAME);
+		sdf.setPriorityFilteringEnabled(true);
+		CompiledSdfParser filtered = sdf.compile(MAIN_MODULE_NAME);
+
+		assertTrue(filtered.getGeneratedGrammar().getGrammar().getRules().size()
+				> unfiltered.getGeneratedGrammar().getGrammar().getRules().size());
+		assertSameConsTrees(unfiltered, filtered);
+	}
+
+	@Test
+	public void testOriginalRules() {
+		GeneratedGrammar grammar = sdf.getGrammar(MAIN_MODULE_NAME);
+		Rule times = getRule(grammar, prodTimes);
+		GeneratedGrammar filtered = PriorityFilter.filter(grammar);
+		Rule filteredTimes = getRule(filtered, prodTimes);
+
+		assertFalse(filteredTimes.getRhs().equals(times.getRhs()));
+		assertEquals(times, filtered.getOriginalRule(filteredTimes));
+		assertEquals(grammar.getRuleDescriptor(times).getRhsAnnotation(),
+				filtered.getRuleDescriptor(filteredTimes).getRhsAnnotation());
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		CompiledSdfParser unfiltered = sdf.compile(MAIN_MODULE_NAME);
+		GeneratedGrammar filtered = PriorityFilter.filter(sdf.getGrammar(MAIN_MODULE_NAME));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GrammarSerializer.write(filtered, out);
+		GeneratedGrammar loaded = GrammarSerializer.read(ByteBuffer.wrap(out.toByteArray()));
+
+		assertEquals(filtered.getOriginalRules().size(), loaded.getOriginalRules().size());
+		assertSameConsTrees(unfiltered, new CompiledSdfParser(MAIN_MODULE_NAME, loaded));
+	}
+}
@@ -0,0 +1,138 @@
+package sdf.test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import sdf.ModuleMerger;
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.Module;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.SortSymbol;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+
+/**
+ * Tests the canonical symbols (see {@link Symbol#intern(Symbol)}) and that the ModuleMerger represents
+ * equal unlabeled symbols by their canonical instance.
+ *
+ * <pre>
+ * {@code
+ * module Interning
+ * exports
+ * lexical syntax
+ * [a-z]+						-> Id
+ *
+ * context-free syntax
+ * Id "+" Id					-> Expr
+ * Expr "*" left:Id				-> Expr
+ * Id "+" Id					-> Expr
+ * }
+ * </pre>
+ *
+ */
+public class SymbolInterningTest {
+	private static final String MAIN_MODULE_NAME = "Interning";
+
+	private List<Production> getMergedProductions() {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("a-z")) }, sdf.sortSymbol("Id")), });
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.sortSymbol("Id"), sdf.caseSensitiveLiteralSymbol("+"),
+						sdf.sortSymbol("Id") }, sdf.sortSymbol("Expr")),
+				sdf.production(new Symbol[] { sdf.sortSymbol("Expr"), sdf.caseSensitiveLiteralSymbol("*"),
+						sdf.labeledSymbol("left", sdf.sortSymbol("Id")) }, sdf.sortSymbol("Expr")),
+				sdf.production(new Symbol[] { sdf.sortSymbol("Id"), sdf.caseSensitiveLiteralSymbol("+"),
+						sdf.sortSymbol("Id") }, sdf.sortSymbol("Expr")), });
+
+		Exports exports = sdf.exports(new GrammarElement[] { lexSyntax, cfSyntax });
+		sdf.moduleWithoutParameters(new ModuleId(MAIN_MODULE_NAME),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+
+		Module merged = new ModuleMerger(sdf).processModule(sdf.getModule(MAIN_MODULE_NAME));
+		List<Production> productions = new ArrayList<Production>();
+		for (ExportOrHiddenSection section : merged.getExportOrHiddenSections()) {
+			for (GrammarElement element : section.getGrammarElements()) {
+				if (element instanceof Syntax) {
+					productions.addAll(((Syntax)element).getProductions());
+				}
+			}
+		}
+		return productions;
+	}
+
+	@Test
+	public void testEqualSymbolsAreShared() {
+		List<Production> productions = getMergedProductions();
+		assertEquals(4, productions.size());
+		Production lexId = productions.get(0);
+		Production plus = productions.get(1);
+		Production times = productions.get(2);
+
+		assertSame(lexId.getRhs(), plus.getLhs().get(0));
+		assertSame(plus.getLhs().get(0), plus.getLhs().get(2));
+		assertSame(plus.getRhs(), times.getLhs().get(0));
+		assertSame(plus.getRhs(), times.getRhs());
+	}
+
+	@Test
+	public void testLabeledSymbolsAreCopied() {
+		List<Production> productions = getMergedProductions();
+		Symbol labeled = productions.get(2).getLhs().get(2);
+
+		assertEquals("left", labeled.getLabel());
+		assertEquals(productions.get(1).getLhs().get(0), labeled);
+		assertNotSame(productions.get(1).getLhs().get(0), labeled);
+	}
+
+	@Test
+	public void testEqualProductionsAreShared() {
+		List<Production> productions = getMergedProductions();
+		assertSame(productions.get(1), productions.get(3));
+	}
+
+	@Test
+	public void testIntern() {
+		SortSymbol first = new SortSymbol("Interned");
+		SortSymbol second = new SortSymbol("Interned");
+
+		Symbol canonical = Symbol.intern(first);
+		assertSame(first, canonical);
+		assertTrue(canonical.isCanonical());
+		assertSame(first, Symbol.intern(second));
+		assertFalse(second.isCanonical());
+
+		// canonical and other instances are still equal
+		assertEquals(second, canonical);
+		assertEquals(canonical, second);
+		assertEquals(second.hashCode(), canonical.hashCode());
+		assertFalse(canonical.equals(Symbol.intern(new SortSymbol("Other"))));
+	}
+
+	@Test
+	public void testLabeledSymbolsAreNotInterned() {
+		Symbol labeled = new SortSymbol("Interned", "label");
+		assertSame(labeled, Symbol.intern(labeled));
+		assertFalse(labeled.isCanonical());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCanonicalSymbolsCannotBeModified() {
+		Symbol.intern(new SortSymbol("Immutable")).setLabel("label");
+	}
+}
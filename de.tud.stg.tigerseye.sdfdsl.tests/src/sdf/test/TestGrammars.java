@@ -0,0 +1,167 @@
+package sdf.test;
+
+import sdf.SdfDSL;
+import sdf.model.ExportOrHiddenSection;
+import sdf.model.Exports;
+import sdf.model.GrammarElement;
+import sdf.model.Imports;
+import sdf.model.ModuleId;
+import sdf.model.Production;
+import sdf.model.StartSymbols;
+import sdf.model.Symbol;
+import sdf.model.Syntax;
+import aterm.ATerm;
+
+/**
+ * The grammars shared by several tests. Each call creates a new {@link SdfDSL} with the default
+ * options, so the tests can change the options without affecting each other.
+ *
+ */
+final class TestGrammars {
+
+	static final String SUMS = "Sums";
+	static final String ASSIGNMENTS = "Assignments";
+
+	private TestGrammars() {
+	}
+
+	/**
+	 * Creates a grammar for sums of numbers with parentheses:
+	 *
+	 * <pre>
+	 * {@code
+	 * module Sums
+	 * exports
+	 * context-free start-symbols Expr
+	 *
+	 * lexical syntax
+	 * [0-9]+						-> Number
+	 * [\ \t\n]+					-> LAYOUT
+	 *
+	 * context-free syntax
+	 * Expr "+" n:Number			-> Expr {cons("Plus")}
+	 * Number						-> Expr {cons("Num")}
+	 * "(" e:Expr ")"				-> Number {cons("Paren")}
+	 * }
+	 * </pre>
+	 */
+	static SdfDSL createSums() {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("0-9")) },
+						sdf.sortSymbol("Number")),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("\\ \\t\\n")) }, sdf.sortSymbol("LAYOUT")), });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Expr"),
+						sdf.caseSensitiveLiteralSymbol("+"), sdf.labeledSymbol("n", sdf.sortSymbol("Number")) },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Plus") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Num") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("("),
+						sdf.labeledSymbol("e", sdf.sortSymbol("Expr")), sdf.caseSensitiveLiteralSymbol(")") },
+						sdf.sortSymbol("Number"), new ATerm[] { sdf.consATerm("Paren") }), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Expr") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId(SUMS),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		return sdf;
+	}
+
+	/**
+	 * Creates a grammar for sequences of assignments, with two kinds of strings and comments:
+	 *
+	 * <pre>
+	 * {@code
+	 * module Assignments
+	 * exports
+	 * context-free start-symbols Program
+	 *
+	 * lexical syntax
+	 * [a-z] [a-z0-9]*				-> Id
+	 * [0-9]+ ("." [0-9]+)?			-> Number
+	 * "\"" ~[\"]* "\""				-> Str {cons("Str")}
+	 * "'" ~[\']* "'"				-> Str {cons("Str")}
+	 * [\ \t\n]+					-> LAYOUT
+	 * "%" ~[\n]* [\n]				-> LAYOUT
+	 *
+	 * context-free syntax
+	 * Id "=" Expr					-> Stmt {cons("Assign")}
+	 * Expr "+" Id					-> Expr {cons("Plus")}
+	 * Id							-> Expr {cons("Var")}
+	 * Number						-> Expr {cons("Num")}
+	 * Str							-> Expr
+	 * "(" Expr ")"					-> Expr {cons("Paren")}
+	 * {Stmt ";"}+					-> Program {cons("Program")}
+	 * }
+	 * </pre>
+	 */
+	static SdfDSL createAssignments() {
+		SdfDSL sdf = new SdfDSL();
+
+		Syntax lexSyntax = sdf.lexicalSyntax(new Production[] {
+				sdf.production(new Symbol[] { sdf.characterClassSymbol("a-z"),
+						sdf.repetitionSymbolAtLeastZero(sdf.characterClassSymbol("a-z0-9")) },
+						sdf.sortSymbol("Id")),
+				sdf.production(new Symbol[] {
+						sdf.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("0-9")),
+						sdf.optionalSymbol(sdf.sequenceSymbol(new Symbol[] {
+								sdf.caseSensitiveLiteralSymbol("."),
+								sdf.repetitionSymbolAtLeastOnce(sdf.characterClassSymbol("0-9")) })) },
+						sdf.sortSymbol("Number")),
+				createString(sdf, "\""),
+				createString(sdf, "'"),
+				sdf.production(new Symbol[] { sdf.repetitionSymbolAtLeastOnce(sdf
+						.characterClassSymbol("\\ \\t\\n")) }, sdf.sortSymbol("LAYOUT")),
+				sdf.production(new Symbol[] { sdf.caseSensitiveLiteralSymbol("%"),
+						sdf.repetitionSymbolAtLeastZero(sdf.characterClassComplement(sdf
+								.characterClassSymbol("\\n"))),
+						sdf.characterClassSymbol("\\n") }, sdf.sortSymbol("LAYOUT")), });
+
+		Syntax cfSyntax = sdf.contextFreeSyntax(new Production[] {
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Id"),
+						sdf.caseSensitiveLiteralSymbol("="), sdf.sortSymbol("Expr") },
+						sdf.sortSymbol("Stmt"), new ATerm[] { sdf.consATerm("Assign") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Expr"),
+						sdf.caseSensitiveLiteralSymbol("+"), sdf.sortSymbol("Id") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Plus") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Id") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Var") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.sortSymbol("Number") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Num") }),
+				sdf.production(new Symbol[] { sdf.sortSymbol("Str") }, sdf.sortSymbol("Expr")),
+				sdf.productionWithAttributes(new Symbol[] { sdf.caseSensitiveLiteralSymbol("("),
+						sdf.sortSymbol("Expr"), sdf.caseSensitiveLiteralSymbol(")") },
+						sdf.sortSymbol("Expr"), new ATerm[] { sdf.consATerm("Paren") }),
+				sdf.productionWithAttributes(new Symbol[] { sdf.listSymbolAtLeastOnce(
+						sdf.sortSymbol("Stmt"), sdf.caseSensitiveLiteralSymbol(";")) },
+						sdf.sortSymbol("Program"), new ATerm[] { sdf.consATerm("Program") }), });
+
+		StartSymbols startSymbols = sdf
+				.contextFreeStartSymbols(new Symbol[] { sdf.sortSymbol("Program") });
+
+		Exports exports = sdf.exports(new GrammarElement[] { startSymbols, lexSyntax, cfSyntax });
+
+		sdf.moduleWithoutParameters(new ModuleId(ASSIGNMENTS),
+				new Imports[] {}, new ExportOrHiddenSection[] { exports });
+		return sdf;
+	}
+
+	/**
+	 * Creates the production <code>q ~[q]* q -&gt; Str {cons("Str")}</code> for the quote q.
+	 */
+	private static Production createString(SdfDSL sdf, String quote) {
+		return sdf.productionWithAttributes(new Symbol[] {
+				sdf.caseSensitiveLiteralSymbol(quote),
+				sdf.repetitionSymbolAtLeastZero(sdf.characterClassComplement(sdf
+						.characterClassSymbol("\\" + quote))),
+				sdf.caseSensitiveLiteralSymbol(quote) },
+				sdf.sortSymbol("Str"), new ATerm[] { sdf.consATerm("Str") });
+	}
+}
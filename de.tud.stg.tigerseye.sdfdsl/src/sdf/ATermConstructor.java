@@ -1,17 +1,18 @@
 package sdf;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 
+import sdf.ParseResult.AnnotationPolicy;
+
 import sdf.model.Production;
-import sdf.ruleannotations.CustomATermAnnotation;
 
 import aterm.*;
 import aterm.pure.SingletonFactory;
 import de.tud.stg.parlex.ast.IAbstractNode;
 import de.tud.stg.parlex.ast.Terminal;
-import de.tud.stg.parlex.core.ICategory;
-import de.tud.stg.parlex.core.IRuleAnnotation;
 import de.tud.stg.parlex.core.Rule;
 
 /**
@@ -39,28 +40,54 @@ import de.tud.stg.parlex.core.Rule;
  * <p>The following ATerm annotations are added:
  * <ul>
  * <li>{@code production} (String): a normalized string representation of the SDF production that created the node</li>
- * <li>{@code productionIndex} (Int): an index into the production list, can be used to retrieve the SDF production object</li>
+ * <li>{@code productionIndex} (Int): the id of the production in the {@link ProductionIndex} of the grammar,
+ * can be used to retrieve the SDF production object</li>
  * </ul>
  * 
+ * <p>Which annotations are added depends on the {@link AnnotationPolicy}. With {@link AnnotationPolicy#INDEXED INDEXED},
+ * the {@code production} annotation is omitted, it can be resolved from the {@code productionIndex} annotation
+ * (see {@link ProductionIndex#getProductionString(int)}). If the rules are not stored in annotations
+ * ({@link AnnotationPolicy#NONE NONE} or {@link AnnotationPolicy#LABELS LABELS}), the rule and production of
+ * each node are stored in a side table instead (see {@link #getNodeRules()}).
+ * 
+ * <p>Everything that only depends on the rule of a node (cons name, namespace, annotations) is taken
+ * from the {@link RuleDescriptor} of the rule, which is computed only once per grammar.
+ * 
  * @author Pablo Hoch
  *
  */
 public class ATermConstructor {
 	
+	// states of constructList
+	private static final int LIST_STATE_NONE = 0, LIST_STATE_TERM = 1, LIST_STATE_LIST = 2, LIST_STATE_LEX = 3;
+	
 	IAbstractNode parseTree;
 	ATermFactory factory;
-	ATerm consPattern;
 	ATerm annNamespace, annLex, annCF, annLHS, annRHS, annLabel, annProduction, annProductionIndex;
 	GeneratedGrammar grammar;
 	ProductionIndex productionIndex;
+	AnnotationPolicy annotationPolicy;
+	/** true if the rules of the nodes are stored in annotations (FULL and INDEXED), not in a side table */
+	boolean treeAnnotations;
+	IdentityHashMap<ATerm, RuleDescriptor> nodeRules;
+	IdentityHashMap<IAbstractNode, IAbstractNode> replacedNodes;
 
 	public ATermConstructor(GeneratedGrammar grammar, IAbstractNode parseTree) {
+		this(grammar, parseTree, AnnotationPolicy.FULL);
+	}
+
+	public ATermConstructor(GeneratedGrammar grammar, IAbstractNode parseTree, AnnotationPolicy annotationPolicy) {
 		this.grammar = grammar;
 		this.parseTree = parseTree;
 		this.factory = SingletonFactory.getInstance();
-		this.productionIndex = new ProductionIndex();
+		this.productionIndex = grammar.getProductionIndex();
+		this.annotationPolicy = annotationPolicy;
+		this.treeAnnotations = annotationPolicy == AnnotationPolicy.FULL
+				|| annotationPolicy == AnnotationPolicy.INDEXED;
+		if (!treeAnnotations) {
+			this.nodeRules = new IdentityHashMap<ATerm, RuleDescriptor>();
+		}
 		
-		this.consPattern = factory.parse("cons(<str>)");
 		this.annNamespace = factory.parse("namespace");
 		this.annLex = factory.parse("lex");
 		this.annCF = factory.parse("cf");
@@ -72,128 +99,384 @@ public class ATermConstructor {
 	}
 	
 	public ATerm constructTree() {
-		return constructTree(parseTree);
+		return finishTerm(constructTree(parseTree));
 	}
 	
 	public ProductionIndex getProductionIndex() {
 		return productionIndex;
 	}
+	
+	/**
+	 * Returns the side table that maps the nodes of the constructed tree to the descriptors of the rules
+	 * that created them. Only available if the annotation policy is {@link AnnotationPolicy#NONE NONE} or
+	 * {@link AnnotationPolicy#LABELS LABELS}.
+	 * 
+	 * <p>Note that nodes are compared by identity. Since ATerms are maximally shared, equal nodes created
+	 * by different rules are the same object, so only one of the rules is stored for them.
+	 * 
+	 * @return the side table, or null if the annotation policy is FULL or INDEXED
+	 */
+	public IdentityHashMap<ATerm, RuleDescriptor> getNodeRules() {
+		return nodeRules;
+	}
+	
+	public AnnotationPolicy getAnnotationPolicy() {
+		return annotationPolicy;
+	}
+
+	/**
+	 * Sets nodes of the parse tree that are replaced by other nodes while the tree is constructed.
+	 * Used for parse trees of incrementally reparsed inputs, see {@link CompiledSdfParser#reparse}.
+	 * 
+	 * @param replacedNodes	map from nodes of the parse tree to their replacements (compared by identity)
+	 */
+	void setReplacedNodes(IdentityHashMap<IAbstractNode, IAbstractNode> replacedNodes) {
+		this.replacedNodes = replacedNodes;
+	}
 
 	@Deprecated
 	public List<Production> getProductionList() {
 		return productionIndex.getList();
 	}
 	
+	private IAbstractNode getReplacement(IAbstractNode node) {
+		if (replacedNodes != null) {
+			IAbstractNode replacement = replacedNodes.get(node);
+			if (replacement != null) {
+				return replacement;
+			}
+		}
+		return node;
+	}
+	
 	protected ATerm constructTree(IAbstractNode node) {
-		Rule rule = node.getItem().getRule();
+		node = getReplacement(node);
+		RuleDescriptor rule = grammar.getRuleDescriptor(node.getItem().getRule());
 		List<IAbstractNode> children = node.getChildren();
 		boolean terminal = node instanceof Terminal;
-		String consName = getConstructorForRule(rule);
+		
+		if (!terminal && children != null && rule.getSpineIndex() >= 0) {
+			return constructList(node, rule);
+		}
 		
 		// remove layout
-		if (rule.getLhs().getName().equals("<LAYOUT?-CF>")) {
+		if (rule.isLayout()) {
 			return null;
 		}
 		
+		if (terminal) {
+			return constructTerminal(((Terminal)node).getTerm(), rule);
+		}
+		
+		// visit children
+		ArrayList<ATerm> childTerms = new ArrayList<ATerm>();
+		if (children == null) {
+			return createNode(rule.getConsName(), childTerms, rule);
+		}
+		for (int childIndex = 0; childIndex < children.size(); childIndex++) {
+			ATerm childTerm = labelChild(constructTree(children.get(childIndex)), childIndex, rule);
+			if (childTerm != null) {
+				childTerms.add(childTerm);
+			}
+		}
+		return constructNonTerminal(childTerms, rule);
+	}
+	
+	/**
+	 * Builds the term of a terminal matched by a rule that is not a layout rule.
+	 * 
+	 * @param matched	the text matched by the terminal
+	 * @param rule		the rule whose RHS contains the terminal
+	 * @return the term, or null if the terminal is not added to the AST
+	 */
+	ATerm constructTerminal(String matched, RuleDescriptor rule) {
+		String consName = rule.getConsName();
+		ATerm result;
+		
+		// terminals are only added to the AST for lexical rules
+		if (rule.isLexRule()) {
+			ATerm terminalTerm = makeString(matched);
+			terminalTerm = addNamespaceAnnotation(terminalTerm, rule);
+			
+			if (consName != null && rule.getRhsSize() == 1) {
+				// terminal has cons attribute
+				AFun fun = factory.makeAFun(consName, 1, false);
+				ATermAppl appl = factory.makeAppl(fun, terminalTerm);
+				result = addNamespaceAnnotation(appl, rule);
+			} else {
+				result = terminalTerm;
+			}
+		} else {
+			// TODO: check condition
+			if (consName != null && rule.getRhsSize() <= 1) {
+				AFun fun = factory.makeAFun(consName, 0, false);
+				result = factory.makeAppl(fun);
+			} else {
+				result = null;
+			}
+		}
+		
+		return addProductionAnnotation(result, rule);
+	}
+	
+	/**
+	 * Adds the label of the symbol at the given position of the RHS of the rule (if specified) to the term
+	 * of the child at that position.
+	 * 
+	 * @return the labeled term, or null if the term is null
+	 */
+	ATerm labelChild(ATerm childTerm, int childIndex, RuleDescriptor rule) {
 		// get mapping to sdf rule
 		// note that this is null for all automatically generated rules
-		ProductionMapping prodMapping = grammar.getProductionMapping(rule);
+		ProductionMapping prodMapping = rule.getProductionMapping();
+		if (childTerm == null || prodMapping == null || annotationPolicy == AnnotationPolicy.NONE) {
+			return childTerm;
+		}
+		// get symbol label (if specified)
+		String label = prodMapping.getLabelForCategoryAtPosition(childIndex);
+		if (label == null) {
+			return childTerm;
+		}
+		ATerm labeledTerm = childTerm.setAnnotation(annLabel, makeString(label));
+		copyNodeRule(childTerm, labeledTerm);
+		return labeledTerm;
+	}
+	
+	/**
+	 * Builds the term of a node of a non-terminal that is neither a layout rule nor a recursive list rule
+	 * (see {@link #constructList(IAbstractNode, RuleDescriptor)}).
+	 * 
+	 * @param childTerms	the (labeled) terms of the children, without the children that are not in the AST
+	 * @param rule			the rule of the node
+	 * @return the term, or null if the node is removed from the AST
+	 */
+	ATerm constructNonTerminal(List<ATerm> childTerms, RuleDescriptor rule) {
+		String consName = rule.getConsName();
+		if (!rule.isLexRule()) {
+			// CF rule
+			return createNode(consName, childTerms, rule);
+		}
 		
-		if (terminal) {
-			
-			ATerm result;
-			
-			// terminals are only added to the AST for lexical rules
-			if (isLexRule(rule)) {
-				String matched = ((Terminal)node).getTerm();
-				ATerm terminalTerm = makeString(matched);
-				terminalTerm = addNamespaceAnnotation(terminalTerm, rule);
-				
-				if (consName != null && rule.getRhs().size() == 1) {
-					// terminal has cons attribute
-					AFun fun = factory.makeAFun(consName, 1, false);
-					ATermAppl appl = factory.makeAppl(fun, terminalTerm);
-					result = addNamespaceAnnotation(appl, rule);
+		// LEX rule
+		
+		// append children if possible
+		
+		StringBuilder sb = new StringBuilder();
+		for (ATerm childTerm : childTerms) {
+			if (childTerm instanceof ATermAppl) {
+				ATermAppl appl = (ATermAppl)childTerm;
+				if (isLexString(appl)) {
+					sb.append(appl.getName());
 				} else {
-					result = terminalTerm;
+					// non-terminal, in this case the children are returned as is
+					return createNode(consName, childTerms, rule);
 				}
 			} else {
-				// TODO: check condition
-				if (consName != null && rule.getRhs().size() <= 1) {
-					AFun fun = factory.makeAFun(consName, 0, false);
-					result = factory.makeAppl(fun);
-				} else {
-					result = null;
+				// if there are other children (e.g. lists), create a normal node
+				return createNode(consName, childTerms, rule);
+			}
+		}
+		AFun fun = factory.makeAFun(sb.toString(), 0, true);
+		ATerm appl = factory.makeAppl(fun);
+		if (treeAnnotations) {
+			appl = appl.setAnnotation(annNamespace, annLex);
+		}
+		return addProductionAnnotation(appl, rule);
+	}
+	
+	/**
+	 * Builds the term of a chain of nodes created by a recursive list rule (see {@link RuleDescriptor#getSpineIndex()}),
+	 * e.g. <code>A+ A -> A+</code>, without recursion. The result is the same as if each node of the chain
+	 * was processed by {@link #constructTree(IAbstractNode)}, but the nested lists and strings of the nodes
+	 * are not created, so the time is linear in the length of the chain.
+	 * 
+	 * @see ListChain
+	 */
+	private ATerm constructList(IAbstractNode node, RuleDescriptor rule) {
+		boolean leftRecursive = rule.getSpineIndex() == 0;
+		
+		// the chain of nodes created by the rule, starting at the top
+		ArrayList<IAbstractNode> chain = new ArrayList<IAbstractNode>();
+		IAbstractNode current = node;
+		while (true) {
+			chain.add(current);
+			List<IAbstractNode> children = current.getChildren();
+			if (children.isEmpty()) {
+				break;
+			}
+			IAbstractNode spine = getReplacement(children.get(leftRecursive ? 0 : children.size() - 1));
+			if (spine instanceof Terminal || spine.getChildren() == null
+					|| spine.getItem().getRule() != rule.getRule()) {
+				break;
+			}
+			current = spine;
+		}
+		
+		ListChain listChain = new ListChain(rule);
+		ArrayList<ATerm> others = new ArrayList<ATerm>();
+		for (int c = chain.size() - 1; c >= 0; c--) {
+			// the terms of the children except the spine (all children of the last node)
+			List<IAbstractNode> children = chain.get(c).getChildren();
+			boolean last = c == chain.size() - 1;
+			int start = last || !leftRecursive ? 0 : 1;
+			int end = last || leftRecursive ? children.size() : children.size() - 1;
+			others.clear();
+			for (int i = start; i < end; i++) {
+				ATerm childTerm = constructTree(children.get(i));
+				if (childTerm != null) {
+					others.add(childTerm);
 				}
 			}
+			listChain.add(others);
+		}
+		return listChain.finish();
+	}
+	
+	/**
+	 * The state of a chain of nodes created by a recursive list rule while its term is built, starting
+	 * at the end of the chain (see {@link #constructList(IAbstractNode, RuleDescriptor)}).
+	 * 
+	 * <p>The state of the chain below the current node is either no term, a term, a list created by the rule
+	 * whose elements are collected in <code>parts</code>, or a lexical string whose parts are collected.
+	 * For right-recursive rules, the chain is processed from its end, so the parts are collected in reverse order.
+	 */
+	final class ListChain {
+		private final RuleDescriptor rule;
+		private final boolean leftRecursive;
+		private int state = LIST_STATE_NONE;
+		private ATerm term;
+		private final ArrayList<ATerm> parts = new ArrayList<ATerm>();
+		
+		ListChain(RuleDescriptor rule) {
+			this.rule = rule;
+			this.leftRecursive = rule.getSpineIndex() == 0;
+		}
+		
+		RuleDescriptor getRule() {
+			return rule;
+		}
+		
+		/**
+		 * Adds the next node of the chain.
+		 * 
+		 * @param childTerms	the terms of the children of the node except the spine (all children for the
+		 * 						last node of the chain), in the order of the RHS
+		 */
+		void add(List<ATerm> childTerms) {
+			List<ATerm> others = childTerms;
+			if (!leftRecursive) {
+				others = new ArrayList<ATerm>(childTerms);
+				Collections.reverse(others);
+			}
 			
-			return addProductionAnnotation(result, prodMapping);
-			
-		} else { // non-terminal
-			
-			// visit children
-			ArrayList<ATerm> childTerms = new ArrayList<ATerm>();
-			if (children != null) {
-				
-				// process children
-				for (int childIndex = 0; childIndex < children.size(); childIndex++) {
-					IAbstractNode child = children.get(childIndex);
-					String label = null;
-					// get symbol label (if specified)
-					if (prodMapping != null) {
-						label = prodMapping.getLabelForCategoryAtPosition(childIndex);
-					}
-					ATerm childTerm = constructTree(child);
-					if (childTerm != null) {
-						// add label annotation
-						if (label != null) {
-							childTerm = childTerm.setAnnotation(annLabel, makeString(label));
-						}
-						childTerms.add(childTerm);
+			if (rule.isLexRule() && (state == LIST_STATE_NONE || state == LIST_STATE_LEX
+					|| (state == LIST_STATE_TERM && isLexTerm(term))) && areLexTerms(others)) {
+				// lexical strings are concatenated
+				if (state != LIST_STATE_LEX) {
+					parts.clear();
+					if (state == LIST_STATE_TERM) {
+						parts.add(term);
 					}
+					state = LIST_STATE_LEX;
 				}
-				
-				if (isLexRule(rule)) {
-					
-					// LEX rule
-					
-					// append children if possible
-					
-					StringBuilder sb = new StringBuilder();
-					for (ATerm childTerm : childTerms) {
-						if (childTerm instanceof ATermAppl) {
-							ATermAppl appl = (ATermAppl)childTerm;
-							if (appl.isQuoted() && appl.getAnnotation(annNamespace) == annLex) {
-								sb.append(appl.getName());
-							} else {
-								// non-terminal, in this case the children are returned as is
-								return createNode(consName, childTerms, rule);
-							}
-						} else {
-							// if there are other children (e.g. lists), create a normal node
-							return createNode(consName, childTerms, rule);
-						}
+				parts.addAll(others);
+				return;
+			}
+			if (state == LIST_STATE_LEX) {
+				term = makeLexString(parts, leftRecursive, rule);
+				state = LIST_STATE_TERM;
+			}
+			
+			// see skipNodeIfPossible and flattenList
+			int count = (state == LIST_STATE_NONE ? 0 : 1) + others.size();
+			if (count == 1 && state == LIST_STATE_NONE) {
+				term = others.get(0);
+				state = LIST_STATE_TERM;
+			} else if (count > 1) {
+				if (state != LIST_STATE_LIST) {
+					parts.clear();
+					if (state == LIST_STATE_TERM) {
+						addListElement(parts, term, rule, leftRecursive);
 					}
-					AFun fun = factory.makeAFun(sb.toString(), 0, true);
-					ATerm appl = factory.makeAppl(fun);
-					appl = appl.setAnnotation(annNamespace, annLex);
-					return addProductionAnnotation(appl, prodMapping);
-					
-				} else {
-					
-					// CF rule
-					return createNode(consName, childTerms, rule);
-					
+					state = LIST_STATE_LIST;
+				}
+				for (ATerm other : others) {
+					addListElement(parts, other, rule, leftRecursive);
 				}
 			}
-			
-			return createNode(consName, childTerms, rule);
-			
 		}
-				
+		
+		/**
+		 * @return the term of the chain, or null if it is removed from the AST
+		 */
+		ATerm finish() {
+			switch (state) {
+			case LIST_STATE_TERM:
+				return term;
+			case LIST_STATE_LIST:
+				if (!leftRecursive) {
+					Collections.reverse(parts);
+				}
+				ATermList list = (ATermList)addRuleAnnotation(buildList(parts), rule.getLhsAnnotation(),
+						rule.getRhsAnnotation());
+				return addProductionAnnotation(list, rule);
+			case LIST_STATE_LEX:
+				return makeLexString(parts, leftRecursive, rule);
+			default:
+				return null;
+			}
+		}
+	}
+	
+	private boolean isLexTerm(ATerm term) {
+		return term instanceof ATermAppl && isLexString((ATermAppl)term);
+	}
+	
+	private boolean areLexTerms(List<ATerm> terms) {
+		for (ATerm term : terms) {
+			if (!isLexTerm(term)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private ATerm makeLexString(List<ATerm> parts, boolean inOrder, RuleDescriptor rule) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < parts.size(); i++) {
+			sb.append(((ATermAppl)parts.get(inOrder ? i : parts.size() - 1 - i)).getName());
+		}
+		ATerm appl = factory.makeAppl(factory.makeAFun(sb.toString(), 0, true));
+		if (treeAnnotations) {
+			appl = appl.setAnnotation(annNamespace, annLex);
+		}
+		return addProductionAnnotation(appl, rule);
 	}
 	
-	protected ATerm createNode(String consName, List<ATerm> childTerms, Rule rule) {
+	/**
+	 * Adds an element to the elements of a list created by the given rule. Lists created by the same
+	 * rule are flattened, see {@link #flattenList(List, ATerm, ATerm)}.
+	 */
+	private void addListElement(List<ATerm> elements, ATerm term, RuleDescriptor rule, boolean inOrder) {
+		if (isListOfRule(term, rule.getLhsAnnotation(), rule.getRhsAnnotation())) {
+			int start = elements.size();
+			for (ATermList list = (ATermList)term; !list.isEmpty(); list = list.getNext()) {
+				elements.add(list.getFirst());
+			}
+			if (!inOrder) {
+				Collections.reverse(elements.subList(start, elements.size()));
+			}
+		} else {
+			elements.add(finishTerm(term));
+		}
+	}
+	
+	private boolean isListOfRule(ATerm term, ATerm lhsAnnotation, ATerm rhsAnnotation) {
+		return term instanceof ATermList && lhsAnnotation.equals(term.getAnnotation(annLHS))
+				&& rhsAnnotation.equals(term.getAnnotation(annRHS));
+	}
+	
+	protected ATerm createNode(String consName, List<ATerm> childTerms, RuleDescriptor rule) {
 		if (consName != null) {
 			// rule has cons attribute -> create appl node
 			return createApplNode(consName, childTerms, rule);
@@ -203,15 +486,21 @@ public class ATermConstructor {
 		}
 	}
 
-	protected ATerm createApplNode(String consName, List<ATerm> childTerms, Rule rule) {
+	protected ATerm createApplNode(String consName, List<ATerm> childTerms, RuleDescriptor rule) {
 		AFun fun = factory.makeAFun(consName, childTerms.size(), false);
-		ATermAppl appl = factory.makeAppl(fun, childTerms.toArray(new ATerm[childTerms.size()]));
-		ATerm result = addRuleAnnotation(appl, rule);
-		ProductionMapping prodMapping = grammar.getProductionMapping(rule);
-		return addProductionAnnotation(result, prodMapping);
+		ATerm[] args = new ATerm[childTerms.size()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = finishTerm(childTerms.get(i));
+		}
+		ATermAppl appl = factory.makeAppl(fun, args);
+		ATerm result = appl;
+		if (treeAnnotations) {
+			result = addRuleAnnotation(appl, rule);
+		}
+		return addProductionAnnotation(result, rule);
 	}
 	
-	protected ATerm skipNodeIfPossible(List<ATerm> childTerms, Rule rule) {
+	protected ATerm skipNodeIfPossible(List<ATerm> childTerms, RuleDescriptor rule) {
 		if (childTerms.isEmpty()) {
 			// no children? -> remove node
 			return null;
@@ -220,9 +509,8 @@ public class ATermConstructor {
 			return childTerms.get(0);
 		} else {
 			// more than 1 child -> create unnamed list
-			ATermList list = flattenList(childTerms, getLhsAnnotation(rule), getRhsAnnotation(rule));
-			ProductionMapping prodMapping = grammar.getProductionMapping(rule);
-			return addProductionAnnotation(list, prodMapping);
+			ATermList list = flattenList(childTerms, rule.getLhsAnnotation(), rule.getRhsAnnotation());
+			return addProductionAnnotation(list, rule);
 		}
 	}
 
@@ -235,40 +523,36 @@ public class ATermConstructor {
 	}
 	
 	protected String getConstructorForRule(Rule rule) {
-		List<IRuleAnnotation> annotations = rule.getAnnotations();
-		for (IRuleAnnotation ann : annotations) {
-			if (ann instanceof CustomATermAnnotation) {
-				CustomATermAnnotation atermAnn = (CustomATermAnnotation)ann;
-				ATerm term = atermAnn.getAterm();
-				List<Object> captures = term.match(consPattern);
-				if (captures != null && captures.size() == 1) {
-					String consName = (String)captures.get(0);
-					return consName;
-				}
-			}
-		}
-		
-		return null;
+		return grammar.getRuleDescriptor(rule).getConsName();
 	}
 	
-	protected ATerm addNamespaceAnnotation(ATerm term, Rule rule) {
-		if (isLexRule(rule)) {
+	protected ATerm addNamespaceAnnotation(ATerm term, RuleDescriptor rule) {
+		if (!treeAnnotations) {
+			return term;
+		} else if (rule.isLexRule()) {
 			return term.setAnnotation(annNamespace, annLex);
-		} else if (isCFRule(rule)) {
+		} else if (rule.isCFRule()) {
 			return term.setAnnotation(annNamespace, annCF);
 		} else {
 			return term;
 		}
 	}
 	
-	protected ATerm addProductionAnnotation(ATerm term, ProductionMapping mapping) {
+	protected ATerm addProductionAnnotation(ATerm term, RuleDescriptor rule) {
+		if (nodeRules != null && term != null) {
+			// no production annotations, use side table
+			nodeRules.put(term, rule);
+			return term;
+		}
+		
+		ProductionMapping mapping = rule.getProductionMapping();
 		if (mapping == null || term == null)
 			return term;
 		
-		Production production = mapping.getProduction();
-		String productionString = production.toString();
-		term = term.setAnnotation(annProduction, makeString(productionString));
-		term = term.setAnnotation(annProductionIndex, factory.makeInt(productionIndex.getIndex(production)));
+		if (annotationPolicy == AnnotationPolicy.FULL) {
+			term = term.setAnnotation(annProduction, rule.getProductionString());
+		}
+		term = term.setAnnotation(annProductionIndex, factory.makeInt(mapping.getProductionId()));
 		return term;
 	}
 
@@ -276,8 +560,8 @@ public class ATermConstructor {
 		return factory.makeAppl(factory.makeAFun(productionString, 0, true));
 	}
 	
-	protected ATerm addRuleAnnotation(ATerm term, Rule rule) {
-		return addRuleAnnotation(term, getLhsAnnotation(rule), getRhsAnnotation(rule));
+	protected ATerm addRuleAnnotation(ATerm term, RuleDescriptor rule) {
+		return addRuleAnnotation(term, rule.getLhsAnnotation(), rule.getRhsAnnotation());
 	}
 	
 	protected ATerm addRuleAnnotation(ATerm term, ATerm lhsAnnotation, ATerm rhsAnnotation) {
@@ -289,29 +573,33 @@ public class ATermConstructor {
 	}
 
 	protected ATermAppl getRhsAnnotation(Rule rule) {
-		return makeString(rule.getRhs().toString());
+		return grammar.getRuleDescriptor(rule).getRhsAnnotation();
 	}
 
 	protected ATermAppl getLhsAnnotation(Rule rule) {
-		return makeString(rule.getLhs().toString());
+		return grammar.getRuleDescriptor(rule).getLhsAnnotation();
 	}
 	
+	/**
+	 * Creates a list of the given terms. Lists created by the same rule are flattened, i.e. their elements are
+	 * added directly instead of the list.
+	 * 
+	 * <p>The LHS and RHS annotations are always added to the created list, since they are used to detect
+	 * lists created by the same rule. If the annotation policy is NONE or LABELS, these annotations are removed by
+	 * {@link #finishTerm(ATerm)} once the list is added to another node.
+	 */
 	protected ATermList flattenList(List<ATerm> terms, ATerm lhsAnnotation, ATerm rhsAnnotation) {
 		ArrayList<ATerm> newTerms = new ArrayList<ATerm>(terms.size() * 2);
 		
 		for (ATerm elm : terms) {
-			if (elm instanceof ATermList) {
-				ATermList innerList = (ATermList)elm;
-				if (lhsAnnotation.equals(elm.getAnnotation(annLHS)) &&
-						rhsAnnotation.equals(elm.getAnnotation(annRHS))) {
-					// same rule -> flatten list
-					for (int j = 0; j < innerList.getLength(); j++) {
-						newTerms.add(innerList.elementAt(j));
-					}
-					continue;
+			if (isListOfRule(elm, lhsAnnotation, rhsAnnotation)) {
+				// same rule -> flatten list
+				for (ATermList innerList = (ATermList)elm; !innerList.isEmpty(); innerList = innerList.getNext()) {
+					newTerms.add(innerList.getFirst());
 				}
+				continue;
 			}
-			newTerms.add(elm);
+			newTerms.add(finishTerm(elm));
 		}
 
 		
@@ -321,13 +609,46 @@ public class ATermConstructor {
 		return newList;
 	}
 	
+	/**
+	 * Removes the rule annotations that were only added to a list to detect lists created by the same rule
+	 * (see {@link #flattenList(List, ATerm, ATerm)}). Does nothing if the annotation policy is FULL or INDEXED.
+	 */
+	protected ATerm finishTerm(ATerm term) {
+		if (treeAnnotations || !(term instanceof ATermList)) {
+			return term;
+		}
+		ATerm finished = term.removeAnnotation(annLHS).removeAnnotation(annRHS);
+		copyNodeRule(term, finished);
+		return finished;
+	}
+	
+	private void copyNodeRule(ATerm from, ATerm to) {
+		if (nodeRules != null && from != to) {
+			RuleDescriptor rule = nodeRules.get(from);
+			if (rule != null) {
+				nodeRules.put(to, rule);
+			}
+		}
+	}
+	
+	/**
+	 * Checks if a term is a string created by a lexical rule.
+	 */
+	protected boolean isLexString(ATermAppl appl) {
+		if (treeAnnotations) {
+			return appl.isQuoted() && appl.getAnnotation(annNamespace) == annLex;
+		} else {
+			// without namespace annotations: terminals in cf rules are never added to the tree,
+			// so quoted constants can only be created by lexical rules
+			return appl.isQuoted() && appl.getArity() == 0;
+		}
+	}
+	
 	protected boolean isLexRule(Rule rule) {
-		ICategory<String> lhs = rule.getLhs();
-		return lhs.getName().endsWith("-LEX>");
+		return grammar.getRuleDescriptor(rule).isLexRule();
 	}
 	
 	protected boolean isCFRule(Rule rule) {
-		ICategory<String> lhs = rule.getLhs();
-		return lhs.getName().endsWith("-CF>");
+		return grammar.getRuleDescriptor(rule).isCFRule();
 	}
 }
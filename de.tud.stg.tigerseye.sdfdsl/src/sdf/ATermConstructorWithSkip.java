@@ -2,11 +2,10 @@ package sdf;
 
 import java.util.List;
 
-import sdf.ruleannotations.CustomATermAnnotation;
+import sdf.ParseResult.AnnotationPolicy;
 import aterm.ATerm;
 import aterm.ATermList;
 import de.tud.stg.parlex.ast.IAbstractNode;
-import de.tud.stg.parlex.core.IRuleAnnotation;
 import de.tud.stg.parlex.core.Rule;
 
 /**
@@ -33,23 +32,23 @@ import de.tud.stg.parlex.core.Rule;
  */
 public class ATermConstructorWithSkip extends ATermConstructor {
 
-	ATerm annSkip;
-	
 	public ATermConstructorWithSkip(GeneratedGrammar grammar, IAbstractNode parseTree) {
 		super(grammar, parseTree);
-		
-		this.annSkip = factory.parse("skip");
+	}
+	
+	public ATermConstructorWithSkip(GeneratedGrammar grammar, IAbstractNode parseTree, AnnotationPolicy annotationPolicy) {
+		super(grammar, parseTree, annotationPolicy);
 	}
 	
 	@Override
-	protected ATerm createNode(String consName, List<ATerm> childTerms, Rule rule) {
+	protected ATerm createNode(String consName, List<ATerm> childTerms, RuleDescriptor rule) {
 		if (consName != null) {
 			// rule has cons attribute -> create appl node
 			return createApplNode(consName, childTerms, rule);
 		} else {
 			// rule has NO cons attribute
-			boolean skip = hasSkipAttribute(rule);
-			ProductionMapping prodMapping = grammar.getProductionMapping(rule);
+			boolean skip = rule.hasSkipAttribute();
+			ProductionMapping prodMapping = rule.getProductionMapping();
 			// if the production mapping is null, the rule was generated by sdf, and does not
 			// appear in the sdf grammar (e.g. a namespace mapping rule or <START> -> startsymbol)
 			if (skip || prodMapping == null) {
@@ -57,25 +56,14 @@ public class ATermConstructorWithSkip extends ATermConstructor {
 				return skipNodeIfPossible(childTerms, rule);
 			} else {
 				// create a list node
-				ATermList list = flattenList(childTerms, getLhsAnnotation(rule), getRhsAnnotation(rule));
-				return addProductionAnnotation(list, prodMapping);
+				ATermList list = flattenList(childTerms, rule.getLhsAnnotation(), rule.getRhsAnnotation());
+				return addProductionAnnotation(list, rule);
 			}
 		}
 	}
 	
 	protected boolean hasSkipAttribute(Rule rule) {
-		List<IRuleAnnotation> annotations = rule.getAnnotations();
-		for (IRuleAnnotation ann : annotations) {
-			if (ann instanceof CustomATermAnnotation) {
-				CustomATermAnnotation atermAnn = (CustomATermAnnotation)ann;
-				ATerm term = atermAnn.getAterm();
-				if (term.equals(annSkip)) {
-					return true;
-				}
-			}
-		}
-		
-		return false;
+		return grammar.getRuleDescriptor(rule).hasSkipAttribute();
 	}
 
 }
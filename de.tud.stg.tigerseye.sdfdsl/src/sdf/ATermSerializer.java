@@ -0,0 +1,195 @@
+package sdf;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+
+import jjtraveler.VisitFailure;
+import aterm.ATerm;
+import aterm.pure.PureFactory;
+import aterm.pure.SingletonFactory;
+import aterm.pure.binary.BinaryReader;
+import aterm.pure.binary.BinaryWriter;
+
+/**
+ * Writes and reads ATerms (e.g. the ASTs of {@link ParseResult}s) using the shared formats of
+ * the ATerm library, so that large trees can be passed to other processes without printing and
+ * parsing their textual representation. Both formats preserve maximal sharing: each distinct
+ * subterm (including its annotations) is written only once and referenced afterwards.
+ *
+ * <p>Example:
+ * <pre>
+ * {@code
+ * ParseResult result = parser.parse(input);
+ * result.writeConsTree(out, ATermSerializer.Format.SAF);
+ * ...
+ * ATerm tree = ATermSerializer.read(in);
+ * }
+ * </pre>
+ *
+ * @see ParseResult#writeConsTree(OutputStream, Format)
+ *
+ */
+public class ATermSerializer {
+
+	public enum Format {
+		/** shared textual format, starts with <code>!</code> */
+		TAF,
+		/** streamable shared binary format, starts with <code>?</code>, written in blocks of up to 64 KB */
+		SAF
+	}
+
+	private static final int BLOCK_SIZE = 65536;
+
+	private ATermSerializer() {
+	}
+
+	/**
+	 * Saves a term to a file.
+	 *
+	 * @param term		the term to save
+	 * @param file		the file to write to (overwritten if it exists)
+	 * @param format	the format
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(ATerm term, File file, Format format) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(term, out, format);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a term to a stream. The term is written incrementally, the stream is not closed.
+	 *
+	 * @param term		the term to write
+	 * @param out		the stream to write to
+	 * @param format	the format
+	 * @throws IOException if the stream cannot be written
+	 */
+	public static void write(ATerm term, OutputStream out, Format format) throws IOException {
+		switch (format) {
+		case TAF:
+			BufferedOutputStream buffered = new BufferedOutputStream(out);
+			term.writeToSharedTextFile(buffered);
+			buffered.flush();
+			break;
+		case SAF:
+			writeSAF(term, out);
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported format: " + format);
+		}
+	}
+
+	private static void writeSAF(ATerm term, OutputStream out) throws IOException {
+		BinaryWriter writer = new BinaryWriter(term);
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+		out.write('?');
+		try {
+			do {
+				buffer.clear();
+				writer.serialize(buffer);
+				// the block size is stored in two bytes (little endian), 0 means 64 KB
+				int blockSize = buffer.limit();
+				out.write(blockSize & 0xff);
+				out.write((blockSize >>> 8) & 0xff);
+				out.write(buffer.array(), 0, blockSize);
+			} while (!writer.isFinished());
+		} catch (VisitFailure e) {
+			throw new IOException("Cannot write term: " + e.getMessage());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Loads a term from a file.
+	 *
+	 * @param file	the file to read
+	 * @return the loaded term
+	 * @throws IOException if the file cannot be read or does not contain a term
+	 * @see #read(InputStream)
+	 */
+	public static ATerm load(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a term from a stream. The format is detected from the first byte, so any format
+	 * supported by the ATerm library can be read (including plain text and BAF).
+	 * SAF streams are read block by block, and only up to the end of the term, so several terms can
+	 * be read from one stream. The stream is not closed.
+	 *
+	 * @param in	the stream to read from
+	 * @return the term, created by the {@link SingletonFactory}
+	 * @throws IOException if the stream cannot be read or does not contain a term
+	 */
+	public static ATerm read(InputStream in) throws IOException {
+		PureFactory factory = SingletonFactory.getInstance();
+		PushbackInputStream pushback = new PushbackInputStream(in);
+		int first;
+		do {
+			first = pushback.read();
+			if (first == -1) {
+				throw new EOFException("No term found");
+			}
+		} while (Character.isWhitespace((char)first));
+
+		if (first == '?') {
+			return readSAF(factory, pushback);
+		}
+		pushback.unread(first);
+		return factory.readFromFile(pushback);
+	}
+
+	private static ATerm readSAF(PureFactory factory, InputStream in) throws IOException {
+		BinaryReader reader = new BinaryReader(factory);
+		byte[] block = new byte[BLOCK_SIZE];
+		int low;
+		while ((low = in.read()) != -1) {
+			int high = in.read();
+			if (high == -1) {
+				throw new EOFException("Incomplete block size");
+			}
+			int blockSize = low | (high << 8);
+			if (blockSize == 0) {
+				blockSize = BLOCK_SIZE;
+			}
+			readFully(in, block, blockSize);
+			reader.deserialize(ByteBuffer.wrap(block, 0, blockSize));
+			if (reader.isDone()) {
+				break;
+			}
+		}
+		if (!reader.isDone()) {
+			throw new EOFException("Incomplete term");
+		}
+		return reader.getRoot();
+	}
+
+	private static void readFully(InputStream in, byte[] bytes, int length) throws IOException {
+		int offset = 0;
+		while (offset < length) {
+			int read = in.read(bytes, offset, length - offset);
+			if (read == -1) {
+				throw new EOFException("Incomplete block");
+			}
+			offset += read;
+		}
+	}
+
+}
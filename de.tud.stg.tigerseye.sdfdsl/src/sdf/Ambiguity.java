@@ -0,0 +1,96 @@
+package sdf;
+
+import java.util.Collections;
+import java.util.List;
+
+import sdf.model.Production;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+
+/**
+ * A part of the input that can be derived from a category in more than one way.
+ *
+ * @see ParseForest#getAmbiguities(int)
+ * @see ParseResult#getAmbiguities()
+ *
+ */
+public class Ambiguity {
+
+	private final ICategory<String> category;
+	private final int start;
+	private final int end;
+	private final String text;
+	private final List<IRule<String>> rules;
+	private final List<Production> productions;
+	private final int alternativeCount;
+
+	Ambiguity(ICategory<String> category, int start, int end, String text, List<IRule<String>> rules,
+			List<Production> productions, int alternativeCount) {
+		this.category = category;
+		this.start = start;
+		this.end = end;
+		this.text = text;
+		this.rules = Collections.unmodifiableList(rules);
+		this.productions = Collections.unmodifiableList(productions);
+		this.alternativeCount = alternativeCount;
+	}
+
+	/**
+	 * @return the ambiguous category
+	 */
+	public ICategory<String> getCategory() {
+		return category;
+	}
+
+	/**
+	 * @return the position of the first character of the ambiguous text
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * @return the position after the last character of the ambiguous text
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Returns the competing rules. If there is only one rule, its children can be derived in more
+	 * than one way, e.g. for <code>Expr "+" Expr -&gt; Expr</code> and the text <code>a+b+c</code>.
+	 *
+	 * @return the rules of the alternatives
+	 */
+	public List<IRule<String>> getRules() {
+		return rules;
+	}
+
+	/**
+	 * @return the SDF productions of the competing rules (rules without a production mapping are skipped)
+	 */
+	public List<Production> getProductions() {
+		return productions;
+	}
+
+	/**
+	 * Returns the number of ways to choose the children of the category, not counting the
+	 * ambiguities within the children.
+	 *
+	 * @return the number of alternatives (at least 2)
+	 */
+	public int getAlternativeCount() {
+		return alternativeCount;
+	}
+
+	@Override
+	public String toString() {
+		return category + " [" + start + ", " + end + "): \"" + text + "\" (" + alternativeCount + " alternatives, "
+				+ rules.size() + " rules)";
+	}
+
+}
@@ -0,0 +1,85 @@
+package sdf;
+
+/**
+ * The result of parsing one input of a batch (see {@link SdfDSL#parseAll(String, Iterable, java.util.concurrent.ExecutorService)}).
+ *
+ * <p>If parsing the input failed with an exception (or an error like a StackOverflowError),
+ * {@link #getParseResult()} returns null and the exception is available using {@link #getException()}. Note that an input that is
+ * not valid according to the grammar is not a failure, in this case a ParseResult is
+ * returned as usual (see {@link ParseResult#isValid()}).
+ *
+ * @see SdfDSL#parseAll(String, Iterable, java.util.concurrent.ExecutorService)
+ * @see CompiledSdfParser#parseAll(Iterable, java.util.concurrent.ExecutorService)
+ *
+ */
+public class BatchParseResult {
+
+	private final int index;
+	private final String input;
+	private final ParseResult parseResult;
+	private final Throwable exception;
+	private final long parseTimeNanos;
+
+	public BatchParseResult(int index, String input, ParseResult parseResult, Throwable exception,
+			long parseTimeNanos) {
+		this.index = index;
+		this.input = input;
+		this.parseResult = parseResult;
+		this.exception = exception;
+		this.parseTimeNanos = parseTimeNanos;
+	}
+
+	/**
+	 * @return the position of the input in the batch
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public String getInput() {
+		return input;
+	}
+
+	/**
+	 * @return the result of the parse, or null if parsing failed with an exception
+	 */
+	public ParseResult getParseResult() {
+		return parseResult;
+	}
+
+	/**
+	 * @return the exception that occurred while parsing the input, or null
+	 */
+	public Throwable getException() {
+		return exception;
+	}
+
+	/**
+	 * @return true if the input was parsed without an exception (the input may still be invalid)
+	 */
+	public boolean isCompleted() {
+		return exception == null;
+	}
+
+	/**
+	 * @return true if the input was parsed without an exception and is valid
+	 */
+	public boolean isValid() {
+		return parseResult != null && parseResult.isValid();
+	}
+
+	/**
+	 * Returns the time needed to parse the input and build the AST.
+	 * @return the time in nanoseconds
+	 */
+	public long getParseTimeNanos() {
+		return parseTimeNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchParseResult [index=" + index + ", valid=" + isValid() + ", exception="
+				+ exception + ", parseTimeNanos=" + parseTimeNanos + "]";
+	}
+
+}
@@ -0,0 +1,403 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import aterm.ATerm;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.Rule;
+import de.tud.stg.parlex.core.ruleannotations.AvoidAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.PreferAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.RejectAnnotation;
+
+/**
+ * Builds the AST of a valid input directly from the earley sets of the {@link ForestParser}, without
+ * creating a parse tree (see {@link ParseResult.ASTAlgorithm#CONS_WITH_SKIP_FROM_CHART}).
+ *
+ * <p>One derivation of the input is selected from the {@link CompactChart} top-down, and the term of each
+ * node is built by an {@link ATermConstructor} as soon as the terms of its children have been built, so the
+ * AST is created in a single pass over the derivation. Only the nodes on the path from the root to the current
+ * node are kept, and they are kept on an explicit stack, so deeply nested inputs do not overflow the stack.
+ * Chains of recursive list rules are collected by {@link ATermConstructor.ListChain}, so the AST is the same
+ * as the AST built from the parse tree of the derivation.
+ *
+ * <p>The derivation is selected the same way the {@link ParseForest} is filtered: nodes with an alternative
+ * using a <code>reject</code> rule are not used, alternatives using <code>prefer</code> rules are preferred and
+ * alternatives using <code>avoid</code> rules are only used if there are no others. Rules that must not be a child
+ * of their parent because of priorities or associativity (see {@link PriorityConflictTable}) are not used either.
+ * Of the remaining alternatives, the first one whose children can be selected is used, so for ambiguous inputs
+ * the AST may be built from a different derivation than the one selected by the earley parser.
+ *
+ * <p>Whether the children of a node can be selected is only checked one level down. If a node turns out to have
+ * no derivation further down (e.g. because of a rejected node), it is remembered and its parent is selected again,
+ * so each node is given up at most once.
+ *
+ */
+class ChartATermConstructor {
+
+	private final GeneratedGrammar generatedGrammar;
+	private final ForestParser recognizer;
+	private final CompactChart chart;
+	private final CharSequence input;
+	private final ATermConstructor constructor;
+	private final RuleDescriptor[] descriptors;
+	/** the nodes for which no derivation can be selected */
+	private final HashSet<NodeKey> deadNodes = new HashSet<NodeKey>();
+
+	/**
+	 * @param generatedGrammar	the grammar
+	 * @param recognizer		the recognizer of the grammar
+	 * @param chart				the earley sets of the input, which must be accepted by the recognizer
+	 * @param input				the input
+	 * @param constructor		the constructor used to build the terms of the nodes, its parse tree is not used
+	 */
+	ChartATermConstructor(GeneratedGrammar generatedGrammar, ForestParser recognizer, CompactChart chart,
+			CharSequence input, ATermConstructor constructor) {
+		this.generatedGrammar = generatedGrammar;
+		this.recognizer = recognizer;
+		this.chart = chart;
+		this.input = input;
+		this.constructor = constructor;
+		this.descriptors = new RuleDescriptor[recognizer.getRuleCount()];
+	}
+
+	/**
+	 * Builds the AST.
+	 *
+	 * @return the AST, or null if no derivation can be selected, e.g. for some cyclic grammars
+	 */
+	ATerm constructTree() {
+		int startRule = recognizer.getStartRuleIndex();
+		Frame root = new Frame(null, 0, input.length(), null, -1);
+		root.alternatives = Collections.singletonList(startRule);
+		List<Frame> stack = new ArrayList<Frame>();
+		if (!select(stack, root)) {
+			return null;
+		}
+		stack.add(root);
+		while (true) {
+			Frame frame = stack.get(stack.size() - 1);
+			if (frame.child == frame.pivots.length - 1) {
+				stack.remove(stack.size() - 1);
+				Object value = finish(frame);
+				if (stack.isEmpty()) {
+					return constructor.finishTerm(toTerm(value));
+				}
+				addChild(stack.get(stack.size() - 1), value);
+				continue;
+			}
+
+			IRule<String> rule = recognizer.getRule(frame.rule);
+			ICategory<String> category = rule.getRhs().get(frame.child);
+			int start = frame.pivots[frame.child];
+			int end = frame.pivots[frame.child + 1];
+			if (category.isTerminal()) {
+				// terminal nodes have the rule of their parent
+				addChild(frame, frame.descriptor.isLayout() ? null
+						: constructor.constructTerminal(input.subSequence(start, end).toString(), frame.descriptor));
+				continue;
+			}
+
+			Frame child = new Frame(category, start, end, rule, frame.child);
+			if (!select(stack, child)) {
+				if (!backtrack(stack, child)) {
+					return null;
+				}
+				// a node on the stack was selected again
+				continue;
+			}
+			if (child.descriptor.isLayout() && child.descriptor.getSpineIndex() < 0) {
+				// layout is removed, its children are not needed
+				addChild(frame, null);
+				continue;
+			}
+			stack.add(child);
+		}
+	}
+
+	/**
+	 * Called if no derivation can be selected for a node. The node is not used anymore, and the nodes on the
+	 * stack are selected again, starting with the parent of the node, until one of them can be selected.
+	 * The terms of the children of this node have to be built again.
+	 *
+	 * @return false if the root cannot be selected
+	 */
+	private boolean backtrack(List<Frame> stack, Frame node) {
+		deadNodes.add(node.getKey());
+		while (!stack.isEmpty()) {
+			Frame frame = stack.remove(stack.size() - 1);
+			frame.reset();
+			if (select(stack, frame)) {
+				stack.add(frame);
+				return true;
+			}
+			deadNodes.add(frame.getKey());
+		}
+		return false;
+	}
+
+	/**
+	 * Selects the next alternative of a node whose children can be selected, starting with the current one.
+	 * Alternatives that would repeat a node with the same text on the stack are skipped, so the derivation
+	 * is finite for cyclic grammars.
+	 *
+	 * @param stack	the ancestors of the node
+	 * @return false if there is no such alternative
+	 */
+	private boolean select(List<Frame> stack, Frame node) {
+		if (node.alternatives == null) {
+			node.alternatives = getAlternatives(node.category, node.start, node.end, node.parent, node.position);
+		}
+		for (; node.alternative < node.alternatives.size(); node.alternative++) {
+			int rule = node.alternatives.get(node.alternative);
+			if (isOnStack(stack, rule, node.start, node.end)) {
+				continue;
+			}
+			int[] pivots = split(rule, node.start, node.end);
+			if (pivots != null) {
+				node.rule = rule;
+				node.descriptor = getDescriptor(rule);
+				node.pivots = pivots;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the term of a node, or of the chain of list nodes ending at the node.
+	 */
+	private Object finish(Frame frame) {
+		if (frame.descriptor.getSpineIndex() >= 0) {
+			ATermConstructor.ListChain chain = frame.chain;
+			if (chain == null) {
+				// the last node of the chain
+				chain = constructor.new ListChain(frame.descriptor);
+			}
+			chain.add(frame.childTerms);
+			return chain;
+		}
+		return constructor.constructNonTerminal(frame.childTerms, frame.descriptor);
+	}
+
+	/**
+	 * Adds the term of the next child to a node. A chain of list nodes is continued by the node if the child
+	 * is the spine of the node and was created by the same rule.
+	 */
+	private void addChild(Frame frame, Object value) {
+		int position = frame.child++;
+		if (value instanceof ATermConstructor.ListChain && position == frame.descriptor.getSpineIndex()
+				&& ((ATermConstructor.ListChain)value).getRule().getRule() == frame.descriptor.getRule()) {
+			frame.chain = (ATermConstructor.ListChain)value;
+			return;
+		}
+		ATerm term = toTerm(value);
+		if (frame.descriptor.getSpineIndex() < 0) {
+			// the children of list nodes are not labeled
+			term = constructor.labelChild(term, position, frame.descriptor);
+		}
+		if (term != null) {
+			frame.childTerms.add(term);
+		}
+	}
+
+	private static ATerm toTerm(Object value) {
+		if (value instanceof ATermConstructor.ListChain) {
+			return ((ATermConstructor.ListChain)value).finish();
+		}
+		return (ATerm)value;
+	}
+
+	/**
+	 * Checks whether a node of the rule with the same text is on the stack.
+	 */
+	private static boolean isOnStack(List<Frame> stack, int rule, int start, int end) {
+		for (int i = stack.size() - 1; i >= 0; i--) {
+			Frame frame = stack.get(i);
+			if (frame.start != start || frame.end != end) {
+				return false;
+			}
+			if (frame.rule == rule) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the rules of the completed items of the category that can be selected for the child of the
+	 * parent at the given position.
+	 *
+	 * @return the rules (empty if the node is rejected or cannot be selected)
+	 */
+	private List<Integer> getAlternatives(ICategory<String> category, int start, int end,
+			IRule<String> parent, int position) {
+		if (!deadNodes.isEmpty() && deadNodes.contains(new NodeKey(category, start, end, parent, position))) {
+			return new ArrayList<Integer>();
+		}
+		List<Integer> alternatives = recognizer.getCompletedItems(chart, end, category, start);
+		PriorityConflictTable priorities = recognizer.getPriorityConflictTable();
+		boolean preferred = false;
+		boolean notAvoided = false;
+		for (Iterator<Integer> it = alternatives.iterator(); it.hasNext(); ) {
+			IRule<String> rule = recognizer.getRule(it.next());
+			if (ParseForest.hasAnnotation(rule, RejectAnnotation.class)) {
+				return new ArrayList<Integer>();
+			}
+			if (priorities.isForbidden(parent, position, rule)) {
+				it.remove();
+				continue;
+			}
+			preferred |= ParseForest.hasAnnotation(rule, PreferAnnotation.class);
+			notAvoided |= !ParseForest.hasAnnotation(rule, AvoidAnnotation.class);
+		}
+		if (preferred || notAvoided) {
+			for (Iterator<Integer> it = alternatives.iterator(); it.hasNext(); ) {
+				IRule<String> rule = recognizer.getRule(it.next());
+				if (preferred ? !ParseForest.hasAnnotation(rule, PreferAnnotation.class)
+						: ParseForest.hasAnnotation(rule, AvoidAnnotation.class)) {
+					it.remove();
+				}
+			}
+		}
+		return alternatives;
+	}
+
+	/**
+	 * Splits the text of a completed item of the rule between the symbols of its RHS.
+	 *
+	 * @return the start positions of the symbols, followed by the end position, or null if the text cannot be
+	 * 			split without using rejected nodes
+	 */
+	private int[] split(int rule, int start, int end) {
+		IRule<String> r = recognizer.getRule(rule);
+		int[] pivots = new int[r.getRhs().size() + 1];
+		pivots[0] = start;
+		pivots[pivots.length - 1] = end;
+		return split(rule, r, pivots.length - 1, pivots) ? pivots : null;
+	}
+
+	/**
+	 * Finds the start positions of the symbols before the dot, the end of the symbol before the dot is
+	 * <code>pivots[dot]</code>. The recursion depth is limited by the length of the rule.
+	 */
+	private boolean split(int ruleIndex, IRule<String> rule, int dot, int[] pivots) {
+		if (dot == 0) {
+			return true;
+		}
+		int start = pivots[0];
+		int end = pivots[dot];
+		ICategory<String> last = rule.getRhs().get(dot - 1);
+		for (int pivot : recognizer.getOrigins(chart, end, last)) {
+			if (dot == 1 ? pivot != start
+					: pivot < start || !recognizer.containsItem(chart, pivot, ruleIndex, dot - 1, start)) {
+				continue;
+			}
+			if (!last.isTerminal() && getAlternatives(last, pivot, end, rule, dot - 1).isEmpty()) {
+				continue;
+			}
+			pivots[dot - 1] = pivot;
+			if (split(ruleIndex, rule, dot - 1, pivots)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private RuleDescriptor getDescriptor(int rule) {
+		RuleDescriptor descriptor = descriptors[rule];
+		if (descriptor == null) {
+			descriptor = generatedGrammar.getRuleDescriptor((Rule)recognizer.getRule(rule));
+			descriptors[rule] = descriptor;
+		}
+		return descriptor;
+	}
+
+	/**
+	 * A node of the selected derivation whose term is being built.
+	 */
+	private static final class Frame {
+		/** the category of the node, the parent and the position of the node in the RHS of its parent */
+		final ICategory<String> category;
+		final int start;
+		final int end;
+		final IRule<String> parent;
+		final int position;
+		/** the rules that can be selected for the node, and the index of the selected rule */
+		List<Integer> alternatives;
+		int alternative;
+
+		int rule = -1;
+		RuleDescriptor descriptor;
+		/** the start positions of the children, followed by the end position */
+		int[] pivots;
+		/** the index of the next child */
+		int child;
+		/** the terms of the children built so far */
+		final ArrayList<ATerm> childTerms = new ArrayList<ATerm>();
+		/** the chain of list nodes continued by this node */
+		ATermConstructor.ListChain chain;
+
+		Frame(ICategory<String> category, int start, int end, IRule<String> parent, int position) {
+			this.category = category;
+			this.start = start;
+			this.end = end;
+			this.parent = parent;
+			this.position = position;
+		}
+
+		/**
+		 * Removes the terms of the children that have been built.
+		 */
+		void reset() {
+			rule = -1;
+			child = 0;
+			childTerms.clear();
+			chain = null;
+		}
+
+		NodeKey getKey() {
+			return new NodeKey(category, start, end, parent, position);
+		}
+	}
+
+	/**
+	 * Identifies a node that cannot be selected: a category deriving the text between two positions, as the
+	 * child of a rule at a position (which determines the rules forbidden by priorities).
+	 */
+	private static final class NodeKey {
+		private final ICategory<String> category;
+		private final int start;
+		private final int end;
+		private final IRule<String> parent;
+		private final int position;
+
+		NodeKey(ICategory<String> category, int start, int end, IRule<String> parent, int position) {
+			this.category = category;
+			this.start = start;
+			this.end = end;
+			this.parent = parent;
+			this.position = position;
+		}
+
+		@Override
+		public int hashCode() {
+			return (((System.identityHashCode(category) * 31 + start) * 31 + end) * 31
+					+ System.identityHashCode(parent)) * 31 + position;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NodeKey))
+				return false;
+			NodeKey other = (NodeKey) obj;
+			return category == other.category && start == other.start && end == other.end
+					&& parent == other.parent && position == other.position;
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+package sdf;
+
+import java.util.Arrays;
+
+/**
+ * The earley sets of a {@link ForestParser}, with each item encoded as a single long
+ * (rule, dot position and origin).
+ *
+ * <p>While a set can still grow, a hash table is used to avoid duplicate items. Once the parser
+ * has processed a set, no items are added to it anymore, so it is sealed: the items are sorted,
+ * the array is trimmed and the hash table is dropped. Sealed sets are searched by binary search.
+ * Since the rule is stored in the highest bits, the items of a rule (and dot position) are
+ * adjacent in a sealed set, see {@link #getRange(int, long, long)}.
+ *
+ * <p>The scanned terminals are stored the same way, as (terminal, origin) pairs.
+ *
+ */
+class CompactChart {
+
+	static final int RULE_BITS = 20;
+	static final int DOT_BITS = 12;
+	static final int MAX_RULES = 1 << RULE_BITS;
+	static final int MAX_DOT = (1 << DOT_BITS) - 1;
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final LongSet[] items;
+	private final LongSet[] scanned;
+
+	CompactChart(int inputLength) {
+		this.items = new LongSet[inputLength + 1];
+		this.scanned = new LongSet[inputLength + 1];
+	}
+
+	static long encode(int rule, int dot, int origin) {
+		return ((long)rule << (DOT_BITS + 32)) | ((long)dot << 32) | origin;
+	}
+
+	static int getRule(long item) {
+		return (int)(item >>> (DOT_BITS + 32));
+	}
+
+	static int getDot(long item) {
+		return (int)(item >>> 32) & MAX_DOT;
+	}
+
+	static int getOrigin(long item) {
+		return (int)item;
+	}
+
+	/**
+	 * @return the number of positions, i.e. the length of the input + 1
+	 */
+	int getSetCount() {
+		return items.length;
+	}
+
+	/**
+	 * @return true if the item was added, false if it was already in the set
+	 */
+	boolean addItem(int position, long item) {
+		return getSet(items, position).add(item);
+	}
+
+	boolean containsItem(int position, long item) {
+		return items[position] != null && items[position].contains(item);
+	}
+
+	int getItemCount(int position) {
+		return items[position] == null ? 0 : items[position].size;
+	}
+
+	/**
+	 * Returns an item of the set. The index of an item does not change until the set is sealed.
+	 */
+	long getItem(int position, int index) {
+		return items[position].values[index];
+	}
+
+	/**
+	 * Adds a terminal matching the input from origin to the position.
+	 */
+	void addScanned(int position, int terminal, int origin) {
+		getSet(scanned, position).add(((long)terminal << 32) | origin);
+	}
+
+	/**
+	 * Returns the indices of the items of a sealed set between the given items. The index of the first
+	 * item in the range is stored in the upper half of the result, the index after the last item in the lower half.
+	 *
+	 * @param position	the position of the set
+	 * @param from		the first item of the range (inclusive)
+	 * @param to		the last item of the range (exclusive)
+	 */
+	long getRange(int position, long from, long to) {
+		return getRange(items[position], from, to);
+	}
+
+	/**
+	 * Returns the indices of the (terminal, origin) pairs of a terminal scanned up to the given position
+	 * in a sealed set, as for {@link #getRange(int, long, long)}. The origin is the lower half of
+	 * {@link #getScanned(int, int)}.
+	 */
+	long getScannedRange(int position, int terminal) {
+		return getRange(scanned[position], (long)terminal << 32, (long)(terminal + 1) << 32);
+	}
+
+	long getScanned(int position, int index) {
+		return scanned[position].values[index];
+	}
+
+	private static long getRange(LongSet set, long from, long to) {
+		if (set == null) {
+			return 0;
+		}
+		int start = set.indexOf(from);
+		int end = set.indexOf(to);
+		return ((long)start << 32) | end;
+	}
+
+	/**
+	 * Seals the set at the given position, after which no items can be added to it.
+	 */
+	void seal(int position) {
+		if (items[position] != null) {
+			items[position].seal();
+		}
+		if (scanned[position] != null) {
+			scanned[position].seal();
+		}
+	}
+
+	/**
+	 * @return the total number of items in all earley sets
+	 */
+	int getItemCount() {
+		int count = 0;
+		for (LongSet set : items) {
+			count += set == null ? 0 : set.size;
+		}
+		return count;
+	}
+
+	private static LongSet getSet(LongSet[] sets, int position) {
+		LongSet set = sets[position];
+		if (set == null) {
+			set = new LongSet();
+			sets[position] = set;
+		}
+		return set;
+	}
+
+	/**
+	 * A set of non-negative longs, in the order they were added until it is sealed.
+	 */
+	private static final class LongSet {
+		long[] values = new long[INITIAL_CAPACITY];
+		int size;
+		/** open addressing, value + 1 (0 is empty), null when sealed */
+		long[] table = new long[INITIAL_CAPACITY * 2];
+
+		boolean add(long value) {
+			int mask = table.length - 1;
+			int slot = hash(value) & mask;
+			while (table[slot] != 0) {
+				if (table[slot] == value + 1) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = value + 1;
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+			// load factor at most 1/2
+			if (size * 2 > table.length) {
+				rehash(table.length * 2);
+			}
+			return true;
+		}
+
+		boolean contains(long value) {
+			if (table == null) {
+				return Arrays.binarySearch(values, 0, size, value) >= 0;
+			}
+			int mask = table.length - 1;
+			int slot = hash(value) & mask;
+			while (table[slot] != 0) {
+				if (table[slot] == value + 1) {
+					return true;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return false;
+		}
+
+		/**
+		 * Returns the index of the first value that is not less than the given value in the sealed set.
+		 */
+		int indexOf(long value) {
+			int index = Arrays.binarySearch(values, 0, size, value);
+			return index >= 0 ? index : -index - 1;
+		}
+
+		private void rehash(int capacity) {
+			table = new long[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < size; i++) {
+				int slot = hash(values[i]) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = values[i] + 1;
+			}
+		}
+
+		void seal() {
+			if (table != null) {
+				Arrays.sort(values, 0, size);
+				values = Arrays.copyOf(values, size);
+				table = null;
+			}
+		}
+
+		private static int hash(long value) {
+			long h = value * 0x9E3779B97F4A7C15L;
+			return (int)(h ^ (h >>> 32));
+		}
+	}
+
+}
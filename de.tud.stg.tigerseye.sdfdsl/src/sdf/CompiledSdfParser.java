@@ -0,0 +1,539 @@
+package sdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import sdf.ParseStageEvent.Counter;
+import sdf.ParseStageEvent.Stage;
+import de.tud.stg.parlex.core.Category;
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.Rule;
+import de.tud.stg.parlex.parser.earley.Chart;
+import de.tud.stg.parlex.parser.earley.EarleyParser;
+
+/**
+ * A parser for the grammar of an SDF top-level module that can be reused for any number
+ * of inputs. Instances are created using {@link SdfDSL#compile(String)}.
+ *
+ * <p>The generated (and cleaned) grammar is created only once and shared by all parses.
+ * The earley parser, including the oracles detected for the grammar, is created once per
+ * thread and then reused for all subsequent parses on that thread, so {@link #parse(String)}
+ * can be called concurrently from multiple threads.
+ *
+ * <p>The grammar returned by {@link #getGeneratedGrammar()} must not be modified.
+ *
+ * @see SdfDSL#compile(String)
+ * @see ParseResult
+ *
+ */
+public class CompiledSdfParser {
+
+	private final String topLevelModuleName;
+	private final GeneratedGrammar generatedGrammar;
+	private final boolean oraclesEnabled;
+	private final boolean errorRecoveryEnabled;
+	private final boolean invalidInputPrescreeningEnabled;
+	private final ParseStageListener parseStageListener;
+
+	/**
+	 * Earley parsers keep state while parsing, so they are not shared between threads.
+	 */
+	private final ThreadLocal<EarleyParser> parsers;
+
+	/**
+	 * Parsers for the prefix grammar, only created when an invalid input is recovered.
+	 */
+	private final ThreadLocal<EarleyParser> prefixParsers;
+
+	/**
+	 * Grammars and parsers with a non-terminal as start symbol, only created for incremental reparsing.
+	 */
+	private final ConcurrentHashMap<ICategory<String>, Grammar> categoryGrammars;
+	private final ThreadLocal<HashMap<ICategory<String>, EarleyParser>> categoryParsers;
+
+	/**
+	 * Creates a parser for the given grammar using the default options (see {@link ParserOptions#ParserOptions()}).
+	 *
+	 * @param topLevelModuleName	name of the top-level module
+	 * @param generatedGrammar		the grammar
+	 */
+	public CompiledSdfParser(String topLevelModuleName, GeneratedGrammar generatedGrammar) {
+		this(topLevelModuleName, generatedGrammar, new ParserOptions());
+	}
+
+	/**
+	 * Creates a parser for the given grammar.
+	 *
+	 * @param topLevelModuleName	name of the top-level module
+	 * @param generatedGrammar		the grammar
+	 * @param options				the options of the parser, which are copied
+	 */
+	public CompiledSdfParser(String topLevelModuleName, GeneratedGrammar generatedGrammar, ParserOptions options) {
+		this.topLevelModuleName = topLevelModuleName;
+		this.generatedGrammar = generatedGrammar;
+		this.oraclesEnabled = options.isOraclesEnabled();
+		this.errorRecoveryEnabled = options.isErrorRecoveryEnabled();
+		this.invalidInputPrescreeningEnabled = options.isInvalidInputPrescreeningEnabled();
+		this.parseStageListener = options.getParseStageListener();
+		this.parsers = new ThreadLocal<EarleyParser>() {
+			@Override
+			protected EarleyParser initialValue() {
+				return createParser(CompiledSdfParser.this.generatedGrammar.getGrammar());
+			}
+		};
+		this.prefixParsers = new ThreadLocal<EarleyParser>() {
+			@Override
+			protected EarleyParser initialValue() {
+				return createParser(CompiledSdfParser.this.generatedGrammar.getPrefixGrammar().getGrammar());
+			}
+		};
+
+		this.categoryGrammars = new ConcurrentHashMap<ICategory<String>, Grammar>();
+		this.categoryParsers = new ThreadLocal<HashMap<ICategory<String>, EarleyParser>>() {
+			@Override
+			protected HashMap<ICategory<String>, EarleyParser> initialValue() {
+				return new HashMap<ICategory<String>, EarleyParser>();
+			}
+		};
+
+		// prepare the parser for the current thread right away
+		this.parsers.get();
+	}
+
+	private EarleyParser createParser(Grammar grammar) {
+		StageTimer timer = StageTimer.start(parseStageListener, Stage.ORACLE_DETECTION, topLevelModuleName);
+		EarleyParser parser = new EarleyParser(grammar);
+		if (oraclesEnabled) {
+			parser.detectUsedOracles();
+		}
+		if (timer != null) {
+			timer.count(Counter.RULES_AFTER, grammar.getRules().size()).stop();
+		}
+		return parser;
+	}
+
+	/**
+	 * Parses an input string using the compiled grammar.
+	 * Returns a ParseResult which contains both the parse tree generated by the earley parser,
+	 * as well as the AST created using the cons attributes of the grammar.
+	 *
+	 * @param input		the string to parse
+	 * @return the result of the parse
+	 */
+	public ParseResult parse(String input) {
+		return parse(input, ParseResult.DEFAULT_AST_ALGORITHM);
+	}
+
+	/**
+	 * Parses an input string using the compiled grammar and the given algorithm to build the AST.
+	 *
+	 * @param input			the string to parse
+	 * @param astAlgorithm	the algorithm used to build the AST
+	 * @return the result of the parse
+	 */
+	public ParseResult parse(String input, ParseResult.ASTAlgorithm astAlgorithm) {
+		return parse(input, astAlgorithm, ParseResult.DEFAULT_ANNOTATION_POLICY);
+	}
+
+	/**
+	 * Parses an input string using the compiled grammar, the given algorithm to build the AST
+	 * and the given annotation policy.
+	 *
+	 * @param input				the string to parse
+	 * @param astAlgorithm		the algorithm used to build the AST
+	 * @param annotationPolicy	the annotations to add to the AST
+	 * @return the result of the parse
+	 */
+	public ParseResult parse(String input, ParseResult.ASTAlgorithm astAlgorithm,
+			ParseResult.AnnotationPolicy annotationPolicy) {
+		return parse((CharSequence)input, astAlgorithm, annotationPolicy);
+	}
+
+	/**
+	 * Parses the characters of an input that is not a string, e.g. a {@link MappedCharSequence}.
+	 *
+	 * @param input		the characters to parse
+	 * @return the result of the parse
+	 * @see #parse(CharSequence, ParseResult.ASTAlgorithm, ParseResult.AnnotationPolicy)
+	 */
+	public ParseResult parse(CharSequence input) {
+		return parse(input, ParseResult.DEFAULT_AST_ALGORITHM, ParseResult.DEFAULT_ANNOTATION_POLICY);
+	}
+
+	/**
+	 * Parses the characters of an input that is not a string, e.g. a {@link MappedCharSequence}.
+	 *
+	 * <p>The earley parser needs the input as a string, so it is copied into a string once before it
+	 * is parsed. If {@link #isInvalidInputPrescreeningEnabled() invalid input pre-screening} is enabled,
+	 * invalid inputs are rejected without copying them, unless the chart or the errors are requested.
+	 *
+	 * <p>With {@link ParseResult.ASTAlgorithm#CONS_WITH_SKIP_FROM_CHART}, the input is always recognized
+	 * first and the AST of a valid input is built from the earley sets of the recognizer, so neither the
+	 * chart of the earley parser nor a copy of the input is created unless they are requested.
+	 *
+	 * @param input				the characters to parse
+	 * @param astAlgorithm		the algorithm used to build the AST
+	 * @param annotationPolicy	the annotations to add to the AST
+	 * @return the result of the parse
+	 */
+	public ParseResult parse(CharSequence input, ParseResult.ASTAlgorithm astAlgorithm,
+			ParseResult.AnnotationPolicy annotationPolicy) {
+		ParseResult result = null;
+		if (astAlgorithm == ParseResult.ASTAlgorithm.CONS_WITH_SKIP_FROM_CHART) {
+			CompactChart compactChart = recognizeChart(input);
+			if (compactChart == null) {
+				result = new ParseResult(generatedGrammar, astAlgorithm, annotationPolicy, input, this);
+			} else {
+				result = new ParseResult(generatedGrammar, compactChart, astAlgorithm, annotationPolicy, input, this);
+				if (!result.isValid()) {
+					// no derivation left after reject, prefer and avoid, the earley parser decides
+					result = null;
+				}
+			}
+		} else if (invalidInputPrescreeningEnabled && !recognize(input)) {
+			// the chart of the earley parser is only created if it is requested
+			result = new ParseResult(generatedGrammar, astAlgorithm, annotationPolicy, input, this);
+		}
+		if (result == null) {
+			String text = input.toString();
+			result = new ParseResult(generatedGrammar, parseChart(text), astAlgorithm, annotationPolicy, text, this);
+		}
+		if (errorRecoveryEnabled && !result.isValid()) {
+			recover(result, result.getInput());
+		}
+		return result;
+	}
+
+	/**
+	 * Parses a file, which is mapped into memory using a {@link MappedCharSequence}.
+	 *
+	 * @param file		the file to parse
+	 * @param charset	the charset of the file
+	 * @return the result of the parse
+	 * @throws IOException if the file cannot be read or is not valid in the charset
+	 * @see #parse(CharSequence, ParseResult.ASTAlgorithm, ParseResult.AnnotationPolicy)
+	 */
+	public ParseResult parse(File file, Charset charset) throws IOException {
+		return parse(MappedCharSequence.open(file, charset));
+	}
+
+	/**
+	 * Checks whether the input is valid, without creating a parse tree. The earley sets are stored in a
+	 * {@link CompactChart} instead of the chart of the earley parser.
+	 *
+	 * <p>The recognizer does not apply reject, prefer and avoid annotations and matches regular expression
+	 * terminals (see {@link SdfDSL#setPreLexingEnabled(boolean)}) as long as possible, so it accepts all
+	 * inputs accepted by the earley parser.
+	 *
+	 * <p>Terminals are matched directly against the input, which is never copied, so a
+	 * {@link MappedCharSequence} can be checked without loading the whole file into the heap.
+	 *
+	 * @param input		the characters to check
+	 * @return true if the input is valid
+	 */
+	public boolean recognize(CharSequence input) {
+		return recognizeChart(input) != null;
+	}
+
+	/**
+	 * Recognizes the input, see {@link #recognize(CharSequence)}.
+	 *
+	 * @return the earley sets of the recognizer, or null if the input is not valid
+	 */
+	private CompactChart recognizeChart(CharSequence input) {
+		StageTimer timer = StageTimer.start(parseStageListener, Stage.RECOGNITION, topLevelModuleName);
+		ForestParser recognizer = generatedGrammar.getForestParser();
+		CompactChart chart = recognizer.recognize(input);
+		if (timer != null) {
+			timer.count(Counter.INPUT_LENGTH, input.length()).count(Counter.CHART_ITEMS, chart.getItemCount()).stop();
+		}
+		return recognizer.isAccepted(chart) ? chart : null;
+	}
+
+	/**
+	 * Checks whether a file is valid, see {@link #recognize(CharSequence)}. The file is mapped
+	 * into memory using a {@link MappedCharSequence}.
+	 *
+	 * @param file		the file to check
+	 * @param charset	the charset of the file
+	 * @return true if the input is valid
+	 * @throws IOException if the file cannot be read or is not valid in the charset
+	 */
+	public boolean recognize(File file, Charset charset) throws IOException {
+		return recognize(MappedCharSequence.open(file, charset));
+	}
+
+	Chart parseChart(String input) {
+		EarleyParser parser = parsers.get();
+		StageTimer timer = StageTimer.start(parseStageListener, Stage.CHART, topLevelModuleName);
+		Chart chart = (Chart) parser.parse(input);
+		if (timer != null) {
+			timer.count(Counter.INPUT_LENGTH, input.length()).stop();
+		}
+		return chart;
+	}
+
+	/**
+	 * Parses the input using the given non-terminal of the grammar as start symbol.
+	 * The root of the parse tree is the node of a new start rule, its only child is the
+	 * node of the category.
+	 */
+	Chart parseCategory(ICategory<String> category, String input) {
+		HashMap<ICategory<String>, EarleyParser> threadParsers = categoryParsers.get();
+		EarleyParser parser = threadParsers.get(category);
+		if (parser == null) {
+			parser = createParser(getCategoryGrammar(category));
+			threadParsers.put(category, parser);
+		}
+		return (Chart) parser.parse(input);
+	}
+
+	private Grammar getCategoryGrammar(ICategory<String> category) {
+		Grammar grammar = categoryGrammars.get(category);
+		if (grammar == null) {
+			grammar = new Grammar();
+			for (IRule<String> rule : generatedGrammar.getGrammar().getRules()) {
+				grammar.addRule(rule);
+			}
+			Rule startRule = new Rule(new Category("<START-CATEGORY>", false),
+					Collections.<ICategory<String>>singletonList(category));
+			grammar.addRule(startRule);
+			grammar.setStartRule(startRule);
+			Grammar existing = categoryGrammars.putIfAbsent(category, grammar);
+			if (existing != null) {
+				grammar = existing;
+			}
+		}
+		return grammar;
+	}
+
+	/**
+	 * Parses an edited input, reusing the result of parsing the input before the edit.
+	 *
+	 * <p>The edit replaces <code>removedLength</code> characters at <code>offset</code> in the input of the
+	 * previous result by <code>insertedText</code>. If the previous input was valid, only the text of the
+	 * smallest node of a context-free rule that contains the edit (excluding its first and last character)
+	 * is parsed again, using the category of the node as start symbol. The new subtree replaces the old
+	 * node if it was created by the same rule, so that the priorities and associativity between the node
+	 * and its parent are not affected. The rest of the previous parse tree is reused, and the AST is built
+	 * from the combined tree. If no node can be reparsed, the whole input is parsed again.
+	 *
+	 * <p>Parts of the input that are parsed separately can no longer be parsed differently depending on
+	 * the surrounding text, so the previous tree is only reused if the edited input is not ambiguous (checked
+	 * using its {@link ParseForest}). Otherwise the whole input is parsed again, so the AST is always the same
+	 * as the AST of a full parse.
+	 * The parse tree and chart of a partially reparsed input are only created (by a full parse)
+	 * if they are requested.
+	 *
+	 * @param previous		the result of parsing the input before the edit, created by this parser
+	 * @param offset		the position of the edit in the previous input
+	 * @param removedLength	the number of characters removed at the offset
+	 * @param insertedText	the text inserted at the offset
+	 * @return the result of parsing the edited input
+	 */
+	public ParseResult reparse(ParseResult previous, int offset, int removedLength, String insertedText) {
+		String previousInput = previous.getInput();
+		if (previousInput == null) {
+			throw new IllegalArgumentException("The previous result was not created by a CompiledSdfParser");
+		}
+		if (offset < 0 || removedLength < 0 || offset + removedLength > previousInput.length()) {
+			throw new IllegalArgumentException("Invalid edit: offset " + offset + ", removed length " + removedLength
+					+ " (input length " + previousInput.length() + ")");
+		}
+		String newInput = previousInput.substring(0, offset) + insertedText
+			+ previousInput.substring(offset + removedLength);
+
+		if (previous.getGeneratedGrammar() == generatedGrammar && previous.isValid()) {
+			if (newInput.equals(previousInput)) {
+				return previous;
+			}
+			ParseResult result = new IncrementalReparser(this).reparse(previous, newInput, offset, removedLength,
+					insertedText.length());
+			if (result != null) {
+				return result;
+			}
+		}
+		return parse(newInput, previous.getAstAlgorithm(), previous.getAnnotationPolicy());
+	}
+
+	private void recover(ParseResult result, String input) {
+		ErrorRecovery recovery = new ErrorRecovery(parsers.get(), prefixParsers.get(), generatedGrammar);
+		List<ParseError> errors = recovery.findErrors(input);
+
+		ParseResult validPrefix = null;
+		if (!errors.isEmpty()) {
+			int end = errors.get(0).getOffset();
+			Chart prefixChart = recovery.parseLongestValidPrefix(input, end);
+			if (prefixChart != null) {
+				validPrefix = new ParseResult(generatedGrammar, prefixChart, result.getAstAlgorithm(),
+						result.getAnnotationPolicy());
+			}
+		}
+		result.setRecoveryResult(errors, validPrefix);
+	}
+
+	/**
+	 * Parses all inputs using the compiled grammar, distributing the parses over the given executor.
+	 * Each input is parsed and its AST is built by a task of the executor, so the ASTs are
+	 * available right away when this method returns.
+	 *
+	 * <p>An exception or error thrown while parsing an input does not abort the batch, it is recorded
+	 * in the {@link BatchParseResult} of that input. This includes a StackOverflowError for a deeply nested
+	 * input, to parse such inputs successfully an executor whose threads have a large stack size can be used
+	 * (see {@link Thread#Thread(ThreadGroup, Runnable, String, long)}). Only other virtual machine errors
+	 * (e.g. an OutOfMemoryError) are not recorded: the remaining parses are cancelled and the error
+	 * is thrown by this method.
+	 *
+	 * <p>If the current thread is interrupted while waiting for the results, the remaining parses
+	 * are cancelled and their results contain the InterruptedException.
+	 *
+	 * <p>The executor is not shut down by this method.
+	 *
+	 * @param inputs	the strings to parse
+	 * @param executor	the executor used to run the parses
+	 * @return the results, in the order of the inputs
+	 */
+	public List<BatchParseResult> parseAll(Iterable<String> inputs, ExecutorService executor) {
+		List<String> inputList = new ArrayList<String>();
+		List<Future<BatchParseResult>> futures = new ArrayList<Future<BatchParseResult>>();
+		for (String input : inputs) {
+			final int index = inputList.size();
+			final String in = input;
+			inputList.add(input);
+			futures.add(executor.submit(new Callable<BatchParseResult>() {
+				@Override
+				public BatchParseResult call() {
+					return parseBatchInput(index, in);
+				}
+			}));
+		}
+
+		List<BatchParseResult> results = new ArrayList<BatchParseResult>(futures.size());
+		InterruptedException interrupted = null;
+		for (int i = 0; i < futures.size(); i++) {
+			Future<BatchParseResult> future = futures.get(i);
+			Throwable failure;
+			if (interrupted == null) {
+				try {
+					results.add(future.get());
+					continue;
+				} catch (InterruptedException e) {
+					interrupted = e;
+					for (int j = i; j < futures.size(); j++) {
+						futures.get(j).cancel(true);
+					}
+					failure = e;
+				} catch (ExecutionException e) {
+					failure = e.getCause();
+					if (failure instanceof Error) {
+						for (int j = i + 1; j < futures.size(); j++) {
+							futures.get(j).cancel(true);
+						}
+						throw (Error)failure;
+					}
+				} catch (CancellationException e) {
+					failure = e;
+				}
+			} else {
+				failure = interrupted;
+			}
+			results.add(new BatchParseResult(i, inputList.get(i), null, failure, 0));
+		}
+
+		if (interrupted != null) {
+			// restore the interrupt status for the caller
+			Thread.currentThread().interrupt();
+		}
+		return results;
+	}
+
+	private BatchParseResult parseBatchInput(int index, String input) {
+		long start = System.nanoTime();
+		try {
+			ParseResult result = parse(input);
+			if (result.isValid()) {
+				result.getConsTree();
+			}
+			return new BatchParseResult(index, input, result, null, System.nanoTime() - start);
+		} catch (StackOverflowError e) {
+			// the stack has been unwound, only this input is affected
+			return new BatchParseResult(index, input, null, e, System.nanoTime() - start);
+		} catch (VirtualMachineError e) {
+			// e.g. an OutOfMemoryError, which is likely to affect the other parses as well
+			throw e;
+		} catch (Throwable e) {
+			return new BatchParseResult(index, input, null, e, System.nanoTime() - start);
+		}
+	}
+
+	public String getTopLevelModuleName() {
+		return topLevelModuleName;
+	}
+
+	public GeneratedGrammar getGeneratedGrammar() {
+		return generatedGrammar;
+	}
+
+	/**
+	 * @return a copy of the options of this parser
+	 */
+	public ParserOptions getOptions() {
+		return new ParserOptions().setOraclesEnabled(oraclesEnabled).setErrorRecoveryEnabled(errorRecoveryEnabled)
+				.setInvalidInputPrescreeningEnabled(invalidInputPrescreeningEnabled).setParseStageListener(parseStageListener);
+	}
+
+	public boolean isOraclesEnabled() {
+		return oraclesEnabled;
+	}
+
+	/**
+	 * @return the listener receiving the metrics of the parses, or null
+	 */
+	public ParseStageListener getParseStageListener() {
+		return parseStageListener;
+	}
+
+	/**
+	 * If enabled, {@link #parse(String)} pre-screens each input using {@link #recognize(CharSequence)}.
+	 * The earley parser only runs for valid inputs, or when the chart of an invalid input is requested
+	 * by {@link ParseResult#getParseChart()} or error recovery. The parse tree and the AST of a valid
+	 * input are built by the earley parser, so valid inputs are recognized twice, unless the AST is built
+	 * with {@link ParseResult.ASTAlgorithm#CONS_WITH_SKIP_FROM_CHART}.
+	 *
+	 * @return true if invalid inputs are rejected before they are parsed
+	 */
+	public boolean isInvalidInputPrescreeningEnabled() {
+		return invalidInputPrescreeningEnabled;
+	}
+
+	/**
+	 * Returns true if the errors of invalid inputs are searched after parsing.
+	 *
+	 * <p>If enabled, the ParseResult of an invalid input contains the syntax errors of the input
+	 * (see {@link ParseResult#getErrors()}) and the AST of the longest valid prefix of the input
+	 * (see {@link ParseResult#getPartialConsTree()}). Up to {@value ErrorRecovery#MAX_ERRORS} errors
+	 * are reported, parsing is resumed at the next token boundary after each error.
+	 * Finding the errors requires additional parses of parts of the input, valid inputs are
+	 * parsed exactly as without error recovery.
+	 *
+	 * @return true if error recovery is enabled
+	 * @see SdfDSL#setErrorRecoveryEnabled(boolean)
+	 */
+	public boolean isErrorRecoveryEnabled() {
+		return errorRecoveryEnabled;
+	}
+
+}
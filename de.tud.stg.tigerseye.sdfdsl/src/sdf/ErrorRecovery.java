@@ -0,0 +1,175 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.parser.earley.Chart;
+import de.tud.stg.parlex.parser.earley.EarleyParser;
+
+/**
+ * Finds the syntax errors of an invalid input, see {@link CompiledSdfParser#isErrorRecoveryEnabled()}.
+ *
+ * <p>The furthest position up to which the input is a prefix of a sentence is found by a binary search,
+ * parsing prefixes of the input with the {@link PrefixGrammar}. If the prefix grammar is not prefix closed
+ * (e.g. with pre-lexing), the binary search could miss the furthest position, so the input is recognized once
+ * and the earley sets are scanned backwards instead. The expected terminals at that position are the terminals
+ * the items of the earley set after the prefix are waiting for. To report further errors, parsing is
+ * resumed at the next token boundary (after layout, between words and other characters, or at the
+ * start of a literal) from which the rest of the input can be parsed as a new sentence.
+ *
+ * <p>The longest valid prefix is searched backwards from the first error, trying at most
+ * {@value #MAX_PREFIX_CANDIDATES} token boundaries.
+ *
+ */
+class ErrorRecovery {
+
+	static final int MAX_ERRORS = 16;
+	static final int MAX_PREFIX_CANDIDATES = 32;
+
+	private static final Comparator<ICategory<String>> TERMINAL_COMPARATOR = new Comparator<ICategory<String>>() {
+		@Override
+		public int compare(ICategory<String> a, ICategory<String> b) {
+			return a.getName().compareTo(b.getName());
+		}
+	};
+
+	private final EarleyParser parser;
+	private final EarleyParser prefixParser;
+	private final PrefixGrammar prefixGrammar;
+	private final ForestParser prefixRecognizer;
+	private final LiteralTrie literalTrie;
+
+	ErrorRecovery(EarleyParser parser, EarleyParser prefixParser, GeneratedGrammar generatedGrammar) {
+		this.parser = parser;
+		this.prefixParser = prefixParser;
+		this.prefixGrammar = generatedGrammar.getPrefixGrammar();
+		this.prefixRecognizer = prefixGrammar.getRecognizer();
+		this.literalTrie = generatedGrammar.getLiteralTrie();
+	}
+
+	/**
+	 * Returns the errors of the given input, which must not be valid.
+	 */
+	List<ParseError> findErrors(String input) {
+		List<ParseError> errors = new ArrayList<ParseError>();
+		int start = 0;
+		while (errors.size() < MAX_ERRORS) {
+			String segment = input.substring(start);
+			int offset = start + getFurthestPosition(segment);
+			if (offset == input.length() && start > 0 && isValid(segment)) {
+				// the rest of the input is valid
+				break;
+			}
+
+			List<ICategory<String>> expected = getExpectedTerminals(input.substring(start, offset));
+			int resumeOffset = findResumePosition(input, offset);
+			errors.add(new ParseError(input, offset, resumeOffset, expected));
+			if (resumeOffset >= input.length()) {
+				break;
+			}
+			start = resumeOffset;
+		}
+		return errors;
+	}
+
+	/**
+	 * Returns the chart of the longest valid prefix of the input that ends at a token boundary
+	 * before the given position, or null if no valid prefix was found.
+	 */
+	Chart parseLongestValidPrefix(String input, int end) {
+		int candidates = 0;
+		for (int i = end; i > 0 && candidates < MAX_PREFIX_CANDIDATES; i--) {
+			if (i == end || isTokenBoundary(input, i)) {
+				candidates++;
+				Chart chart = (Chart) parser.parse(input.substring(0, i));
+				if (chart.isValidParse()) {
+					return chart;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the length of the longest prefix of the input accepted by the prefix grammar.
+	 * If every prefix of an accepted prefix is accepted as well, a binary search is used.
+	 */
+	private int getFurthestPosition(String input) {
+		if (!prefixGrammar.isPrefixClosed()) {
+			CompactChart chart = prefixRecognizer.recognize(input);
+			for (int i = input.length(); i > 0; i--) {
+				if (prefixRecognizer.isAccepted(chart, i)) {
+					return i;
+				}
+			}
+			return 0;
+		}
+
+		int low = 0;
+		int high = input.length();
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (isViablePrefix(input.substring(0, mid))) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	private List<ICategory<String>> getExpectedTerminals(String prefix) {
+		CompactChart chart = prefixRecognizer.recognize(prefix);
+		List<ICategory<String>> expected = new ArrayList<ICategory<String>>();
+		for (ICategory<String> terminal : prefixRecognizer.getExpectedTerminals(chart, prefix.length())) {
+			if (prefixGrammar.isOriginalTerminal(terminal)) {
+				expected.add(terminal);
+			}
+		}
+		Collections.sort(expected, TERMINAL_COMPARATOR);
+		return expected;
+	}
+
+	/**
+	 * Returns the first token boundary after the error from which at least the first character
+	 * after the layout can be parsed, or the length of the input if there is no such position.
+	 */
+	private int findResumePosition(String input, int errorOffset) {
+		for (int i = errorOffset + 1; i < input.length(); i++) {
+			if (!isTokenBoundary(input, i) || Character.isWhitespace(input.charAt(i))) {
+				continue;
+			}
+			if (isViablePrefix(input.substring(i, i + 1))) {
+				return i;
+			}
+		}
+		return input.length();
+	}
+
+	private boolean isTokenBoundary(String input, int offset) {
+		if (offset <= 0 || offset >= input.length()) {
+			return true;
+		}
+		return getCharClass(input.charAt(offset - 1)) != getCharClass(input.charAt(offset))
+				|| literalTrie.longestMatch(input, offset) > 0;
+	}
+
+	private static int getCharClass(char c) {
+		if (Character.isWhitespace(c)) {
+			return 0;
+		}
+		return Character.isLetterOrDigit(c) || c == '_' ? 1 : 2;
+	}
+
+	private boolean isViablePrefix(String prefix) {
+		return ((Chart) prefixParser.parse(prefix)).isValidParse();
+	}
+
+	private boolean isValid(String input) {
+		return ((Chart) parser.parse(input)).isValidParse();
+	}
+
+}
@@ -0,0 +1,375 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.groupcategories.StringCategory;
+
+/**
+ * An earley recognizer that keeps all items of all earley sets in a {@link CompactChart}, so that
+ * the complete parse forest can be extracted afterwards (see {@link ParseForest}). Unlike the parser
+ * of parlex, it does not select a single derivation.
+ *
+ * <p>Literals (plain terminal categories) and regular expressions ({@link StringCategory}) are supported
+ * as terminals. Regular expressions match the longest possible text at a position. Literals, including
+ * case insensitive literals, are matched using a {@link LiteralTrie}: the first time a literal is expected
+ * at a position, a single scan of the trie finds all literals matching at this position. Nullable non-terminals
+ * are handled as described by Aycock and Horspool: when a nullable non-terminal is predicted, the item
+ * is advanced over it right away.
+ *
+ * <p>The rules and categories are numbered when the recognizer is created, the recognizer is not
+ * modified afterwards and can be used by several threads.
+ *
+ * @see GeneratedGrammar#getForestParser()
+ *
+ */
+class ForestParser {
+
+	private final List<IRule<String>> rules;
+	private final int startRule;
+	private final HashMap<ICategory<String>, Integer> categoryIds = new HashMap<ICategory<String>, Integer>();
+	private final List<ICategory<String>> categories = new ArrayList<ICategory<String>>();
+
+	/** the category ids of the lhs and rhs of each rule */
+	private final int[] lhs;
+	private final int[][] rhs;
+	/** the rules of each category */
+	private final int[][] rulesByLhs;
+	/** the (rule, dot) positions of each category in the rhs of the rules, encoded as items with origin 0 */
+	private final long[][] occurrences;
+	private final boolean[] nullable;
+	/** the compiled regular expressions of the terminals, null for literals */
+	private final Pattern[] patterns;
+	/** true for the terminals contained in the literal trie */
+	private final boolean[] literals;
+	private final LiteralTrie literalTrie;
+	private final PriorityConflictTable priorities;
+
+	/**
+	 * @throws IllegalArgumentException if the grammar has more than {@link CompactChart#MAX_RULES} rules
+	 * 				or a rule with more than {@link CompactChart#MAX_DOT} symbols
+	 */
+	ForestParser(Grammar grammar) {
+		this.rules = new ArrayList<IRule<String>>(grammar.getRules());
+		if (rules.size() > CompactChart.MAX_RULES) {
+			throw new IllegalArgumentException("Too many rules: " + rules.size());
+		}
+		this.startRule = rules.indexOf(grammar.getStartRule());
+
+		this.lhs = new int[rules.size()];
+		this.rhs = new int[rules.size()][];
+		for (int r = 0; r < rules.size(); r++) {
+			IRule<String> rule = rules.get(r);
+			if (rule.getRhs().size() > CompactChart.MAX_DOT) {
+				throw new IllegalArgumentException("Rule too long: " + rule);
+			}
+			lhs[r] = getCategoryId(rule.getLhs());
+			rhs[r] = new int[rule.getRhs().size()];
+			for (int d = 0; d < rhs[r].length; d++) {
+				rhs[r][d] = getCategoryId(rule.getRhs().get(d));
+			}
+		}
+
+		List<List<Integer>> lhsRules = new ArrayList<List<Integer>>();
+		List<List<Long>> positions = new ArrayList<List<Long>>();
+		for (int c = 0; c < categories.size(); c++) {
+			lhsRules.add(new ArrayList<Integer>());
+			positions.add(new ArrayList<Long>());
+		}
+		for (int r = 0; r < rules.size(); r++) {
+			lhsRules.get(lhs[r]).add(r);
+			for (int d = 0; d < rhs[r].length; d++) {
+				positions.get(rhs[r][d]).add(CompactChart.encode(r, d, 0));
+			}
+		}
+		this.rulesByLhs = new int[categories.size()][];
+		this.occurrences = new long[categories.size()][];
+		this.patterns = new Pattern[categories.size()];
+		this.literals = new boolean[categories.size()];
+		for (int c = 0; c < categories.size(); c++) {
+			rulesByLhs[c] = new int[lhsRules.get(c).size()];
+			for (int i = 0; i < rulesByLhs[c].length; i++) {
+				rulesByLhs[c][i] = lhsRules.get(c).get(i);
+			}
+			occurrences[c] = new long[positions.get(c).size()];
+			for (int i = 0; i < occurrences[c].length; i++) {
+				occurrences[c][i] = positions.get(c).get(i);
+			}
+			if (categories.get(c).isTerminal() && LiteralTrie.getLiteral(categories.get(c)) != null) {
+				literals[c] = true;
+			} else if (categories.get(c) instanceof StringCategory) {
+				patterns[c] = Pattern.compile(categories.get(c).getName());
+			}
+		}
+		this.literalTrie = LiteralTrie.create(categories);
+		this.priorities = PriorityConflictTable.create(grammar);
+		this.nullable = computeNullable();
+	}
+
+	private int getCategoryId(ICategory<String> category) {
+		Integer id = categoryIds.get(category);
+		if (id == null) {
+			id = categories.size();
+			categoryIds.put(category, id);
+			categories.add(category);
+		}
+		return id;
+	}
+
+	private boolean[] computeNullable() {
+		boolean[] result = new boolean[categories.size()];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int r = 0; r < rules.size(); r++) {
+				if (result[lhs[r]]) {
+					continue;
+				}
+				boolean allNullable = true;
+				for (int c : rhs[r]) {
+					if (categories.get(c).isTerminal() || !result[c]) {
+						allNullable = false;
+						break;
+					}
+				}
+				if (allNullable) {
+					result[lhs[r]] = true;
+					changed = true;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Recognizes the input. Terminals are matched directly against the input, so it can be
+	 * a {@link MappedCharSequence} that is never copied into a string.
+	 *
+	 * @return the earley sets of the input
+	 * @see #isAccepted(CompactChart)
+	 */
+	CompactChart recognize(CharSequence input) {
+		CompactChart chart = new CompactChart(input.length());
+		Scanner scanner = new Scanner(input);
+		chart.addItem(0, CompactChart.encode(startRule, 0, 0));
+		for (int i = 0; i <= input.length(); i++) {
+			// items are added to the set while it is processed
+			for (int k = 0; k < chart.getItemCount(i); k++) {
+				process(scanner, chart, i, chart.getItem(i, k));
+			}
+			chart.seal(i);
+		}
+		return chart;
+	}
+
+	/**
+	 * @return true if the input of the chart is a sentence of the grammar
+	 */
+	boolean isAccepted(CompactChart chart) {
+		return isAccepted(chart, chart.getSetCount() - 1);
+	}
+
+	/**
+	 * @return true if the first i characters of the input of the chart are a sentence of the grammar
+	 */
+	boolean isAccepted(CompactChart chart, int i) {
+		return chart.containsItem(i, CompactChart.encode(startRule, rhs[startRule].length, 0));
+	}
+
+	/**
+	 * Returns the terminals the items of the set are waiting for, i.e. the terminals that can follow
+	 * the first i characters of the input.
+	 */
+	Set<ICategory<String>> getExpectedTerminals(CompactChart chart, int i) {
+		Set<ICategory<String>> expected = new LinkedHashSet<ICategory<String>>();
+		for (int k = 0; k < chart.getItemCount(i); k++) {
+			long item = chart.getItem(i, k);
+			int rule = CompactChart.getRule(item);
+			int dot = CompactChart.getDot(item);
+			if (dot < rhs[rule].length && categories.get(rhs[rule][dot]).isTerminal()) {
+				expected.add(categories.get(rhs[rule][dot]));
+			}
+		}
+		return expected;
+	}
+
+	private void process(Scanner scanner, CompactChart chart, int i, long item) {
+		int rule = CompactChart.getRule(item);
+		int dot = CompactChart.getDot(item);
+		int origin = CompactChart.getOrigin(item);
+
+		if (dot == rhs[rule].length) {
+			complete(chart, i, lhs[rule], origin);
+			return;
+		}
+
+		int next = rhs[rule][dot];
+		if (categories.get(next).isTerminal()) {
+			// scan
+			int length = literals[next] ? scanner.matchLiteral(next, i) : match(scanner.input, next, i);
+			if (length > 0) {
+				chart.addScanned(i + length, next, i);
+				chart.addItem(i + length, CompactChart.encode(rule, dot + 1, origin));
+			}
+			return;
+		}
+
+		// predict
+		for (int r : rulesByLhs[next]) {
+			chart.addItem(i, CompactChart.encode(r, 0, i));
+		}
+		if (nullable[next]) {
+			chart.addItem(i, CompactChart.encode(rule, dot + 1, origin));
+		}
+	}
+
+	/**
+	 * Advances the items of the origin set waiting for the completed category.
+	 */
+	private void complete(CompactChart chart, int i, int category, int origin) {
+		if (origin == i) {
+			// the origin set is still being processed and not sorted yet
+			for (int k = 0; k < chart.getItemCount(i); k++) {
+				long waiting = chart.getItem(i, k);
+				int rule = CompactChart.getRule(waiting);
+				int dot = CompactChart.getDot(waiting);
+				if (dot < rhs[rule].length && rhs[rule][dot] == category) {
+					chart.addItem(i, CompactChart.encode(rule, dot + 1, CompactChart.getOrigin(waiting)));
+				}
+			}
+			return;
+		}
+		for (long position : occurrences[category]) {
+			long range = chart.getRange(origin, position, position + (1L << 32));
+			for (int k = (int)(range >>> 32); k < (int)range; k++) {
+				chart.addItem(i, chart.getItem(origin, k) + (1L << 32));
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the text matched by the regular expression of the terminal at the given position, or 0.
+	 */
+	private int match(CharSequence input, int terminal, int position) {
+		if (patterns[terminal] != null) {
+			Matcher m = patterns[terminal].matcher(input);
+			m.region(position, input.length());
+			return m.lookingAt() ? m.end() - position : 0;
+		}
+		// other terminal categories are not created for SDF grammars
+		return 0;
+	}
+
+	LiteralTrie getLiteralTrie() {
+		return literalTrie;
+	}
+
+	IRule<String> getRule(int rule) {
+		return rules.get(rule);
+	}
+
+	int getRuleCount() {
+		return rules.size();
+	}
+
+	/**
+	 * @return the priorities and associativity of the rules, which are not applied by the recognizer
+	 */
+	PriorityConflictTable getPriorityConflictTable() {
+		return priorities;
+	}
+
+	int getStartRuleIndex() {
+		return startRule;
+	}
+
+	boolean containsItem(CompactChart chart, int i, int rule, int dot, int origin) {
+		return chart.containsItem(i, CompactChart.encode(rule, dot, origin));
+	}
+
+	/**
+	 * Returns the rules of the category with completed items for the given origin in the set.
+	 */
+	List<Integer> getCompletedItems(CompactChart chart, int i, ICategory<String> category, int origin) {
+		Integer id = categoryIds.get(category);
+		if (id == null) {
+			return Collections.emptyList();
+		}
+		List<Integer> result = new ArrayList<Integer>();
+		for (int r : rulesByLhs[id]) {
+			if (chart.containsItem(i, CompactChart.encode(r, rhs[r].length, origin))) {
+				result.add(r);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the positions from which the given category derives the text ending at position i.
+	 */
+	List<Integer> getOrigins(CompactChart chart, int i, ICategory<String> category) {
+		Integer id = categoryIds.get(category);
+		if (id == null) {
+			return Collections.emptyList();
+		}
+		if (category.isTerminal()) {
+			List<Integer> origins = new ArrayList<Integer>();
+			long range = chart.getScannedRange(i, id);
+			for (int k = (int)(range >>> 32); k < (int)range; k++) {
+				origins.add((int)chart.getScanned(i, k));
+			}
+			return origins;
+		}
+		LinkedHashSet<Integer> origins = new LinkedHashSet<Integer>();
+		for (int r : rulesByLhs[id]) {
+			long first = CompactChart.encode(r, rhs[r].length, 0);
+			long range = chart.getRange(i, first, first + (1L << 32));
+			for (int k = (int)(range >>> 32); k < (int)range; k++) {
+				origins.add(CompactChart.getOrigin(chart.getItem(i, k)));
+			}
+		}
+		return new ArrayList<Integer>(origins);
+	}
+
+	/**
+	 * Matches the literals of one input. The literals matching at a position are looked up in the trie
+	 * when the first literal is expected at this position, and are reused for all other literals expected there.
+	 */
+	private final class Scanner {
+		final CharSequence input;
+		/** the position of the last lookup, or -1 */
+		private int position = -1;
+		/** the lengths of the literals matching at the position, indexed by category id, valid for the matched ids */
+		private final int[] lengths = new int[categories.size()];
+		private final int[] matched = new int[categories.size()];
+		private int matchedCount;
+
+		Scanner(CharSequence input) {
+			this.input = input;
+		}
+
+		/**
+		 * Returns the length of the text matched by the literal at the given position, or 0.
+		 */
+		int matchLiteral(int literal, int i) {
+			if (position != i) {
+				for (int k = 0; k < matchedCount; k++) {
+					lengths[matched[k]] = 0;
+				}
+				matchedCount = literalTrie.match(input, i, lengths, matched);
+				position = i;
+			}
+			return lengths[literal];
+		}
+	}
+
+}
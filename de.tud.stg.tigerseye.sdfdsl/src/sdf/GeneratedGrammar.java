@@ -3,17 +3,87 @@ package sdf;
 import java.util.HashMap;
 
 import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
 import de.tud.stg.parlex.core.Rule;
 
 public class GeneratedGrammar {
 
 	private Grammar grammar;
 	private HashMap<Rule,ProductionMapping> productionMappings;
+	private HashMap<Rule,Rule> originalRules;
+	private volatile HashMap<Rule,RuleDescriptor> ruleDescriptors;
+	private volatile PrefixGrammar prefixGrammar;
+	private volatile ForestParser forestParser;
+	private volatile ProductionIndex productionIndex;
+	private volatile boolean immutable;
 	
 	public GeneratedGrammar(Grammar grammar,
 			HashMap<Rule, ProductionMapping> productionMappings) {
+		this(grammar, productionMappings, new HashMap<Rule, Rule>());
+	}
+
+	/**
+	 * @param grammar				the parlex grammar
+	 * @param productionMappings	the SDF productions of the rules
+	 * @param originalRules			the rules that were rewritten (e.g. by {@link PriorityFilter}),
+	 * 								mapped to the rules they were created from
+	 */
+	public GeneratedGrammar(Grammar grammar,
+			HashMap<Rule, ProductionMapping> productionMappings, HashMap<Rule, Rule> originalRules) {
 		this.grammar = grammar;
 		this.productionMappings = productionMappings;
+		this.originalRules = originalRules;
+	}
+
+	/**
+	 * Returns a copy of this grammar, which can be modified (e.g. using {@link #setGrammar(Grammar)},
+	 * {@link #setProductionMappings(HashMap)} or by adding rules to its parlex grammar) without affecting
+	 * this grammar, even if this grammar is immutable. The parlex grammar and the maps are copied, while the rules, categories and production
+	 * mappings are shared and must not be modified.
+	 *
+	 * <p>The rule descriptors and the other objects derived from the grammar that have already been
+	 * created are shared as well, until they are reset in the copy by one of the setters.
+	 *
+	 * @return a copy of this grammar
+	 */
+	public GeneratedGrammar copy() {
+		Grammar grammarCopy = new Grammar();
+		for (IRule<String> rule : grammar.getRules()) {
+			grammarCopy.addRule(rule);
+		}
+		for (ICategory<String> cat : grammar.getCategories()) {
+			grammarCopy.addCategory(cat);
+		}
+		grammarCopy.setStartRule(grammar.getStartRule());
+
+		GeneratedGrammar copy = new GeneratedGrammar(grammarCopy,
+				new HashMap<Rule, ProductionMapping>(productionMappings), new HashMap<Rule, Rule>(originalRules));
+		copy.ruleDescriptors = ruleDescriptors;
+		copy.prefixGrammar = prefixGrammar;
+		copy.forestParser = forestParser;
+		copy.productionIndex = productionIndex;
+		return copy;
+	}
+
+	/**
+	 * Makes this grammar immutable, so that it can be shared, e.g. by the {@link GrammarCache}.
+	 * Afterwards, {@link #setGrammar(Grammar)} and {@link #setProductionMappings(HashMap)} throw an
+	 * {@link IllegalStateException}. The parlex grammar and the production mappings must not be modified
+	 * in place either, {@link #copy()} can be used to get a modifiable grammar.
+	 */
+	void makeImmutable() {
+		this.immutable = true;
+	}
+
+	public boolean isImmutable() {
+		return immutable;
+	}
+
+	private void checkMutable() {
+		if (immutable) {
+			throw new IllegalStateException("The grammar is immutable, use copy() to get a modifiable grammar");
+		}
 	}
 
 	public Grammar getGrammar() {
@@ -28,13 +98,150 @@ public class GeneratedGrammar {
 		return productionMappings.get(rule);
 	}
 
+	public HashMap<Rule, Rule> getOriginalRules() {
+		return originalRules;
+	}
+
+	/**
+	 * Returns the rule the given rule was created from when the grammar was rewritten,
+	 * e.g. by {@link PriorityFilter}. The names of the original rule are used for the
+	 * annotations of the constructed ATerms.
+	 *
+	 * @param rule	a rule of this grammar
+	 * @return the original rule, or the rule itself if it was not rewritten
+	 */
+	public Rule getOriginalRule(Rule rule) {
+		Rule original = originalRules.get(rule);
+		return original != null ? original : rule;
+	}
+
+	/**
+	 * Returns the descriptor for the given rule. The descriptors for all rules of the grammar
+	 * are created together when the first descriptor is requested, and are reused until the
+	 * grammar or the production mappings are replaced.
+	 *
+	 * <p>If the production mappings are modified in place, {@link #setProductionMappings(HashMap)}
+	 * must be called afterwards.
+	 *
+	 * @param rule	a rule of this grammar
+	 * @return the descriptor for the rule
+	 */
+	public RuleDescriptor getRuleDescriptor(Rule rule) {
+		RuleDescriptor descriptor = getRuleDescriptors().get(rule);
+		if (descriptor == null) {
+			// not a rule of this grammar
+			descriptor = new RuleDescriptor(rule, getOriginalRule(rule), getProductionMapping(rule));
+		}
+		return descriptor;
+	}
+
+	private HashMap<Rule, RuleDescriptor> getRuleDescriptors() {
+		HashMap<Rule, RuleDescriptor> descriptors = ruleDescriptors;
+		if (descriptors == null) {
+			synchronized (this) {
+				descriptors = ruleDescriptors;
+				if (descriptors == null) {
+					descriptors = new HashMap<Rule, RuleDescriptor>();
+					for (IRule<String> rule : grammar.getRules()) {
+						if (rule instanceof Rule) {
+							descriptors.put((Rule)rule, new RuleDescriptor((Rule)rule, getOriginalRule((Rule)rule),
+									getProductionMapping((Rule)rule)));
+						}
+					}
+					ruleDescriptors = descriptors;
+				}
+			}
+		}
+		return descriptors;
+	}
+
+	/**
+	 * Returns a trie containing all literal terminals of the grammar, which is used for error recovery.
+	 * The trie is shared with the recognizer (see {@link #getForestParser()}).
+	 * 
+	 * @return the literal trie for this grammar
+	 */
+	LiteralTrie getLiteralTrie() {
+		return getForestParser().getLiteralTrie();
+	}
+
+	/**
+	 * Returns the grammar accepting all prefixes of the sentences of this grammar, which is used
+	 * for error recovery. The prefix grammar is created when it is first requested and is reused
+	 * until the grammar is replaced.
+	 * 
+	 * @return the prefix grammar for this grammar
+	 */
+	public PrefixGrammar getPrefixGrammar() {
+		PrefixGrammar prefix = prefixGrammar;
+		if (prefix == null) {
+			synchronized (this) {
+				prefix = prefixGrammar;
+				if (prefix == null) {
+					prefix = PrefixGrammar.create(grammar);
+					prefixGrammar = prefix;
+				}
+			}
+		}
+		return prefix;
+	}
+
+	/**
+	 * Returns the recognizer storing its earley sets in a {@link CompactChart}, which is used
+	 * for invalid input pre-screening and parse forests. The recognizer is created when it is first
+	 * requested and is reused until the grammar is replaced.
+	 * 
+	 * @return the recognizer for this grammar
+	 */
+	ForestParser getForestParser() {
+		ForestParser parser = forestParser;
+		if (parser == null) {
+			synchronized (this) {
+				parser = forestParser;
+				if (parser == null) {
+					parser = new ForestParser(grammar);
+					forestParser = parser;
+				}
+			}
+		}
+		return parser;
+	}
+
+	/**
+	 * Returns the table of all SDF productions of the grammar, indexed by the ids stored in the
+	 * production mappings. The index is created when it is first requested and is reused until the
+	 * production mappings are replaced. Mappings without an id are assigned one.
+	 * 
+	 * @return the production index for this grammar
+	 */
+	public ProductionIndex getProductionIndex() {
+		ProductionIndex index = productionIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = productionIndex;
+				if (index == null) {
+					index = ProductionIndex.create(productionMappings.values());
+					productionIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
 	public void setGrammar(Grammar grammar) {
+		checkMutable();
 		this.grammar = grammar;
+		this.ruleDescriptors = null;
+		this.prefixGrammar = null;
+		this.forestParser = null;
 	}
 
 	public void setProductionMappings(
 			HashMap<Rule, ProductionMapping> productionMappings) {
+		checkMutable();
 		this.productionMappings = productionMappings;
+		this.ruleDescriptors = null;
+		this.productionIndex = null;
 	}
 	
 }
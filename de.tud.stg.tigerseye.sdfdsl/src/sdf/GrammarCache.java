@@ -0,0 +1,271 @@
+package sdf;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sdf.model.Module;
+import sdf.model.SdfElement;
+
+/**
+ * Caches the grammars generated by {@link SdfDSL#getGrammar(String, boolean)}.
+ *
+ * <p>Cached grammars are removed when a module they were generated from (the top-level module or a directly
+ * or indirectly imported module) is registered again (see {@link #invalidate(String)}). To detect modules
+ * that are modified in place as well, each cached grammar remembers the fingerprints (see {@link ModuleFingerprint})
+ * of these modules and the {@link SdfElement#getModificationCount() modification count} of the SDF elements.
+ * The fingerprints are only computed again when the modification count has changed since the grammar was
+ * last validated, so a lookup usually does not inspect the modules at all.
+ *
+ * <p>The cached grammars are immutable (see {@link GeneratedGrammar#makeImmutable()}) and are shared by all
+ * callers. {@link GeneratedGrammar#copy()} can be used to get a modifiable grammar.
+ *
+ * <p>The parser compiled for a cleaned grammar by {@link SdfDSL#compile(String)} is cached next to the grammar,
+ * so it is only compiled again when the grammar or the parser options change.
+ *
+ * <p>Lookups do not acquire a lock, so the cache can be read by any number of threads concurrently.
+ *
+ * @see SdfDSL
+ *
+ */
+public class GrammarCache {
+
+	private ConcurrentHashMap<Key, Entry> entries;
+	private AtomicLong hits;
+	private AtomicLong misses;
+
+	public GrammarCache() {
+		this.entries = new ConcurrentHashMap<Key, Entry>();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Returns the cached grammar for the given top-level module, if it is still valid.
+	 *
+	 * @param topLevelModuleName	name of the top-level module
+	 * @param cleaned				whether the cleaned or the uncleaned grammar is requested
+	 * @param registeredModules		all modules currently registered (module name -> definition)
+	 * @return	the cached immutable grammar, or null if there is no valid cached grammar
+	 */
+	public GeneratedGrammar get(String topLevelModuleName, boolean cleaned,
+			Map<String, Module> registeredModules) {
+		Entry entry = getValidEntry(new Key(topLevelModuleName, cleaned), registeredModules);
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return entry.grammar;
+	}
+
+	/**
+	 * Returns the parser compiled for the cached cleaned grammar of the given top-level module, if the grammar
+	 * is still valid and the parser was compiled with the given options. The parser is shared, it is not copied.
+	 *
+	 * <p>A returned parser counts as a cache hit. If no parser is returned, neither a hit nor a miss is counted,
+	 * as the grammar is requested using {@link #get(String, boolean, Map)} afterwards.
+	 *
+	 * @param topLevelModuleName	name of the top-level module
+	 * @param options				the options the parser must have been compiled with
+	 * @param registeredModules		all modules currently registered (module name -> definition)
+	 * @return	the cached parser, or null if there is no valid cached parser
+	 * @see #putParser(String, CompiledSdfParser)
+	 */
+	public CompiledSdfParser getParser(String topLevelModuleName, ParserOptions options,
+			Map<String, Module> registeredModules) {
+		Key key = new Key(topLevelModuleName, true);
+		Entry entry = entries.get(key);
+		CompiledSdfParser parser = entry != null ? entry.parser : null;
+
+		if (parser == null || !parser.getOptions().equals(options)) {
+			return null;
+		}
+		if (getValidEntry(key, registeredModules) != entry) {
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return parser;
+	}
+
+	/**
+	 * Returns the entry for the given key, if it is still valid. Invalid entries are removed.
+	 */
+	private Entry getValidEntry(Key key, Map<String, Module> registeredModules) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+
+		long modificationCount = SdfElement.getModificationCount();
+		if (entry.validatedModificationCount != modificationCount) {
+			// some SDF elements have been modified, check whether the modules of the grammar are still unchanged
+			if (!isUnchanged(entry.usedModules, registeredModules)) {
+				// one of the modules was replaced or modified without invalidating the cache
+				entries.remove(key, entry);
+				return null;
+			}
+			entry.validatedModificationCount = modificationCount;
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores a parser compiled for the cleaned grammar of the given top-level module next to the cached grammar,
+	 * replacing a parser compiled with other options. The parser is not stored if the grammar is no longer cached.
+	 *
+	 * @param topLevelModuleName	name of the top-level module
+	 * @param parser				a parser compiled for the grammar returned by {@link #get(String, boolean, Map)}
+	 * 								or stored by {@link #put(String, boolean, GeneratedGrammar, Map)}
+	 */
+	public void putParser(String topLevelModuleName, CompiledSdfParser parser) {
+		Entry entry = entries.get(new Key(topLevelModuleName, true));
+		if (entry != null) {
+			entry.parser = parser;
+		}
+	}
+
+	/**
+	 * Stores a generated grammar in the cache. The grammar is made immutable, as it is shared
+	 * by all callers of {@link #get(String, boolean, Map)}.
+	 *
+	 * @param topLevelModuleName	name of the top-level module
+	 * @param cleaned				whether the grammar has been cleaned
+	 * @param grammar				the generated grammar
+	 * @param usedModules			all modules the grammar was generated from (see {@link ModuleMerger#getUsedModules()})
+	 */
+	public void put(String topLevelModuleName, boolean cleaned, GeneratedGrammar grammar,
+			Map<String, Module> usedModules) {
+		grammar.makeImmutable();
+		entries.put(new Key(topLevelModuleName, cleaned), new Entry(grammar, usedModules));
+	}
+
+	/**
+	 * Removes all cached grammars that depend on the module with the given name.
+	 *
+	 * @param moduleName	name of the module that has changed
+	 */
+	public void invalidate(String moduleName) {
+		for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+			Entry entry = it.next();
+			if (entry.usedModules.containsKey(moduleName)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached grammars. The hit/miss counters are not reset.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns how often a cached grammar could be reused.
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns how often a grammar had to be generated because no valid cached grammar was found.
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+
+	private static class Entry {
+		final GeneratedGrammar grammar;
+		/** the parser compiled for the grammar, or null */
+		volatile CompiledSdfParser parser;
+		/** name -> fingerprint of all modules the grammar was generated from */
+		final HashMap<String, String> usedModules;
+		/** the modification count of the SDF elements when the fingerprints were last compared */
+		volatile long validatedModificationCount;
+
+		public Entry(GeneratedGrammar grammar, Map<String, Module> usedModules) {
+			this.grammar = grammar;
+			this.validatedModificationCount = SdfElement.getModificationCount();
+			this.usedModules = fingerprints(usedModules);
+		}
+	}
+
+	static HashMap<String, String> fingerprints(Map<String, Module> modules) {
+		HashMap<String, String> fingerprints = new HashMap<String, String>();
+		for (Map.Entry<String, Module> module : modules.entrySet()) {
+			fingerprints.put(module.getKey(), ModuleFingerprint.of(module.getValue()));
+		}
+		return fingerprints;
+	}
+
+	/**
+	 * Checks that all modules are still registered and have the given fingerprints.
+	 */
+	static boolean isUnchanged(Map<String, String> fingerprints, Map<String, Module> registeredModules) {
+		for (Map.Entry<String, String> used : fingerprints.entrySet()) {
+			Module module = registeredModules.get(used.getKey());
+			if (module == null || !ModuleFingerprint.of(module).equals(used.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Key {
+		String topLevelModuleName;
+		boolean cleaned;
+
+		public Key(String topLevelModuleName, boolean cleaned) {
+			this.topLevelModuleName = topLevelModuleName;
+			this.cleaned = cleaned;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (cleaned ? 1231 : 1237);
+			result = prime
+					* result
+					+ ((topLevelModuleName == null) ? 0 : topLevelModuleName.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			if (cleaned != other.cleaned)
+				return false;
+			if (topLevelModuleName == null) {
+				if (other.topLevelModuleName != null)
+					return false;
+			} else if (!topLevelModuleName.equals(other.topLevelModuleName))
+				return false;
+			return true;
+		}
+	}
+
+}
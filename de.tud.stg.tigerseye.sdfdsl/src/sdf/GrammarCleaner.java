@@ -1,12 +1,22 @@
 package sdf;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import de.tud.stg.parlex.core.*;
+import de.tud.stg.parlex.core.ruleannotations.RelativePriorityAnnotation;
 
 /**
  * GrammarCleaner removes unused categories and rules from a Grammar.
- * 
+ *
+ * <p>For generated grammars, non-terminals that can only be expanded to epsilon are
+ * removed as well (see {@link #clean(GeneratedGrammar)}).
+ *
  * @author Pablo Hoch
  * @see de.tud.stg.parlex.core.Grammar
  *
@@ -16,55 +26,326 @@ public class GrammarCleaner {
 	/**
 	 * Returns a new Grammar that is equivalent to the supplied grammar, but only contains required
 	 * categories and rules.
-	 * 
+	 *
 	 * <p>The original grammar is not modified, however Rule and Category objects are reused.
-	 * 
+	 *
 	 * @param g	the Grammar to clean
 	 * @return	a new Grammar without unused rules
 	 */
 	public static Grammar clean(Grammar g) {
-		
-		// TODO: another optimization would be to remove non-terminals that can only be expanded to epsilon
-		// i.e. if there is only a rule LAYOUT? -> (empty), then LAYOUT? can be removed everywhere on the RHS
-	
+
 		Grammar cleaned = new Grammar();
+		HashMap<ICategory<String>, List<IRule<String>>> rulesByLhs = indexRulesByLhs(g.getRules());
 		HashSet<ICategory<String>> usedCats = new HashSet<ICategory<String>>();
-		HashSet<IRule<String>> remainingRules = new HashSet<IRule<String>>(g.getRules());
+		LinkedList<ICategory<String>> worklist = new LinkedList<ICategory<String>>();
 
 		// categories in start rule are used
 		IRule<String> startRule = g.getStartRule();
-		usedCats.add(startRule.getLhs());
-		usedCats.addAll(startRule.getRhs());
+		markUsed(startRule.getLhs(), usedCats, worklist);
+		for (ICategory<String> cat : startRule.getRhs()) {
+			markUsed(cat, usedCats, worklist);
+		}
 		// add start rule
 		cleaned.addRule(startRule);
 		cleaned.setStartRule(startRule);
-		
-		// add all required rules + categories
-		boolean changed = true;
-		while (changed) {
-			
-			changed = false;
-			
-			for (Iterator<IRule<String>> it = remainingRules.iterator(); it.hasNext(); ) {
-				IRule<String> rule = it.next();
-				
-				if (usedCats.contains(rule.getLhs())) {
-					// required rule, add to cleaned grammar
-					cleaned.addRule(rule);
-					usedCats.addAll(rule.getRhs());
-					it.remove();
-					changed = true;
+
+		// add all rules of the used categories, each category is only visited once
+		while (!worklist.isEmpty()) {
+			ICategory<String> cat = worklist.removeFirst();
+			List<IRule<String>> rules = rulesByLhs.get(cat);
+
+			if (rules == null)
+				continue;
+
+			for (IRule<String> rule : rules) {
+				// required rule, add to cleaned grammar
+				cleaned.addRule(rule);
+				for (ICategory<String> rhsCat : rule.getRhs()) {
+					markUsed(rhsCat, usedCats, worklist);
 				}
 			}
-			
 		}
-		
+
 		// add required categories to grammar
 		for (ICategory<String> cat : usedCats) {
 			cleaned.addCategory(cat);
 		}
-		
+
 		return cleaned;
 	}
-	
+
+	/**
+	 * Returns a new GeneratedGrammar that is equivalent to the supplied grammar, but only contains
+	 * required categories and rules.
+	 *
+	 * <p>In addition to {@link #clean(Grammar)}, non-terminals that can only be expanded to epsilon
+	 * are removed from the grammar, e.g. <code>&lt;LAYOUT?-CF&gt;</code> if there is only the rule
+	 * <code>&lt;LAYOUT?-CF&gt; -&gt; (empty)</code>. Such a non-terminal is removed from the RHS of
+	 * all rules. This is only done for non-terminals whose rules do not have any annotations and do
+	 * not belong to an SDF production, so that the ATerm constructed from a parse tree does not change.
+	 * Lexical non-terminals and the LHS of the start rule are never removed.
+	 *
+	 * <p>Rules that have to be changed are replaced by new Rule objects. Their annotations, the relative
+	 * priorities referring to them and the production mappings (including symbol labels) are updated
+	 * accordingly. The new rules are recorded as rewritten rules (see {@link GeneratedGrammar#getOriginalRule(Rule)}),
+	 * so the LHS and RHS annotations still name the original rules. The original grammar is not modified.
+	 *
+	 * @param g	the GeneratedGrammar to clean
+	 * @return	a new GeneratedGrammar without unused rules
+	 */
+	public static GeneratedGrammar clean(GeneratedGrammar g) {
+		Grammar grammar = g.getGrammar();
+		HashMap<Rule, ProductionMapping> productionMappings = g.getProductionMappings();
+		HashMap<ICategory<String>, List<IRule<String>>> rulesByLhs = indexRulesByLhs(grammar.getRules());
+
+		HashSet<ICategory<String>> epsilonCats = findEpsilonOnlyCategories(grammar, rulesByLhs, productionMappings);
+
+		if (epsilonCats.isEmpty()) {
+			return new GeneratedGrammar(clean(grammar), productionMappings, g.getOriginalRules());
+		}
+
+		// rules containing epsilon-only categories on the RHS have to be replaced
+		// old rule -> positions of the remaining RHS categories in the old rule
+		HashMap<IRule<String>, int[]> changedRules = new HashMap<IRule<String>, int[]>();
+		LinkedList<IRule<String>> worklist = new LinkedList<IRule<String>>();
+		for (IRule<String> rule : grammar.getRules()) {
+			if (epsilonCats.contains(rule.getLhs()))
+				continue;
+
+			List<ICategory<String>> rhs = rule.getRhs();
+			int[] keptPositions = new int[rhs.size()];
+			int kept = 0;
+			for (int i = 0; i < rhs.size(); i++) {
+				if (!epsilonCats.contains(rhs.get(i))) {
+					keptPositions[kept++] = i;
+				}
+			}
+
+			if (kept < rhs.size()) {
+				int[] positions = new int[kept];
+				System.arraycopy(keptPositions, 0, positions, 0, kept);
+				changedRules.put(rule, positions);
+				worklist.add(rule);
+			}
+		}
+
+		// rules with relative priorities referring to a replaced rule have to be replaced, too
+		HashMap<IRule<String>, List<IRule<String>>> higherPriorityRules = new HashMap<IRule<String>, List<IRule<String>>>();
+		for (IRule<String> rule : grammar.getRules()) {
+			for (IRule<String> lowerPriorityRule : getLowerPriorityRules(rule)) {
+				List<IRule<String>> rules = higherPriorityRules.get(lowerPriorityRule);
+				if (rules == null) {
+					rules = new ArrayList<IRule<String>>();
+					higherPriorityRules.put(lowerPriorityRule, rules);
+				}
+				rules.add(rule);
+			}
+		}
+		while (!worklist.isEmpty()) {
+			List<IRule<String>> rules = higherPriorityRules.get(worklist.removeFirst());
+			if (rules == null)
+				continue;
+			for (IRule<String> rule : rules) {
+				if (!changedRules.containsKey(rule)) {
+					changedRules.put(rule, identityPositions(rule.getRhs().size()));
+					worklist.add(rule);
+				}
+			}
+		}
+
+		// create the new rules
+		HashMap<IRule<String>, Rule> replacements = new HashMap<IRule<String>, Rule>();
+		for (Map.Entry<IRule<String>, int[]> entry : changedRules.entrySet()) {
+			IRule<String> rule = entry.getKey();
+			List<ICategory<String>> newRhs = new ArrayList<ICategory<String>>(entry.getValue().length);
+			for (int position : entry.getValue()) {
+				newRhs.add(rule.getRhs().get(position));
+			}
+			replacements.put(rule, new Rule(rule.getLhs(), newRhs));
+		}
+		for (Map.Entry<IRule<String>, Rule> entry : replacements.entrySet()) {
+			copyAnnotations((Rule)entry.getKey(), entry.getValue(), replacements);
+		}
+
+		// build the new grammar
+		Grammar reduced = new Grammar();
+		for (IRule<String> rule : grammar.getRules()) {
+			if (epsilonCats.contains(rule.getLhs()))
+				continue;
+			reduced.addRule(getReplacement(rule, replacements));
+		}
+		IRule<String> startRule = getReplacement(grammar.getStartRule(), replacements);
+		reduced.addRule(startRule);
+		reduced.setStartRule(startRule);
+
+		// update production mappings
+		HashMap<Rule, ProductionMapping> newMappings = new HashMap<Rule, ProductionMapping>();
+		for (Map.Entry<Rule, ProductionMapping> entry : productionMappings.entrySet()) {
+			Rule newRule = replacements.get(entry.getKey());
+			if (newRule == null) {
+				newMappings.put(entry.getKey(), entry.getValue());
+			} else {
+				ProductionMapping mapping = entry.getValue();
+				ProductionMapping newMapping = new ProductionMapping(mapping.getProduction(), newRule,
+						mapping.getProductionId());
+				int[] positions = changedRules.get(entry.getKey());
+				for (int i = 0; i < positions.length; i++) {
+					newMapping.setLabelForCategoryAtPosition(i, mapping.getLabelForCategoryAtPosition(positions[i]));
+				}
+				newMappings.put(newRule, newMapping);
+			}
+		}
+
+		// the annotations have to name the rules before the epsilon-only categories were removed
+		HashMap<Rule, Rule> originalRules = new HashMap<Rule, Rule>(g.getOriginalRules());
+		for (Map.Entry<IRule<String>, Rule> entry : replacements.entrySet()) {
+			originalRules.put(entry.getValue(), g.getOriginalRule((Rule)entry.getKey()));
+		}
+
+		return new GeneratedGrammar(clean(reduced), newMappings, originalRules);
+	}
+
+	/**
+	 * Finds all non-terminals that can only be expanded to epsilon and can be removed.
+	 *
+	 * <p>For each rule, the number of RHS categories not yet known to be epsilon-only is counted,
+	 * and for each non-terminal the number of its rules that still have such categories. A non-terminal
+	 * whose rules only contain epsilon-only categories is epsilon-only itself and is used to update the
+	 * counts of all rules it occurs in.
+	 */
+	private static HashSet<ICategory<String>> findEpsilonOnlyCategories(Grammar g,
+			HashMap<ICategory<String>, List<IRule<String>>> rulesByLhs, Map<Rule, ProductionMapping> productionMappings) {
+
+		HashSet<ICategory<String>> epsilonCats = new HashSet<ICategory<String>>();
+		HashMap<IRule<String>, Integer> remainingRhsCats = new HashMap<IRule<String>, Integer>();
+		HashMap<ICategory<String>, Integer> remainingRules = new HashMap<ICategory<String>, Integer>();
+		HashMap<ICategory<String>, List<IRule<String>>> occurrences = new HashMap<ICategory<String>, List<IRule<String>>>();
+		LinkedList<ICategory<String>> worklist = new LinkedList<ICategory<String>>();
+
+		for (Map.Entry<ICategory<String>, List<IRule<String>>> entry : rulesByLhs.entrySet()) {
+			ICategory<String> cat = entry.getKey();
+			if (!isRemovable(cat, entry.getValue(), g, productionMappings))
+				continue;
+
+			int rules = 0;
+			for (IRule<String> rule : entry.getValue()) {
+				List<ICategory<String>> rhs = rule.getRhs();
+				remainingRhsCats.put(rule, rhs.size());
+				if (!rhs.isEmpty())
+					rules++;
+
+				for (ICategory<String> rhsCat : rhs) {
+					List<IRule<String>> rhsCatOccurrences = occurrences.get(rhsCat);
+					if (rhsCatOccurrences == null) {
+						rhsCatOccurrences = new ArrayList<IRule<String>>();
+						occurrences.put(rhsCat, rhsCatOccurrences);
+					}
+					rhsCatOccurrences.add(rule);
+				}
+			}
+
+			remainingRules.put(cat, rules);
+			if (rules == 0) {
+				epsilonCats.add(cat);
+				worklist.add(cat);
+			}
+		}
+
+		while (!worklist.isEmpty()) {
+			List<IRule<String>> rules = occurrences.get(worklist.removeFirst());
+			if (rules == null)
+				continue;
+
+			for (IRule<String> rule : rules) {
+				int remaining = remainingRhsCats.get(rule) - 1;
+				remainingRhsCats.put(rule, remaining);
+				if (remaining == 0) {
+					ICategory<String> lhs = rule.getLhs();
+					int remainingLhsRules = remainingRules.get(lhs) - 1;
+					remainingRules.put(lhs, remainingLhsRules);
+					if (remainingLhsRules == 0 && epsilonCats.add(lhs)) {
+						worklist.add(lhs);
+					}
+				}
+			}
+		}
+
+		return epsilonCats;
+	}
+
+	private static boolean isRemovable(ICategory<String> cat, List<IRule<String>> rules, Grammar g,
+			Map<Rule, ProductionMapping> productionMappings) {
+		if (cat.isTerminal() || cat.equals(g.getStartRule().getLhs()))
+			return false;
+		// empty lexical rules create empty strings in the AST
+		if (cat.getName().endsWith("-LEX>"))
+			return false;
+		for (IRule<String> rule : rules) {
+			if (productionMappings.containsKey(rule))
+				return false;
+			if (rule instanceof Rule && !((Rule)rule).getAnnotations().isEmpty())
+				return false;
+		}
+		return true;
+	}
+
+	private static void copyAnnotations(Rule from, Rule to, HashMap<IRule<String>, Rule> replacements) {
+		for (IRuleAnnotation ann : from.getAnnotations()) {
+			if (ann instanceof RelativePriorityAnnotation) {
+				RelativePriorityAnnotation rpAnnotation = new RelativePriorityAnnotation();
+				for (IRule<String> lowerPriorityRule : ((RelativePriorityAnnotation)ann).getLowerPriorityRules()) {
+					rpAnnotation.addLowerPriorityRule(getReplacement(lowerPriorityRule, replacements));
+				}
+				to.addAnnotation(rpAnnotation);
+			} else {
+				to.addAnnotation(ann);
+			}
+		}
+	}
+
+	private static Set<IRule<String>> getLowerPriorityRules(IRule<String> rule) {
+		HashSet<IRule<String>> lowerPriorityRules = new HashSet<IRule<String>>();
+		if (rule instanceof Rule) {
+			for (IRuleAnnotation ann : ((Rule)rule).getAnnotations()) {
+				if (ann instanceof RelativePriorityAnnotation) {
+					lowerPriorityRules.addAll(((RelativePriorityAnnotation)ann).getLowerPriorityRules());
+				}
+			}
+		}
+		return lowerPriorityRules;
+	}
+
+	private static IRule<String> getReplacement(IRule<String> rule, HashMap<IRule<String>, Rule> replacements) {
+		Rule replacement = replacements.get(rule);
+		return replacement != null ? replacement : rule;
+	}
+
+	private static int[] identityPositions(int size) {
+		int[] positions = new int[size];
+		for (int i = 0; i < size; i++) {
+			positions[i] = i;
+		}
+		return positions;
+	}
+
+	private static HashMap<ICategory<String>, List<IRule<String>>> indexRulesByLhs(Set<IRule<String>> rules) {
+		HashMap<ICategory<String>, List<IRule<String>>> rulesByLhs = new HashMap<ICategory<String>, List<IRule<String>>>();
+		for (IRule<String> rule : rules) {
+			List<IRule<String>> lhsRules = rulesByLhs.get(rule.getLhs());
+			if (lhsRules == null) {
+				lhsRules = new ArrayList<IRule<String>>();
+				rulesByLhs.put(rule.getLhs(), lhsRules);
+			}
+			lhsRules.add(rule);
+		}
+		return rulesByLhs;
+	}
+
+	private static void markUsed(ICategory<String> cat, HashSet<ICategory<String>> usedCats,
+			LinkedList<ICategory<String>> worklist) {
+		if (usedCats.add(cat)) {
+			worklist.add(cat);
+		}
+	}
+
 }
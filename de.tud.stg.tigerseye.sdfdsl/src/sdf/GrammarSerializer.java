@@ -0,0 +1,726 @@
+package sdf;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sdf.model.AlternativeSymbol;
+import sdf.model.CharacterClass;
+import sdf.model.CharacterClassComplement;
+import sdf.model.CharacterClassDifference;
+import sdf.model.CharacterClassIntersection;
+import sdf.model.CharacterClassSymbol;
+import sdf.model.CharacterClassUnion;
+import sdf.model.FunctionSymbol;
+import sdf.model.ListSymbol;
+import sdf.model.LiteralSymbol;
+import sdf.model.OptionalSymbol;
+import sdf.model.Production;
+import sdf.model.RepetitionSymbol;
+import sdf.model.SequenceSymbol;
+import sdf.model.SortSymbol;
+import sdf.model.Symbol;
+import sdf.model.TupleSymbol;
+import sdf.ruleannotations.CustomATermAnnotation;
+import aterm.ATerm;
+import aterm.ATermFactory;
+import aterm.pure.SingletonFactory;
+import de.tud.stg.parlex.core.Category;
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.IRuleAnnotation;
+import de.tud.stg.parlex.core.Rule;
+import de.tud.stg.parlex.core.groupcategories.StringCategory;
+import de.tud.stg.parlex.core.ruleannotations.AssociativityAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.AvoidAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.PreferAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.RejectAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.RelativePriorityAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.AssociativityAnnotation.Associativity;
+
+/**
+ * Saves and loads {@link GeneratedGrammar generated grammars} using a compact binary format,
+ * so that a grammar can be generated once and then loaded at startup without processing
+ * the SDF modules again.
+ *
+ * <p>The format contains the parlex grammar (categories, rules, rule annotations and the start rule)
+ * as well as the production mappings including the SDF productions and symbol labels, and the
+ * original rules of rules rewritten by {@link PriorityFilter}. All categories, rules, productions
+ * and strings are only stored once and referenced by index. Integers are stored
+ * as variable-length quantities. ATerms (e.g. in {@link CustomATermAnnotation}s and production
+ * attributes) are stored using their textual representation.
+ *
+ * <p>Only the categories and annotations created by {@link SdfToParlexGrammarConverter} are supported.
+ * Grammars that contain other categories or annotations cannot be saved.
+ *
+ * <p>Example:
+ * <pre>
+ * {@code
+ * GrammarSerializer.save(sdf.getGrammar("Expr"), file);
+ * ...
+ * GeneratedGrammar grammar = GrammarSerializer.load(file);
+ * CompiledSdfParser parser = new CompiledSdfParser("Expr", grammar);
+ * }
+ * </pre>
+ *
+ * @see GeneratedGrammar
+ *
+ */
+public class GrammarSerializer {
+
+	/** "SDFG" */
+	public static final int MAGIC = 0x53444647;
+	/** Format version, must be increased whenever the format changes. */
+	public static final int VERSION = 3;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// category kinds
+	private static final int CAT_NONTERMINAL = 0;
+	private static final int CAT_TERMINAL = 1;
+	private static final int CAT_STRING = 2;
+
+	// annotation kinds
+	private static final int ANN_ASSOC_LEFT = 0;
+	private static final int ANN_ASSOC_RIGHT = 1;
+	private static final int ANN_ASSOC_NONE = 2;
+	private static final int ANN_PREFER = 3;
+	private static final int ANN_AVOID = 4;
+	private static final int ANN_REJECT = 5;
+	private static final int ANN_RELATIVE_PRIORITY = 6;
+	private static final int ANN_CUSTOM_ATERM = 7;
+
+	// symbol kinds
+	private static final int SYM_SORT = 0;
+	private static final int SYM_LITERAL = 1;
+	private static final int SYM_CHARCLASS = 2;
+	private static final int SYM_CHARCLASS_COMPLEMENT = 3;
+	private static final int SYM_CHARCLASS_DIFFERENCE = 4;
+	private static final int SYM_CHARCLASS_INTERSECTION = 5;
+	private static final int SYM_CHARCLASS_UNION = 6;
+	private static final int SYM_OPTIONAL = 7;
+	private static final int SYM_REPETITION = 8;
+	private static final int SYM_SEQUENCE = 9;
+	private static final int SYM_LIST = 10;
+	private static final int SYM_ALTERNATIVE = 11;
+	private static final int SYM_TUPLE = 12;
+	private static final int SYM_FUNCTION = 13;
+
+	private GrammarSerializer() {
+	}
+
+	/**
+	 * Saves a generated grammar to a file.
+	 *
+	 * @param grammar	the grammar to save
+	 * @param file		the file to write to (overwritten if it exists)
+	 * @throws IOException if the file cannot be written or the grammar contains unsupported categories or annotations
+	 */
+	public static void save(GeneratedGrammar grammar, File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			write(grammar, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a generated grammar to a stream. The stream is not closed.
+	 *
+	 * @param grammar	the grammar to write
+	 * @param out		the stream to write to
+	 * @throws IOException if the stream cannot be written or the grammar contains unsupported categories or annotations
+	 */
+	public static void write(GeneratedGrammar grammar, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		new Writer(data).writeGrammar(grammar);
+		data.flush();
+	}
+
+	/**
+	 * Loads a generated grammar from a file. The file is memory-mapped for reading.
+	 *
+	 * @param file	the file to read
+	 * @return the loaded grammar
+	 * @throws IOException if the file cannot be read or is not a grammar file of the current version
+	 */
+	public static GeneratedGrammar load(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a generated grammar from the current position of a buffer.
+	 *
+	 * @param buffer	the buffer containing the serialized grammar
+	 * @return the loaded grammar
+	 * @throws IOException if the buffer does not contain a grammar of the current version
+	 */
+	public static GeneratedGrammar read(ByteBuffer buffer) throws IOException {
+		try {
+			return new Reader(buffer).readGrammar();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of grammar data");
+		}
+	}
+
+
+	private static class Writer {
+		private DataOutputStream out;
+		private HashMap<String, Integer> strings = new HashMap<String, Integer>();
+		private IdentityHashMap<ICategory<String>, Integer> categories = new IdentityHashMap<ICategory<String>, Integer>();
+		private List<ICategory<String>> categoryList = new ArrayList<ICategory<String>>();
+		private IdentityHashMap<IRule<String>, Integer> rules = new IdentityHashMap<IRule<String>, Integer>();
+		private List<IRule<String>> ruleList = new ArrayList<IRule<String>>();
+		private IdentityHashMap<Production, Integer> productions = new IdentityHashMap<Production, Integer>();
+		private List<Production> productionList = new ArrayList<Production>();
+
+		Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		void writeGrammar(GeneratedGrammar generatedGrammar) throws IOException {
+			Grammar grammar = generatedGrammar.getGrammar();
+			HashMap<Rule, ProductionMapping> mappings = generatedGrammar.getProductionMappings();
+			HashMap<Rule, Rule> originalRules = generatedGrammar.getOriginalRules();
+
+			// collect all rules, including rules only referenced by mappings or priorities
+			for (IRule<String> rule : grammar.getRules()) {
+				addRule(rule);
+			}
+			if (grammar.getStartRule() != null) {
+				addRule(grammar.getStartRule());
+			}
+			for (Rule rule : mappings.keySet()) {
+				addRule(rule);
+			}
+			for (Map.Entry<Rule, Rule> entry : originalRules.entrySet()) {
+				addRule(entry.getKey());
+				addRule(entry.getValue());
+			}
+			for (int i = 0; i < ruleList.size(); i++) {
+				for (IRuleAnnotation ann : getAnnotations(ruleList.get(i))) {
+					if (ann instanceof RelativePriorityAnnotation) {
+						for (IRule<String> lowerPriorityRule : ((RelativePriorityAnnotation)ann).getLowerPriorityRules()) {
+							addRule(lowerPriorityRule);
+						}
+					}
+				}
+			}
+			for (ICategory<String> cat : grammar.getCategories()) {
+				addCategory(cat);
+			}
+			for (ProductionMapping mapping : mappings.values()) {
+				if (!productions.containsKey(mapping.getProduction())) {
+					productions.put(mapping.getProduction(), productionList.size());
+					productionList.add(mapping.getProduction());
+				}
+			}
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			// categories
+			writeInt(categoryList.size());
+			for (ICategory<String> cat : categoryList) {
+				if (cat.getClass() == StringCategory.class) {
+					writeInt(CAT_STRING);
+				} else if (cat.getClass() == Category.class) {
+					writeInt(cat.isTerminal() ? CAT_TERMINAL : CAT_NONTERMINAL);
+				} else {
+					throw new IOException("Unsupported category: " + cat.getClass().getName());
+				}
+				writeString(cat.getName());
+			}
+
+			// rules
+			writeInt(ruleList.size());
+			for (IRule<String> rule : ruleList) {
+				writeInt(categories.get(rule.getLhs()));
+				writeInt(rule.getRhs().size());
+				for (ICategory<String> cat : rule.getRhs()) {
+					writeInt(categories.get(cat));
+				}
+			}
+			// rule annotations (after all rules, since they can refer to other rules)
+			for (IRule<String> rule : ruleList) {
+				List<IRuleAnnotation> annotations = getAnnotations(rule);
+				writeInt(annotations.size());
+				for (IRuleAnnotation ann : annotations) {
+					writeAnnotation(ann);
+				}
+			}
+
+			// grammar
+			writeInt(grammar.getRules().size());
+			for (IRule<String> rule : grammar.getRules()) {
+				writeInt(rules.get(rule));
+			}
+			writeInt(grammar.getCategories().size());
+			for (ICategory<String> cat : grammar.getCategories()) {
+				writeInt(categories.get(cat));
+			}
+			writeInt(grammar.getStartRule() == null ? 0 : rules.get(grammar.getStartRule()) + 1);
+
+			// productions
+			writeInt(productionList.size());
+			for (Production pro : productionList) {
+				writeSymbols(pro.getLhs());
+				writeSymbol(pro.getRhs());
+				ArrayList<ATerm> attributes = pro.getAttributes();
+				writeInt(attributes == null ? 0 : attributes.size() + 1);
+				if (attributes != null) {
+					for (ATerm attr : attributes) {
+						writeString(attr.toString());
+					}
+				}
+			}
+
+			// production mappings
+			writeInt(mappings.size());
+			for (Map.Entry<Rule, ProductionMapping> entry : mappings.entrySet()) {
+				ProductionMapping mapping = entry.getValue();
+				int rhsSize = entry.getKey().getRhs().size();
+				writeInt(rules.get(entry.getKey()));
+				writeInt(productions.get(mapping.getProduction()));
+				writeInt(mapping.getProductionId() + 1);
+				for (int i = 0; i < rhsSize; i++) {
+					writeString(mapping.getLabelForCategoryAtPosition(i));
+				}
+			}
+
+			// original rules of rewritten rules
+			writeInt(originalRules.size());
+			for (Map.Entry<Rule, Rule> entry : originalRules.entrySet()) {
+				writeInt(rules.get(entry.getKey()));
+				writeInt(rules.get(entry.getValue()));
+			}
+		}
+
+		private void addRule(IRule<String> rule) {
+			if (!rules.containsKey(rule)) {
+				rules.put(rule, ruleList.size());
+				ruleList.add(rule);
+				addCategory(rule.getLhs());
+				for (ICategory<String> cat : rule.getRhs()) {
+					addCategory(cat);
+				}
+			}
+		}
+
+		private void addCategory(ICategory<String> cat) {
+			if (!categories.containsKey(cat)) {
+				categories.put(cat, categoryList.size());
+				categoryList.add(cat);
+			}
+		}
+
+		private void writeAnnotation(IRuleAnnotation ann) throws IOException {
+			if (ann instanceof AssociativityAnnotation) {
+				Associativity assoc = ((AssociativityAnnotation)ann).getAssociativity();
+				if (assoc == Associativity.LEFT) {
+					writeInt(ANN_ASSOC_LEFT);
+				} else if (assoc == Associativity.RIGHT) {
+					writeInt(ANN_ASSOC_RIGHT);
+				} else {
+					writeInt(ANN_ASSOC_NONE);
+				}
+			} else if (ann instanceof PreferAnnotation) {
+				writeInt(ANN_PREFER);
+			} else if (ann instanceof AvoidAnnotation) {
+				writeInt(ANN_AVOID);
+			} else if (ann instanceof RejectAnnotation) {
+				writeInt(ANN_REJECT);
+			} else if (ann instanceof RelativePriorityAnnotation) {
+				writeInt(ANN_RELATIVE_PRIORITY);
+				RelativePriorityAnnotation rpAnnotation = (RelativePriorityAnnotation)ann;
+				writeInt(rpAnnotation.getLowerPriorityRules().size());
+				for (IRule<String> lowerPriorityRule : rpAnnotation.getLowerPriorityRules()) {
+					writeInt(rules.get(lowerPriorityRule));
+				}
+			} else if (ann instanceof CustomATermAnnotation) {
+				writeInt(ANN_CUSTOM_ATERM);
+				writeString(((CustomATermAnnotation)ann).getAterm().toString());
+			} else {
+				throw new IOException("Unsupported rule annotation: " + ann.getClass().getName());
+			}
+		}
+
+		private void writeSymbols(List<Symbol> symbols) throws IOException {
+			writeInt(symbols.size());
+			for (Symbol sym : symbols) {
+				writeSymbol(sym);
+			}
+		}
+
+		private void writeSymbol(Symbol sym) throws IOException {
+			if (sym instanceof SortSymbol) {
+				writeInt(SYM_SORT);
+				writeString(((SortSymbol)sym).getName());
+			} else if (sym instanceof LiteralSymbol) {
+				LiteralSymbol lit = (LiteralSymbol)sym;
+				writeInt(SYM_LITERAL);
+				writeString(lit.getText());
+				out.writeBoolean(lit.isCaseSensitive());
+			} else if (sym instanceof CharacterClassSymbol) {
+				writeInt(SYM_CHARCLASS);
+				writeString(((CharacterClassSymbol)sym).getPattern());
+			} else if (sym instanceof CharacterClassComplement) {
+				writeInt(SYM_CHARCLASS_COMPLEMENT);
+				writeSymbol(((CharacterClassComplement)sym).getSymbol());
+			} else if (sym instanceof CharacterClassDifference) {
+				writeInt(SYM_CHARCLASS_DIFFERENCE);
+				writeSymbol(((CharacterClassDifference)sym).getLeft());
+				writeSymbol(((CharacterClassDifference)sym).getRight());
+			} else if (sym instanceof CharacterClassIntersection) {
+				writeInt(SYM_CHARCLASS_INTERSECTION);
+				writeSymbol(((CharacterClassIntersection)sym).getLeft());
+				writeSymbol(((CharacterClassIntersection)sym).getRight());
+			} else if (sym instanceof CharacterClassUnion) {
+				writeInt(SYM_CHARCLASS_UNION);
+				writeSymbol(((CharacterClassUnion)sym).getLeft());
+				writeSymbol(((CharacterClassUnion)sym).getRight());
+			} else if (sym instanceof OptionalSymbol) {
+				writeInt(SYM_OPTIONAL);
+				writeSymbol(((OptionalSymbol)sym).getSymbol());
+			} else if (sym instanceof RepetitionSymbol) {
+				writeInt(SYM_REPETITION);
+				writeSymbol(((RepetitionSymbol)sym).getSymbol());
+				out.writeBoolean(((RepetitionSymbol)sym).isAtLeastOnce());
+			} else if (sym instanceof SequenceSymbol) {
+				writeInt(SYM_SEQUENCE);
+				writeSymbols(((SequenceSymbol)sym).getSymbols());
+			} else if (sym instanceof ListSymbol) {
+				ListSymbol list = (ListSymbol)sym;
+				writeInt(SYM_LIST);
+				writeSymbol(list.getElement());
+				writeSymbol(list.getSeperator());
+				out.writeBoolean(list.isAtLeastOnce());
+			} else if (sym instanceof AlternativeSymbol) {
+				writeInt(SYM_ALTERNATIVE);
+				writeSymbol(((AlternativeSymbol)sym).getLeft());
+				writeSymbol(((AlternativeSymbol)sym).getRight());
+			} else if (sym instanceof TupleSymbol) {
+				writeInt(SYM_TUPLE);
+				writeSymbols(((TupleSymbol)sym).getSymbols());
+			} else if (sym instanceof FunctionSymbol) {
+				writeInt(SYM_FUNCTION);
+				writeSymbols(((FunctionSymbol)sym).getLeft());
+				writeSymbol(((FunctionSymbol)sym).getRight());
+			} else {
+				throw new IOException("Unsupported symbol: " + sym.getClass().getName());
+			}
+			writeString(sym.getLabel());
+		}
+
+		/**
+		 * Strings are written as 0 (null), 1 followed by the string (first occurrence)
+		 * or index + 2 (back reference).
+		 */
+		private void writeString(String str) throws IOException {
+			if (str == null) {
+				writeInt(0);
+				return;
+			}
+			Integer index = strings.get(str);
+			if (index != null) {
+				writeInt(index + 2);
+			} else {
+				strings.put(str, strings.size());
+				byte[] bytes = str.getBytes(UTF8);
+				writeInt(1);
+				writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+
+		/**
+		 * Writes a non-negative int using 7 bits per byte.
+		 */
+		private void writeInt(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+	}
+
+
+	private static class Reader {
+		private ByteBuffer in;
+		private ATermFactory factory = SingletonFactory.getInstance();
+		private List<String> strings = new ArrayList<String>();
+
+		Reader(ByteBuffer in) {
+			this.in = in;
+		}
+
+		GeneratedGrammar readGrammar() throws IOException {
+			if (in.getInt() != MAGIC) {
+				throw new IOException("Not a grammar file");
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported grammar file version: " + version + " (expected " + VERSION + ")");
+			}
+
+			// categories
+			int categoryTableSize = readInt();
+			List<ICategory<String>> categories = new ArrayList<ICategory<String>>(categoryTableSize);
+			for (int i = 0; i < categoryTableSize; i++) {
+				int kind = readInt();
+				String name = readString();
+				switch (kind) {
+				case CAT_STRING:
+					categories.add(new StringCategory(name));
+					break;
+				case CAT_TERMINAL:
+				case CAT_NONTERMINAL:
+					categories.add(new Category(name, kind == CAT_TERMINAL));
+					break;
+				default:
+					throw new IOException("Invalid category kind: " + kind);
+				}
+			}
+
+			// rules
+			Rule[] rules = new Rule[readInt()];
+			for (int i = 0; i < rules.length; i++) {
+				ICategory<String> lhs = categories.get(readInt());
+				int rhsSize = readInt();
+				List<ICategory<String>> rhs = new ArrayList<ICategory<String>>(rhsSize);
+				for (int j = 0; j < rhsSize; j++) {
+					rhs.add(categories.get(readInt()));
+				}
+				rules[i] = new Rule(lhs, rhs);
+			}
+			for (Rule rule : rules) {
+				int annotationCount = readInt();
+				for (int j = 0; j < annotationCount; j++) {
+					rule.addAnnotation(readAnnotation(rules));
+				}
+			}
+
+			// grammar
+			Grammar grammar = new Grammar();
+			int ruleCount = readInt();
+			for (int i = 0; i < ruleCount; i++) {
+				grammar.addRule(rules[readInt()]);
+			}
+			int categoryCount = readInt();
+			for (int i = 0; i < categoryCount; i++) {
+				grammar.addCategory(categories.get(readInt()));
+			}
+			int startRule = readInt();
+			if (startRule > 0) {
+				grammar.setStartRule(rules[startRule - 1]);
+			}
+
+			// productions
+			Production[] productions = new Production[readInt()];
+			for (int i = 0; i < productions.length; i++) {
+				ArrayList<Symbol> lhs = readSymbols();
+				Symbol rhs = readSymbol();
+				int attributeCount = readInt();
+				ArrayList<ATerm> attributes = null;
+				if (attributeCount > 0) {
+					attributes = new ArrayList<ATerm>(attributeCount - 1);
+					for (int j = 0; j < attributeCount - 1; j++) {
+						attributes.add(factory.parse(readString()));
+					}
+				}
+				productions[i] = new Production(lhs, rhs, attributes);
+			}
+
+			// production mappings
+			int mappingCount = readInt();
+			HashMap<Rule, ProductionMapping> mappings = new HashMap<Rule, ProductionMapping>();
+			for (int i = 0; i < mappingCount; i++) {
+				Rule rule = rules[readInt()];
+				Production production = productions[readInt()];
+				ProductionMapping mapping = new ProductionMapping(production, rule, readInt() - 1);
+				for (int j = 0; j < rule.getRhs().size(); j++) {
+					mapping.setLabelForCategoryAtPosition(j, readString());
+				}
+				mappings.put(rule, mapping);
+			}
+
+			// original rules of rewritten rules
+			int originalRuleCount = readInt();
+			HashMap<Rule, Rule> originalRules = new HashMap<Rule, Rule>();
+			for (int i = 0; i < originalRuleCount; i++) {
+				Rule rule = rules[readInt()];
+				originalRules.put(rule, rules[readInt()]);
+			}
+
+			return new GeneratedGrammar(grammar, mappings, originalRules);
+		}
+
+		private IRuleAnnotation readAnnotation(Rule[] rules) throws IOException {
+			int kind = readInt();
+			switch (kind) {
+			case ANN_ASSOC_LEFT:
+				return new AssociativityAnnotation(Associativity.LEFT);
+			case ANN_ASSOC_RIGHT:
+				return new AssociativityAnnotation(Associativity.RIGHT);
+			case ANN_ASSOC_NONE:
+				return new AssociativityAnnotation(Associativity.NONE);
+			case ANN_PREFER:
+				return new PreferAnnotation();
+			case ANN_AVOID:
+				return new AvoidAnnotation();
+			case ANN_REJECT:
+				return new RejectAnnotation();
+			case ANN_RELATIVE_PRIORITY:
+				RelativePriorityAnnotation rpAnnotation = new RelativePriorityAnnotation();
+				int count = readInt();
+				for (int i = 0; i < count; i++) {
+					rpAnnotation.addLowerPriorityRule(rules[readInt()]);
+				}
+				return rpAnnotation;
+			case ANN_CUSTOM_ATERM:
+				return new CustomATermAnnotation(factory.parse(readString()));
+			default:
+				throw new IOException("Invalid annotation kind: " + kind);
+			}
+		}
+
+		private ArrayList<Symbol> readSymbols() throws IOException {
+			int count = readInt();
+			ArrayList<Symbol> symbols = new ArrayList<Symbol>(count);
+			for (int i = 0; i < count; i++) {
+				symbols.add(readSymbol());
+			}
+			return symbols;
+		}
+
+		private Symbol readSymbol() throws IOException {
+			int kind = readInt();
+			Symbol sym;
+			switch (kind) {
+			case SYM_SORT:
+				sym = new SortSymbol(readString());
+				break;
+			case SYM_LITERAL:
+				String text = readString();
+				sym = new LiteralSymbol(text, in.get() != 0);
+				break;
+			case SYM_CHARCLASS:
+				sym = new CharacterClassSymbol(readString());
+				break;
+			case SYM_CHARCLASS_COMPLEMENT:
+				sym = new CharacterClassComplement(readCharacterClass());
+				break;
+			case SYM_CHARCLASS_DIFFERENCE:
+				sym = new CharacterClassDifference(readCharacterClass(), readCharacterClass());
+				break;
+			case SYM_CHARCLASS_INTERSECTION:
+				sym = new CharacterClassIntersection(readCharacterClass(), readCharacterClass());
+				break;
+			case SYM_CHARCLASS_UNION:
+				sym = new CharacterClassUnion(readCharacterClass(), readCharacterClass());
+				break;
+			case SYM_OPTIONAL:
+				sym = new OptionalSymbol(readSymbol());
+				break;
+			case SYM_REPETITION:
+				Symbol repeated = readSymbol();
+				sym = new RepetitionSymbol(repeated, in.get() != 0);
+				break;
+			case SYM_SEQUENCE:
+				sym = new SequenceSymbol(readSymbols());
+				break;
+			case SYM_LIST:
+				Symbol element = readSymbol();
+				Symbol seperator = readSymbol();
+				sym = new ListSymbol(element, seperator, in.get() != 0);
+				break;
+			case SYM_ALTERNATIVE:
+				sym = new AlternativeSymbol(readSymbol(), readSymbol());
+				break;
+			case SYM_TUPLE:
+				sym = new TupleSymbol(readSymbols());
+				break;
+			case SYM_FUNCTION:
+				ArrayList<Symbol> left = readSymbols();
+				sym = new FunctionSymbol(left, readSymbol());
+				break;
+			default:
+				throw new IOException("Invalid symbol kind: " + kind);
+			}
+			sym.setLabel(readString());
+			return sym;
+		}
+
+		private CharacterClass readCharacterClass() throws IOException {
+			Symbol sym = readSymbol();
+			if (!(sym instanceof CharacterClass)) {
+				throw new IOException("Character class expected: " + sym);
+			}
+			return (CharacterClass)sym;
+		}
+
+		private String readString() throws IOException {
+			int ref = readInt();
+			if (ref == 0) {
+				return null;
+			} else if (ref == 1) {
+				byte[] bytes = new byte[readInt()];
+				in.get(bytes);
+				String str = new String(bytes, UTF8);
+				strings.add(str);
+				return str;
+			} else if (ref - 2 < strings.size()) {
+				return strings.get(ref - 2);
+			} else {
+				throw new IOException("Invalid string reference: " + ref);
+			}
+		}
+
+		private int readInt() throws IOException {
+			int value = 0;
+			int shift = 0;
+			while (true) {
+				byte b = in.get();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+				shift += 7;
+				if (shift > 28) {
+					throw new IOException("Invalid integer");
+				}
+			}
+		}
+	}
+
+	private static List<IRuleAnnotation> getAnnotations(IRule<String> rule) throws IOException {
+		if (!(rule instanceof Rule)) {
+			throw new IOException("Unsupported rule: " + rule.getClass().getName());
+		}
+		return ((Rule)rule).getAnnotations();
+	}
+
+}
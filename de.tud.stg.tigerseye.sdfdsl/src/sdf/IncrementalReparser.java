@@ -0,0 +1,135 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.tud.stg.parlex.ast.IAbstractNode;
+import de.tud.stg.parlex.ast.Terminal;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.Rule;
+import de.tud.stg.parlex.parser.earley.Chart;
+
+/**
+ * Reparses an edited input by parsing only the text of a context-free node of the previous parse tree
+ * that contains the edit, see {@link CompiledSdfParser#reparse(ParseResult, int, int, String)}.
+ *
+ * <p>The candidate nodes are the nodes of context-free rules whose text contains the edit, excluding their first
+ * and last character. Starting with the smallest one, the new text of a candidate is parsed using its category as
+ * start symbol. The new subtree is used if it is valid and was created by the same rule as the old node, so the
+ * priorities and associativity between the node and its parent do not change. Otherwise the next larger candidate
+ * is tried, up to {@value #MAX_CANDIDATES} candidates, before the whole input is parsed again.
+ *
+ * <p>A node that is parsed separately can no longer be parsed differently depending on the surrounding text,
+ * so the combined tree is only guaranteed to be the tree of a full parse if the edited input has a single
+ * derivation. Before a combined tree is used, the {@link ParseForest} of the edited input is therefore checked
+ * for ambiguities, and the whole input is parsed again if there are any. The forest is built from the compact
+ * earley sets of the {@link ForestParser}, which is still cheaper than parsing the input with the parlex parser
+ * and creating its parse tree.
+ *
+ */
+class IncrementalReparser {
+
+	static final int MAX_CANDIDATES = 3;
+
+	/**
+	 * After this number of partial reparses of the same input, the input is parsed again completely,
+	 * so that replaced parts of old parse trees can be garbage collected.
+	 */
+	static final int MAX_REPLACED_NODES = 64;
+
+	private final CompiledSdfParser parser;
+
+	IncrementalReparser(CompiledSdfParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * Returns the result for the edited input, or null if it has to be parsed completely.
+	 */
+	ParseResult reparse(ParseResult previous, String newInput, int offset, int removedLength, int insertedLength) {
+		IncrementalTree tree = previous.getIncrementalTree();
+		if (tree == null || tree.getReplacedNodes().size() >= MAX_REPLACED_NODES) {
+			return null;
+		}
+		GeneratedGrammar generatedGrammar = parser.getGeneratedGrammar();
+
+		// path from the root to the smallest node containing the edit
+		List<IAbstractNode> path = new ArrayList<IAbstractNode>();
+		List<Integer> starts = new ArrayList<Integer>();
+		IAbstractNode node = tree.getRoot();
+		int start = 0;
+		while (node != null) {
+			path.add(node);
+			starts.add(start);
+			List<IAbstractNode> children = tree.getChildren(node);
+			node = null;
+			if (children == null) {
+				break;
+			}
+			int childStart = start;
+			for (IAbstractNode child : children) {
+				int childEnd = childStart + tree.getLength(child);
+				// the first and the last character of the node must not be changed
+				if (childStart < offset && offset + removedLength < childEnd) {
+					node = child;
+					start = childStart;
+					break;
+				}
+				childStart = childEnd;
+			}
+		}
+
+		int candidates = 0;
+		// the root is never reparsed partially
+		for (int i = path.size() - 1; i > 0 && candidates < MAX_CANDIDATES; i--) {
+			IAbstractNode oldNode = tree.resolve(path.get(i));
+			if (oldNode instanceof Terminal) {
+				continue;
+			}
+			Rule rule = oldNode.getItem().getRule();
+			RuleDescriptor descriptor = generatedGrammar.getRuleDescriptor(rule);
+			if (!descriptor.isCFRule() || descriptor.isLayout()) {
+				continue;
+			}
+			candidates++;
+
+			int nodeStart = starts.get(i);
+			int nodeEnd = nodeStart + tree.getLength(oldNode) - removedLength + insertedLength;
+			IAbstractNode newNode = parseNode(rule.getLhs(), newInput.substring(nodeStart, nodeEnd));
+			if (newNode != null && rule.equals(newNode.getItem().getRule())) {
+				if (isAmbiguous(newInput)) {
+					return null;
+				}
+				return new ParseResult(generatedGrammar, tree.replace(path.get(i), newNode),
+						previous.getAstAlgorithm(), previous.getAnnotationPolicy(), newInput, parser);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the input has more than one derivation, in which case a full parse may select a
+	 * different one than the combined tree. Ambiguities resolved by priorities are only excluded if
+	 * priority filtering is enabled (see {@link SdfDSL#setPriorityFilteringEnabled(boolean)}).
+	 */
+	private boolean isAmbiguous(String input) {
+		ParseForest forest = ParseForest.create(parser.getGeneratedGrammar(), input, ParseForest.DEFAULT_MAX_NODES);
+		return forest == null || forest.isTruncated() || !forest.getAmbiguities(1).isEmpty();
+	}
+
+	/**
+	 * Parses the text using the given category as start symbol.
+	 *
+	 * @return the node of the category, or null if the text is not valid
+	 */
+	private IAbstractNode parseNode(ICategory<String> category, String text) {
+		Chart chart = parser.parseCategory(category, text);
+		if (!chart.isValidParse()) {
+			return null;
+		}
+		// the root is the node of the start rule created for the category
+		List<IAbstractNode> children = chart.getAST().getChildren();
+		return children.size() == 1 ? children.get(0) : null;
+	}
+
+}
@@ -0,0 +1,98 @@
+package sdf;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import de.tud.stg.parlex.ast.IAbstractNode;
+import de.tud.stg.parlex.ast.Terminal;
+
+/**
+ * The parse tree of an incrementally reparsed input: the parse tree of the last full parse,
+ * in which some nodes have been replaced by the trees of partial reparses.
+ *
+ * <p>The nodes of parse trees are never modified, so the replacements are stored in a separate
+ * map (by identity). The lengths of the input covered by the nodes are computed when they are
+ * first needed and are shared by all trees created from the same full parse.
+ *
+ * @see CompiledSdfParser#reparse(ParseResult, int, int, String)
+ *
+ */
+class IncrementalTree {
+
+	private final IAbstractNode root;
+	private final IdentityHashMap<IAbstractNode, IAbstractNode> replacedNodes;
+	private final IdentityHashMap<IAbstractNode, Integer> lengths;
+
+	IncrementalTree(IAbstractNode root) {
+		this(root, new IdentityHashMap<IAbstractNode, IAbstractNode>(), new IdentityHashMap<IAbstractNode, Integer>());
+	}
+
+	private IncrementalTree(IAbstractNode root, IdentityHashMap<IAbstractNode, IAbstractNode> replacedNodes,
+			IdentityHashMap<IAbstractNode, Integer> lengths) {
+		this.root = root;
+		this.replacedNodes = replacedNodes;
+		this.lengths = lengths;
+	}
+
+	/**
+	 * Returns a new tree in which the given node is replaced. This tree is not modified.
+	 *
+	 * @param node			a node of this tree, as returned by {@link #getChildren(IAbstractNode)}
+	 * @param replacement	the new node
+	 */
+	IncrementalTree replace(IAbstractNode node, IAbstractNode replacement) {
+		IdentityHashMap<IAbstractNode, IAbstractNode> newReplacedNodes =
+			new IdentityHashMap<IAbstractNode, IAbstractNode>(replacedNodes);
+		newReplacedNodes.put(node, replacement);
+		return new IncrementalTree(root, newReplacedNodes, lengths);
+	}
+
+	IAbstractNode getRoot() {
+		return root;
+	}
+
+	IdentityHashMap<IAbstractNode, IAbstractNode> getReplacedNodes() {
+		return replacedNodes;
+	}
+
+	/**
+	 * Returns the node that is used in place of the given node.
+	 */
+	IAbstractNode resolve(IAbstractNode node) {
+		IAbstractNode replacement = replacedNodes.get(node);
+		return replacement != null ? replacement : node;
+	}
+
+	List<IAbstractNode> getChildren(IAbstractNode node) {
+		return resolve(node).getChildren();
+	}
+
+	/**
+	 * Returns the number of characters of the input covered by the given node (after replacements).
+	 */
+	int getLength(IAbstractNode node) {
+		// the lengths are shared with other trees, which may be used by other threads
+		synchronized (lengths) {
+			return computeLength(node);
+		}
+	}
+
+	private int computeLength(IAbstractNode node) {
+		IAbstractNode resolved = resolve(node);
+		Integer length = lengths.get(resolved);
+		if (length == null) {
+			int sum = 0;
+			if (resolved instanceof Terminal) {
+				sum = ((Terminal)resolved).getTerm().length();
+			} else if (resolved.getChildren() != null) {
+				for (IAbstractNode child : resolved.getChildren()) {
+					sum += computeLength(child);
+				}
+			}
+			length = sum;
+			lengths.put(resolved, length);
+		}
+		return length;
+	}
+
+}
@@ -0,0 +1,199 @@
+package sdf;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.tud.stg.parlex.core.Category;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.groupcategories.StringCategory;
+
+/**
+ * A trie containing all literal terminals of a grammar, which returns all literals matching the input at a
+ * position with a single scan instead of trying each literal separately. It is used by the {@link ForestParser}
+ * to scan the literals expected at a position, and by {@link ErrorRecovery} to find the token boundaries.
+ *
+ * <p>Case sensitive literals are the plain terminal categories created for SDF literal symbols.
+ * Case insensitive literals (<code>'text'</code> in SDF) are created as regular expressions of the form
+ * <code>(?i:\Qtext\E)</code> by {@link SdfToParlexGrammarConverter}; these are stored in a second
+ * trie using ASCII case folding, matching the semantics of the regular expression.
+ *
+ * <p>Each literal is identified by the index of its category in the list the trie was created from.
+ * Literal tries are immutable. The trie for a generated grammar is created once by its
+ * {@link GeneratedGrammar#getForestParser() recognizer}.
+ *
+ */
+class LiteralTrie {
+
+	private static final Pattern caseInsensitiveLiteralPattern = Pattern.compile("\\(\\?i:(\\\\Q.*\\\\E)\\)", Pattern.DOTALL);
+	private static final Pattern quotedPattern = Pattern.compile("\\\\Q(.*?)\\\\E", Pattern.DOTALL);
+
+	private final Node exactRoot = new Node();
+	private final Node foldedRoot = new Node();
+
+	/**
+	 * Creates the trie for all literal terminals in the given list of categories.
+	 *
+	 * @param categories	the categories, the index of a category in the list identifies its literal
+	 */
+	static LiteralTrie create(List<ICategory<String>> categories) {
+		LiteralTrie trie = new LiteralTrie();
+		for (int id = 0; id < categories.size(); id++) {
+			ICategory<String> cat = categories.get(id);
+			if (cat.isTerminal()) {
+				trie.add(cat, id);
+			}
+		}
+		return trie;
+	}
+
+	/**
+	 * Adds the given category if it is a case sensitive or case insensitive literal.
+	 */
+	private void add(ICategory<String> cat, int id) {
+		String text = getLiteral(cat);
+		if (text != null) {
+			insert(cat.getClass() == Category.class ? exactRoot : foldedRoot, text, cat.getClass() != Category.class, id);
+		}
+	}
+
+	/**
+	 * Returns the text of a case sensitive or case insensitive literal, or null if the category is not a literal.
+	 */
+	static String getLiteral(ICategory<String> cat) {
+		if (cat.getClass() == Category.class) {
+			return cat.getName();
+		} else if (cat instanceof StringCategory) {
+			return getCaseInsensitiveLiteral(cat.getName());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the text of a case insensitive literal created by {@link Pattern#quote(String)},
+	 * or null if the regular expression is not a case insensitive literal.
+	 */
+	private static String getCaseInsensitiveLiteral(String regexp) {
+		Matcher m = caseInsensitiveLiteralPattern.matcher(regexp);
+		if (!m.matches()) {
+			return null;
+		}
+		// Pattern.quote splits the text at "\E", which is quoted as \E\\E\Q
+		String quoted = m.group(1).replace("\\E\\\\E\\Q", "\\E");
+		Matcher q = quotedPattern.matcher(quoted);
+		if (!q.matches()) {
+			return null;
+		}
+		return q.group(1);
+	}
+
+	private void insert(Node root, String text, boolean fold, int id) {
+		if (text.length() == 0) {
+			return;
+		}
+		Node node = root;
+		for (int i = 0; i < text.length(); i++) {
+			char c = fold ? foldCase(text.charAt(i)) : text.charAt(i);
+			node = node.getOrCreateChild(c);
+		}
+		node.literals = Arrays.copyOf(node.literals, node.literals.length + 1);
+		node.literals[node.literals.length - 1] = id;
+	}
+
+	/**
+	 * ASCII case folding, like regular expressions with the CASE_INSENSITIVE flag.
+	 */
+	private static char foldCase(char c) {
+		return (c >= 'A' && c <= 'Z') ? (char)(c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * Returns the length of the longest literal matching the input at the given offset.
+	 *
+	 * @return the length of the longest match, or 0 if no literal matches
+	 */
+	int longestMatch(CharSequence input, int offset) {
+		return Math.max(longestMatch(exactRoot, input, offset, false), longestMatch(foldedRoot, input, offset, true));
+	}
+
+	private int longestMatch(Node root, CharSequence input, int offset, boolean fold) {
+		int longest = 0;
+		Node node = root;
+		for (int i = offset; i < input.length() && node != null; i++) {
+			char c = fold ? foldCase(input.charAt(i)) : input.charAt(i);
+			node = node.getChild(c);
+			if (node != null && node.literals.length > 0) {
+				longest = i - offset + 1;
+			}
+		}
+		return longest;
+	}
+
+	/**
+	 * Finds all literals matching the input at the given offset. The length of the text matched by each
+	 * of these literals is stored in <code>lengths</code> at the id of the literal, and the ids are
+	 * stored in <code>matched</code>.
+	 *
+	 * @param input		the input
+	 * @param offset	the position in the input
+	 * @param lengths	the lengths of the matches, indexed by the ids of the literals
+	 * @param matched	receives the ids of the matching literals, must be large enough for all literals
+	 * @return the number of matching literals
+	 */
+	int match(CharSequence input, int offset, int[] lengths, int[] matched) {
+		int count = match(exactRoot, input, offset, false, lengths, matched, 0);
+		return match(foldedRoot, input, offset, true, lengths, matched, count);
+	}
+
+	private int match(Node root, CharSequence input, int offset, boolean fold, int[] lengths, int[] matched,
+			int count) {
+		Node node = root;
+		for (int i = offset; i < input.length() && node != null; i++) {
+			char c = fold ? foldCase(input.charAt(i)) : input.charAt(i);
+			node = node.getChild(c);
+			if (node != null) {
+				for (int id : node.literals) {
+					lengths[id] = i - offset + 1;
+					matched[count++] = id;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static final class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		/** the ids of the literals ending at this node */
+		private int[] literals = new int[0];
+
+		Node getChild(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			return index >= 0 ? children[index] : null;
+		}
+
+		Node getOrCreateChild(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index >= 0) {
+				return children[index];
+			}
+
+			// keep the keys sorted
+			int insert = -index - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, insert);
+			System.arraycopy(children, 0, newChildren, 0, insert);
+			System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+			System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+			Node child = new Node();
+			newKeys[insert] = c;
+			newChildren[insert] = child;
+			keys = newKeys;
+			children = newChildren;
+			return child;
+		}
+	}
+
+}
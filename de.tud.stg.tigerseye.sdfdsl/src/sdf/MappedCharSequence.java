@@ -0,0 +1,201 @@
+package sdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * The characters of a file, which is mapped into memory and decoded lazily in windows of
+ * {@value #WINDOW_SIZE} characters. Only the current and the previous window are kept
+ * decoded, so the heap memory needed does not depend on the size of the file (apart from
+ * 8 bytes per window).
+ *
+ * <p>The file is decoded once when it is opened to find the start of each window and to check
+ * that the file is valid in the given charset. Random access is fast as long as it is mostly
+ * sequential, as for {@link CompiledSdfParser#recognize(CharSequence)}.
+ *
+ * <p>{@link #subSequence(int, int)} and {@link #toString()} copy the characters into a new string.
+ * Instances are not thread-safe. Files larger than 2 GB are not supported.
+ *
+ * @see CompiledSdfParser#parse(File, Charset)
+ *
+ */
+public class MappedCharSequence implements CharSequence {
+
+	static final int WINDOW_SIZE = 1 << 16;
+
+	private final ByteBuffer bytes;
+	private final CharsetDecoder decoder;
+	private final int length;
+	/** the byte offset and the char offset of the start of each window, plus the end */
+	private final int[] byteStarts;
+	private final int[] charStarts;
+
+	private int window = -1;
+	private char[] chars;
+	private int previousWindow = -1;
+	private char[] previousChars;
+
+	private MappedCharSequence(ByteBuffer bytes, Charset charset) throws CharacterCodingException {
+		this.bytes = bytes;
+		this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+
+		int windowCount = 0;
+		int[] byteOffsets = new int[16];
+		int[] charOffsets = new int[16];
+		CharBuffer buffer = CharBuffer.allocate(WINDOW_SIZE);
+		ByteBuffer in = bytes.duplicate();
+		int charCount = 0;
+		decoder.reset();
+		boolean endOfInput = false;
+		while (true) {
+			if (windowCount + 1 >= byteOffsets.length) {
+				byteOffsets = Arrays.copyOf(byteOffsets, byteOffsets.length * 2);
+				charOffsets = Arrays.copyOf(charOffsets, charOffsets.length * 2);
+			}
+			byteOffsets[windowCount] = in.position();
+			charOffsets[windowCount] = charCount;
+			buffer.clear();
+			endOfInput = decodeWindow(in, buffer);
+			if (buffer.position() == 0) {
+				break;
+			}
+			charCount += buffer.position();
+			windowCount++;
+			if (endOfInput) {
+				byteOffsets[windowCount] = in.position();
+				charOffsets[windowCount] = charCount;
+				break;
+			}
+		}
+		this.length = charCount;
+		this.byteStarts = Arrays.copyOf(byteOffsets, windowCount + 1);
+		this.charStarts = Arrays.copyOf(charOffsets, windowCount + 1);
+	}
+
+	/**
+	 * Maps the given file into memory.
+	 *
+	 * @param file		the file
+	 * @param charset	the charset of the file
+	 * @return the characters of the file
+	 * @throws IOException if the file cannot be read, is larger than 2 GB or is not valid in the charset
+	 */
+	public static MappedCharSequence open(File file, Charset charset) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("File too large: " + file);
+			}
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new MappedCharSequence(buffer, charset);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Decodes the characters of one window. Returns true if the end of the input is reached.
+	 */
+	private boolean decodeWindow(ByteBuffer in, CharBuffer out) throws CharacterCodingException {
+		CoderResult result = decoder.decode(in, out, true);
+		if (result.isError()) {
+			result.throwException();
+		}
+		if (result.isUnderflow()) {
+			// all bytes consumed
+			result = decoder.flush(out);
+			if (result.isError()) {
+				result.throwException();
+			}
+			decoder.reset();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+		}
+		int w = window;
+		if (w < 0 || index < charStarts[w] || index >= charStarts[w + 1]) {
+			w = findWindow(index);
+			if (w == previousWindow) {
+				char[] tmp = chars;
+				chars = previousChars;
+				previousChars = tmp;
+				previousWindow = window;
+				window = w;
+			} else {
+				load(w);
+			}
+		}
+		return chars[index - charStarts[w]];
+	}
+
+	private int findWindow(int index) {
+		int w = Arrays.binarySearch(charStarts, index);
+		return w >= 0 ? w : -w - 2;
+	}
+
+	private void load(int w) {
+		char[] tmp = previousChars;
+		previousChars = chars;
+		previousWindow = window;
+		if (tmp == null) {
+			tmp = new char[WINDOW_SIZE];
+		}
+
+		ByteBuffer in = bytes.duplicate();
+		in.limit(byteStarts[w + 1]);
+		in.position(byteStarts[w]);
+		CharBuffer out = CharBuffer.wrap(tmp);
+		try {
+			decoder.reset();
+			decodeWindow(in, out);
+		} catch (CharacterCodingException e) {
+			// cannot happen, the whole input was decoded when the sequence was created
+			throw new IllegalStateException(e);
+		}
+		chars = tmp;
+		window = w;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+		}
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			sb.append(charAt(i));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length).toString();
+	}
+
+}
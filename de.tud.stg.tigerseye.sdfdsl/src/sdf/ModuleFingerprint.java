@@ -0,0 +1,430 @@
+package sdf;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import sdf.model.*;
+import aterm.ATerm;
+
+/**
+ * Computes a fingerprint of the definition of a module. The fingerprint covers the whole structure
+ * of the module (sections, imports, productions, symbols, labels, attributes, priorities, ...), so it
+ * changes whenever the module or one of its elements is modified in place.
+ *
+ * <p>The fingerprint is the SHA-1 hash of an encoding of the module in which every element is written
+ * with its class and every string with its length, so that different modules do not have the same encoding.
+ *
+ * @see GrammarCache
+ * @see ModuleMergeCache
+ *
+ */
+final class ModuleFingerprint {
+
+	private ModuleFingerprint() {
+	}
+
+	/**
+	 * Computes the fingerprint of a module.
+	 *
+	 * @param module	the module
+	 * @return the fingerprint as a hexadecimal string
+	 */
+	static String of(Module module) {
+		Encoder encoder = new Encoder();
+		module.visit(encoder, null);
+		return encoder.digest();
+	}
+
+	/**
+	 * Writes the encoding of a module. It is only used by {@link ModuleFingerprint#of(Module)}.
+	 */
+	private static class Encoder implements Visitor {
+
+		private StringBuilder sb = new StringBuilder();
+
+		private String digest() {
+			try {
+				byte[] hash = MessageDigest.getInstance("SHA-1").digest(sb.toString().getBytes("UTF-8"));
+				StringBuilder hex = new StringBuilder(hash.length * 2);
+				for (byte b : hash) {
+					hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+				}
+				return hex.toString();
+			} catch (NoSuchAlgorithmException e) {
+				// every Java platform supports SHA-1
+				throw new IllegalStateException(e);
+			} catch (UnsupportedEncodingException e) {
+				// every Java platform supports UTF-8
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private void begin(Object element) {
+			sb.append('(').append(element.getClass().getName());
+		}
+
+		private void end() {
+			sb.append(')');
+		}
+
+		private void string(String str) {
+			if (str == null) {
+				sb.append('~');
+			} else {
+				sb.append(str.length()).append(':').append(str);
+			}
+		}
+
+		private void flag(boolean value) {
+			sb.append(value ? 'T' : 'F');
+		}
+
+		private void aterm(ATerm term) {
+			string(term == null ? null : term.toString());
+		}
+
+		private void element(SdfElement element) {
+			if (element == null) {
+				sb.append('~');
+			} else if (element instanceof FunctionSymbol) {
+				// FunctionSymbol does not call the visitor
+				visitFunctionSymbol((FunctionSymbol)element, null);
+			} else {
+				element.visit(this, null);
+			}
+		}
+
+		private void elements(List<? extends SdfElement> elements) {
+			if (elements == null) {
+				sb.append('~');
+				return;
+			}
+			sb.append('[');
+			for (SdfElement element : elements) {
+				element(element);
+			}
+			sb.append(']');
+		}
+
+		private void symbol(Symbol sym) {
+			begin(sym);
+			string(sym.getLabel());
+		}
+
+		@Override
+		public Object visitDefinition(Definition def, Object o) {
+			// can't occur, only modules are encoded
+			return null;
+		}
+
+		@Override
+		public Object visitModule(Module mod, Object o) {
+			begin(mod);
+			string(mod.getName());
+			elements(mod.getParameters());
+			elements(mod.getImportSections());
+			elements(mod.getExportOrHiddenSections());
+			end();
+			return null;
+		}
+
+		private void section(ExportOrHiddenSection section) {
+			begin(section);
+			elements(section.getGrammarElements());
+			end();
+		}
+
+		@Override
+		public Object visitExports(Exports exp, Object o) {
+			section(exp);
+			return null;
+		}
+
+		@Override
+		public Object visitHiddens(Hiddens hid, Object o) {
+			section(hid);
+			return null;
+		}
+
+		@Override
+		public Object visitImports(Imports imp, Object o) {
+			begin(imp);
+			elements(imp.getImportList());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitSorts(Sorts sor, Object o) {
+			begin(sor);
+			elements(sor.getSymbols());
+			end();
+			return null;
+		}
+
+		private void syntax(Syntax syn) {
+			begin(syn);
+			elements(syn.getProductions());
+			end();
+		}
+
+		@Override
+		public Object visitContextFreeSyntax(ContextFreeSyntax syn, Object o) {
+			syntax(syn);
+			return null;
+		}
+
+		@Override
+		public Object visitLexicalSyntax(LexicalSyntax syn, Object o) {
+			syntax(syn);
+			return null;
+		}
+
+		private void startSymbols(StartSymbols sta) {
+			begin(sta);
+			elements(sta.getSymbols());
+			end();
+		}
+
+		@Override
+		public Object visitLexicalStartSymbols(LexicalStartSymbols sta, Object o) {
+			startSymbols(sta);
+			return null;
+		}
+
+		@Override
+		public Object visitContextFreeStartSymbols(ContextFreeStartSymbols sta, Object o) {
+			startSymbols(sta);
+			return null;
+		}
+
+		@Override
+		public Object visitAliases(Aliases ali, Object o) {
+			begin(ali);
+			elements(ali.getAliasList());
+			end();
+			return null;
+		}
+
+		private void priorities(Priorities pri) {
+			begin(pri);
+			elements(pri.getPriorities());
+			end();
+		}
+
+		@Override
+		public Object visitLexicalPriorities(LexicalPriorities pri, Object o) {
+			priorities(pri);
+			return null;
+		}
+
+		@Override
+		public Object visitContextFreePriorities(ContextFreePriorities pri, Object o) {
+			priorities(pri);
+			return null;
+		}
+
+		@Override
+		public Object visitProduction(Production pro, Object o) {
+			begin(pro);
+			elements(pro.getLhs());
+			element(pro.getRhs());
+			ArrayList<ATerm> attributes = pro.getAttributes();
+			if (attributes == null) {
+				sb.append('~');
+			} else {
+				sb.append('[');
+				for (ATerm attribute : attributes) {
+					aterm(attribute);
+				}
+				sb.append(']');
+			}
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitImport(Import imp, Object o) {
+			begin(imp);
+			string(imp.getModuleName());
+			elements(imp.getParameters());
+			Map<Symbol, Symbol> renamings = imp.getRenamings();
+			if (renamings == null) {
+				sb.append('~');
+			} else {
+				// the order of the renamings does not matter, so their encodings are sorted
+				StringBuilder outer = sb;
+				List<String> encoded = new ArrayList<String>(renamings.size());
+				for (Map.Entry<Symbol, Symbol> renaming : renamings.entrySet()) {
+					sb = new StringBuilder();
+					element(renaming.getKey());
+					element(renaming.getValue());
+					encoded.add(sb.toString());
+				}
+				sb = outer;
+				Collections.sort(encoded);
+				sb.append('{');
+				for (String renaming : encoded) {
+					sb.append(renaming);
+				}
+				sb.append('}');
+			}
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitAlias(Alias ali, Object o) {
+			begin(ali);
+			element(ali.getOriginal());
+			element(ali.getAliasName());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitPriority(Priority pri, Object o) {
+			begin(pri);
+			elements(pri.getGroups());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitPriorityGroup(PriorityGroup grp, Object o) {
+			begin(grp);
+			elements(grp.getProductions());
+			aterm(grp.getAssociativity());
+			flag(grp.isTransitive());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitCharacterClassSymbol(CharacterClassSymbol sym, Object o) {
+			symbol(sym);
+			string(sym.getPattern());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitCharacterClassComplement(CharacterClassComplement sym, Object o) {
+			symbol(sym);
+			element(sym.getSymbol());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitCharacterClassDifference(CharacterClassDifference sym, Object o) {
+			symbol(sym);
+			element(sym.getLeft());
+			element(sym.getRight());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitCharacterClassIntersection(CharacterClassIntersection sym, Object o) {
+			symbol(sym);
+			element(sym.getLeft());
+			element(sym.getRight());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitCharacterClassUnion(CharacterClassUnion sym, Object o) {
+			symbol(sym);
+			element(sym.getLeft());
+			element(sym.getRight());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitLiteralSymbol(LiteralSymbol sym, Object o) {
+			symbol(sym);
+			string(sym.getText());
+			flag(sym.isCaseSensitive());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitOptionalSymbol(OptionalSymbol sym, Object o) {
+			symbol(sym);
+			element(sym.getSymbol());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitRepetitionSymbol(RepetitionSymbol sym, Object o) {
+			symbol(sym);
+			element(sym.getSymbol());
+			flag(sym.isAtLeastOnce());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitSortSymbol(SortSymbol sym, Object o) {
+			symbol(sym);
+			string(sym.getName());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitSequenceSymbol(SequenceSymbol sym, Object o) {
+			symbol(sym);
+			elements(sym.getSymbols());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitListSymbol(ListSymbol sym, Object o) {
+			symbol(sym);
+			element(sym.getElement());
+			element(sym.getSeperator());
+			flag(sym.isAtLeastOnce());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitAlternativeSymbol(AlternativeSymbol sym, Object o) {
+			symbol(sym);
+			element(sym.getLeft());
+			element(sym.getRight());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitTupleSymbol(TupleSymbol sym, Object o) {
+			symbol(sym);
+			elements(sym.getSymbols());
+			end();
+			return null;
+		}
+
+		@Override
+		public Object visitFunctionSymbol(FunctionSymbol sym, Object o) {
+			symbol(sym);
+			elements(sym.getLeft());
+			element(sym.getRight());
+			end();
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import sdf.model.Module;
+import sdf.model.Symbol;
+
+/**
+ * Stores the results of merging imported modules, so that a module that is imported
+ * multiple times with the same parameters and renamings is only merged once.
+ *
+ * <p>A {@link ModuleMerger} always uses such a cache for the imports of one top-level module.
+ * The same cache can also be passed to multiple mergers to reuse the merged modules across
+ * grammar builds (this is done by {@link SdfDSL}). A merged module is only reused as long as
+ * the imported module and all modules it imports itself are still registered and have the same
+ * fingerprint (see {@link ModuleFingerprint}), i.e. have neither been replaced nor modified in place.
+ *
+ * <p>Merged modules are shared between all modules importing them and must not be modified.
+ *
+ * @see ModuleMerger
+ * @see GrammarCache
+ *
+ */
+public class ModuleMergeCache {
+
+	private HashMap<Key, Entry> entries;
+	private long hits;
+	private long misses;
+
+	public ModuleMergeCache() {
+		this.entries = new HashMap<Key, Entry>();
+	}
+
+	/**
+	 * Returns the cached result of merging the given module with the given parameters and renamings,
+	 * if it is still valid.
+	 *
+	 * @param moduleName		name of the imported module
+	 * @param parameters		actual parameters of the import (can be null)
+	 * @param renamings			renamings of the import (can be null)
+	 * @param registeredModules	all modules currently registered (module name -> definition)
+	 * @return the cached merge result or null
+	 */
+	public synchronized Entry get(String moduleName, ArrayList<Symbol> parameters,
+			HashMap<Symbol, Symbol> renamings, Map<String, Module> registeredModules) {
+		Key key = new Key(moduleName, parameters, renamings);
+		Entry entry = entries.get(key);
+
+		if (entry != null && !entry.isValid(registeredModules)) {
+			entries.remove(key);
+			entry = null;
+		}
+
+		if (entry == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores the result of merging a module.
+	 *
+	 * @param moduleName		name of the imported module
+	 * @param parameters		actual parameters of the import (can be null)
+	 * @param renamings			renamings of the import (can be null)
+	 * @param mergedModule		the merged module
+	 * @param usedModules		all modules that were used to create the merged module
+	 */
+	public synchronized void put(String moduleName, ArrayList<Symbol> parameters,
+			HashMap<Symbol, Symbol> renamings, Module mergedModule, Map<String, Module> usedModules) {
+		entries.put(new Key(moduleName, parameters, renamings), new Entry(mergedModule, usedModules));
+	}
+
+	/**
+	 * Removes all merged modules that depend on the module with the given name.
+	 *
+	 * @param moduleName	name of the module that has changed
+	 */
+	public synchronized void invalidate(String moduleName) {
+		for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+			Entry entry = it.next();
+			if (entry.usedModules.containsKey(moduleName)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all merged modules. The hit/miss counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void resetStatistics() {
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+
+	/**
+	 * A merged module together with the module definitions it was created from.
+	 */
+	public static class Entry {
+		private Module mergedModule;
+		private HashMap<String, Module> usedModules;
+		private HashMap<String, String> fingerprints;
+
+		Entry(Module mergedModule, Map<String, Module> usedModules) {
+			this.mergedModule = mergedModule;
+			this.usedModules = new HashMap<String, Module>(usedModules);
+			this.fingerprints = GrammarCache.fingerprints(usedModules);
+		}
+
+		public Module getMergedModule() {
+			return mergedModule;
+		}
+
+		public HashMap<String, Module> getUsedModules() {
+			return usedModules;
+		}
+
+		boolean isValid(Map<String, Module> registeredModules) {
+			for (Map.Entry<String, Module> used : usedModules.entrySet()) {
+				if (registeredModules.get(used.getKey()) != used.getValue()) {
+					return false;
+				}
+			}
+			// the same module objects, but they may have been modified in place
+			return GrammarCache.isUnchanged(fingerprints, registeredModules);
+		}
+	}
+
+	/**
+	 * Identifies an import: module name, parameters and renamings.
+	 * Symbols are compared including their labels, since labels are copied into the merged module.
+	 */
+	private static class Key {
+		String moduleName;
+		ArrayList<Symbol> parameters;
+		ArrayList<String> parameterLabels;
+		HashMap<Symbol, Symbol> renamings;
+		HashMap<Symbol, String> renamingLabels;
+
+		public Key(String moduleName, ArrayList<Symbol> parameters, HashMap<Symbol, Symbol> renamings) {
+			this.moduleName = moduleName;
+			this.parameters = new ArrayList<Symbol>();
+			this.parameterLabels = new ArrayList<String>();
+			this.renamings = new HashMap<Symbol, Symbol>();
+			this.renamingLabels = new HashMap<Symbol, String>();
+
+			if (parameters != null) {
+				for (Symbol param : parameters) {
+					this.parameters.add(param);
+					this.parameterLabels.add(param.getLabel());
+				}
+			}
+			if (renamings != null) {
+				for (Map.Entry<Symbol, Symbol> renaming : renamings.entrySet()) {
+					this.renamings.put(renaming.getKey(), renaming.getValue());
+					this.renamingLabels.put(renaming.getKey(), renaming.getValue().getLabel());
+				}
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((moduleName == null) ? 0 : moduleName.hashCode());
+			result = prime * result + parameters.hashCode();
+			result = prime * result + renamings.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			if (moduleName == null) {
+				if (other.moduleName != null)
+					return false;
+			} else if (!moduleName.equals(other.moduleName))
+				return false;
+			return parameters.equals(other.parameters)
+					&& parameterLabels.equals(other.parameterLabels)
+					&& renamings.equals(other.renamings)
+					&& renamingLabels.equals(other.renamingLabels);
+		}
+	}
+
+}
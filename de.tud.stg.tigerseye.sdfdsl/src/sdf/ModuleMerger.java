@@ -14,7 +14,11 @@ import sdf.model.*;
  * 
  * <p>The elements of the input modules are not reused in the generated modules,
  * instead copies of the elements are created where needed, so the input modules
- * are not modified.
+ * are not modified. Unlabeled symbols are replaced by their canonical instances
+ * (see {@link Symbol#intern(Symbol)}), so equal symbols are shared and compared by identity.
+ * 
+ * <p>Imported modules are merged only once for each combination of parameters and renamings.
+ * The merged modules are stored in a {@link ModuleMergeCache} and shared by all modules importing them.
  * 
  * @author Pablo Hoch
  * @see SdfDSL
@@ -26,6 +30,17 @@ public class ModuleMerger implements Visitor {
 
 	private SdfDSL dsl;
 	
+	/**
+	 * All modules that were looked up while processing the top-level module
+	 * (module name -> module definition). Shared with the mergers created for imports.
+	 */
+	private HashMap<String, Module> usedModules;
+	
+	/**
+	 * Merged imported modules, shared with the mergers created for imports
+	 */
+	private ModuleMergeCache mergeCache;
+	
 	// state information
 	private Module newMod;
 	private HashMap<Symbol,Symbol> replacements;
@@ -34,7 +49,34 @@ public class ModuleMerger implements Visitor {
 	private boolean inCFSyntax;
 	
 	public ModuleMerger(SdfDSL dsl) {
+		this(dsl, new ModuleMergeCache());
+	}
+	
+	/**
+	 * Creates a ModuleMerger that uses the given cache for merged imports.
+	 * Passing the same cache to multiple mergers allows to reuse merged modules
+	 * across multiple grammar builds.
+	 * 
+	 * @param dsl			the SdfDSL containing the module definitions
+	 * @param mergeCache	cache for merged imports
+	 */
+	public ModuleMerger(SdfDSL dsl, ModuleMergeCache mergeCache) {
 		this.dsl = dsl;
+		this.mergeCache = mergeCache;
+		this.usedModules = new HashMap<String, Module>();
+	}
+	
+	/**
+	 * Returns all modules the processed module depends on, including the processed module
+	 * itself and all directly or indirectly imported modules.
+	 * 
+	 * <p>The map contains the module definitions as they were registered in the SdfDSL
+	 * at the time they were merged.
+	 * 
+	 * @return	a map from module names to module definitions
+	 */
+	public HashMap<String, Module> getUsedModules() {
+		return usedModules;
 	}
 	
 	/**
@@ -64,6 +106,8 @@ public class ModuleMerger implements Visitor {
 		
 		if (DEBUG) System.out.println("*** ModuleMerger.processModule(" + mod.getName() + ")");
 		
+		usedModules.put(mod.getName(), mod);
+		
 		// reset production maps
 		this.lexProductions = new HashMap<Production, Production>();
 		this.cfProductions = new HashMap<Production, Production>();
@@ -123,8 +167,20 @@ public class ModuleMerger implements Visitor {
 			// TODO: Error!
 			System.out.println("=== MODULE '" + imp.getModuleName() + "' NOT FOUND! ===");
 		}
-		ModuleMerger subMerge = new ModuleMerger(dsl);
-		Module importedModule = subMerge.processModule(moduleToImport, imp.getParameters(), imp.getRenamings());
+		Module importedModule;
+		
+		// modules imported with the same parameters and renamings only need to be merged once
+		ModuleMergeCache.Entry cached = mergeCache.get(imp.getModuleName(), imp.getParameters(), imp.getRenamings(), dsl.getModules());
+		if (cached != null) {
+			if (DEBUG) System.out.println("*** Reusing merged module: " + imp.getModuleName());
+			importedModule = cached.getMergedModule();
+			usedModules.putAll(cached.getUsedModules());
+		} else {
+			ModuleMerger subMerge = new ModuleMerger(dsl, mergeCache);
+			importedModule = subMerge.processModule(moduleToImport, imp.getParameters(), imp.getRenamings());
+			mergeCache.put(imp.getModuleName(), imp.getParameters(), imp.getRenamings(), importedModule, subMerge.getUsedModules());
+			usedModules.putAll(subMerge.getUsedModules());
+		}
 
 		if (inHiddens) {
 			// if the import statement is in an hiddens section, copy the exports sections of the processed
@@ -225,7 +281,7 @@ public class ModuleMerger implements Visitor {
 		// don't replace symbols here (because they could be replaced by non-sort symbols, which would be
 		// invalid in a sorts declaration)
 		for (SortSymbol s : sor.getSymbols()) {
-			newSymbols.add(new SortSymbol(s.getName(), s.getLabel()));
+			newSymbols.add((SortSymbol)Symbol.intern(new SortSymbol(s.getName(), s.getLabel())));
 		}
 		
 		return new Sorts(newSymbols);
@@ -342,7 +398,7 @@ public class ModuleMerger implements Visitor {
 		Symbol replacement = getReplacementSymbol(sym);
 		if (replacement != null) return replacement;
 		
-		return new CharacterClassSymbol(sym.getPattern(), sym.getLabel());
+		return Symbol.intern(new CharacterClassSymbol(sym.getPattern(), sym.getLabel()));
 	}
 
 	@Override
@@ -353,7 +409,7 @@ public class ModuleMerger implements Visitor {
 		
 		Symbol inner = (Symbol)sym.getSymbol().visit(this, null);
 		if (inner instanceof CharacterClass) {
-			return new CharacterClassComplement((CharacterClass)inner, sym.getLabel());
+			return Symbol.intern(new CharacterClassComplement((CharacterClass)inner, sym.getLabel()));
 		} else {
 			// TODO: inner character class was replaced by something which is not a character class
 			// this results in an error.
@@ -370,7 +426,7 @@ public class ModuleMerger implements Visitor {
 		Symbol left = (Symbol)sym.getLeft().visit(this, null);
 		Symbol right = (Symbol)sym.getRight().visit(this, null);
 		if (left instanceof CharacterClass && right instanceof CharacterClass) {
-			return new CharacterClassDifference((CharacterClass)left, (CharacterClass)right, sym.getLabel());
+			return Symbol.intern(new CharacterClassDifference((CharacterClass)left, (CharacterClass)right, sym.getLabel()));
 		} else {
 			// TODO: inner character class was replaced by something which is not a character class
 			// this results in an error.
@@ -387,7 +443,7 @@ public class ModuleMerger implements Visitor {
 		Symbol left = (Symbol)sym.getLeft().visit(this, null);
 		Symbol right = (Symbol)sym.getRight().visit(this, null);
 		if (left instanceof CharacterClass && right instanceof CharacterClass) {
-			return new CharacterClassIntersection((CharacterClass)left, (CharacterClass)right, sym.getLabel());
+			return Symbol.intern(new CharacterClassIntersection((CharacterClass)left, (CharacterClass)right, sym.getLabel()));
 		} else {
 			// TODO: inner character class was replaced by something which is not a character class
 			// this results in an error.
@@ -403,7 +459,7 @@ public class ModuleMerger implements Visitor {
 		Symbol left = (Symbol)sym.getLeft().visit(this, null);
 		Symbol right = (Symbol)sym.getRight().visit(this, null);
 		if (left instanceof CharacterClass && right instanceof CharacterClass) {
-			return new CharacterClassUnion((CharacterClass)left, (CharacterClass)right, sym.getLabel());
+			return Symbol.intern(new CharacterClassUnion((CharacterClass)left, (CharacterClass)right, sym.getLabel()));
 		} else {
 			// TODO: inner character class was replaced by something which is not a character class
 			// this results in an error.
@@ -416,7 +472,7 @@ public class ModuleMerger implements Visitor {
 		Symbol replacement = getReplacementSymbol(sym);
 		if (replacement != null) return replacement;
 		
-		return new LiteralSymbol(sym.getText(), sym.isCaseSensitive(), sym.getLabel());
+		return Symbol.intern(new LiteralSymbol(sym.getText(), sym.isCaseSensitive(), sym.getLabel()));
 	}
 
 	@Override
@@ -424,7 +480,7 @@ public class ModuleMerger implements Visitor {
 		Symbol replacement = getReplacementSymbol(sym);
 		if (replacement != null) return replacement;
 
-		return new OptionalSymbol((Symbol)sym.getSymbol().visit(this, null), sym.getLabel());
+		return Symbol.intern(new OptionalSymbol((Symbol)sym.getSymbol().visit(this, null), sym.getLabel()));
 	}
 
 	@Override
@@ -432,7 +488,7 @@ public class ModuleMerger implements Visitor {
 		Symbol replacement = getReplacementSymbol(sym);
 		if (replacement != null) return replacement;
 		
-		return new RepetitionSymbol((Symbol)sym.getSymbol().visit(this, null), sym.isAtLeastOnce(), sym.getLabel());
+		return Symbol.intern(new RepetitionSymbol((Symbol)sym.getSymbol().visit(this, null), sym.isAtLeastOnce(), sym.getLabel()));
 	}
 
 	@Override
@@ -440,7 +496,7 @@ public class ModuleMerger implements Visitor {
 		Symbol replacement = getReplacementSymbol(sym);
 		if (replacement != null) return replacement;
 		
-		return new SortSymbol(sym.getName(), sym.getLabel());
+		return Symbol.intern(new SortSymbol(sym.getName(), sym.getLabel()));
 	}
 
 	@Override
@@ -453,7 +509,7 @@ public class ModuleMerger implements Visitor {
 			newSymbols.add((Symbol)s.visit(this, null));
 		}
 		
-		return new SequenceSymbol(newSymbols, sym.getLabel());
+		return Symbol.intern(new SequenceSymbol(newSymbols, sym.getLabel()));
 	}
 
 	@Override
@@ -461,7 +517,7 @@ public class ModuleMerger implements Visitor {
 		Symbol replacement = getReplacementSymbol(sym);
 		if (replacement != null) return replacement;
 		
-		return new ListSymbol((Symbol)sym.getElement().visit(this, null), (Symbol)sym.getSeperator().visit(this, null), sym.isAtLeastOnce(), sym.getLabel());
+		return Symbol.intern(new ListSymbol((Symbol)sym.getElement().visit(this, null), (Symbol)sym.getSeperator().visit(this, null), sym.isAtLeastOnce(), sym.getLabel()));
 	}
 
 	@Override
@@ -469,7 +525,7 @@ public class ModuleMerger implements Visitor {
 		Symbol replacement = getReplacementSymbol(sym);
 		if (replacement != null) return replacement;
 		
-		return new AlternativeSymbol((Symbol)sym.getLeft().visit(this, null), (Symbol)sym.getRight().visit(this, null), sym.getLabel());
+		return Symbol.intern(new AlternativeSymbol((Symbol)sym.getLeft().visit(this, null), (Symbol)sym.getRight().visit(this, null), sym.getLabel()));
 	}
 
 	@Override
@@ -482,7 +538,7 @@ public class ModuleMerger implements Visitor {
 			newSymbols.add((Symbol)s.visit(this, null));
 		}
 		
-		return new TupleSymbol(newSymbols, sym.getLabel());
+		return Symbol.intern(new TupleSymbol(newSymbols, sym.getLabel()));
 	}
 
 	@Override
@@ -496,7 +552,7 @@ public class ModuleMerger implements Visitor {
 		}
 		Symbol newRight = (Symbol)sym.getRight().visit(this, null);
 		
-		return new FunctionSymbol(newLeft, newRight, sym.getLabel());
+		return Symbol.intern(new FunctionSymbol(newLeft, newRight, sym.getLabel()));
 	}
 
 	@Override
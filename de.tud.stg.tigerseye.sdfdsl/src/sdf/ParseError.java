@@ -0,0 +1,108 @@
+package sdf;
+
+import java.util.Collections;
+import java.util.List;
+
+import de.tud.stg.parlex.core.Category;
+import de.tud.stg.parlex.core.ICategory;
+
+/**
+ * A syntax error found by the error recovery of {@link CompiledSdfParser}.
+ *
+ * <p>The offset of an error is the furthest position up to which the input (or the part of the input
+ * after the previous error) is a valid prefix of a sentence of the grammar, i.e. the position
+ * of the first character that cannot be parsed. If the input ends too early, the offset is the length
+ * of the input.
+ *
+ * @see ParseResult#getErrors()
+ *
+ */
+public class ParseError {
+
+	private final String input;
+	private final int offset;
+	private final int resumeOffset;
+	private final List<ICategory<String>> expectedTerminals;
+
+	public ParseError(String input, int offset, int resumeOffset, List<ICategory<String>> expectedTerminals) {
+		this.input = input;
+		this.offset = offset;
+		this.resumeOffset = resumeOffset;
+		this.expectedTerminals = Collections.unmodifiableList(expectedTerminals);
+	}
+
+	/**
+	 * @return the position of the first character that could not be parsed
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the line of the error (starting at 1)
+	 */
+	public int getLine() {
+		int line = 1;
+		for (int i = 0; i < offset; i++) {
+			if (input.charAt(i) == '\n') {
+				line++;
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * @return the column of the error (starting at 1)
+	 */
+	public int getColumn() {
+		return offset - (input.lastIndexOf('\n', offset - 1) + 1) + 1;
+	}
+
+	/**
+	 * Returns the position where parsing was resumed after this error, or the length of the input
+	 * if no position to resume parsing was found.
+	 *
+	 * @return the resynchronization position
+	 */
+	public int getResumeOffset() {
+		return resumeOffset;
+	}
+
+	public boolean isUnexpectedEndOfInput() {
+		return offset == input.length();
+	}
+
+	/**
+	 * Returns the terminals the grammar allows at the position of the error. Literals are plain
+	 * categories (the name is the text of the literal), all other terminals are regular expressions.
+	 *
+	 * @return the expected terminals
+	 */
+	public List<ICategory<String>> getExpectedTerminals() {
+		return expectedTerminals;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(getLine()).append(':').append(getColumn()).append(": ");
+		if (isUnexpectedEndOfInput()) {
+			sb.append("unexpected end of input");
+		} else {
+			sb.append("unexpected '").append(input.charAt(offset)).append('\'');
+		}
+		if (!expectedTerminals.isEmpty()) {
+			sb.append(", expected one of:");
+			for (ICategory<String> terminal : expectedTerminals) {
+				sb.append(' ');
+				if (terminal.getClass() == Category.class) {
+					sb.append('"').append(terminal.getName()).append('"');
+				} else {
+					sb.append(terminal.getName());
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,663 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import sdf.model.Production;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.IRuleAnnotation;
+import de.tud.stg.parlex.core.Rule;
+import de.tud.stg.parlex.core.ruleannotations.AvoidAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.PreferAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.RejectAnnotation;
+
+/**
+ * The shared packed parse forest (SPPF) of an input: all derivations of the input, not only the
+ * one selected by the parser. The forest is binarized, so its size is polynomial in the length of
+ * the input even if the number of derivations is exponential (or infinite for cyclic grammars).
+ *
+ * <p>The forest consists of three kinds of nodes:
+ * <ul>
+ * <li>{@link SymbolNode}s: a category deriving the text between two positions. Terminal nodes have no alternatives.</li>
+ * <li>{@link IntermediateNode}s: the first symbols of the RHS of a rule (up to a dot) deriving the text between
+ * two positions. They are used to binarize the derivations of rules with more than two symbols.</li>
+ * <li>{@link PackedNode}s: the alternatives of symbol and intermediate nodes. A packed node splits the text of its
+ * parent at a pivot position; the left child derives the text before the pivot, the right child the text after it.</li>
+ * </ul>
+ * A node with more than one packed node is ambiguous. {@link #getAmbiguities(int)} reports the ambiguous
+ * symbol nodes without enumerating the derivations.
+ *
+ * <p>The forest is extracted from the earley sets of a separate recognizer (see {@link ForestParser}), since the
+ * chart of the parlex parser only provides the selected derivation. The number of nodes is limited; if the limit
+ * is reached, the remaining nodes are not expanded and {@link #isTruncated()} returns true.
+ *
+ * <p>The rule annotations are applied to the forest afterwards, so it only contains the derivations the parser
+ * can select: a symbol node with an alternative using a <code>reject</code> rule is removed together with all
+ * alternatives using it, and of the alternatives of a symbol node, those using <code>prefer</code> rules are kept
+ * if there are any, and those using <code>avoid</code> rules are removed if there are others.
+ *
+ * @see ParseResult#getParseForest()
+ *
+ */
+public class ParseForest {
+
+	/**
+	 * The default maximum number of nodes (of all kinds) of a forest.
+	 */
+	public static final int DEFAULT_MAX_NODES = 1000000;
+
+	private final GeneratedGrammar generatedGrammar;
+	private final String input;
+	private final int maxNodes;
+	private final HashMap<NodeKey, Node> nodes = new HashMap<NodeKey, Node>();
+	private final List<Node> unexpanded = new ArrayList<Node>();
+	private ForestParser recognizer;
+	private CompactChart chart;
+	private SymbolNode root;
+	private int nodeCount;
+	private boolean truncated;
+
+	private ParseForest(GeneratedGrammar generatedGrammar, String input, int maxNodes) {
+		this.generatedGrammar = generatedGrammar;
+		this.input = input;
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Creates the parse forest of the input.
+	 *
+	 * @param generatedGrammar	the grammar
+	 * @param input				the input
+	 * @param maxNodes			the maximum number of nodes of the forest
+	 * @return the forest, or null if the input is not valid
+	 * @throws IllegalArgumentException if maxNodes is less than 1
+	 */
+	public static ParseForest create(GeneratedGrammar generatedGrammar, String input, int maxNodes) {
+		if (maxNodes < 1) {
+			throw new IllegalArgumentException("maxNodes must be at least 1");
+		}
+		ForestParser recognizer = generatedGrammar.getForestParser();
+		CompactChart chart = recognizer.recognize(input);
+		if (!recognizer.isAccepted(chart)) {
+			return null;
+		}
+		ParseForest forest = new ParseForest(generatedGrammar, input, maxNodes);
+		forest.build(recognizer, chart);
+		return forest;
+	}
+
+	private void build(ForestParser recognizer, CompactChart chart) {
+		this.recognizer = recognizer;
+		this.chart = chart;
+		IRule<String> startRule = recognizer.getRule(recognizer.getStartRuleIndex());
+		root = getSymbolNode(startRule.getLhs(), 0, input.length());
+		while (!unexpanded.isEmpty() && !truncated) {
+			Node node = unexpanded.remove(unexpanded.size() - 1);
+			expand(node);
+			node.expanded = !truncated;
+		}
+		applyRejects();
+		applyPreferences();
+		// the earley sets are not needed anymore
+		this.recognizer = null;
+		this.chart = null;
+		unexpanded.clear();
+	}
+
+	private void expand(Node node) {
+		if (node instanceof IntermediateNode) {
+			IntermediateNode intermediate = (IntermediateNode)node;
+			expandItem(node, intermediate.ruleIndex, intermediate.dot, node.start, node.end);
+		} else if (!((SymbolNode)node).isTerminal()) {
+			ICategory<String> category = ((SymbolNode)node).category;
+			for (Integer rule : recognizer.getCompletedItems(chart, node.end, category, node.start)) {
+				expandItem(node, rule, recognizer.getRule(rule).getRhs().size(), node.start, node.end);
+			}
+		}
+	}
+
+	/**
+	 * Adds the packed nodes for the item (rule, dot, start) completed at end to the node.
+	 */
+	private void expandItem(Node node, int ruleIndex, int dot, int start, int end) {
+		IRule<String> rule = recognizer.getRule(ruleIndex);
+		if (dot == 0) {
+			// epsilon rule
+			addPackedNode(node, new PackedNode(rule, start, null, null));
+			return;
+		}
+		ICategory<String> last = rule.getRhs().get(dot - 1);
+		for (Integer pivot : recognizer.getOrigins(chart, end, last)) {
+			if (truncated) {
+				return;
+			}
+			if (dot == 1) {
+				if (pivot == start) {
+					addPackedNode(node, new PackedNode(rule, pivot, null, getSymbolNode(last, pivot, end)));
+				}
+			} else if (pivot >= start && recognizer.containsItem(chart, pivot, ruleIndex, dot - 1, start)) {
+				Node left;
+				if (dot == 2) {
+					left = getSymbolNode(rule.getRhs().get(0), start, pivot);
+				} else {
+					left = getIntermediateNode(ruleIndex, dot - 1, start, pivot);
+				}
+				addPackedNode(node, new PackedNode(rule, pivot, left, getSymbolNode(last, pivot, end)));
+			}
+		}
+	}
+
+	/**
+	 * Removes the symbol nodes with an alternative using a reject rule, and all alternatives using
+	 * a removed node. Nodes whose alternatives are all removed are removed as well.
+	 */
+	private void applyRejects() {
+		List<Node> removed = new ArrayList<Node>();
+		for (Node node : nodes.values()) {
+			if (node instanceof SymbolNode) {
+				for (PackedNode packed : node.alternatives) {
+					if (hasAnnotation(packed.rule, RejectAnnotation.class)) {
+						removed.add(node);
+						break;
+					}
+				}
+			}
+		}
+		if (removed.isEmpty()) {
+			return;
+		}
+
+		IdentityHashMap<Node, List<Node>> parents = new IdentityHashMap<Node, List<Node>>();
+		for (Node node : nodes.values()) {
+			for (PackedNode packed : node.alternatives) {
+				addParent(parents, packed.left, node);
+				addParent(parents, packed.right, node);
+			}
+		}
+		IdentityHashMap<Node, Boolean> isRemoved = new IdentityHashMap<Node, Boolean>();
+		for (Node node : removed) {
+			isRemoved.put(node, Boolean.TRUE);
+			node.alternatives.clear();
+		}
+		while (!removed.isEmpty()) {
+			Node node = removed.remove(removed.size() - 1);
+			List<Node> nodeParents = parents.get(node);
+			if (nodeParents == null) {
+				continue;
+			}
+			for (Node parent : nodeParents) {
+				if (isRemoved.containsKey(parent)) {
+					continue;
+				}
+				for (Iterator<PackedNode> it = parent.alternatives.iterator(); it.hasNext(); ) {
+					PackedNode packed = it.next();
+					if (packed.left == node || packed.right == node) {
+						it.remove();
+					}
+				}
+				if (parent.alternatives.isEmpty()) {
+					isRemoved.put(parent, Boolean.TRUE);
+					removed.add(parent);
+				}
+			}
+		}
+	}
+
+	private static void addParent(IdentityHashMap<Node, List<Node>> parents, Node child, Node parent) {
+		if (child == null) {
+			return;
+		}
+		List<Node> list = parents.get(child);
+		if (list == null) {
+			list = new ArrayList<Node>(1);
+			parents.put(child, list);
+		}
+		list.add(parent);
+	}
+
+	/**
+	 * Keeps only the alternatives using prefer rules of the symbol nodes that have any, and removes the
+	 * alternatives using avoid rules of the symbol nodes that have other alternatives.
+	 */
+	private void applyPreferences() {
+		for (Node node : nodes.values()) {
+			if (!(node instanceof SymbolNode) || node.alternatives.size() < 2) {
+				continue;
+			}
+			List<PackedNode> preferred = new ArrayList<PackedNode>();
+			List<PackedNode> notAvoided = new ArrayList<PackedNode>();
+			for (PackedNode packed : node.alternatives) {
+				if (hasAnnotation(packed.rule, PreferAnnotation.class)) {
+					preferred.add(packed);
+				}
+				if (!hasAnnotation(packed.rule, AvoidAnnotation.class)) {
+					notAvoided.add(packed);
+				}
+			}
+			List<PackedNode> kept = !preferred.isEmpty() ? preferred : notAvoided;
+			if (!kept.isEmpty() && kept.size() < node.alternatives.size()) {
+				node.alternatives.retainAll(kept);
+			}
+		}
+	}
+
+	static boolean hasAnnotation(IRule<String> rule, Class<? extends IRuleAnnotation> annotationClass) {
+		if (!(rule instanceof Rule)) {
+			return false;
+		}
+		for (IRuleAnnotation ann : ((Rule)rule).getAnnotations()) {
+			if (annotationClass.isInstance(ann)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addPackedNode(Node node, PackedNode packed) {
+		if (count()) {
+			node.alternatives.add(packed);
+		}
+	}
+
+	private SymbolNode getSymbolNode(ICategory<String> category, int start, int end) {
+		NodeKey key = new NodeKey(category, 0, start, end);
+		Node node = nodes.get(key);
+		if (node == null && count()) {
+			node = new SymbolNode(category, start, end);
+			nodes.put(key, node);
+			unexpanded.add(node);
+		}
+		return (SymbolNode)node;
+	}
+
+	private IntermediateNode getIntermediateNode(int ruleIndex, int dot, int start, int end) {
+		NodeKey key = new NodeKey(ruleIndex, dot, start, end);
+		Node node = nodes.get(key);
+		if (node == null && count()) {
+			node = new IntermediateNode(recognizer.getRule(ruleIndex), ruleIndex, dot, start, end);
+			nodes.put(key, node);
+			unexpanded.add(node);
+		}
+		return (IntermediateNode)node;
+	}
+
+	/**
+	 * Counts a new node.
+	 * @return false if the maximum number of nodes has been reached
+	 */
+	private boolean count() {
+		if (nodeCount >= maxNodes) {
+			truncated = true;
+			return false;
+		}
+		nodeCount++;
+		return true;
+	}
+
+	/**
+	 * @return the symbol node of the start symbol for the whole input
+	 */
+	public SymbolNode getRoot() {
+		return root;
+	}
+
+	public String getInput() {
+		return input;
+	}
+
+	/**
+	 * @return the number of nodes (of all kinds) in the forest
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns true if the maximum number of nodes was reached. In this case, some nodes do not have
+	 * any alternatives, and some ambiguities may be missing.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Returns the ambiguous symbol nodes of the forest, ordered by their start position. Ambiguities
+	 * containing other ambiguities come first.
+	 * A symbol node is ambiguous if the children of one of its nodes in the parse tree can be chosen in
+	 * more than one way, i.e. if it has several alternatives or if the intermediate nodes of its rules do.
+	 * Ambiguities of descendants are reported separately, so each ambiguity is reported once, at the smallest
+	 * node containing it.
+	 *
+	 * <p>Every node of the forest is visited at most once, derivations are never enumerated.
+	 *
+	 * @param max	the maximum number of ambiguities to return
+	 * @return the ambiguities
+	 */
+	public List<Ambiguity> getAmbiguities(int max) {
+		List<Ambiguity> result = new ArrayList<Ambiguity>();
+		IdentityHashMap<Node, Integer> choices = new IdentityHashMap<Node, Integer>();
+		IdentityHashMap<Node, Boolean> visited = new IdentityHashMap<Node, Boolean>();
+		List<Node> stack = new ArrayList<Node>();
+		stack.add(root);
+		visited.put(root, Boolean.TRUE);
+		while (!stack.isEmpty() && result.size() < max) {
+			Node node = stack.remove(stack.size() - 1);
+			if (node instanceof SymbolNode) {
+				int alternatives = getChoices(node, choices);
+				if (alternatives > 1) {
+					result.add(createAmbiguity((SymbolNode)node, alternatives));
+				}
+			}
+			for (PackedNode packed : node.alternatives) {
+				Node[] children = { packed.left, packed.right };
+				for (Node child : children) {
+					if (child != null && !visited.containsKey(child)) {
+						visited.put(child, Boolean.TRUE);
+						stack.add(child);
+					}
+				}
+			}
+		}
+		Collections.sort(result, new Comparator<Ambiguity>() {
+			@Override
+			public int compare(Ambiguity a1, Ambiguity a2) {
+				if (a1.getStart() != a2.getStart()) {
+					return a1.getStart() < a2.getStart() ? -1 : 1;
+				}
+				return a1.getEnd() > a2.getEnd() ? -1 : (a1.getEnd() == a2.getEnd() ? 0 : 1);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the number of ways to choose the children of the node, without the choices within the children.
+	 * Intermediate nodes are part of their parent, so their choices are included. The number of intermediate
+	 * nodes below a node is less than the length of the longest rule, so this is computed recursively.
+	 */
+	private int getChoices(Node node, IdentityHashMap<Node, Integer> choices) {
+		Integer cached = choices.get(node);
+		if (cached != null) {
+			return cached;
+		}
+		long sum = 0;
+		for (PackedNode packed : node.alternatives) {
+			sum += packed.left instanceof IntermediateNode ? getChoices(packed.left, choices) : 1;
+			if (sum >= Integer.MAX_VALUE) {
+				sum = Integer.MAX_VALUE;
+				break;
+			}
+		}
+		choices.put(node, (int)sum);
+		return (int)sum;
+	}
+
+	private Ambiguity createAmbiguity(SymbolNode node, int alternatives) {
+		Set<IRule<String>> rules = new LinkedHashSet<IRule<String>>();
+		for (PackedNode packed : node.alternatives) {
+			rules.add(packed.rule);
+		}
+		List<Production> productions = new ArrayList<Production>();
+		for (IRule<String> rule : rules) {
+			if (rule instanceof Rule) {
+				ProductionMapping mapping = generatedGrammar.getRuleDescriptor((Rule)rule).getProductionMapping();
+				if (mapping != null && mapping.getProduction() != null && !productions.contains(mapping.getProduction())) {
+					productions.add(mapping.getProduction());
+				}
+			}
+		}
+		return new Ambiguity(node.category, node.start, node.end, input.substring(node.start, node.end),
+				new ArrayList<IRule<String>>(rules), productions, alternatives);
+	}
+
+	/**
+	 * Returns the number of derivations of the input. The number is computed from the forest in
+	 * linear time and saturates at {@link Long#MAX_VALUE}, which is also returned if the forest is cyclic
+	 * (i.e. there are infinitely many derivations). If the forest is truncated, nodes that were not expanded
+	 * are counted as a single derivation.
+	 *
+	 * @return the number of derivations
+	 */
+	public long getTreeCount() {
+		IdentityHashMap<Node, Long> counts = new IdentityHashMap<Node, Long>();
+		// nodes on the stack whose children are being counted
+		IdentityHashMap<Node, Boolean> inProgress = new IdentityHashMap<Node, Boolean>();
+		List<Node> stack = new ArrayList<Node>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			Node node = stack.get(stack.size() - 1);
+			if (counts.containsKey(node)) {
+				stack.remove(stack.size() - 1);
+			} else if (!inProgress.containsKey(node)) {
+				inProgress.put(node, Boolean.TRUE);
+				for (PackedNode packed : node.alternatives) {
+					if (packed.left != null && !counts.containsKey(packed.left) && !inProgress.containsKey(packed.left)) {
+						stack.add(packed.left);
+					}
+					if (packed.right != null && !counts.containsKey(packed.right) && !inProgress.containsKey(packed.right)) {
+						stack.add(packed.right);
+					}
+				}
+			} else {
+				stack.remove(stack.size() - 1);
+				inProgress.remove(node);
+				counts.put(node, countTrees(node, counts));
+			}
+		}
+		return counts.get(root);
+	}
+
+	private long countTrees(Node node, IdentityHashMap<Node, Long> counts) {
+		if (node.alternatives.isEmpty()) {
+			// terminals and nodes that were not expanded
+			return 1;
+		}
+		long sum = 0;
+		for (PackedNode packed : node.alternatives) {
+			long product = multiply(getCount(packed.left, counts), getCount(packed.right, counts));
+			sum = product > Long.MAX_VALUE - sum ? Long.MAX_VALUE : sum + product;
+		}
+		return sum;
+	}
+
+	private static long getCount(Node node, IdentityHashMap<Node, Long> counts) {
+		if (node == null) {
+			return 1;
+		}
+		Long count = counts.get(node);
+		// not counted yet: the node is an ancestor, so the forest is cyclic
+		return count != null ? count : Long.MAX_VALUE;
+	}
+
+	private static long multiply(long a, long b) {
+		if (a == 0 || b == 0) {
+			return 0;
+		}
+		return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+	}
+
+	/**
+	 * A symbol or intermediate node of the forest.
+	 */
+	public static abstract class Node {
+		final int start;
+		final int end;
+		final List<PackedNode> alternatives = new ArrayList<PackedNode>(1);
+		boolean expanded;
+
+		Node(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return the position of the first character covered by this node
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * @return the position after the last character covered by this node
+		 */
+		public int getEnd() {
+			return end;
+		}
+
+		/**
+		 * @return the packed nodes of this node
+		 */
+		public List<PackedNode> getAlternatives() {
+			return Collections.unmodifiableList(alternatives);
+		}
+
+		/**
+		 * @return true if this node has more than one alternative
+		 */
+		public boolean isAmbiguous() {
+			return alternatives.size() > 1;
+		}
+
+		/**
+		 * @return false if the alternatives of this node are missing because the forest was truncated
+		 */
+		public boolean isExpanded() {
+			return expanded;
+		}
+	}
+
+	/**
+	 * A category deriving the text between two positions.
+	 */
+	public static class SymbolNode extends Node {
+		private final ICategory<String> category;
+
+		SymbolNode(ICategory<String> category, int start, int end) {
+			super(start, end);
+			this.category = category;
+		}
+
+		public ICategory<String> getCategory() {
+			return category;
+		}
+
+		public boolean isTerminal() {
+			return category.isTerminal();
+		}
+
+		@Override
+		public String toString() {
+			return "(" + category + ", " + getStart() + ", " + getEnd() + ")";
+		}
+	}
+
+	/**
+	 * The first symbols of the RHS of a rule, up to the dot, deriving the text between two positions.
+	 */
+	public static class IntermediateNode extends Node {
+		private final IRule<String> rule;
+		private final int ruleIndex;
+		private final int dot;
+
+		IntermediateNode(IRule<String> rule, int ruleIndex, int dot, int start, int end) {
+			super(start, end);
+			this.rule = rule;
+			this.ruleIndex = ruleIndex;
+			this.dot = dot;
+		}
+
+		public IRule<String> getRule() {
+			return rule;
+		}
+
+		/**
+		 * @return the number of symbols of the RHS of the rule covered by this node
+		 */
+		public int getDot() {
+			return dot;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + rule + " @" + dot + ", " + getStart() + ", " + getEnd() + ")";
+		}
+	}
+
+	/**
+	 * An alternative of a symbol or intermediate node.
+	 */
+	public static class PackedNode {
+		private final IRule<String> rule;
+		private final int pivot;
+		private final Node left;
+		private final SymbolNode right;
+
+		PackedNode(IRule<String> rule, int pivot, Node left, SymbolNode right) {
+			this.rule = rule;
+			this.pivot = pivot;
+			this.left = left;
+			this.right = right;
+		}
+
+		public IRule<String> getRule() {
+			return rule;
+		}
+
+		/**
+		 * @return the position where the text of the parent is split between the children
+		 */
+		public int getPivot() {
+			return pivot;
+		}
+
+		/**
+		 * @return the node for the symbols of the rule before the last one, or null
+		 */
+		public Node getLeft() {
+			return left;
+		}
+
+		/**
+		 * @return the node for the last symbol of the rule, or null for epsilon rules
+		 */
+		public SymbolNode getRight() {
+			return right;
+		}
+	}
+
+	private static final class NodeKey {
+		private final Object item;
+		private final int dot;
+		private final int start;
+		private final int end;
+
+		NodeKey(Object item, int dot, int start, int end) {
+			this.item = item;
+			this.dot = dot;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((item.hashCode() * 31 + dot) * 31 + start) * 31 + end;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NodeKey))
+				return false;
+			NodeKey other = (NodeKey) obj;
+			return dot == other.dot && start == other.start && end == other.end && item.equals(other.item);
+		}
+	}
+
+}
@@ -1,6 +1,20 @@
 package sdf;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import jjtraveler.Visitable;
+import sdf.ParseStageEvent.Counter;
+import sdf.ParseStageEvent.Stage;
+import sdf.model.Production;
 import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermInt;
+import aterm.pure.SingletonFactory;
 import de.tud.stg.parlex.ast.IAbstractNode;
 import de.tud.stg.parlex.parser.earley.Chart;
 
@@ -11,6 +25,11 @@ import de.tud.stg.parlex.parser.earley.Chart;
  * <li>The parse tree generated by the earley parser</li>
  * <li>The AST built using the cons annotations in the SDF grammar</li>
  * </ul>
+ * If the input was invalid and the parser was created with error recovery enabled, this class
+ * provides the syntax errors and the AST of the longest valid prefix of the input instead.
+ * 
+ * <p>The parse tree contains only one derivation of an ambiguous input. The other derivations
+ * can be found using {@link #getAmbiguities()} and {@link #getParseForest()}.
  * 
  * @author Pablo Hoch
  *
@@ -18,56 +37,272 @@ import de.tud.stg.parlex.parser.earley.Chart;
 public class ParseResult {
 	
 	public enum ASTAlgorithm {
+		/** see {@link ATermConstructor} */
 		CONS,
-		CONS_WITH_SKIP
+		/** see {@link ATermConstructorWithSkip} */
+		CONS_WITH_SKIP,
+		/**
+		 * the AST of {@link #CONS_WITH_SKIP}, built in one pass from the earley sets of a separate recognizer
+		 * without creating a parse tree (see {@link ChartATermConstructor}). A {@link CompiledSdfParser} builds
+		 * the AST while parsing and only runs the earley parser if the chart or the parse tree is requested.
+		 * For other results, the AST is built from the parse tree.
+		 */
+		CONS_WITH_SKIP_FROM_CHART
 	};
 	
 	public static ASTAlgorithm DEFAULT_AST_ALGORITHM = ASTAlgorithm.CONS_WITH_SKIP;
+	
+	/**
+	 * Determines which annotations are added to the nodes of the AST.
+	 * For NONE and LABELS, the rule and production of a node can be retrieved using
+	 * {@link ParseResult#getRuleDescriptor(ATerm)} and {@link ParseResult#getProduction(ATerm)}.
+	 */
+	public enum AnnotationPolicy {
+		/** no annotations */
+		NONE,
+		/** only {@code label} annotations */
+		LABELS,
+		/** all annotations (see {@link ATermConstructor}) */
+		FULL,
+		/**
+		 * all annotations except {@code production}, the production string can be resolved
+		 * from the {@code productionIndex} annotation when needed (see {@link #getProductionString(ATerm)})
+		 */
+		INDEXED
+	};
+	
+	public static AnnotationPolicy DEFAULT_ANNOTATION_POLICY = AnnotationPolicy.FULL;
+	
+	/**
+	 * The maximum number of ambiguities returned by {@link #getAmbiguities()}.
+	 */
+	public static int MAX_AMBIGUITIES = 100;
+
+	private static final ATerm PRODUCTION_ANNOTATION = SingletonFactory.getInstance().parse("production");
+	private static final ATerm PRODUCTION_INDEX_ANNOTATION = SingletonFactory.getInstance().parse("productionIndex");
 
 	private boolean valid;
 	private IAbstractNode parseTree;
 	private ATerm consTree;
-	private ProductionIndex productionIndex;
 	private Chart chart;
 	private GeneratedGrammar generatedGrammar;
 	private ASTAlgorithm astAlgorithm;
+	private AnnotationPolicy annotationPolicy;
+	private IdentityHashMap<ATerm, RuleDescriptor> nodeRules;
+	private List<ParseError> errors = Collections.emptyList();
+	private ParseResult validPrefix;
+	private CharSequence input;
+	private CompiledSdfParser parser;
+	private IncrementalTree incrementalTree;
 	
 	public ParseResult(GeneratedGrammar generatedGrammar, Chart chart) {
+		this(generatedGrammar, chart, DEFAULT_AST_ALGORITHM);
+	}
+	
+	public ParseResult(GeneratedGrammar generatedGrammar, Chart chart, ASTAlgorithm astAlgorithm) {
+		this(generatedGrammar, chart, astAlgorithm, DEFAULT_ANNOTATION_POLICY);
+	}
+	
+	/**
+	 * Creates a ParseResult using the given AST algorithm and annotation policy.
+	 * 
+	 * <p>The parse tree is only extracted from the chart when it is needed, i.e. when
+	 * the parse tree or the AST is requested. A parse tree extracted to build the AST is not
+	 * kept, so it can be garbage collected as soon as the AST has been built.
+	 * 
+	 * @param generatedGrammar	the grammar used for parsing
+	 * @param chart				the chart created by the earley parser
+	 * @param astAlgorithm		the algorithm used to build the AST
+	 * @param annotationPolicy	the annotations to add to the AST
+	 */
+	public ParseResult(GeneratedGrammar generatedGrammar, Chart chart, ASTAlgorithm astAlgorithm,
+			AnnotationPolicy annotationPolicy) {
+		this(generatedGrammar, chart, astAlgorithm, annotationPolicy, null, null);
+	}
+	
+	/**
+	 * Creates the ParseResult of a {@link CompiledSdfParser}, which also stores the input.
+	 */
+	ParseResult(GeneratedGrammar generatedGrammar, Chart chart, ASTAlgorithm astAlgorithm,
+			AnnotationPolicy annotationPolicy, String input, CompiledSdfParser parser) {
 		this.generatedGrammar = generatedGrammar;
 		this.chart = chart;
 		this.valid = chart.isValidParse();
-		this.astAlgorithm = DEFAULT_AST_ALGORITHM;
-		if (valid) {
-			this.parseTree = chart.getAST();
-		}
+		this.astAlgorithm = astAlgorithm;
+		this.annotationPolicy = annotationPolicy;
+		this.input = input;
+		this.parser = parser;
+	}
+	
+	/**
+	 * Creates the ParseResult of an input found to be invalid without a chart. The chart is only
+	 * created (by a full parse of the input) if it is requested.
+	 */
+	ParseResult(GeneratedGrammar generatedGrammar, ASTAlgorithm astAlgorithm, AnnotationPolicy annotationPolicy,
+			CharSequence input, CompiledSdfParser parser) {
+		this.generatedGrammar = generatedGrammar;
+		this.valid = false;
+		this.astAlgorithm = astAlgorithm;
+		this.annotationPolicy = annotationPolicy;
+		this.input = input;
+		this.parser = parser;
+	}
+	
+	/**
+	 * Creates the ParseResult of an input accepted by the recognizer of the grammar and builds the AST
+	 * from its earley sets (see {@link ASTAlgorithm#CONS_WITH_SKIP_FROM_CHART}). The earley sets are not kept,
+	 * the chart is only created (by a full parse of the input) if it is requested. The result is not valid if
+	 * no derivation remains after applying reject, prefer and avoid annotations and priorities.
+	 */
+	ParseResult(GeneratedGrammar generatedGrammar, CompactChart compactChart, ASTAlgorithm astAlgorithm,
+			AnnotationPolicy annotationPolicy, CharSequence input, CompiledSdfParser parser) {
+		this.generatedGrammar = generatedGrammar;
+		this.astAlgorithm = astAlgorithm;
+		this.annotationPolicy = annotationPolicy;
+		this.input = input;
+		this.parser = parser;
+		this.valid = constructTree(compactChart);
+	}
+	
+	/**
+	 * Creates the ParseResult of an incremental reparse. The input is valid, the AST is built from
+	 * the given tree. The chart is only created (by a full parse of the input) if it is requested.
+	 */
+	ParseResult(GeneratedGrammar generatedGrammar, IncrementalTree incrementalTree, ASTAlgorithm astAlgorithm,
+			AnnotationPolicy annotationPolicy, String input, CompiledSdfParser parser) {
+		this.generatedGrammar = generatedGrammar;
+		this.incrementalTree = incrementalTree;
+		this.valid = true;
+		this.astAlgorithm = astAlgorithm;
+		this.annotationPolicy = annotationPolicy;
+		this.input = input;
+		this.parser = parser;
 	}
 	
 	private void constructTree() {
 		ATermConstructor atermConstructor;
+		IAbstractNode tree;
+		if (incrementalTree != null) {
+			tree = incrementalTree.getRoot();
+		} else if (parseTree != null) {
+			tree = parseTree;
+		} else {
+			// the tree is only needed to build the AST, so it is not kept
+			tree = extractParseTree();
+		}
+		StageTimer timer = StageTimer.start(getParseStageListener(), Stage.CONS_TREE, getTopLevelModuleName());
 		
 		switch (astAlgorithm) {
 		case CONS:
-			atermConstructor = new ATermConstructor(generatedGrammar, parseTree);
+			atermConstructor = new ATermConstructor(generatedGrammar, tree, annotationPolicy);
 			break;
 		case CONS_WITH_SKIP:
-			atermConstructor = new ATermConstructorWithSkip(generatedGrammar, parseTree);
+		case CONS_WITH_SKIP_FROM_CHART:
+			atermConstructor = new ATermConstructorWithSkip(generatedGrammar, tree, annotationPolicy);
 			break;
 		default:
 			throw new RuntimeException("Invalid AST Algorithm!");
 		}
+		if (incrementalTree != null) {
+			atermConstructor.setReplacedNodes(incrementalTree.getReplacedNodes());
+		}
 		
 		this.consTree = atermConstructor.constructTree();
-		this.productionIndex = atermConstructor.getProductionIndex();
+		this.nodeRules = atermConstructor.getNodeRules();
+		if (timer != null) {
+			timer.count(Counter.TREE_NODES, countNodes(consTree)).stop();
+		}
+	}
+	
+	/**
+	 * Builds the AST from the earley sets of the recognizer of the grammar, without a parse tree
+	 * (see {@link ChartATermConstructor}).
+	 * 
+	 * @return false if no derivation could be selected from the earley sets
+	 */
+	private boolean constructTree(CompactChart compactChart) {
+		StageTimer timer = StageTimer.start(getParseStageListener(), Stage.CONS_TREE, getTopLevelModuleName());
+		ATermConstructor atermConstructor = new ATermConstructorWithSkip(generatedGrammar, null, annotationPolicy);
+		ATerm tree = new ChartATermConstructor(generatedGrammar, generatedGrammar.getForestParser(), compactChart,
+				input, atermConstructor).constructTree();
+		if (tree == null) {
+			return false;
+		}
+		this.consTree = tree;
+		this.nodeRules = atermConstructor.getNodeRules();
+		if (timer != null) {
+			timer.count(Counter.TREE_NODES, countNodes(consTree)).stop();
+		}
+		return true;
+	}
+	
+	private ParseStageListener getParseStageListener() {
+		return parser == null ? null : parser.getParseStageListener();
+	}
+	
+	private String getTopLevelModuleName() {
+		return parser == null ? null : parser.getTopLevelModuleName();
+	}
+	
+	/**
+	 * Returns the number of distinct nodes of the AST. ATerms are maximally shared, so equal
+	 * subtrees are counted once.
+	 */
+	private static int countNodes(ATerm root) {
+		IdentityHashMap<Visitable, Boolean> visited = new IdentityHashMap<Visitable, Boolean>();
+		List<Visitable> stack = new ArrayList<Visitable>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			Visitable node = stack.remove(stack.size() - 1);
+			if (visited.put(node, Boolean.TRUE) == null) {
+				for (int i = 0; i < node.getChildCount(); i++) {
+					stack.add(node.getChildAt(i));
+				}
+			}
+		}
+		return visited.size();
+	}
+	
+	private static int countNodes(IAbstractNode root) {
+		int count = 0;
+		List<IAbstractNode> stack = new ArrayList<IAbstractNode>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			IAbstractNode node = stack.remove(stack.size() - 1);
+			count++;
+			if (node.getChildren() != null) {
+				stack.addAll(node.getChildren());
+			}
+		}
+		return count;
 	}
 
 	public boolean isValid() {
 		return valid;
 	}
 
+	/**
+	 * Returns the parse tree. The parse tree is extracted from the chart when it is first requested
+	 * and kept afterwards. For results of an incremental reparse, the parse tree is created by a full
+	 * parse of the input.
+	 */
 	public IAbstractNode getParseTree() {
+		if (valid && parseTree == null) {
+			this.parseTree = extractParseTree();
+		}
 		return parseTree;
 	}
 
+	private IAbstractNode extractParseTree() {
+		Chart parseChart = getParseChart();
+		StageTimer timer = StageTimer.start(getParseStageListener(), Stage.PARSE_TREE, getTopLevelModuleName());
+		IAbstractNode tree = parseChart.getAST();
+		if (timer != null) {
+			timer.count(Counter.TREE_NODES, countNodes(tree)).stop();
+		}
+		return tree;
+	}
+
 	public ATerm getConsTree() {
 		if (valid && consTree == null) {
 			// build tree
@@ -76,17 +311,202 @@ public class ParseResult {
 		return consTree;
 	}
 	
+	/**
+	 * Writes the AST to a stream using a shared ATerm format, which is much faster to read than the
+	 * textual representation. Use {@link ATermSerializer#read(java.io.InputStream)} to read it. The stream is not closed.
+	 * 
+	 * <p>With the {@link AnnotationPolicy#INDEXED INDEXED} annotation policy, the nodes only carry the
+	 * production ids, which can be resolved by the reader if it has the same grammar.
+	 * 
+	 * @param out		the stream to write to
+	 * @param format	the format
+	 * @throws IOException if the stream cannot be written
+	 * @throws IllegalStateException if the input is not valid
+	 */
+	public void writeConsTree(OutputStream out, ATermSerializer.Format format) throws IOException {
+		ATerm tree = getConsTree();
+		if (tree == null) {
+			throw new IllegalStateException("No AST available, the input is not valid");
+		}
+		ATermSerializer.write(tree, out, format);
+	}
+	
+	/**
+	 * Returns the production index of the grammar, which is used by the {@code productionIndex} annotations.
+	 * 
+	 * @return the production index
+	 */
 	public ProductionIndex getProductionIndex() {
-		if (valid && consTree == null) {
-			// build tree
-			constructTree();
+		return generatedGrammar.getProductionIndex();
+	}
+	
+	/**
+	 * Returns the string representation of the SDF production that created the given node of the AST,
+	 * as stored in the {@code production} annotation with the {@link AnnotationPolicy#FULL FULL}
+	 * annotation policy. With the {@link AnnotationPolicy#INDEXED INDEXED} policy, the string is resolved
+	 * from the {@code productionIndex} annotation, otherwise from the rule of the node.
+	 * 
+	 * @param node	a node of the AST returned by {@link #getConsTree()}, or a term created from it,
+	 * 				e.g. by reading a serialized AST
+	 * @return the production string, or null if not available
+	 */
+	public ATermAppl getProductionString(ATerm node) {
+		ATerm production = node.getAnnotation(PRODUCTION_ANNOTATION);
+		if (production instanceof ATermAppl) {
+			return (ATermAppl)production;
 		}
-		return productionIndex;
+		ATerm index = node.getAnnotation(PRODUCTION_INDEX_ANNOTATION);
+		if (index instanceof ATermInt) {
+			return getProductionIndex().getProductionString(((ATermInt)index).getInt());
+		}
+		RuleDescriptor rule = getRuleDescriptor(node);
+		return rule == null ? null : rule.getProductionString();
+	}
+	
+	/**
+	 * Returns the descriptor of the rule that created the given node of the AST.
+	 * Only available if the annotation policy is {@link AnnotationPolicy#NONE NONE} or
+	 * {@link AnnotationPolicy#LABELS LABELS}; with the other policies, this information is stored in the
+	 * annotations of the node.
+	 * 
+	 * <p>Nodes are looked up by identity. Since ATerms are maximally shared, equal nodes created by
+	 * different rules are the same object, in this case one of the rules is returned.
+	 * 
+	 * @param node	a node of the AST returned by {@link #getConsTree()}
+	 * @return the rule descriptor, or null if not available
+	 */
+	public RuleDescriptor getRuleDescriptor(ATerm node) {
+		getConsTree();
+		return nodeRules == null ? null : nodeRules.get(node);
+	}
+	
+	/**
+	 * Returns the SDF production that created the given node of the AST.
+	 * 
+	 * @param node	a node of the AST returned by {@link #getConsTree()}
+	 * @return the production, or null if not available
+	 * @see #getRuleDescriptor(ATerm)
+	 */
+	public Production getProduction(ATerm node) {
+		RuleDescriptor rule = getRuleDescriptor(node);
+		if (rule == null || rule.getProductionMapping() == null) {
+			return null;
+		}
+		return rule.getProductionMapping().getProduction();
+	}
+	
+	/**
+	 * Returns the syntax errors of the input. Errors are only searched if error recovery is enabled
+	 * (see {@link CompiledSdfParser#isErrorRecoveryEnabled()}).
+	 * 
+	 * @return the errors, in the order of their position in the input (empty for valid inputs
+	 * 			or if error recovery is not enabled)
+	 */
+	public List<ParseError> getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * Returns the AST of the longest valid prefix of an invalid input, if error recovery is enabled.
+	 * The prefix ends before the first error, at a token boundary.
+	 * 
+	 * @return the AST of the valid prefix, or null if the input is valid, no valid prefix was found
+	 * 			or error recovery is not enabled
+	 * @see #getValidPrefixResult()
+	 */
+	public ATerm getPartialConsTree() {
+		return validPrefix == null ? null : validPrefix.getConsTree();
+	}
+	
+	/**
+	 * @return the result of parsing the longest valid prefix of an invalid input, or null
+	 * @see #getPartialConsTree()
+	 */
+	public ParseResult getValidPrefixResult() {
+		return validPrefix;
+	}
+	
+	void setRecoveryResult(List<ParseError> errors, ParseResult validPrefix) {
+		this.errors = Collections.unmodifiableList(errors);
+		this.validPrefix = validPrefix;
 	}
 	
+	/**
+	 * Returns the chart of the parse. For results of an incremental reparse or of inputs rejected
+	 * by invalid input pre-screening, the chart is created by a full parse of the input when it is first requested.
+	 */
 	public Chart getParseChart() {
+		if (chart == null && parser != null) {
+			chart = parser.parseChart(getInput());
+		}
 		return chart;
 	}
+	
+	/**
+	 * Creates the shared packed parse forest containing all derivations of the input, using
+	 * at most {@link ParseForest#DEFAULT_MAX_NODES} nodes. The input is parsed again by a
+	 * separate recognizer on every call, so the forest should only be requested for diagnostics.
+	 * 
+	 * @return the parse forest, or null if the input is not valid or not available
+	 * @see #getInput()
+	 */
+	public ParseForest getParseForest() {
+		return getParseForest(ParseForest.DEFAULT_MAX_NODES);
+	}
+	
+	/**
+	 * Creates the shared packed parse forest containing all derivations of the input.
+	 * 
+	 * @param maxNodes	the maximum number of nodes of the forest
+	 * @return the parse forest, or null if the input is not valid or not available
+	 * @see #getParseForest()
+	 */
+	public ParseForest getParseForest(int maxNodes) {
+		if (!valid || input == null) {
+			return null;
+		}
+		return ParseForest.create(generatedGrammar, getInput(), maxNodes);
+	}
+	
+	/**
+	 * Returns the ambiguous parts of the input, with the competing rules and their SDF productions.
+	 * At most {@link #MAX_AMBIGUITIES} ambiguities are returned. Each call creates a new parse forest
+	 * (see {@link #getParseForest()}), but the derivations are never enumerated. Derivations removed by
+	 * <code>reject</code>, <code>prefer</code> and <code>avoid</code> annotations are not reported.
+	 * 
+	 * @return the ambiguities (empty if the input is not ambiguous, not valid or not available)
+	 */
+	public List<Ambiguity> getAmbiguities() {
+		ParseForest forest = getParseForest();
+		if (forest == null) {
+			return Collections.emptyList();
+		}
+		return forest.getAmbiguities(MAX_AMBIGUITIES);
+	}
+	
+	/**
+	 * Returns the parsed input. If the input was not a string (e.g. a {@link MappedCharSequence} rejected
+	 * by invalid input pre-screening), it is copied into a string when it is first requested.
+	 * 
+	 * @return the parsed input, or null if the result was not created by a {@link CompiledSdfParser}
+	 */
+	public String getInput() {
+		if (input != null && !(input instanceof String)) {
+			input = input.toString();
+		}
+		return (String)input;
+	}
+	
+	/**
+	 * Returns the parse tree used for incremental reparsing, or null if the input is not valid.
+	 * For results of a full parse, it is created from the parse tree when it is first requested.
+	 */
+	IncrementalTree getIncrementalTree() {
+		if (incrementalTree == null && valid) {
+			incrementalTree = new IncrementalTree(getParseTree());
+		}
+		return incrementalTree;
+	}
 
 	public GeneratedGrammar getGeneratedGrammar() {
 		return generatedGrammar;
@@ -99,5 +519,17 @@ public class ParseResult {
 	public void setAstAlgorithm(ASTAlgorithm astAlgorithm) {
 		this.astAlgorithm = astAlgorithm;
 	}
+
+	public AnnotationPolicy getAnnotationPolicy() {
+		return annotationPolicy;
+	}
+
+	/**
+	 * Sets the annotation policy. Has no effect if the AST has already been built.
+	 * @param annotationPolicy
+	 */
+	public void setAnnotationPolicy(AnnotationPolicy annotationPolicy) {
+		this.annotationPolicy = annotationPolicy;
+	}
 	
 }
@@ -0,0 +1,111 @@
+package sdf;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The metrics of a completed stage, reported to a {@link ParseStageListener}: the wall time,
+ * the bytes allocated by the thread that ran the stage, and some counters depending on the stage.
+ *
+ */
+public class ParseStageEvent {
+
+	public enum Stage {
+		/** merging the imported modules ({@link ModuleMerger}), counts {@link Counter#MODULES} */
+		MERGE,
+		/** converting the merged module to a parlex grammar, counts {@link Counter#RULES_AFTER} */
+		CONVERSION,
+		/** removing unused rules ({@link GrammarCleaner}), counts {@link Counter#RULES_BEFORE} and {@link Counter#RULES_AFTER} */
+		CLEANING,
+		/** applying priorities to the grammar ({@link PriorityFilter}), counts {@link Counter#RULES_BEFORE} and {@link Counter#RULES_AFTER} */
+		PRIORITY_FILTERING,
+		/** creating an earley parser and detecting its oracles, counts {@link Counter#RULES_AFTER} */
+		ORACLE_DETECTION,
+		/** checking an input using the compact chart, counts {@link Counter#INPUT_LENGTH} and {@link Counter#CHART_ITEMS} */
+		RECOGNITION,
+		/** creating the chart of the earley parser, counts {@link Counter#INPUT_LENGTH} */
+		CHART,
+		/** extracting the parse tree from the chart, counts {@link Counter#TREE_NODES} */
+		PARSE_TREE,
+		/** building the AST, counts {@link Counter#TREE_NODES} (distinct ATerms) */
+		CONS_TREE
+	}
+
+	public enum Counter {
+		/** the number of modules used by the top-level module, including itself */
+		MODULES,
+		/** the number of rules of the grammar before the stage */
+		RULES_BEFORE,
+		/** the number of rules of the grammar after the stage */
+		RULES_AFTER,
+		/** the length of the input */
+		INPUT_LENGTH,
+		/** the number of items in the compact chart (the chart of the earley parser does not expose its items) */
+		CHART_ITEMS,
+		/** the number of nodes of the tree */
+		TREE_NODES
+	}
+
+	private final Stage stage;
+	private final String topLevelModuleName;
+	private final long wallTimeNanos;
+	private final long allocatedBytes;
+	private final Map<Counter, Long> counters;
+
+	ParseStageEvent(Stage stage, String topLevelModuleName, long wallTimeNanos, long allocatedBytes,
+			EnumMap<Counter, Long> counters) {
+		this.stage = stage;
+		this.topLevelModuleName = topLevelModuleName;
+		this.wallTimeNanos = wallTimeNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.counters = Collections.unmodifiableMap(counters);
+	}
+
+	public Stage getStage() {
+		return stage;
+	}
+
+	/**
+	 * @return the name of the top-level module of the grammar, or null if not known
+	 */
+	public String getTopLevelModuleName() {
+		return topLevelModuleName;
+	}
+
+	public long getWallTimeNanos() {
+		return wallTimeNanos;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the thread that ran the stage. Allocations by other
+	 * threads, e.g. when the productions are converted in parallel, are not included.
+	 *
+	 * @return the allocated bytes, or -1 if the JVM does not support measuring the allocation of a thread
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return the value of the counter, or -1 if it is not counted for this stage
+	 */
+	public long getCount(Counter counter) {
+		Long count = counters.get(counter);
+		return count == null ? -1 : count;
+	}
+
+	/**
+	 * @return all counters of this stage
+	 */
+	public Map<Counter, Long> getCounters() {
+		return counters;
+	}
+
+	@Override
+	public String toString() {
+		return stage + " (" + topLevelModuleName + "): " + wallTimeNanos / 1000 + " us, " + allocatedBytes + " bytes, "
+				+ counters;
+	}
+
+}
@@ -0,0 +1,24 @@
+package sdf;
+
+/**
+ * Receives the metrics of the stages of generating grammars and parsing inputs, e.g. to
+ * feed them into a monitoring system.
+ *
+ * <p>Events are reported synchronously by the thread that ran the stage, so implementations
+ * must be thread-safe if the parser is used by several threads, and should return quickly.
+ * Without a listener, no metrics are collected.
+ *
+ * @see SdfDSL#setParseStageListener(ParseStageListener)
+ * @see ParseStageEvent
+ *
+ */
+public interface ParseStageListener {
+
+	/**
+	 * Called when a stage has been completed.
+	 *
+	 * @param event	the metrics of the stage
+	 */
+	void stageCompleted(ParseStageEvent event);
+
+}
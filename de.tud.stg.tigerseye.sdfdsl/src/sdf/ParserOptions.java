@@ -0,0 +1,132 @@
+package sdf;
+
+/**
+ * The options of a {@link CompiledSdfParser}. The setters return the options, so they can be chained:
+ *
+ * <pre>
+ * {@code
+ * CompiledSdfParser parser = new CompiledSdfParser("Expr", grammar,
+ *         new ParserOptions().setErrorRecoveryEnabled(true));
+ * }
+ * </pre>
+ *
+ * <p>A parser copies the options when it is created, modifying them afterwards does not affect the parser.
+ *
+ * @see SdfDSL#getParserOptions()
+ *
+ */
+public class ParserOptions {
+
+	private boolean oraclesEnabled = true;
+	private boolean errorRecoveryEnabled = false;
+	private boolean invalidInputPrescreeningEnabled = false;
+	private ParseStageListener parseStageListener;
+
+	/**
+	 * Creates the default options: oracles are enabled, error recovery and invalid input pre-screening are
+	 * disabled, and there is no parse stage listener.
+	 */
+	public ParserOptions() {
+	}
+
+	/**
+	 * Creates a copy of the given options.
+	 *
+	 * @param options	the options to copy
+	 */
+	public ParserOptions(ParserOptions options) {
+		this.oraclesEnabled = options.oraclesEnabled;
+		this.errorRecoveryEnabled = options.errorRecoveryEnabled;
+		this.invalidInputPrescreeningEnabled = options.invalidInputPrescreeningEnabled;
+		this.parseStageListener = options.parseStageListener;
+	}
+
+	public boolean isOraclesEnabled() {
+		return oraclesEnabled;
+	}
+
+	/**
+	 * @param oraclesEnabled	true to use oracles in the earley parser
+	 * @return these options
+	 */
+	public ParserOptions setOraclesEnabled(boolean oraclesEnabled) {
+		this.oraclesEnabled = oraclesEnabled;
+		return this;
+	}
+
+	public boolean isErrorRecoveryEnabled() {
+		return errorRecoveryEnabled;
+	}
+
+	/**
+	 * @param errorRecoveryEnabled	true to search the errors of invalid inputs
+	 * @return these options
+	 * @see CompiledSdfParser#isErrorRecoveryEnabled()
+	 */
+	public ParserOptions setErrorRecoveryEnabled(boolean errorRecoveryEnabled) {
+		this.errorRecoveryEnabled = errorRecoveryEnabled;
+		return this;
+	}
+
+	public boolean isInvalidInputPrescreeningEnabled() {
+		return invalidInputPrescreeningEnabled;
+	}
+
+	/**
+	 * @param invalidInputPrescreeningEnabled	true to reject invalid inputs before parsing them
+	 * @return these options
+	 * @see CompiledSdfParser#isInvalidInputPrescreeningEnabled()
+	 */
+	public ParserOptions setInvalidInputPrescreeningEnabled(boolean invalidInputPrescreeningEnabled) {
+		this.invalidInputPrescreeningEnabled = invalidInputPrescreeningEnabled;
+		return this;
+	}
+
+	public ParseStageListener getParseStageListener() {
+		return parseStageListener;
+	}
+
+	/**
+	 * @param parseStageListener	receives the metrics of the parses, or null
+	 * @return these options
+	 */
+	public ParserOptions setParseStageListener(ParseStageListener parseStageListener) {
+		this.parseStageListener = parseStageListener;
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (oraclesEnabled ? 1231 : 1237);
+		result = prime * result + (errorRecoveryEnabled ? 1231 : 1237);
+		result = prime * result + (invalidInputPrescreeningEnabled ? 1231 : 1237);
+		result = prime * result + ((parseStageListener == null) ? 0 : parseStageListener.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		ParserOptions other = (ParserOptions) obj;
+		if (oraclesEnabled != other.oraclesEnabled)
+			return false;
+		if (errorRecoveryEnabled != other.errorRecoveryEnabled)
+			return false;
+		if (invalidInputPrescreeningEnabled != other.invalidInputPrescreeningEnabled)
+			return false;
+		if (parseStageListener == null) {
+			if (other.parseStageListener != null)
+				return false;
+		} else if (!parseStageListener.equals(other.parseStageListener))
+			return false;
+		return true;
+	}
+
+}
@@ -0,0 +1,180 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import de.tud.stg.parlex.core.Category;
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.Rule;
+
+/**
+ * A grammar that accepts all prefixes of the sentences of another grammar. It is used by the
+ * error recovery of {@link CompiledSdfParser} to find the furthest position up to which an invalid
+ * input can be parsed, and the terminals expected at that position.
+ *
+ * <p>The prefix grammar contains the rules of the original grammar. For each non-terminal <code>A</code>,
+ * it has a non-terminal <code>A#prefix</code> which derives all prefixes of the strings derived by <code>A</code>.
+ * For a rule <code>A -&gt; X1 ... Xn</code>, the prefix grammar contains the rule with <code>A#prefix</code> as LHS,
+ * and for each position <code>i</code> a rule <code>A#prefix -&gt; X1 ... X(i-1) Xi#prefix</code>. If <code>Xi</code>
+ * is a terminal, the prefix ends before the terminal or inside the terminal (for literals).
+ *
+ * <p>The terminals expected after a prefix are the terminals of the original grammar that the items of the
+ * last earley set are waiting for, so they are found by a single recognition of the prefix
+ * (see {@link #getRecognizer()}).
+ *
+ * <p>The prefix grammar ignores the rule annotations of the original grammar (e.g. <code>reject</code>),
+ * so it may accept some prefixes that are rejected by the original grammar. Prefixes ending inside
+ * a regular expression terminal are not accepted, so if the original grammar has regular expression
+ * terminals matching more than one character (e.g. tokens created by pre-lexing or case insensitive
+ * literals), a prefix of an accepted prefix is not always accepted, see {@link #isPrefixClosed()}.
+ *
+ * <p>Prefix grammars are immutable. The prefix grammar of a generated grammar is available using
+ * {@link GeneratedGrammar#getPrefixGrammar()}.
+ *
+ */
+public class PrefixGrammar {
+
+	private final Grammar grammar;
+	private final HashSet<ICategory<String>> terminals;
+	private final HashMap<ICategory<String>, Category> prefixCategories;
+	private final HashMap<ICategory<String>, Category> literalPrefixCategories;
+	private boolean prefixClosed = true;
+	private ForestParser recognizer;
+
+	private PrefixGrammar() {
+		this.grammar = new Grammar();
+		this.terminals = new HashSet<ICategory<String>>();
+		this.prefixCategories = new HashMap<ICategory<String>, Category>();
+		this.literalPrefixCategories = new HashMap<ICategory<String>, Category>();
+	}
+
+	/**
+	 * Creates the prefix grammar for the given grammar.
+	 */
+	public static PrefixGrammar create(Grammar original) {
+		PrefixGrammar prefixGrammar = new PrefixGrammar();
+
+		for (IRule<String> rule : original.getRules()) {
+			prefixGrammar.addPrefixRules(rule);
+		}
+
+		ICategory<String> startCat = original.getStartRule().getLhs();
+		Rule startRule = new Rule(new Category("<START-PREFIX>", false),
+				Collections.<ICategory<String>>singletonList(prefixGrammar.getPrefixCategory(startCat)));
+		prefixGrammar.grammar.addRule(startRule);
+		prefixGrammar.grammar.setStartRule(startRule);
+		prefixGrammar.recognizer = new ForestParser(prefixGrammar.grammar);
+
+		return prefixGrammar;
+	}
+
+	private void addPrefixRules(IRule<String> rule) {
+		Category lhs = getPrefixCategory(rule.getLhs());
+		List<ICategory<String>> rhs = rule.getRhs();
+
+		// the original rule without its annotations
+		grammar.addRule(new Rule(rule.getLhs(), rhs));
+		grammar.addRule(new Rule(lhs, rhs));
+		for (int i = 0; i < rhs.size(); i++) {
+			ICategory<String> cat = rhs.get(i);
+			List<ICategory<String>> head = rhs.subList(0, i);
+			if (!cat.isTerminal()) {
+				grammar.addRule(new Rule(lhs, append(head, getPrefixCategory(cat))));
+				continue;
+			}
+
+			terminals.add(cat);
+			// the prefix ends before the terminal
+			grammar.addRule(new Rule(lhs, new ArrayList<ICategory<String>>(head)));
+			if (cat.getClass() == Category.class) {
+				// or inside a literal
+				if (cat.getName().length() > 1) {
+					grammar.addRule(new Rule(lhs, append(head, getLiteralPrefixCategory(cat))));
+				}
+			} else if (!isCharacterClass(cat)) {
+				prefixClosed = false;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a regular expression terminal is a character class, which always matches a single character.
+	 * The converter creates character classes as <code>[...]</code>, while tokens and case insensitive
+	 * literals are groups.
+	 */
+	private static boolean isCharacterClass(ICategory<String> terminal) {
+		return terminal.getName().startsWith("[");
+	}
+
+	private static List<ICategory<String>> append(List<ICategory<String>> head, ICategory<String> cat) {
+		List<ICategory<String>> rhs = new ArrayList<ICategory<String>>(head.size() + 1);
+		rhs.addAll(head);
+		rhs.add(cat);
+		return rhs;
+	}
+
+	private Category getPrefixCategory(ICategory<String> cat) {
+		Category prefixCat = prefixCategories.get(cat);
+		if (prefixCat == null) {
+			prefixCat = new Category(cat.getName() + "#prefix", false);
+			prefixCategories.put(cat, prefixCat);
+		}
+		return prefixCat;
+	}
+
+	/**
+	 * Returns a category deriving all non-empty proper prefixes of the given literal.
+	 */
+	private Category getLiteralPrefixCategory(ICategory<String> literal) {
+		Category prefixCat = literalPrefixCategories.get(literal);
+		if (prefixCat == null) {
+			prefixCat = new Category(literal.getName() + "#literal-prefix", false);
+			literalPrefixCategories.put(literal, prefixCat);
+			String text = literal.getName();
+			for (int i = 1; i < text.length(); i++) {
+				grammar.addRule(new Rule(prefixCat,
+						Collections.<ICategory<String>>singletonList(new Category(text.substring(0, i), true))));
+			}
+		}
+		return prefixCat;
+	}
+
+	/**
+	 * @return the prefix grammar. Must not be modified.
+	 */
+	public Grammar getGrammar() {
+		return grammar;
+	}
+
+	/**
+	 * Checks if every prefix of an accepted prefix is accepted as well. This is the case unless
+	 * the original grammar has regular expression terminals matching more than one character.
+	 *
+	 * @return true if the accepted prefixes are closed under taking prefixes
+	 */
+	public boolean isPrefixClosed() {
+		return prefixClosed;
+	}
+
+	/**
+	 * Checks if the terminal is a terminal of the original grammar, as opposed to the terminals
+	 * for the prefixes of literals.
+	 */
+	boolean isOriginalTerminal(ICategory<String> terminal) {
+		return terminals.contains(terminal);
+	}
+
+	/**
+	 * Returns the recognizer for the prefix grammar. The furthest accepted prefix of an input and the
+	 * terminals expected after it can be found in the {@link CompactChart} of a single recognition.
+	 */
+	ForestParser getRecognizer() {
+		return recognizer;
+	}
+
+}
@@ -0,0 +1,167 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+import de.tud.stg.parlex.core.IRuleAnnotation;
+import de.tud.stg.parlex.core.Rule;
+import de.tud.stg.parlex.core.ruleannotations.AssociativityAnnotation;
+import de.tud.stg.parlex.core.ruleannotations.AssociativityAnnotation.Associativity;
+import de.tud.stg.parlex.core.ruleannotations.RelativePriorityAnnotation;
+
+/**
+ * Stores which rules must not be used as the direct child of a rule at a given position of its RHS,
+ * as specified by the relative priorities and associativity annotations of the rules.
+ *
+ * <p>The table is computed from the annotations created by {@link SdfToParlexGrammarConverter}:
+ * <ul>
+ * <li>If <code>A &gt; B</code>, B must not be a child of A at any position whose category is the LHS of B.</li>
+ * <li>If A is <code>left</code> (or <code>assoc</code>), A must not be its own right-most child.</li>
+ * <li>If A is <code>right</code>, A must not be its own left-most child.</li>
+ * <li>If A is <code>non-assoc</code>, A must not be its own left-most or right-most child.</li>
+ * </ul>
+ * Transitive priorities are already expanded into the annotations by the converter.
+ *
+ * <p>Priority conflict tables are immutable.
+ *
+ * @see PriorityFilter
+ *
+ */
+public class PriorityConflictTable {
+
+	private final HashMap<IRule<String>, List<Set<IRule<String>>>> forbiddenRules;
+	private int size;
+
+	private PriorityConflictTable() {
+		this.forbiddenRules = new HashMap<IRule<String>, List<Set<IRule<String>>>>();
+	}
+
+	/**
+	 * Creates the conflict table for all rules of the given grammar.
+	 */
+	public static PriorityConflictTable create(Grammar grammar) {
+		PriorityConflictTable table = new PriorityConflictTable();
+
+		for (IRule<String> rule : grammar.getRules()) {
+			if (!(rule instanceof Rule))
+				continue;
+
+			List<ICategory<String>> rhs = rule.getRhs();
+			for (IRuleAnnotation ann : ((Rule)rule).getAnnotations()) {
+				if (ann instanceof RelativePriorityAnnotation) {
+					for (IRule<String> lowerPriorityRule : ((RelativePriorityAnnotation)ann).getLowerPriorityRules()) {
+						for (int i = 0; i < rhs.size(); i++) {
+							if (rhs.get(i).equals(lowerPriorityRule.getLhs())) {
+								table.add(rule, i, lowerPriorityRule);
+							}
+						}
+					}
+				} else if (ann instanceof AssociativityAnnotation) {
+					Associativity associativity = ((AssociativityAnnotation)ann).getAssociativity();
+					int leftMost = rhs.indexOf(rule.getLhs());
+					int rightMost = rhs.lastIndexOf(rule.getLhs());
+					// a rule with a single recursive position is not affected by its associativity
+					if (leftMost < 0 || leftMost == rightMost)
+						continue;
+
+					if (associativity != Associativity.RIGHT) {
+						table.add(rule, rightMost, rule);
+					}
+					if (associativity != Associativity.LEFT) {
+						table.add(rule, leftMost, rule);
+					}
+				}
+			}
+		}
+
+		return table;
+	}
+
+	private void add(IRule<String> parent, int position, IRule<String> child) {
+		List<Set<IRule<String>>> positions = forbiddenRules.get(parent);
+		if (positions == null) {
+			positions = new ArrayList<Set<IRule<String>>>(Collections.<Set<IRule<String>>>nCopies(parent.getRhs().size(), null));
+			forbiddenRules.put(parent, positions);
+		}
+		Set<IRule<String>> forbidden = positions.get(position);
+		if (forbidden == null) {
+			forbidden = new HashSet<IRule<String>>();
+			positions.set(position, forbidden);
+		}
+		if (forbidden.add(child)) {
+			size++;
+		}
+	}
+
+	/**
+	 * Returns the rules that must not be used for the child of the given rule at the given position.
+	 *
+	 * @param parent	a rule of the grammar
+	 * @param position	a position in the RHS of the rule
+	 * @return the forbidden rules (can be empty, never null)
+	 */
+	public Set<IRule<String>> getForbiddenRules(IRule<String> parent, int position) {
+		List<Set<IRule<String>>> positions = forbiddenRules.get(parent);
+		if (positions == null || positions.get(position) == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(positions.get(position));
+	}
+
+	/**
+	 * Checks if the rule <code>child</code> must not be used for the child of <code>parent</code>
+	 * at the given position.
+	 */
+	public boolean isForbidden(IRule<String> parent, int position, IRule<String> child) {
+		List<Set<IRule<String>>> positions = forbiddenRules.get(parent);
+		return positions != null && positions.get(position) != null && positions.get(position).contains(child);
+	}
+
+	/**
+	 * @return true if the rule has at least one position with forbidden rules
+	 */
+	public boolean hasConflicts(IRule<String> parent) {
+		return forbiddenRules.containsKey(parent);
+	}
+
+	/**
+	 * @return the rules that have at least one position with forbidden rules
+	 */
+	public Set<IRule<String>> getRulesWithConflicts() {
+		return Collections.unmodifiableSet(forbiddenRules.keySet());
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of (rule, position, forbidden rule) entries in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<IRule<String>, List<Set<IRule<String>>>> entry : forbiddenRules.entrySet()) {
+			List<Set<IRule<String>>> positions = entry.getValue();
+			for (int i = 0; i < positions.size(); i++) {
+				if (positions.get(i) != null) {
+					sb.append(entry.getKey()).append(" @").append(i).append(" !").append(positions.get(i)).append('\n');
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+}
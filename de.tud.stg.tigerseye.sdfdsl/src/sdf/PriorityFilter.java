@@ -0,0 +1,202 @@
+package sdf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.tud.stg.parlex.core.*;
+import de.tud.stg.parlex.core.ruleannotations.RelativePriorityAnnotation;
+
+/**
+ * PriorityFilter applies the priority and associativity filters of a grammar while parsing, by
+ * encoding the {@link PriorityConflictTable} into the grammar itself.
+ *
+ * <p>For each position of a rule where some rules are forbidden, the category at that position is
+ * replaced by a new non-terminal that only has the allowed rules of the category. For example, for
+ * <code>Expr "*" Expr -&gt; Expr &gt; Expr "+" Expr -&gt; Expr</code>, both operands of the multiplication
+ * are replaced by a copy of <code>Expr</code> without the addition rule. Copies are shared by all positions
+ * that forbid the same rules. Since the parser can no longer derive forbidden trees, the chart does not
+ * contain items for them, instead of building all trees first and filtering them afterwards.
+ *
+ * <p>Rules that are changed or copied keep their annotations and production mappings, and
+ * {@link GeneratedGrammar#getOriginalRule(Rule)} returns the rule they were created from, so that
+ * the constructed ATerms do not change.
+ *
+ * @see PriorityConflictTable
+ * @see SdfDSL#setPriorityFilteringEnabled(boolean)
+ *
+ */
+public class PriorityFilter {
+
+	private PriorityFilter() {
+	}
+
+	/**
+	 * Returns a new GeneratedGrammar that is equivalent to the supplied grammar, but does not allow
+	 * any derivations forbidden by the priorities and associativity of its rules.
+	 *
+	 * <p>The original grammar is not modified. If the grammar has no priorities or associativity
+	 * annotations, it is returned unchanged.
+	 *
+	 * @param g	the GeneratedGrammar to filter
+	 * @return	a new GeneratedGrammar without forbidden derivations
+	 */
+	public static GeneratedGrammar filter(GeneratedGrammar g) {
+		Grammar grammar = g.getGrammar();
+		PriorityConflictTable table = PriorityConflictTable.create(grammar);
+		if (table.isEmpty()) {
+			return g;
+		}
+
+		HashMap<ICategory<String>, List<IRule<String>>> rulesByLhs = new HashMap<ICategory<String>, List<IRule<String>>>();
+		for (IRule<String> rule : grammar.getRules()) {
+			List<IRule<String>> lhsRules = rulesByLhs.get(rule.getLhs());
+			if (lhsRules == null) {
+				lhsRules = new ArrayList<IRule<String>>();
+				rulesByLhs.put(rule.getLhs(), lhsRules);
+			}
+			lhsRules.add(rule);
+		}
+
+		// replace the categories at positions with forbidden rules
+		HashMap<FilteredCategory, Category> filteredCategories = new HashMap<FilteredCategory, Category>();
+		HashMap<IRule<String>, Rule> replacements = new HashMap<IRule<String>, Rule>();
+		for (IRule<String> rule : table.getRulesWithConflicts()) {
+			List<ICategory<String>> newRhs = new ArrayList<ICategory<String>>(rule.getRhs());
+			for (int i = 0; i < newRhs.size(); i++) {
+				Set<IRule<String>> forbidden = table.getForbiddenRules(rule, i);
+				if (!forbidden.isEmpty()) {
+					newRhs.set(i, getFilteredCategory(new FilteredCategory(newRhs.get(i), forbidden), filteredCategories));
+				}
+			}
+			replacements.put(rule, new Rule(rule.getLhs(), newRhs));
+		}
+
+		// the filtered categories get copies of all allowed rules
+		HashMap<Rule, IRule<String>> copies = new HashMap<Rule, IRule<String>>();
+		for (Map.Entry<FilteredCategory, Category> entry : filteredCategories.entrySet()) {
+			List<IRule<String>> rules = rulesByLhs.get(entry.getKey().category);
+			if (rules == null)
+				continue;
+			for (IRule<String> rule : rules) {
+				if (!entry.getKey().forbidden.contains(rule)) {
+					copies.put(new Rule(entry.getValue(), getReplacement(rule, replacements).getRhs()), rule);
+				}
+			}
+		}
+
+		for (Map.Entry<IRule<String>, Rule> entry : replacements.entrySet()) {
+			copyAnnotations(entry.getKey(), entry.getValue(), replacements);
+		}
+		for (Map.Entry<Rule, IRule<String>> entry : copies.entrySet()) {
+			copyAnnotations(entry.getValue(), entry.getKey(), replacements);
+		}
+
+		// build the new grammar
+		Grammar filtered = new Grammar();
+		for (IRule<String> rule : grammar.getRules()) {
+			filtered.addRule(getReplacement(rule, replacements));
+		}
+		for (Rule copy : copies.keySet()) {
+			filtered.addRule(copy);
+		}
+		IRule<String> startRule = getReplacement(grammar.getStartRule(), replacements);
+		filtered.addRule(startRule);
+		filtered.setStartRule(startRule);
+
+		// update production mappings and original rules
+		HashMap<Rule, ProductionMapping> productionMappings = g.getProductionMappings();
+		HashMap<Rule, ProductionMapping> newMappings = new HashMap<Rule, ProductionMapping>(productionMappings);
+		HashMap<Rule, Rule> originalRules = new HashMap<Rule, Rule>(g.getOriginalRules());
+		for (Map.Entry<IRule<String>, Rule> entry : replacements.entrySet()) {
+			updateMapping(entry.getValue(), entry.getKey(), g, newMappings, originalRules);
+			newMappings.remove(entry.getKey());
+		}
+		for (Map.Entry<Rule, IRule<String>> entry : copies.entrySet()) {
+			updateMapping(entry.getKey(), entry.getValue(), g, newMappings, originalRules);
+		}
+
+		return new GeneratedGrammar(GrammarCleaner.clean(filtered), newMappings, originalRules);
+	}
+
+	private static Category getFilteredCategory(FilteredCategory key, HashMap<FilteredCategory, Category> filteredCategories) {
+		Category cat = filteredCategories.get(key);
+		if (cat == null) {
+			// the number makes the name unique, e.g. <Expr-CF>#1
+			cat = new Category(key.category.getName() + "#" + (filteredCategories.size() + 1), false);
+			filteredCategories.put(key, cat);
+		}
+		return cat;
+	}
+
+	private static void updateMapping(Rule newRule, IRule<String> oldRule, GeneratedGrammar g,
+			HashMap<Rule, ProductionMapping> newMappings, HashMap<Rule, Rule> originalRules) {
+		if (!(oldRule instanceof Rule))
+			return;
+
+		originalRules.put(newRule, g.getOriginalRule((Rule)oldRule));
+
+		ProductionMapping mapping = g.getProductionMapping((Rule)oldRule);
+		if (mapping != null) {
+			// positions are not changed, so the labels can be copied
+			ProductionMapping newMapping = new ProductionMapping(mapping.getProduction(), newRule,
+					mapping.getProductionId());
+			for (int i = 0; i < newRule.getRhs().size(); i++) {
+				newMapping.setLabelForCategoryAtPosition(i, mapping.getLabelForCategoryAtPosition(i));
+			}
+			newMappings.put(newRule, newMapping);
+		}
+	}
+
+	private static void copyAnnotations(IRule<String> from, Rule to, HashMap<IRule<String>, Rule> replacements) {
+		if (!(from instanceof Rule))
+			return;
+		for (IRuleAnnotation ann : ((Rule)from).getAnnotations()) {
+			if (ann instanceof RelativePriorityAnnotation) {
+				RelativePriorityAnnotation rpAnnotation = new RelativePriorityAnnotation();
+				for (IRule<String> lowerPriorityRule : ((RelativePriorityAnnotation)ann).getLowerPriorityRules()) {
+					rpAnnotation.addLowerPriorityRule(getReplacement(lowerPriorityRule, replacements));
+				}
+				to.addAnnotation(rpAnnotation);
+			} else {
+				to.addAnnotation(ann);
+			}
+		}
+	}
+
+	private static IRule<String> getReplacement(IRule<String> rule, HashMap<IRule<String>, Rule> replacements) {
+		Rule replacement = replacements.get(rule);
+		return replacement != null ? replacement : rule;
+	}
+
+	/**
+	 * A category without some of its rules.
+	 */
+	private static class FilteredCategory {
+		final ICategory<String> category;
+		final Set<IRule<String>> forbidden;
+
+		public FilteredCategory(ICategory<String> category, Set<IRule<String>> forbidden) {
+			this.category = category;
+			this.forbidden = forbidden;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * category.hashCode() + forbidden.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			FilteredCategory other = (FilteredCategory) obj;
+			return category.equals(other.category) && forbidden.equals(other.forbidden);
+		}
+	}
+
+}
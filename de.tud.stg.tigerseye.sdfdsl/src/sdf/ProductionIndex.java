@@ -1,41 +1,128 @@
 package sdf;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import sdf.model.Production;
+import aterm.ATermAppl;
+import aterm.ATermFactory;
+import aterm.pure.SingletonFactory;
 
+/**
+ * The table of all SDF productions of a grammar, indexed by the ids stored in the
+ * {@link ProductionMapping}s. The ids are assigned while the grammar is generated, equal
+ * productions have the same id. Ids are kept when the grammar is rewritten, so rules removed
+ * by {@link GrammarCleaner} leave gaps in the table.
+ * 
+ * <p>The ids are used by the {@code productionIndex} annotations of the ATerms created by
+ * {@link ATermConstructor}. The string representations of the productions (the {@code production}
+ * annotations) are only created when they are requested, see {@link #getProductionString(int)}.
+ * 
+ * <p>The index is immutable and can be shared by several threads.
+ * 
+ * @see GeneratedGrammar#getProductionIndex()
+ */
 public class ProductionIndex {
-	private List<Production> productions;
-	private Map<Production,Integer> indices;
+	private static final ATermFactory factory = SingletonFactory.getInstance();
 	
-	public ProductionIndex() {
-		this.productions = new ArrayList<Production>();
+	private final Production[] productions;
+	private final Map<Production,Integer> indices;
+	private final AtomicReferenceArray<ATermAppl> productionStrings;
+	
+	private ProductionIndex(Production[] productions) {
+		this.productions = productions;
 		this.indices = new HashMap<Production,Integer>();
+		for (int i = 0; i < productions.length; i++) {
+			if (productions[i] != null && !indices.containsKey(productions[i])) {
+				indices.put(productions[i], i);
+			}
+		}
+		this.productionStrings = new AtomicReferenceArray<ATermAppl>(productions.length);
+	}
+	
+	/**
+	 * Creates the index for the given production mappings. Mappings without an id get new ids
+	 * after the largest existing id (equal productions get the same id).
+	 */
+	static ProductionIndex create(Collection<ProductionMapping> mappings) {
+		int size = 0;
+		Map<Production,Integer> assigned = new HashMap<Production,Integer>();
+		for (ProductionMapping mapping : mappings) {
+			if (mapping.getProductionId() >= 0) {
+				size = Math.max(size, mapping.getProductionId() + 1);
+				assigned.put(mapping.getProduction(), mapping.getProductionId());
+			}
+		}
+		for (ProductionMapping mapping : mappings) {
+			if (mapping.getProductionId() < 0) {
+				Integer id = assigned.get(mapping.getProduction());
+				if (id == null) {
+					id = size++;
+					assigned.put(mapping.getProduction(), id);
+				}
+				mapping.setProductionId(id);
+			}
+		}
+		
+		Production[] productions = new Production[size];
+		for (ProductionMapping mapping : mappings) {
+			productions[mapping.getProductionId()] = mapping.getProduction();
+		}
+		return new ProductionIndex(productions);
 	}
 	
+	/**
+	 * @return the id of the production, or -1 if it is not a production of the grammar
+	 */
 	public int getIndex(Production pro) {
 		Integer index = indices.get(pro);
-		if (index == null) {
-			index = productions.size();
-			productions.add(pro);
-			indices.put(pro, index);
-		}
-		return index;
+		return index == null ? -1 : index;
 	}
 	
+	/**
+	 * @return the production with the given id, or null if there is none
+	 */
 	public Production getProduction(int index) {
-		if (index >= 0 && index < productions.size()) {
-			return productions.get(index);
+		if (index >= 0 && index < productions.length) {
+			return productions[index];
 		} else {
 			return null;
 		}
 	}
 	
+	/**
+	 * Returns the string representation of the production with the given id as an ATerm, as used
+	 * by the {@code production} annotation. It is created when it is first requested.
+	 * 
+	 * @return the string representation, or null if there is no production with the given id
+	 */
+	public ATermAppl getProductionString(int index) {
+		Production production = getProduction(index);
+		if (production == null) {
+			return null;
+		}
+		ATermAppl string = productionStrings.get(index);
+		if (string == null) {
+			string = factory.makeAppl(factory.makeAFun(production.toString(), 0, true));
+			productionStrings.set(index, string);
+		}
+		return string;
+	}
+	
+	/**
+	 * @return the size of the table, i.e. the largest id plus one
+	 */
+	public int size() {
+		return productions.length;
+	}
+	
 	@Deprecated
 	public List<Production> getList() {
-		return productions;
+		return Collections.unmodifiableList(Arrays.asList(productions));
 	}
-}
\ No newline at end of file
+}
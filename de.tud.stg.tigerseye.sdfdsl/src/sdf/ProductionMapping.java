@@ -8,11 +8,23 @@ public class ProductionMapping {
 	private Production production;
 	private Rule generatedRule;
 	private String[] symbolLabels;
+	private int productionId;
 	
 	public ProductionMapping(Production production, Rule generatedRule) {
+		this(production, generatedRule, -1);
+	}
+
+	/**
+	 * @param production	the SDF production
+	 * @param generatedRule	the rule generated for the production
+	 * @param productionId	the id of the production in the {@link ProductionIndex} of the grammar,
+	 * 						or -1 if it has not been assigned yet
+	 */
+	public ProductionMapping(Production production, Rule generatedRule, int productionId) {
 		this.production = production;
 		this.generatedRule = generatedRule;
 		this.symbolLabels = new String[generatedRule.getRhs().size()];
+		this.productionId = productionId;
 	}
 
 	public Production getProduction() {
@@ -23,6 +35,19 @@ public class ProductionMapping {
 		return generatedRule;
 	}
 	
+	/**
+	 * @return the id of the production in the {@link ProductionIndex} of the grammar, or -1 if it
+	 * 			has not been assigned yet
+	 * @see GeneratedGrammar#getProductionIndex()
+	 */
+	public int getProductionId() {
+		return productionId;
+	}
+	
+	void setProductionId(int productionId) {
+		this.productionId = productionId;
+	}
+	
 	public String getLabelForCategoryAtPosition(int index) {
 		return symbolLabels[index];
 	}
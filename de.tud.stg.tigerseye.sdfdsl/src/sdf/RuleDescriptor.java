@@ -0,0 +1,180 @@
+package sdf;
+
+import java.util.List;
+
+import sdf.ruleannotations.CustomATermAnnotation;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermFactory;
+import aterm.pure.SingletonFactory;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRuleAnnotation;
+import de.tud.stg.parlex.core.Rule;
+
+/**
+ * Stores everything {@link ATermConstructor} needs to know about a rule of a generated grammar,
+ * so that it only has to be computed once per rule instead of once per parse tree node.
+ *
+ * <p>Rule descriptors are created by {@link GeneratedGrammar#getRuleDescriptor(Rule)} and are immutable.
+ *
+ * @see GeneratedGrammar#getRuleDescriptor(Rule)
+ *
+ */
+public class RuleDescriptor {
+
+	private static final ATermFactory factory = SingletonFactory.getInstance();
+	private static final ATerm consPattern = factory.parse("cons(<str>)");
+	private static final ATerm skipAttribute = factory.parse("skip");
+
+	private final Rule rule;
+	private final ProductionMapping productionMapping;
+	private final String consName;
+	private final boolean skip;
+	private final boolean lexRule;
+	private final boolean cfRule;
+	private final boolean layout;
+	private final int rhsSize;
+	private final int spineIndex;
+	private final ATermAppl lhsAnnotation;
+	private final ATermAppl rhsAnnotation;
+	private volatile ATermAppl productionString;
+
+	/**
+	 * @param rule				the rule
+	 * @param originalRule		the rule that <code>rule</code> was created from, its names are used
+	 * 							for the namespace and the LHS/RHS annotations
+	 * @param productionMapping	the production mapping of the rule, can be null
+	 */
+	RuleDescriptor(Rule rule, Rule originalRule, ProductionMapping productionMapping) {
+		this.rule = rule;
+		this.productionMapping = productionMapping;
+
+		String lhsName = originalRule.getLhs().getName();
+		this.lexRule = lhsName.endsWith("-LEX>");
+		this.cfRule = lhsName.endsWith("-CF>");
+		this.layout = lhsName.equals("<LAYOUT?-CF>");
+		this.rhsSize = rule.getRhs().size();
+
+		String cons = null;
+		boolean skipFound = false;
+		List<IRuleAnnotation> annotations = rule.getAnnotations();
+		for (IRuleAnnotation ann : annotations) {
+			if (ann instanceof CustomATermAnnotation) {
+				ATerm term = ((CustomATermAnnotation)ann).getAterm();
+				if (term.equals(skipAttribute)) {
+					skipFound = true;
+				} else if (cons == null) {
+					List<Object> captures = term.match(consPattern);
+					if (captures != null && captures.size() == 1) {
+						cons = (String)captures.get(0);
+					}
+				}
+			}
+		}
+		this.consName = cons;
+		this.skip = skipFound;
+		this.spineIndex = findSpineIndex(rule, productionMapping, cons, layout);
+
+		this.lhsAnnotation = makeString(originalRule.getLhs().toString());
+		this.rhsAnnotation = makeString(originalRule.getRhs().toString());
+	}
+
+	/**
+	 * Returns the position of the recursive category of a rule generated for a list or repetition,
+	 * e.g. 0 for <code>A+ A -> A+</code>, or -1.
+	 */
+	private static int findSpineIndex(Rule rule, ProductionMapping productionMapping, String cons, boolean layout) {
+		List<ICategory<String>> rhs = rule.getRhs();
+		if (productionMapping != null || cons != null || layout || rhs.size() < 2) {
+			return -1;
+		}
+		if (rhs.get(0).equals(rule.getLhs())) {
+			return 0;
+		} else if (rhs.get(rhs.size() - 1).equals(rule.getLhs())) {
+			return rhs.size() - 1;
+		}
+		return -1;
+	}
+
+	private static ATermAppl makeString(String str) {
+		return factory.makeAppl(factory.makeAFun(str, 0, true));
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * @return the mapping to the SDF production, or null if the rule was generated automatically
+	 */
+	public ProductionMapping getProductionMapping() {
+		return productionMapping;
+	}
+
+	/**
+	 * @return the name given in the (first) cons attribute, or null if there is no cons attribute
+	 */
+	public String getConsName() {
+		return consName;
+	}
+
+	public boolean hasSkipAttribute() {
+		return skip;
+	}
+
+	public boolean isLexRule() {
+		return lexRule;
+	}
+
+	public boolean isCFRule() {
+		return cfRule;
+	}
+
+	/**
+	 * @return true if this is a rule for optional layout (<code>&lt;LAYOUT?-CF&gt;</code>)
+	 */
+	public boolean isLayout() {
+		return layout;
+	}
+
+	public int getRhsSize() {
+		return rhsSize;
+	}
+
+	/**
+	 * Returns the position of the recursive category if this is a rule generated for a list or
+	 * repetition, e.g. 0 for <code>A+ A -> A+</code> and the last position for <code>A "," {A ","}+ -> {A ","}+</code>.
+	 * The nodes of such rules form long chains, which {@link ATermConstructor} turns into flat lists
+	 * without recursion.
+	 * 
+	 * @return the position of the recursive category, or -1 if this is not a recursive rule without
+	 * 			production or cons attribute
+	 */
+	public int getSpineIndex() {
+		return spineIndex;
+	}
+
+	public ATermAppl getLhsAnnotation() {
+		return lhsAnnotation;
+	}
+
+	public ATermAppl getRhsAnnotation() {
+		return rhsAnnotation;
+	}
+
+	/**
+	 * Returns the string representation of the SDF production as an ATerm. It is created when it is
+	 * first requested, so it is not created at all if the production annotations are not used.
+	 * 
+	 * @return the string representation of the SDF production as an ATerm, or null if there is no production mapping
+	 */
+	public ATermAppl getProductionString() {
+		ATermAppl string = productionString;
+		if (string == null && productionMapping != null) {
+			string = makeString(productionMapping.getProduction().toString());
+			productionString = string;
+		}
+		return string;
+	}
+
+}
@@ -6,14 +6,15 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import aterm.*;
 import aterm.pure.SingletonFactory;
-import de.tud.stg.parlex.parser.earley.Chart;
-import de.tud.stg.parlex.parser.earley.EarleyParser;
 import de.tud.stg.tigerseye.dslsupport.DSL;
 import de.tud.stg.tigerseye.dslsupport.annotations.DSLClass;
 import de.tud.stg.tigerseye.dslsupport.annotations.DSLMethod;
@@ -21,6 +22,8 @@ import de.tud.stg.tigerseye.dslsupport.annotations.DSLMethod.PreferencePriority;
 import de.tud.stg.tigerseye.dslsupport.annotations.DSLParameter;
 import de.tud.stg.tigerseye.eclipse.core.codegeneration.typeHandling.TypeHandler;
 
+import sdf.ParseStageEvent.Counter;
+import sdf.ParseStageEvent.Stage;
 import sdf.util.GrammarDebugPrinter;
 import sdf.model.*;
 
@@ -61,10 +64,58 @@ public class SdfDSL implements DSL {
 	 */
 	private boolean oraclesEnabled = true;
 	
+	/**
+	 * Whether regular lexical symbols are matched as tokens (see {@link #setPreLexingEnabled(boolean)})
+	 */
+	private boolean preLexingEnabled = false;
+	
+	/**
+	 * Whether separated lists are expanded left-recursively (see {@link #setLeftRecursiveListsEnabled(boolean)})
+	 */
+	private boolean leftRecursiveListsEnabled = false;
+	
+	/**
+	 * Whether priorities are applied while parsing (see {@link #setPriorityFilteringEnabled(boolean)})
+	 */
+	private boolean priorityFilteringEnabled = false;
+	
+	/**
+	 * Whether the errors of invalid inputs are searched (see {@link #setErrorRecoveryEnabled(boolean)})
+	 */
+	private boolean errorRecoveryEnabled = false;
+	
+	/**
+	 * Whether invalid inputs are rejected before parsing (see {@link #setInvalidInputPrescreeningEnabled(boolean)})
+	 */
+	private boolean invalidInputPrescreeningEnabled = false;
+	
+	/**
+	 * Receives the metrics of grammar generation and parsing, or null
+	 */
+	private volatile ParseStageListener parseStageListener;
+	
+	/**
+	 * Executor used to convert the productions in parallel, or null
+	 */
+	private ExecutorService conversionExecutor;
+	
+	/**
+	 * Grammars generated by getGrammar, reused as long as the modules they were
+	 * generated from are not registered again.
+	 */
+	private GrammarCache grammarCache;
+	
+	/**
+	 * Merged imported modules, reused across grammar builds
+	 */
+	private ModuleMergeCache moduleMergeCache;
+	
 	
 	public SdfDSL() {
 		this.modules = new HashMap<String, Module>();
 		this.atermFactory = SingletonFactory.getInstance();
+		this.grammarCache = new GrammarCache();
+		this.moduleMergeCache = new ModuleMergeCache();
 	}
 
 	
@@ -99,31 +150,103 @@ public class SdfDSL implements DSL {
 	 * Transforms the module with the given name into a parlex grammar, processing SDF macros,
 	 * imports and renamings.
 	 * 
-	 * <p>The grammar can also be cleaned, i.e. unused rules are removed.
+	 * <p>The grammar can also be cleaned, i.e. unused rules and non-terminals that can only
+	 * be expanded to epsilon are removed (see {@link GrammarCleaner#clean(GeneratedGrammar)}).
+	 * 
+	 * <p>Generated grammars are cached. As long as neither the top-level module nor any of
+	 * the modules it imports are registered again or modified, the same GeneratedGrammar is returned.
+	 * The returned grammar is therefore immutable, {@link GeneratedGrammar#copy()} returns a
+	 * modifiable copy.
 	 * 
 	 * @param topLevelModuleName	name of the top-level module
 	 * @param cleanGrammar			if true, unused rules are removed from the generated grammar.
 	 * @return the generated Grammar for the given Module
+	 * @see #getGrammarCache()
 	 */
 	public GeneratedGrammar getGrammar(String topLevelModuleName, boolean cleanGrammar) {
+		GeneratedGrammar cached = grammarCache.get(topLevelModuleName, cleanGrammar, modules);
+		if (cached != null) {
+			return cached;
+		}
+		
 		// find top level module
 		Module topLevelModule = modules.get(topLevelModuleName);
 		
 		// merge imports in top level module (and imported modules)
-		ModuleMerger merger = new ModuleMerger(this);
+		StageTimer timer = StageTimer.start(parseStageListener, Stage.MERGE, topLevelModuleName);
+		ModuleMerger merger = new ModuleMerger(this, moduleMergeCache);
 		Module mainModule = merger.processModule(topLevelModule);
+		if (timer != null) {
+			timer.count(Counter.MODULES, merger.getUsedModules().size()).stop();
+		}
 		
 		// convert sdf model -> parlex grammar
+		timer = StageTimer.start(parseStageListener, Stage.CONVERSION, topLevelModuleName);
 		SdfToParlexGrammarConverter converter = new SdfToParlexGrammarConverter(this);
+		converter.setPreLexingEnabled(preLexingEnabled);
+		converter.setLeftRecursiveListsEnabled(leftRecursiveListsEnabled);
+		converter.setExecutor(conversionExecutor);
 		GeneratedGrammar g = converter.getGrammar(mainModule);
+		if (timer != null) {
+			timer.count(Counter.RULES_AFTER, g.getGrammar().getRules().size()).stop();
+		}
 
-		// remove unused rules if requested
+		// remove unused rules and epsilon-only non-terminals if requested
 		if (cleanGrammar) {
-			g.setGrammar(GrammarCleaner.clean(g.getGrammar()));
+			timer = StageTimer.start(parseStageListener, Stage.CLEANING, topLevelModuleName);
+			int rulesBefore = g.getGrammar().getRules().size();
+			g = GrammarCleaner.clean(g);
+			if (timer != null) {
+				timer.count(Counter.RULES_BEFORE, rulesBefore).count(Counter.RULES_AFTER, g.getGrammar().getRules().size()).stop();
+			}
+		}
+		
+		// encode priorities and associativity into the grammar if requested
+		if (priorityFilteringEnabled) {
+			timer = StageTimer.start(parseStageListener, Stage.PRIORITY_FILTERING, topLevelModuleName);
+			int rulesBefore = g.getGrammar().getRules().size();
+			g = PriorityFilter.filter(g);
+			if (timer != null) {
+				timer.count(Counter.RULES_BEFORE, rulesBefore).count(Counter.RULES_AFTER, g.getGrammar().getRules().size()).stop();
+			}
 		}
+		
+		grammarCache.put(topLevelModuleName, cleanGrammar, g, merger.getUsedModules());
 		return g;
 	}
 	
+	/**
+	 * Returns the cache used by {@link #getGrammar(String, boolean)}.
+	 * Can be used to query the hit/miss counters or to clear the cache.
+	 * 
+	 * @return the grammar cache of this SdfDSL instance
+	 */
+	public GrammarCache getGrammarCache() {
+		return grammarCache;
+	}
+	
+	/**
+	 * Returns the cache for merged imported modules, which is shared by all grammar builds
+	 * of this SdfDSL instance.
+	 * 
+	 * @return the module merge cache of this SdfDSL instance
+	 */
+	public ModuleMergeCache getModuleMergeCache() {
+		return moduleMergeCache;
+	}
+	
+	/**
+	 * Registers a module definition, replacing any existing module with the same name.
+	 * Cached grammars and merged modules depending on a module with this name are discarded.
+	 * 
+	 * @param mod	the module to register
+	 */
+	private void registerModule(Module mod) {
+		modules.put(mod.getName(), mod);
+		grammarCache.invalidate(mod.getName());
+		moduleMergeCache.invalidate(mod.getName());
+	}
+	
 	public ATermFactory getAtermFactory() {
 		return atermFactory;
 	}
@@ -160,7 +283,7 @@ public class SdfDSL implements DSL {
 		mod.setImportSections(new ArrayList<Imports>(Arrays.asList(imports)));
 		mod.setExportOrHiddenSections(new ArrayList<ExportOrHiddenSection>(Arrays.asList(exportOrHiddenSections)));
 
-		modules.put(name.toString(), mod);
+		registerModule(mod);
 
 		return mod;
 	}
@@ -174,7 +297,7 @@ public class SdfDSL implements DSL {
 
 		mod.setExportOrHiddenSections(new ArrayList<ExportOrHiddenSection>(Arrays.asList(exportOrHiddenSections)));
 
-		modules.put(name.toString(), mod);
+		registerModule(mod);
 
 		return mod;
 	}
@@ -205,16 +328,92 @@ public class SdfDSL implements DSL {
 	 */
 	@DSLMethod(production = "parse p0 p1")
 	public ParseResult parseString(String topLevelModule, String input) {
-		GeneratedGrammar grammar = getGrammar(topLevelModule);
-		
-		EarleyParser parser = new EarleyParser(grammar.getGrammar());
-		if (oraclesEnabled) {
-			parser.detectUsedOracles();
+		return compile(topLevelModule).parse(input);
+	}
+
+	/**
+	 * Parses a file using the grammar generated for the given top-level module. The file is mapped
+	 * into memory and read through a {@link MappedCharSequence} instead of being loaded into a string first.
+	 * 
+	 * @param topLevelModule	name of the top-level module
+	 * @param file				the file to parse
+	 * @param charset			the charset of the file
+	 * @return the result of the parse
+	 * @throws IOException if the file cannot be read or is not valid in the charset
+	 * @see CompiledSdfParser#parse(File, Charset)
+	 */
+	public ParseResult parseFile(String topLevelModule, File file, Charset charset) throws IOException {
+		return compile(topLevelModule).parse(file, charset);
+	}
+
+	/**
+	 * Parses an edited input using the grammar generated for the given top-level module,
+	 * reusing the unaffected parts of the previous result.
+	 *
+	 * @param topLevelModule	name of the top-level module
+	 * @param previous			the result of parsing the input before the edit
+	 * @param offset			the position of the edit in the previous input
+	 * @param removedLength		the number of characters removed at the offset
+	 * @param insertedText		the text inserted at the offset
+	 * @return the result of parsing the edited input
+	 * @see CompiledSdfParser#reparse(ParseResult, int, int, String)
+	 */
+	public ParseResult reparseString(String topLevelModule, ParseResult previous, int offset, int removedLength,
+			String insertedText) {
+		return compile(topLevelModule).reparse(previous, offset, removedLength, insertedText);
+	}
+
+	/**
+	 * Creates a reusable parser for the grammar generated for the given top-level module.
+	 * The returned parser can be used to parse any number of inputs, also concurrently
+	 * from multiple threads, without generating the grammar or detecting the oracles again.
+	 * 
+	 * <p>The current {@link #getParserOptions() parser options} are used for the compiled parser. The parser
+	 * is cached next to the grammar, so the same parser is returned until the grammar or the options change.
+	 * 
+	 * @param topLevelModule	name of the top-level module
+	 * @return a parser for the given module
+	 * @see #parseString(String, String)
+	 */
+	public CompiledSdfParser compile(String topLevelModule) {
+		ParserOptions options = getParserOptions();
+		CompiledSdfParser parser = grammarCache.getParser(topLevelModule, options, modules);
+		if (parser == null) {
+			GeneratedGrammar grammar = getGrammar(topLevelModule);
+			parser = new CompiledSdfParser(topLevelModule, grammar, options);
+			grammarCache.putParser(topLevelModule, parser);
 		}
-		Chart chart = (Chart) parser.parse(input);
-		
-		return new ParseResult(grammar, chart);
-		
+		return parser;
+	}
+
+	/**
+	 * Returns the options used for the parsers created by {@link #compile(String)}, i.e. the current oracle,
+	 * error recovery and invalid input pre-screening settings and the current
+	 * {@link #setParseStageListener(ParseStageListener) parse stage listener}.
+	 * 
+	 * @return a copy of the current parser options
+	 */
+	public ParserOptions getParserOptions() {
+		return new ParserOptions().setOraclesEnabled(oraclesEnabled).setErrorRecoveryEnabled(errorRecoveryEnabled)
+				.setInvalidInputPrescreeningEnabled(invalidInputPrescreeningEnabled).setParseStageListener(parseStageListener);
+	}
+	
+	/**
+	 * Parses all inputs using the grammar generated for the given top-level module,
+	 * distributing the parses over the given executor. The grammar is generated only once.
+	 * The executor is not shut down, so it can be reused for any number of batches.
+	 * 
+	 * <p>A failure while parsing one of the inputs does not abort the batch, it is
+	 * reported in the {@link BatchParseResult} of that input.
+	 * 
+	 * @param topLevelModule	name of the top-level module
+	 * @param inputs			the strings to parse
+	 * @param executor			the executor used to run the parses
+	 * @return the results, in the order of the inputs
+	 * @see CompiledSdfParser#parseAll(Iterable, ExecutorService)
+	 */
+	public List<BatchParseResult> parseAll(String topLevelModule, Iterable<String> inputs, ExecutorService executor) {
+		return compile(topLevelModule).parseAll(inputs, executor);
 	}
 	
 	public boolean isOraclesEnabled() {
@@ -231,6 +430,128 @@ public class SdfDSL implements DSL {
 		this.oraclesEnabled = oraclesEnabled;
 	}
 
+	public boolean isPreLexingEnabled() {
+		return preLexingEnabled;
+	}
+
+	/**
+	 * Enable or disable pre-lexing of regular lexical syntax.
+	 * If enabled, repetitions of character classes and other regular symbols in lexical syntax
+	 * (including LAYOUT) are matched as a single token by a regular expression instead of
+	 * character by character, while everything else is still parsed scannerless.
+	 * The generated ASTs are the same in both modes.
+	 * Pre-lexing is disabled by default. Changing the option clears the grammar cache.
+	 * @param preLexingEnabled
+	 * @see SdfToParlexGrammarConverter#setPreLexingEnabled(boolean)
+	 */
+	public void setPreLexingEnabled(boolean preLexingEnabled) {
+		if (this.preLexingEnabled != preLexingEnabled) {
+			grammarCache.clear();
+		}
+		this.preLexingEnabled = preLexingEnabled;
+	}
+
+	public boolean isLeftRecursiveListsEnabled() {
+		return leftRecursiveListsEnabled;
+	}
+
+	/**
+	 * Enable or disable the left-recursive expansion of separated lists (<tt>{Elem Sep}+</tt>).
+	 * Left recursion needs fewer earley items for long lists. The generated ASTs are the same in both modes,
+	 * except for the RHS annotations of lists (annotation policies FULL and INDEXED).
+	 * Disabled by default. Changing the option clears the grammar cache.
+	 * @param leftRecursiveListsEnabled
+	 * @see SdfToParlexGrammarConverter#setLeftRecursiveListsEnabled(boolean)
+	 */
+	public void setLeftRecursiveListsEnabled(boolean leftRecursiveListsEnabled) {
+		if (this.leftRecursiveListsEnabled != leftRecursiveListsEnabled) {
+			grammarCache.clear();
+		}
+		this.leftRecursiveListsEnabled = leftRecursiveListsEnabled;
+	}
+
+	public boolean isPriorityFilteringEnabled() {
+		return priorityFilteringEnabled;
+	}
+
+	/**
+	 * Enable or disable applying priorities and associativity while parsing.
+	 * If enabled, the generated grammars are rewritten by {@link PriorityFilter}, so that
+	 * derivations forbidden by priorities are never added to the parse chart.
+	 * The generated ASTs are the same in both modes.
+	 * Priority filtering is disabled by default. Changing the option clears the grammar cache.
+	 * @param priorityFilteringEnabled
+	 */
+	public void setPriorityFilteringEnabled(boolean priorityFilteringEnabled) {
+		if (this.priorityFilteringEnabled != priorityFilteringEnabled) {
+			grammarCache.clear();
+		}
+		this.priorityFilteringEnabled = priorityFilteringEnabled;
+	}
+
+	public boolean isErrorRecoveryEnabled() {
+		return errorRecoveryEnabled;
+	}
+
+	/**
+	 * Enable or disable error recovery for invalid inputs.
+	 * If enabled, the ParseResult of an invalid input contains the position of the errors,
+	 * the terminals expected at these positions, and the AST of the longest valid prefix.
+	 * Valid inputs are not affected. Error recovery is disabled by default.
+	 * @param errorRecoveryEnabled
+	 * @see CompiledSdfParser#isErrorRecoveryEnabled()
+	 */
+	public void setErrorRecoveryEnabled(boolean errorRecoveryEnabled) {
+		this.errorRecoveryEnabled = errorRecoveryEnabled;
+	}
+
+	public boolean isInvalidInputPrescreeningEnabled() {
+		return invalidInputPrescreeningEnabled;
+	}
+
+	/**
+	 * Enable or disable pre-screening inputs for validity before parsing them.
+	 * If enabled, invalid inputs are rejected by a recognizer without running the earley parser,
+	 * valid inputs are recognized first and then parsed, so they take longer to parse.
+	 * Invalid input pre-screening is disabled by default.
+	 * @param invalidInputPrescreeningEnabled
+	 * @see CompiledSdfParser#isInvalidInputPrescreeningEnabled()
+	 */
+	public void setInvalidInputPrescreeningEnabled(boolean invalidInputPrescreeningEnabled) {
+		this.invalidInputPrescreeningEnabled = invalidInputPrescreeningEnabled;
+	}
+
+	public ParseStageListener getParseStageListener() {
+		return parseStageListener;
+	}
+
+	/**
+	 * Sets the listener receiving the wall time, allocation and size metrics of the stages of
+	 * generating grammars (merging, conversion, cleaning, priority filtering) and of parsing with
+	 * parsers compiled afterwards (oracle detection, chart, parse tree, AST). Grammars returned
+	 * from the grammar cache are not reported. No metrics are collected without a listener.
+	 * @param parseStageListener	the listener, or null to remove the listener
+	 * @see ParseStageEvent
+	 */
+	public void setParseStageListener(ParseStageListener parseStageListener) {
+		this.parseStageListener = parseStageListener;
+	}
+
+	public ExecutorService getConversionExecutor() {
+		return conversionExecutor;
+	}
+
+	/**
+	 * Sets an executor that is used to convert the productions of large definitions in parallel
+	 * when a grammar is generated. The generated grammars are the same as without an executor.
+	 * The executor is not shut down by SdfDSL.
+	 * @param conversionExecutor	the executor, or null to convert sequentially (default)
+	 * @see SdfToParlexGrammarConverter#setExecutor(ExecutorService)
+	 */
+	public void setConversionExecutor(ExecutorService conversionExecutor) {
+		this.conversionExecutor = conversionExecutor;
+	}
+
 	@DSLMethod(production = "printGeneratedGrammar p0")
 	public void printGeneratedGrammar(String topLevelModule) {
 		GeneratedGrammar grammar = getGrammar(topLevelModule);
@@ -258,7 +579,21 @@ public class SdfDSL implements DSL {
 		
 		System.out.println("Grammar for module " + topLevelModule + " saved to: " + file.toURI().toString());
 	}
-	
+
+	/**
+	 * Saves the grammar generated for the given top-level module in the binary format of
+	 * {@link GrammarSerializer}. The saved grammar can be loaded using {@link GrammarSerializer#load(File)}
+	 * without processing the SDF modules again.
+	 *
+	 * @param topLevelModule	name of the top-level module
+	 * @param fileName			file to save the grammar to
+	 * @throws IOException if the file cannot be written
+	 */
+	@DSLMethod(production = "saveGrammar p0 p1")
+	public void saveGrammar(String topLevelModule, String fileName) throws IOException {
+		GrammarSerializer.save(getGrammar(topLevelModule), new File(fileName));
+	}
+
 	/**
 	 * Returns this SdfDSL instance. Can be used in .dsl files.
 	 * @return this
@@ -4,9 +4,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import aterm.*;
@@ -14,6 +20,7 @@ import aterm.*;
 import sdf.model.Alias;
 import sdf.model.Aliases;
 import sdf.model.AlternativeSymbol;
+import sdf.model.CharacterClass;
 import sdf.model.CharacterClassComplement;
 import sdf.model.CharacterClassDifference;
 import sdf.model.CharacterClassIntersection;
@@ -45,9 +52,11 @@ import sdf.model.SequenceSymbol;
 import sdf.model.SortSymbol;
 import sdf.model.Sorts;
 import sdf.model.Symbol;
+import sdf.model.Syntax;
 import sdf.model.TupleSymbol;
 import sdf.model.Visitor;
 import sdf.ruleannotations.CustomATermAnnotation;
+import sdf.util.CharacterSet;
 import de.tud.stg.parlex.core.*;
 import de.tud.stg.parlex.core.groupcategories.StringCategory;
 import de.tud.stg.parlex.core.ruleannotations.*;
@@ -68,6 +77,9 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	
 	private static final boolean DEBUG = false;
 	
+	/** Maximum number of productions converted by one task when converting in parallel */
+	private static final int PRODUCTIONS_PER_TASK = 64;
+	
 	// namespaces
 	private static final String NS_CF = "CF";
 	private static final String NS_LEX = "LEX";
@@ -84,7 +96,28 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	private Category optLayoutCat;
 	private HashMap<Production,Rule> generatedLexRules, generatedCFRules;
 	private HashMap<Rule,ProductionMapping> productionMappings;
+	private HashMap<Production,Integer> productionIds;
 	private HashSet<PrioritySpecification> prioritySpecsLex, prioritySpecsCF;
+	private HashMap<CharacterSet,Category> characterClassCategories;
+	private HashMap<String,Category> tokenCategories;
+	/** regexp -> first characters of all regular expression terminals, used to check the tokens */
+	private HashMap<String,CharacterSet> regexpFirstCharacters;
+	/** token regexp -> all characters the token can contain */
+	private HashMap<String,CharacterSet> tokenCharacters;
+	private HashMap<String,Category> nonTerminals, terminals;
+	private HashMap<ICategory<String>,Category> lexCategories, cfCategories;
+	
+	// options
+	private boolean preLexingEnabled;
+	private boolean leftRecursiveListsEnabled;
+	private ExecutorService executor;
+	
+	/** regexps of the tokens that can be extended by the following characters, see {@link TokenFollowAnalysis} */
+	private HashSet<String> extensibleTokens = new HashSet<String>();
+	
+	// only used when converting a part of a syntax section (see convertProductions)
+	private ArrayList<Rule> addedRules;
+	private IdentityHashMap<Rule,ProductionMapping> addedMappings;
 	
 	private ATermFactory atermFactory;
 	private ATerm atermLeft, atermRight, atermNonAssoc, atermAssoc;
@@ -105,20 +138,130 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		this.atermReject = atermFactory.makeAppl(atermFactory.makeAFun("reject", 0, false));
 	}
 	
-	public GeneratedGrammar getGrammar(Module topLevelModule) {
-		
-		if (DEBUG) System.out.println("*** SDF -> Parlex Grammar ***");
-		
+	public boolean isPreLexingEnabled() {
+		return preLexingEnabled;
+	}
+
+	/**
+	 * Enables or disables pre-lexing of regular lexical symbols.
+	 * 
+	 * <p>If enabled, repetitions, optionals, sequences and alternatives in lexical syntax that only
+	 * consist of character classes and literals are not expanded into recursive rules, but matched
+	 * by a single regular expression terminal (a token). The parser then handles such a symbol with
+	 * one scan instead of one Earley item per character. Symbols referring to sorts are not regular
+	 * and are converted as usual (scannerless).
+	 * 
+	 * <p>A token is matched greedily as a whole, so it is only created if no character that can follow
+	 * the symbol in the grammar can continue the match, i.e. if the parser would never have to split the
+	 * matched characters (see {@link TokenFollowAnalysis}). For example, <tt>[a-z]+</tt> is converted
+	 * scannerless in <tt>[a-z]+ "x" -&gt; Id</tt>. The grammar is converted again until no such tokens
+	 * are left, so the accepted language and the AST are the same as for the scannerless grammar.
+	 * Ambiguities inside a token (e.g. different ways to split <tt>[a-z]+ [a-z]+</tt>) are not reported.
+	 * Disabled by default.
+	 * 
+	 * @param preLexingEnabled
+	 */
+	public void setPreLexingEnabled(boolean preLexingEnabled) {
+		this.preLexingEnabled = preLexingEnabled;
+	}
+	
+	public boolean isLeftRecursiveListsEnabled() {
+		return leftRecursiveListsEnabled;
+	}
+
+	/**
+	 * Enables or disables the left-recursive expansion of separated lists.
+	 * 
+	 * <p>By default, <tt>{Elem Sep}+</tt> is expanded right-recursively (<tt>Elem Sep {Elem Sep}+</tt>), so the
+	 * earley parser keeps all elements of a list open until its end is reached. If enabled, it is expanded
+	 * left-recursively (<tt>{Elem Sep}+ Sep Elem</tt>), which is equivalent to the <tt>{left}</tt> production of the
+	 * SDF specification without its ambiguity, and needs a constant number of items per element. Repetitions
+	 * are always expanded left-recursively.
+	 * 
+	 * <p>The AST is the same in both modes, except for the RHS annotations of lists, which name the RHS of the
+	 * recursive rule. Disabled by default.
+	 * 
+	 * @param leftRecursiveListsEnabled
+	 */
+	public void setLeftRecursiveListsEnabled(boolean leftRecursiveListsEnabled) {
+		this.leftRecursiveListsEnabled = leftRecursiveListsEnabled;
+	}
+	
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor used to convert the productions of the syntax sections in parallel.
+	 * 
+	 * <p>The productions are split into tasks of up to {@value #PRODUCTIONS_PER_TASK} productions,
+	 * each task is converted by a separate converter. The results are merged in the order of the
+	 * productions in the module, so the generated grammar is the same as if all productions were
+	 * converted sequentially. Everything else (start symbols, priorities) is processed sequentially.
+	 * 
+	 * <p>The executor is not shut down by the converter.
+	 * 
+	 * @param executor	the executor, or null to convert all productions in the calling thread (default)
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
+	private void initState() {
 		this.startRuleCount = 0;
 		this.startRule = null;
 		this.generatedCFRules = new HashMap<Production, Rule>();
 		this.generatedLexRules = new HashMap<Production, Rule>();
 		this.productionMappings = new HashMap<Rule, ProductionMapping>();
+		this.productionIds = new HashMap<Production, Integer>();
 		this.prioritySpecsCF = new HashSet<SdfToParlexGrammarConverter.PrioritySpecification>();
 		this.prioritySpecsLex = new HashSet<SdfToParlexGrammarConverter.PrioritySpecification>();
+		this.characterClassCategories = new HashMap<CharacterSet, Category>();
+		this.tokenCategories = new HashMap<String, Category>();
+		this.regexpFirstCharacters = new HashMap<String, CharacterSet>();
+		this.tokenCharacters = new HashMap<String, CharacterSet>();
+		this.nonTerminals = new HashMap<String, Category>();
+		this.terminals = new HashMap<String, Category>();
+		this.lexCategories = new HashMap<ICategory<String>, Category>();
+		this.cfCategories = new HashMap<ICategory<String>, Category>();
 		
 		// Layout symbol
 		this.optLayoutCat = createNonTerminal("LAYOUT?");
+	}
+	
+	public GeneratedGrammar getGrammar(Module topLevelModule) {
+		
+		if (DEBUG) System.out.println("*** SDF -> Parlex Grammar ***");
+		
+		convert(topLevelModule);
+		
+		// tokens that can be extended by the following characters would change the language,
+		// convert again (without these tokens) until there are no such tokens left
+		if (preLexingEnabled) {
+			Set<String> extensible = TokenFollowAnalysis.findExtensibleTokens(grammar, regexpFirstCharacters, tokenCharacters);
+			while (!extensible.isEmpty()) {
+				if (DEBUG) System.out.println("** Converting scannerless: " + extensible);
+				extensibleTokens.addAll(extensible);
+				this.grammar = new Grammar();
+				convert(topLevelModule);
+				extensible = TokenFollowAnalysis.findExtensibleTokens(grammar, regexpFirstCharacters, tokenCharacters);
+			}
+		}
+		
+		// no longer needed
+		this.generatedCFRules.clear();
+		this.generatedLexRules.clear();
+		this.prioritySpecsCF.clear();
+		this.prioritySpecsLex.clear();
+		this.productionIds.clear();
+		
+		GeneratedGrammar generatedGrammar = new GeneratedGrammar(grammar, productionMappings);
+		
+		return generatedGrammar;
+	}
+	
+	private void convert(Module topLevelModule) {
+		initState();
 		addRule(NS_CF, optLayoutCat);
 		
 		topLevelModule.visit(this, null);
@@ -134,16 +277,6 @@ public class SdfToParlexGrammarConverter implements Visitor {
 			if (DEBUG) System.out.println("** NO start symbols specified!");
 		}
 		grammar.setStartRule(startRule);
-		
-		// no longer needed
-		this.generatedCFRules.clear();
-		this.generatedLexRules.clear();
-		this.prioritySpecsCF.clear();
-		this.prioritySpecsLex.clear();
-		
-		GeneratedGrammar generatedGrammar = new GeneratedGrammar(grammar, productionMappings);
-		
-		return generatedGrammar;
 	}
 	
 	private void storeGeneratedRule(Production pro, Rule rule) {
@@ -151,7 +284,7 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		map.put(pro, rule);
 		
 		// store mapping rule -> production, including symbol labels
-		ProductionMapping mapping = new ProductionMapping(pro, rule);
+		ProductionMapping mapping = new ProductionMapping(pro, rule, getProductionId(pro));
 		int ruleIndex = 0;
 		ArrayList<Symbol> lhs = pro.getLhs();
 		for (int proIndex = 0; proIndex < lhs.size(); proIndex++) {
@@ -170,6 +303,23 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		}
 		
 		productionMappings.put(rule, mapping);
+		if (addedMappings != null) {
+			addedMappings.put(rule, mapping);
+		}
+	}
+	
+	/**
+	 * Returns the id of the production in the {@link ProductionIndex} of the generated grammar.
+	 * Ids are assigned in the order the productions are converted, equal productions (e.g. in
+	 * lexical and context-free syntax) get the same id.
+	 */
+	private int getProductionId(Production pro) {
+		Integer id = productionIds.get(pro);
+		if (id == null) {
+			id = productionIds.size();
+			productionIds.put(pro, id);
+		}
+		return id;
 	}
 	
 	private Rule getGeneratedRule(Production pro) {
@@ -195,8 +345,12 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		for (Imports imp : mod.getImportSections()) {
 			imp.visit(this, null);
 		}
-		for (ExportOrHiddenSection section : mod.getExportOrHiddenSections()) {
-			section.visit(this, null);
+		if (executor == null) {
+			for (ExportOrHiddenSection section : mod.getExportOrHiddenSections()) {
+				section.visit(this, null);
+			}
+		} else {
+			convertSectionsInParallel(mod);
 		}
 		
 		// process priority specifications (i.e. create the rule annotations)
@@ -206,6 +360,166 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		return null;
 	}
 
+	/**
+	 * Converts the productions of all syntax sections of the module using the executor,
+	 * then merges the results in order. All other grammar elements are visited in order
+	 * in the calling thread.
+	 */
+	private void convertSectionsInParallel(Module mod) {
+		// submit all productions first
+		ArrayList<GrammarElement> elements = new ArrayList<GrammarElement>();
+		IdentityHashMap<GrammarElement, List<Future<ConvertedProductions>>> tasks =
+			new IdentityHashMap<GrammarElement, List<Future<ConvertedProductions>>>();
+		for (ExportOrHiddenSection section : mod.getExportOrHiddenSections()) {
+			for (GrammarElement elm : section.getGrammarElements()) {
+				elements.add(elm);
+				if (elm instanceof LexicalSyntax || elm instanceof ContextFreeSyntax) {
+					tasks.put(elm, submitProductions(((Syntax)elm).getProductions(), elm instanceof ContextFreeSyntax));
+				}
+			}
+		}
+		
+		for (GrammarElement elm : elements) {
+			List<Future<ConvertedProductions>> futures = tasks.get(elm);
+			if (futures == null) {
+				elm.visit(this, null);
+				continue;
+			}
+			
+			this.inCFSyntax = elm instanceof ContextFreeSyntax;
+			for (Future<ConvertedProductions> future : futures) {
+				try {
+					mergeConvertedProductions(future.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while converting " + mod.getName(), e);
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException)cause;
+					} else if (cause instanceof Error) {
+						throw (Error)cause;
+					}
+					throw new IllegalStateException(cause);
+				}
+			}
+		}
+	}
+	
+	private List<Future<ConvertedProductions>> submitProductions(List<Production> productions, final boolean cfSyntax) {
+		List<Future<ConvertedProductions>> futures = new ArrayList<Future<ConvertedProductions>>();
+		for (int start = 0; start < productions.size(); start += PRODUCTIONS_PER_TASK) {
+			final List<Production> part = productions.subList(start,
+					Math.min(start + PRODUCTIONS_PER_TASK, productions.size()));
+			futures.add(executor.submit(new Callable<ConvertedProductions>() {
+				@Override
+				public ConvertedProductions call() {
+					SdfToParlexGrammarConverter converter = new SdfToParlexGrammarConverter(sdfDSL);
+					converter.setPreLexingEnabled(preLexingEnabled);
+					converter.setLeftRecursiveListsEnabled(leftRecursiveListsEnabled);
+					converter.extensibleTokens = extensibleTokens;
+					return converter.convertProductions(part, cfSyntax);
+				}
+			}));
+		}
+		return futures;
+	}
+	
+	/**
+	 * Converts the given productions with a new state, recording all added rules.
+	 */
+	private ConvertedProductions convertProductions(List<Production> productions, boolean cfSyntax) {
+		initState();
+		this.addedRules = new ArrayList<Rule>();
+		this.addedMappings = new IdentityHashMap<Rule, ProductionMapping>();
+		this.inCFSyntax = cfSyntax;
+		for (Production prod : productions) {
+			prod.visit(this, null);
+		}
+		return new ConvertedProductions(addedRules, addedMappings, characterClassCategories, tokenCategories,
+				regexpFirstCharacters, tokenCharacters);
+	}
+	
+	/**
+	 * Adds the rules of converted productions to the grammar, in the order they were created.
+	 * A rule for a production that was already converted before is skipped, just like
+	 * {@link #visitProduction(Production, Object)} does not create it again.
+	 *
+	 * <p>The converter of a task has its own categories, so the rules are created again with the
+	 * categories of this converter. This keeps one category instance per non-terminal, literal,
+	 * character class and token in the whole grammar.
+	 */
+	private void mergeConvertedProductions(ConvertedProductions converted) {
+		regexpFirstCharacters.putAll(converted.regexpFirstCharacters);
+		tokenCharacters.putAll(converted.tokenCharacters);
+		
+		IdentityHashMap<ICategory<String>, Category> categories = new IdentityHashMap<ICategory<String>, Category>();
+		for (Map.Entry<CharacterSet, Category> entry : converted.characterClassCategories.entrySet()) {
+			Category cat = characterClassCategories.get(entry.getKey());
+			if (cat == null) {
+				cat = entry.getValue();
+				characterClassCategories.put(entry.getKey(), cat);
+			}
+			categories.put(entry.getValue(), cat);
+		}
+		for (Map.Entry<String, Category> entry : converted.tokenCategories.entrySet()) {
+			Category cat = tokenCategories.get(entry.getKey());
+			if (cat == null) {
+				cat = entry.getValue();
+				tokenCategories.put(entry.getKey(), cat);
+			}
+			categories.put(entry.getValue(), cat);
+		}
+		
+		for (Rule convertedRule : converted.rules) {
+			ProductionMapping convertedMapping = converted.mappings.get(convertedRule);
+			if (convertedMapping != null && getGeneratedRule(convertedMapping.getProduction()) != null) {
+				continue;
+			}
+			
+			ICategory<String> lhs = getCategory(convertedRule.getLhs(), categories);
+			grammar.addCategory(lhs);
+			ArrayList<ICategory<String>> rhs = new ArrayList<ICategory<String>>(convertedRule.getRhs().size());
+			for (ICategory<String> cat : convertedRule.getRhs()) {
+				ICategory<String> mapped = getCategory(cat, categories);
+				rhs.add(mapped);
+				grammar.addCategory(mapped);
+			}
+			Rule rule = new Rule(lhs, rhs);
+			for (IRuleAnnotation ann : convertedRule.getAnnotations()) {
+				rule.addAnnotation(ann);
+			}
+			grammar.addRule(rule);
+			
+			if (convertedMapping != null) {
+				Production pro = convertedMapping.getProduction();
+				(inCFSyntax ? generatedCFRules : generatedLexRules).put(pro, rule);
+				// replace the id assigned by the converter of the task
+				ProductionMapping mapping = new ProductionMapping(pro, rule, getProductionId(pro));
+				for (int i = 0; i < rhs.size(); i++) {
+					mapping.setLabelForCategoryAtPosition(i, convertedMapping.getLabelForCategoryAtPosition(i));
+				}
+				productionMappings.put(rule, mapping);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the category of this converter for a category created by the converter of a task.
+	 * Case insensitive literals are not shared, just like when they are converted by this converter.
+	 */
+	private ICategory<String> getCategory(ICategory<String> cat, IdentityHashMap<ICategory<String>, Category> categories) {
+		Category mapped = categories.get(cat);
+		if (mapped != null) {
+			return mapped;
+		} else if (!cat.isTerminal()) {
+			return createNonTerminal(cat.getName());
+		} else if (cat.getClass() == Category.class) {
+			return createTerminalString(cat.getName());
+		}
+		return cat;
+	}
+
 	@Override
 	public Object visitExports(Exports exp, Object o) {
 		for (GrammarElement elm : exp.getGrammarElements()) {
@@ -353,32 +667,27 @@ public class SdfToParlexGrammarConverter implements Visitor {
 
 	@Override
 	public Object visitCharacterClassSymbol(CharacterClassSymbol sym, Object o) {
-		Category cat = new StringCategory("[" + sym.getRegexpPattern() + "]");
-		return cat;
+		return createCharacterClass(sym);
 	}
 	
 	@Override
 	public Object visitCharacterClassComplement(CharacterClassComplement sym, Object o) {
-		Category cat = new StringCategory("[" + sym.getRegexpPattern() + "]");
-		return cat;
+		return createCharacterClass(sym);
 	}
 
 	@Override
 	public Object visitCharacterClassDifference(CharacterClassDifference sym, Object o) {
-		Category cat = new StringCategory("[" + sym.getRegexpPattern() + "]");
-		return cat;
+		return createCharacterClass(sym);
 	}
 
 	@Override
 	public Object visitCharacterClassIntersection(CharacterClassIntersection sym, Object o) {
-		Category cat = new StringCategory("[" + sym.getRegexpPattern() + "]");
-		return cat;
+		return createCharacterClass(sym);
 	}
 
 	@Override
 	public Object visitCharacterClassUnion(CharacterClassUnion sym, Object o) {
-		Category cat = new StringCategory("[" + sym.getRegexpPattern() + "]");
-		return cat;
+		return createCharacterClass(sym);
 	}
 
 	@Override
@@ -389,12 +698,18 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		} else {
 			// case insensitive literal => regex
 			cat = new StringCategory("(?i:" + Pattern.quote(sym.getText()) + ")");
+			regexpFirstCharacters.put(cat.getName(), getFirstCharacters(sym));
 		}
 		return cat;
 	}
 
 	@Override
 	public Object visitOptionalSymbol(OptionalSymbol sym, Object o) {
+		Category token = createLexicalToken(sym);
+		if (token != null) {
+			return token;
+		}
+		
 		Symbol innerSymbol = sym.getSymbol();
 		Category innerCat = (Category)innerSymbol.visit(this, null);
 		
@@ -413,6 +728,11 @@ public class SdfToParlexGrammarConverter implements Visitor {
 
 	@Override
 	public Object visitRepetitionSymbol(RepetitionSymbol sym, Object o) {
+		Category token = createLexicalToken(sym);
+		if (token != null) {
+			return token;
+		}
+		
 		Symbol innerSymbol = sym.getSymbol();
 		Category innerCat = (Category)innerSymbol.visit(this, null);
 		
@@ -421,7 +741,7 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		// Add rules:
 		// <sym>		-> <sym>+
 		addRule(getCurrentNamespace(), symPlus, innerCat);
-		// <sym>+ <sym>	-> <sym>+			TODO: spec uses <sym>+ <sym>+ -> <sym>+ {left)
+		// <sym>+ <sym>	-> <sym>+			spec uses <sym>+ <sym>+ -> <sym>+ {left}, this is the same language without the ambiguity
 		addRule(getCurrentNamespace(), symPlus, symPlus, innerCat);
 		
 		if (sym.isAtLeastOnce()) {
@@ -447,6 +767,11 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	
 	@Override
 	public Object visitSequenceSymbol(SequenceSymbol sym, Object o) {
+		Category token = createLexicalToken(sym);
+		if (token != null) {
+			return token;
+		}
+		
 		Category cat = createNonTerminal(sym.toString());
 		
 		// Add rule with everything inside the sequence symbol -> cat
@@ -479,8 +804,13 @@ public class SdfToParlexGrammarConverter implements Visitor {
 		// Add rules:
 		// <elm>					-> <list>+
 		addRule(getCurrentNamespace(), symPlus, elementCat);
-		// <elm> <sep> <list>+		-> <list>+			TODO: spec uses <list>+ <sep> <list>+ -> <list>+ {left}
-		addRule(getCurrentNamespace(), symPlus, elementCat, seperatorCat, symPlus);
+		if (leftRecursiveListsEnabled) {
+			// <list>+ <sep> <elm>	-> <list>+			(same language as the spec, without the ambiguity)
+			addRule(getCurrentNamespace(), symPlus, symPlus, seperatorCat, elementCat);
+		} else {
+			// <elm> <sep> <list>+	-> <list>+			TODO: spec uses <list>+ <sep> <list>+ -> <list>+ {left}
+			addRule(getCurrentNamespace(), symPlus, elementCat, seperatorCat, symPlus);
+		}
 		
 		if (sym.isAtLeastOnce()) {
 			return createNonTerminal(innerName + "+");
@@ -498,6 +828,11 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	}
 	
 	public Object visitAlternativeSymbol(AlternativeSymbol sym, Object o) {
+		Category token = createLexicalToken(sym);
+		if (token != null) {
+			return token;
+		}
+		
 		Category cat = createNonTerminal(sym.toString());
 		
 		Category catLeft = (Category)sym.getLeft().visit(this, null);
@@ -617,18 +952,242 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	
 	//// HELPER METHODS ////
 	
+	/**
+	 * Returns the non-terminal category with the given name. All rules created by this converter
+	 * share one category instance per name.
+	 */
 	private Category createNonTerminal(String name) {
-		Category cat = new Category(name, false);
+		Category cat = nonTerminals.get(name);
+		if (cat == null) {
+			cat = new Category(name, false);
+			nonTerminals.put(name, cat);
+		}
 //		grammar.addCategory(cat); // (set)
 		return cat;
 	}
 	
 	private Category createTerminalString(String text) {
-		Category cat = new Category(text, true);
+		Category cat = terminals.get(text);
+		if (cat == null) {
+			cat = new Category(text, true);
+			terminals.put(text, cat);
+		}
 //		grammar.addCategory(cat);
 		return cat;
 	}
 	
+	/**
+	 * Creates the terminal category for a character class. Operators are evaluated on character
+	 * sets, so the regular expression of the category is a flat list of ranges.
+	 * Character classes matching the same characters share one category.
+	 */
+	private Category createCharacterClass(CharacterClass sym) {
+		CharacterSet chars = sym.getCharacterSet();
+		Category cat = characterClassCategories.get(chars);
+		if (cat == null) {
+			cat = new StringCategory("[" + chars.toRegexpPattern() + "]");
+			characterClassCategories.put(chars, cat);
+			regexpFirstCharacters.put(cat.getName(), chars);
+		}
+		return cat;
+	}
+	
+	/**
+	 * If pre-lexing is enabled and the symbol is a regular symbol in lexical syntax, creates
+	 * the non-terminal <tt>&lt;sym-LEX&gt;</tt> with a single rule matching a regular expression
+	 * terminal. The terminal never matches the empty string, <tt>sym*</tt> and <tt>sym?</tt>
+	 * get an additional epsilon rule instead.
+	 * 
+	 * <p>The rule has no production mapping and is in the LEX namespace, so the AST contains
+	 * the matched text as a lexical string, just like for the rules generated otherwise.
+	 * 
+	 * @return the non-terminal for the symbol, or null if the symbol must be converted as usual
+	 */
+	private Category createLexicalToken(Symbol sym) {
+		if (!preLexingEnabled || inCFSyntax) {
+			return null;
+		}
+		
+		Symbol body = sym;
+		String suffix = "";
+		boolean optional = false;
+		if (sym instanceof RepetitionSymbol) {
+			body = ((RepetitionSymbol)sym).getSymbol();
+			suffix = "+";
+			optional = !((RepetitionSymbol)sym).isAtLeastOnce();
+		} else if (sym instanceof OptionalSymbol) {
+			body = ((OptionalSymbol)sym).getSymbol();
+			optional = true;
+		}
+		
+		String regexp = getTokenRegexp(body);
+		if (regexp == null || isNullable(body)) {
+			return null;
+		}
+		regexp = "(?:" + regexp + ")" + suffix;
+		if (extensibleTokens.contains(regexp)) {
+			return null;
+		}
+		
+		Category token = tokenCategories.get(regexp);
+		if (token == null) {
+			token = new StringCategory(regexp);
+			tokenCategories.put(regexp, token);
+			regexpFirstCharacters.put(regexp, getFirstCharacters(body));
+			tokenCharacters.put(regexp, getCharacters(body));
+		}
+		
+		Category cat = createNonTerminal(sym.toString());
+		if (optional) {
+			//			-> <sym>
+			addRule(NS_LEX, cat, new ArrayList<ICategory<String>>());
+		}
+		// token	-> <sym>
+		ArrayList<ICategory<String>> tokenCategory = new ArrayList<ICategory<String>>(1);
+		tokenCategory.add(token);
+		addRule(NS_LEX, cat, tokenCategory);
+		
+		return createNonTerminal(sym.toString());
+	}
+	
+	/**
+	 * Returns a regular expression matching the symbol, or null if the symbol is not regular
+	 * (i.e. it refers to a sort or is a list, tuple or function symbol).
+	 */
+	private String getTokenRegexp(Symbol sym) {
+		if (sym instanceof CharacterClass) {
+			return "[" + ((CharacterClass)sym).getCharacterSet().toRegexpPattern() + "]";
+		} else if (sym instanceof LiteralSymbol) {
+			LiteralSymbol lit = (LiteralSymbol)sym;
+			String quoted = Pattern.quote(lit.getText());
+			return lit.isCaseSensitive() ? quoted : "(?i:" + quoted + ")";
+		} else if (sym instanceof SequenceSymbol) {
+			StringBuilder sb = new StringBuilder();
+			for (Symbol s : ((SequenceSymbol)sym).getSymbols()) {
+				String inner = getTokenRegexp(s);
+				if (inner == null) {
+					return null;
+				}
+				sb.append("(?:").append(inner).append(")");
+			}
+			return sb.toString();
+		} else if (sym instanceof AlternativeSymbol) {
+			String left = getTokenRegexp(((AlternativeSymbol)sym).getLeft());
+			String right = getTokenRegexp(((AlternativeSymbol)sym).getRight());
+			if (left == null || right == null) {
+				return null;
+			}
+			return "(?:" + left + "|" + right + ")";
+		} else if (sym instanceof RepetitionSymbol) {
+			String inner = getTokenRegexp(((RepetitionSymbol)sym).getSymbol());
+			if (inner == null) {
+				return null;
+			}
+			return "(?:" + inner + ")" + (((RepetitionSymbol)sym).isAtLeastOnce() ? "+" : "*");
+		} else if (sym instanceof OptionalSymbol) {
+			String inner = getTokenRegexp(((OptionalSymbol)sym).getSymbol());
+			if (inner == null) {
+				return null;
+			}
+			return "(?:" + inner + ")?";
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the characters a regular symbol can start with.
+	 */
+	private CharacterSet getFirstCharacters(Symbol sym) {
+		if (sym instanceof CharacterClass) {
+			return ((CharacterClass)sym).getCharacterSet();
+		} else if (sym instanceof LiteralSymbol) {
+			LiteralSymbol lit = (LiteralSymbol)sym;
+			return lit.getText().length() == 0 ? CharacterSet.EMPTY
+					: getLiteralCharacter(lit.getText().codePointAt(0), lit.isCaseSensitive());
+		} else if (sym instanceof SequenceSymbol) {
+			CharacterSet chars = CharacterSet.EMPTY;
+			for (Symbol s : ((SequenceSymbol)sym).getSymbols()) {
+				chars = chars.union(getFirstCharacters(s));
+				if (!isNullable(s)) {
+					break;
+				}
+			}
+			return chars;
+		} else if (sym instanceof AlternativeSymbol) {
+			return getFirstCharacters(((AlternativeSymbol)sym).getLeft()).union(
+					getFirstCharacters(((AlternativeSymbol)sym).getRight()));
+		} else if (sym instanceof RepetitionSymbol) {
+			return getFirstCharacters(((RepetitionSymbol)sym).getSymbol());
+		} else if (sym instanceof OptionalSymbol) {
+			return getFirstCharacters(((OptionalSymbol)sym).getSymbol());
+		}
+		return CharacterSet.ALL;
+	}
+	
+	/**
+	 * Returns all characters a regular symbol can contain.
+	 */
+	private CharacterSet getCharacters(Symbol sym) {
+		if (sym instanceof LiteralSymbol) {
+			LiteralSymbol lit = (LiteralSymbol)sym;
+			CharacterSet chars = CharacterSet.EMPTY;
+			String text = lit.getText();
+			for (int i = 0; i < text.length(); i += Character.charCount(text.codePointAt(i))) {
+				chars = chars.union(getLiteralCharacter(text.codePointAt(i), lit.isCaseSensitive()));
+			}
+			return chars;
+		} else if (sym instanceof SequenceSymbol) {
+			CharacterSet chars = CharacterSet.EMPTY;
+			for (Symbol s : ((SequenceSymbol)sym).getSymbols()) {
+				chars = chars.union(getCharacters(s));
+			}
+			return chars;
+		} else if (sym instanceof AlternativeSymbol) {
+			return getCharacters(((AlternativeSymbol)sym).getLeft()).union(
+					getCharacters(((AlternativeSymbol)sym).getRight()));
+		} else if (sym instanceof RepetitionSymbol) {
+			return getCharacters(((RepetitionSymbol)sym).getSymbol());
+		} else if (sym instanceof OptionalSymbol) {
+			return getCharacters(((OptionalSymbol)sym).getSymbol());
+		}
+		return getFirstCharacters(sym);
+	}
+	
+	/**
+	 * Returns the characters matching a character of a literal, case insensitive literals
+	 * use ASCII case folding like the regular expression created for them.
+	 */
+	private static CharacterSet getLiteralCharacter(int c, boolean caseSensitive) {
+		CharacterSet chars = CharacterSet.of(c);
+		if (!caseSensitive && c < 128 && Character.isLetter(c)) {
+			chars = chars.union(CharacterSet.of(Character.toLowerCase(c))).union(CharacterSet.of(Character.toUpperCase(c)));
+		}
+		return chars;
+	}
+	
+	/**
+	 * Checks if a regular symbol can match the empty string.
+	 */
+	private boolean isNullable(Symbol sym) {
+		if (sym instanceof LiteralSymbol) {
+			return ((LiteralSymbol)sym).getText().length() == 0;
+		} else if (sym instanceof SequenceSymbol) {
+			for (Symbol s : ((SequenceSymbol)sym).getSymbols()) {
+				if (!isNullable(s)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (sym instanceof AlternativeSymbol) {
+			return isNullable(((AlternativeSymbol)sym).getLeft()) || isNullable(((AlternativeSymbol)sym).getRight());
+		} else if (sym instanceof RepetitionSymbol) {
+			return !((RepetitionSymbol)sym).isAtLeastOnce() || isNullable(((RepetitionSymbol)sym).getSymbol());
+		} else if (sym instanceof OptionalSymbol) {
+			return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * Note: LHS/RHS are swapped in SDF and Parlex!
 	 * @param namespace		Namespace for the rule, applied to both RHS and LHS. Can be null when the categories already contain namespace information or namespaces are not needed.
@@ -671,6 +1230,9 @@ public class SdfToParlexGrammarConverter implements Visitor {
 			rule = new Rule(rhsCategory, lhsCategories);
 		}
 		grammar.addRule(rule);
+		if (addedRules != null) {
+			addedRules.add(rule);
+		}
 		return rule;
 	}
 	
@@ -682,6 +1244,7 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	/**
 	 * Adds namespace information to the category name (for non-terminal categories), returning a new category.
 	 * Terminal categories are not modified and returned unchanged.
+	 * The wrapped categories are cached, so the name is only built once per category and namespace.
 	 * @param cat
 	 * @param namespace
 	 * @return
@@ -689,9 +1252,14 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	private ICategory<String> wrapCategory(ICategory<String> cat, String namespace) {
 		if (cat.isTerminal()) {
 			return cat;
-		} else {
-			return createNonTerminal("<" + cat.getName() + "-" + namespace + ">");
 		}
+		HashMap<ICategory<String>,Category> wrapped = NS_CF.equals(namespace) ? cfCategories : lexCategories;
+		Category wrappedCat = wrapped.get(cat);
+		if (wrappedCat == null) {
+			wrappedCat = createNonTerminal("<" + cat.getName() + "-" + namespace + ">");
+			wrapped.put(cat, wrappedCat);
+		}
+		return wrappedCat;
 	}
 
 	private String getCurrentNamespace() {
@@ -824,6 +1392,31 @@ public class SdfToParlexGrammarConverter implements Visitor {
 	}
 
 
+	/**
+	 * The rules created for a part of a syntax section, see {@link SdfToParlexGrammarConverter#convertProductions(List, boolean)}.
+	 */
+	private static class ConvertedProductions {
+		final List<Rule> rules;
+		/** the production mappings of the rules created for productions */
+		final IdentityHashMap<Rule, ProductionMapping> mappings;
+		/** the categories of the converter of the task */
+		final HashMap<CharacterSet, Category> characterClassCategories;
+		final HashMap<String, Category> tokenCategories;
+		final HashMap<String, CharacterSet> regexpFirstCharacters;
+		final HashMap<String, CharacterSet> tokenCharacters;
+		
+		public ConvertedProductions(List<Rule> rules, IdentityHashMap<Rule, ProductionMapping> mappings,
+				HashMap<CharacterSet, Category> characterClassCategories, HashMap<String, Category> tokenCategories,
+				HashMap<String, CharacterSet> regexpFirstCharacters, HashMap<String, CharacterSet> tokenCharacters) {
+			this.rules = rules;
+			this.mappings = mappings;
+			this.characterClassCategories = characterClassCategories;
+			this.tokenCategories = tokenCategories;
+			this.regexpFirstCharacters = regexpFirstCharacters;
+			this.tokenCharacters = tokenCharacters;
+		}
+	}
+	
 	/**
 	 * Internal helper class that stores a relative priority between two productions.
 	 * Also stores if the priority is transitive or not.
@@ -0,0 +1,69 @@
+package sdf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+
+import sdf.ParseStageEvent.Counter;
+import sdf.ParseStageEvent.Stage;
+
+/**
+ * Measures a stage and reports it to a {@link ParseStageListener}. Timers are only created if
+ * a listener is attached, {@link #start(ParseStageListener, Stage, String)} returns null otherwise,
+ * so that counters which are expensive to compute can be skipped.
+ *
+ */
+final class StageTimer {
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	private final ParseStageListener listener;
+	private final Stage stage;
+	private final String topLevelModuleName;
+	private final long startTime;
+	private final long startAllocation;
+	private final EnumMap<Counter, Long> counters = new EnumMap<Counter, Long>(Counter.class);
+
+	private StageTimer(ParseStageListener listener, Stage stage, String topLevelModuleName) {
+		this.listener = listener;
+		this.stage = stage;
+		this.topLevelModuleName = topLevelModuleName;
+		this.startAllocation = getAllocatedBytes();
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * @return a new timer, or null if the listener is null
+	 */
+	static StageTimer start(ParseStageListener listener, Stage stage, String topLevelModuleName) {
+		return listener == null ? null : new StageTimer(listener, stage, topLevelModuleName);
+	}
+
+	StageTimer count(Counter counter, long value) {
+		counters.put(counter, value);
+		return this;
+	}
+
+	/**
+	 * Reports the stage to the listener.
+	 */
+	void stop() {
+		long wallTime = System.nanoTime() - startTime;
+		long allocation = startAllocation < 0 ? -1 : getAllocatedBytes() - startAllocation;
+		listener.stageCompleted(new ParseStageEvent(stage, topLevelModuleName, wallTime, allocation, counters));
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread, or -1 if not supported by the JVM
+	 */
+	private static long getAllocatedBytes() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)threadBean;
+			if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+				return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+}
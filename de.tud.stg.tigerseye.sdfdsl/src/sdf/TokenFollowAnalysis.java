@@ -0,0 +1,164 @@
+package sdf;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import sdf.util.CharacterSet;
+import de.tud.stg.parlex.core.Category;
+import de.tud.stg.parlex.core.Grammar;
+import de.tud.stg.parlex.core.ICategory;
+import de.tud.stg.parlex.core.IRule;
+
+/**
+ * Finds the tokens created by pre-lexing (see {@link SdfToParlexGrammarConverter#setPreLexingEnabled(boolean)})
+ * that can be extended by a character following them in the grammar.
+ *
+ * <p>A token is matched greedily by its regular expression, so the parser never splits the characters
+ * matched by a token. If a character that can follow the token can also continue its match, the token
+ * changes the accepted language: for <code>[a-z]+ "x" -&gt; Id</code>, the token for <code>[a-z]+</code>
+ * consumes all of <code>abx</code>, so the input would be rejected. Such tokens have to be converted
+ * scannerless.
+ *
+ * <p>The characters that can follow a token are computed from the FIRST and FOLLOW sets of the grammar,
+ * using the first characters of the terminals. The characters that can continue a match are approximated
+ * by all characters the token can contain.
+ *
+ */
+final class TokenFollowAnalysis {
+
+	private final Map<String, CharacterSet> regexpFirstCharacters;
+	private final Map<String, CharacterSet> tokenCharacters;
+
+	/** names of the nullable non-terminals */
+	private final HashSet<String> nullable = new HashSet<String>();
+	/** non-terminal name -> first characters */
+	private final HashMap<String, CharacterSet> first = new HashMap<String, CharacterSet>();
+	/** non-terminal name -> characters that can follow the non-terminal */
+	private final HashMap<String, CharacterSet> follow = new HashMap<String, CharacterSet>();
+	/** token regexp -> characters that can follow the token */
+	private final HashMap<String, CharacterSet> tokenFollow = new HashMap<String, CharacterSet>();
+
+	private TokenFollowAnalysis(Map<String, CharacterSet> regexpFirstCharacters,
+			Map<String, CharacterSet> tokenCharacters) {
+		this.regexpFirstCharacters = regexpFirstCharacters;
+		this.tokenCharacters = tokenCharacters;
+	}
+
+	/**
+	 * Returns the tokens of the grammar that can be extended by a character following them.
+	 *
+	 * @param grammar					the generated grammar
+	 * @param regexpFirstCharacters		the first characters of all regular expression terminals
+	 * 									(character classes, case insensitive literals and tokens); terminals
+	 * 									that are not contained can start with any character
+	 * @param tokenCharacters			token regexp -> all characters the token can contain
+	 * @return the regular expressions of the tokens that can be extended
+	 */
+	static Set<String> findExtensibleTokens(Grammar grammar, Map<String, CharacterSet> regexpFirstCharacters,
+			Map<String, CharacterSet> tokenCharacters) {
+		HashSet<String> extensible = new HashSet<String>();
+		if (tokenCharacters.isEmpty()) {
+			return extensible;
+		}
+
+		TokenFollowAnalysis analysis = new TokenFollowAnalysis(regexpFirstCharacters, tokenCharacters);
+		analysis.computeFirstSets(grammar.getRules());
+		analysis.computeFollowSets(grammar.getRules());
+
+		for (Map.Entry<String, CharacterSet> token : analysis.tokenFollow.entrySet()) {
+			if (!token.getValue().intersection(tokenCharacters.get(token.getKey())).isEmpty()) {
+				extensible.add(token.getKey());
+			}
+		}
+		return extensible;
+	}
+
+	private void computeFirstSets(Set<IRule<String>> rules) {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (IRule<String> rule : rules) {
+				String lhs = rule.getLhs().getName();
+				CharacterSet chars = get(first, lhs);
+				boolean allNullable = true;
+				for (ICategory<String> cat : rule.getRhs()) {
+					chars = chars.union(getFirst(cat));
+					if (!isNullable(cat)) {
+						allNullable = false;
+						break;
+					}
+				}
+				if (allNullable && nullable.add(lhs)) {
+					changed = true;
+				}
+				if (!chars.equals(get(first, lhs))) {
+					first.put(lhs, chars);
+					changed = true;
+				}
+			}
+		}
+	}
+
+	private void computeFollowSets(Set<IRule<String>> rules) {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (IRule<String> rule : rules) {
+				// characters that can follow the current position, walking backwards
+				CharacterSet trailer = get(follow, rule.getLhs().getName());
+				List<ICategory<String>> rhs = rule.getRhs();
+				for (int i = rhs.size() - 1; i >= 0; i--) {
+					ICategory<String> cat = rhs.get(i);
+					if (!cat.isTerminal()) {
+						changed |= addAll(follow, cat.getName(), trailer);
+					} else if (tokenCharacters.containsKey(cat.getName())) {
+						addAll(tokenFollow, cat.getName(), trailer);
+					}
+					trailer = isNullable(cat) ? trailer.union(getFirst(cat)) : getFirst(cat);
+				}
+			}
+		}
+	}
+
+	private CharacterSet getFirst(ICategory<String> cat) {
+		if (!cat.isTerminal()) {
+			return get(first, cat.getName());
+		}
+		if (cat.getClass() == Category.class) {
+			// case sensitive literal
+			String text = cat.getName();
+			return text.length() == 0 ? CharacterSet.EMPTY : CharacterSet.of(text.codePointAt(0));
+		}
+		CharacterSet chars = regexpFirstCharacters.get(cat.getName());
+		return chars == null ? CharacterSet.ALL : chars;
+	}
+
+	private boolean isNullable(ICategory<String> cat) {
+		if (cat.isTerminal()) {
+			return cat.getClass() == Category.class && cat.getName().length() == 0;
+		}
+		return nullable.contains(cat.getName());
+	}
+
+	private static CharacterSet get(Map<String, CharacterSet> sets, String name) {
+		CharacterSet chars = sets.get(name);
+		return chars == null ? CharacterSet.EMPTY : chars;
+	}
+
+	/**
+	 * @return true if characters were added to the set
+	 */
+	private static boolean addAll(Map<String, CharacterSet> sets, String name, CharacterSet chars) {
+		CharacterSet old = get(sets, name);
+		CharacterSet union = old.union(chars);
+		if (union.equals(old)) {
+			return false;
+		}
+		sets.put(name, union);
+		return true;
+	}
+
+}
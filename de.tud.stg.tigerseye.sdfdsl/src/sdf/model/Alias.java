@@ -35,6 +35,7 @@ public class Alias extends SdfElement {
 	}
 
 	public void setOriginal(Symbol original) {
+		modified();
 		this.original = original;
 	}
 
@@ -43,6 +44,7 @@ public class Alias extends SdfElement {
 	}
 
 	public void setAliasName(Symbol aliasName) {
+		modified();
 		this.aliasName = aliasName;
 	}
 
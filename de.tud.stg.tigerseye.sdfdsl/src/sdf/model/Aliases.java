@@ -31,6 +31,7 @@ public class Aliases extends GrammarElement {
 	}
 
 	public void setAliasList(ArrayList<Alias> aliasList) {
+		modified();
 		this.aliasList = aliasList;
 	}
 
@@ -38,6 +38,7 @@ public class AlternativeSymbol extends Symbol {
 	}
 
 	public void setLeft(Symbol left) {
+		modified();
 		this.left = left;
 	}
 
@@ -46,6 +47,7 @@ public class AlternativeSymbol extends Symbol {
 	}
 
 	public void setRight(Symbol right) {
+		modified();
 		this.right = right;
 	}
 
@@ -60,7 +62,7 @@ public class AlternativeSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((left == null) ? 0 : left.hashCode());
@@ -69,7 +71,7 @@ public class AlternativeSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
@@ -1,5 +1,7 @@
 package sdf.model;
 
+import sdf.util.CharacterSet;
+
 /**
  * Superclass for character classes.
  * This includes simple character classes (e.g. {@code [0-9a-z]}) and character classes combined with operators
@@ -16,6 +18,23 @@ package sdf.model;
  */
 public abstract class CharacterClass extends Symbol {
 
-	public abstract String getRegexpPattern();
+	/**
+	 * Returns the set of characters matched by this character class. Operators are evaluated
+	 * on the character sets of the operands.
+	 * 
+	 * @return the characters matched by this character class
+	 */
+	public abstract CharacterSet getCharacterSet();
+
+	/**
+	 * Returns a Java regular expression character class (without the enclosing brackets)
+	 * matching the same characters as this character class. The pattern is created from
+	 * {@link #getCharacterSet()}, so it is a flat list of ranges even if operators are used.
+	 * 
+	 * @return a regular expression character class
+	 */
+	public String getRegexpPattern() {
+		return getCharacterSet().toRegexpPattern();
+	}
 
 }
@@ -1,5 +1,7 @@
 package sdf.model;
 
+import sdf.util.CharacterSet;
+
 /**
  * Character class complement operator.
  * Accepts all characters not in the inner character class.
@@ -37,6 +39,7 @@ public class CharacterClassComplement extends CharacterClass {
 	}
 
 	public void setSymbol(CharacterClass symbol) {
+		modified();
 		this.symbol = symbol;
 	}
 
@@ -51,7 +54,7 @@ public class CharacterClassComplement extends CharacterClass {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((symbol == null) ? 0 : symbol.hashCode());
@@ -59,7 +62,7 @@ public class CharacterClassComplement extends CharacterClass {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
@@ -76,8 +79,8 @@ public class CharacterClassComplement extends CharacterClass {
 	}
 
 	@Override
-	public String getRegexpPattern() {
-		return "^" + symbol.getRegexpPattern();
+	public CharacterSet getCharacterSet() {
+		return symbol.getCharacterSet().complement();
 	}
 
 	
@@ -1,5 +1,7 @@
 package sdf.model;
 
+import sdf.util.CharacterSet;
+
 /**
  * Character class difference operator.
  * Accepts all characters that are in the first (left) class, but not in the second (right) class.
@@ -40,6 +42,7 @@ public class CharacterClassDifference extends CharacterClass {
 	}
 
 	public void setLeft(CharacterClass left) {
+		modified();
 		this.left = left;
 	}
 
@@ -48,6 +51,7 @@ public class CharacterClassDifference extends CharacterClass {
 	}
 
 	public void setRight(CharacterClass right) {
+		modified();
 		this.right = right;
 	}
 
@@ -62,7 +66,7 @@ public class CharacterClassDifference extends CharacterClass {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((left == null) ? 0 : left.hashCode());
@@ -71,7 +75,7 @@ public class CharacterClassDifference extends CharacterClass {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
@@ -93,8 +97,8 @@ public class CharacterClassDifference extends CharacterClass {
 	}
 
 	@Override
-	public String getRegexpPattern() {
-		return left.getRegexpPattern() + "&&[^" + right.getRegexpPattern() + "]";
+	public CharacterSet getCharacterSet() {
+		return left.getCharacterSet().difference(right.getCharacterSet());
 	}
 	
 	
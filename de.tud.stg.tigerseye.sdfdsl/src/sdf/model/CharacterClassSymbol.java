@@ -1,7 +1,6 @@
 package sdf.model;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import sdf.util.CharacterSet;
 
 /**
  * A simple character class literal.
@@ -69,6 +68,7 @@ public class CharacterClassSymbol extends CharacterClass {
 	}
 
 	public void setPattern(String pattern) {
+		modified();
 		this.pattern = pattern;
 	}
 
@@ -83,7 +83,7 @@ public class CharacterClassSymbol extends CharacterClass {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((pattern == null) ? 0 : pattern.hashCode());
@@ -91,7 +91,7 @@ public class CharacterClassSymbol extends CharacterClass {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
@@ -107,27 +107,10 @@ public class CharacterClassSymbol extends CharacterClass {
 		return true;
 	}
 	
-	static final Pattern decimalEscapePattern = Pattern.compile("\\\\([0-9]{1,3})");
-
 	@Override
-	public String getRegexpPattern() {
-		// SDF uses a different syntax for escaping non-printable characters.
-		// SDF syntax: \decimal, e.g. \0, \31, \255
-		// Java regex syntax: \xHH (hexadecimal), e.g. \x00, \x1f, \xff
-		// These escapes are converted in the following loop
-		
-		Matcher m = decimalEscapePattern.matcher(pattern);
-		StringBuffer sb = new StringBuffer();
-		while (m.find()) {
-			String decimal = m.group(1);
-			String hex = Integer.toString(Integer.parseInt(decimal), 16);
-			if (hex.length() == 1) hex = "0" + hex;
-			String newEscape = "\\x" + hex;
-			m.appendReplacement(sb, Matcher.quoteReplacement(newEscape));
-		}
-		m.appendTail(sb);
-		
-		return sb.toString();
+	public CharacterSet getCharacterSet() {
+		// SDF escapes (e.g. \n or decimal escapes like \31) are resolved by CharacterSet.parse
+		return CharacterSet.parse(pattern);
 	}
 
 	
@@ -25,6 +25,7 @@ public abstract class ExportOrHiddenSection extends SdfElement {
 	}
 
 	public void setGrammarElements(ArrayList<GrammarElement> grammarElements) {
+		modified();
 		this.grammarElements = grammarElements;
 	}
 	
@@ -47,6 +47,7 @@ public class FunctionSymbol extends Symbol {
 	}
 
 	public void setLeft(ArrayList<Symbol> left) {
+		modified();
 		this.left = left;
 	}
 
@@ -55,6 +56,7 @@ public class FunctionSymbol extends Symbol {
 	}
 
 	public void setRight(Symbol right) {
+		modified();
 		this.right = right;
 	}
 	
@@ -85,7 +87,7 @@ public class FunctionSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((left == null) ? 0 : left.hashCode());
@@ -94,7 +96,7 @@ public class FunctionSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
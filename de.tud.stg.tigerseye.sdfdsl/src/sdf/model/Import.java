@@ -63,6 +63,7 @@ public class Import extends SdfElement {
 	}
 
 	public void setModuleName(String moduleName) {
+		modified();
 		this.moduleName = moduleName;
 	}
 
@@ -71,6 +72,7 @@ public class Import extends SdfElement {
 	}
 
 	public void setParameters(ArrayList<Symbol> parameters) {
+		modified();
 		this.parameters = parameters;
 	}
 
@@ -79,6 +81,7 @@ public class Import extends SdfElement {
 	}
 
 	public void setRenamings(HashMap<Symbol, Symbol> renamings) {
+		modified();
 		this.renamings = renamings;
 	}
 
@@ -29,6 +29,7 @@ public class Imports extends GrammarElement {
 	}
 
 	public void setImportList(ArrayList<Import> importList) {
+		modified();
 		this.importList = importList;
 	}
 
@@ -50,6 +50,7 @@ public class ListSymbol extends Symbol {
 	}
 
 	public void setElement(Symbol element) {
+		modified();
 		this.element = element;
 	}
 
@@ -58,6 +59,7 @@ public class ListSymbol extends Symbol {
 	}
 
 	public void setSeperator(Symbol seperator) {
+		modified();
 		this.seperator = seperator;
 	}
 
@@ -66,6 +68,7 @@ public class ListSymbol extends Symbol {
 	}
 
 	public void setAtLeastOnce(boolean atLeastOnce) {
+		modified();
 		this.atLeastOnce = atLeastOnce;
 	}
 
@@ -80,7 +83,7 @@ public class ListSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (atLeastOnce ? 1231 : 1237);
@@ -91,7 +94,7 @@ public class ListSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
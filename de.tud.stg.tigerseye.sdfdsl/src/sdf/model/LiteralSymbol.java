@@ -37,6 +37,7 @@ public class LiteralSymbol extends Symbol {
 	}
 
 	public void setText(String text) {
+		modified();
 		this.text = text;
 	}
 
@@ -45,6 +46,7 @@ public class LiteralSymbol extends Symbol {
 	}
 
 	public void setCaseSensitive(boolean caseSensitive) {
+		modified();
 		this.caseSensitive = caseSensitive;
 	}
 
@@ -66,7 +68,7 @@ public class LiteralSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (caseSensitive ? 1231 : 1237);
@@ -75,7 +77,7 @@ public class LiteralSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
@@ -55,6 +55,7 @@ public class Module extends SdfElement {
 	}
 
 	public void setParameters(ArrayList<Symbol> parameters) {
+		modified();
 		this.parameters = parameters;
 	}
 
@@ -63,6 +64,7 @@ public class Module extends SdfElement {
 	}
 
 	public void setImportSections(ArrayList<Imports> importSections) {
+		modified();
 		this.importSections = importSections;
 	}
 
@@ -72,6 +74,7 @@ public class Module extends SdfElement {
 
 	public void setExportOrHiddenSections(
 			ArrayList<ExportOrHiddenSection> exportOrHiddenSections) {
+		modified();
 		this.exportOrHiddenSections = exportOrHiddenSections;
 	}
 
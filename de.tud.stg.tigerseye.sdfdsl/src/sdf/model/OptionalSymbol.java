@@ -32,6 +32,7 @@ public class OptionalSymbol extends Symbol {
 	}
 
 	public void setSymbol(Symbol symbol) {
+		modified();
 		this.symbol = symbol;
 	}
 
@@ -46,7 +47,7 @@ public class OptionalSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((symbol == null) ? 0 : symbol.hashCode());
@@ -54,7 +55,7 @@ public class OptionalSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
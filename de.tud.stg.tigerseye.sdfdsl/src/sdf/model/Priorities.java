@@ -52,6 +52,7 @@ public abstract class Priorities extends GrammarElement {
 	}
 
 	public void setPriorities(ArrayList<Priority> priorities) {
+		modified();
 		this.priorities = priorities;
 	}
 
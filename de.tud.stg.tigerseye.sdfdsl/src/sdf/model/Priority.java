@@ -34,6 +34,7 @@ public class Priority extends SdfElement {
 	}
 
 	public void setGroups(ArrayList<PriorityGroup> groups) {
+		modified();
 		this.groups = groups;
 	}
 
@@ -39,6 +39,7 @@ public class PriorityGroup extends SdfElement {
 	}
 
 	public void setProductions(ArrayList<Production> productions) {
+		modified();
 		this.productions = productions;
 	}
 
@@ -47,6 +48,7 @@ public class PriorityGroup extends SdfElement {
 	}
 
 	public void setAssociativity(ATerm associativity) {
+		modified();
 		this.associativity = associativity;
 	}
 
@@ -55,6 +57,7 @@ public class PriorityGroup extends SdfElement {
 	}
 
 	public void setTransitive(boolean transitive) {
+		modified();
 		this.transitive = transitive;
 	}
 
@@ -47,6 +47,7 @@ public class Production extends SdfElement {
 	}
 
 	public void setLhs(ArrayList<Symbol> lhs) {
+		modified();
 		this.lhs = lhs;
 	}
 
@@ -55,6 +56,7 @@ public class Production extends SdfElement {
 	}
 
 	public void setRhs(Symbol rhs) {
+		modified();
 		this.rhs = rhs;
 	}
 	
@@ -63,6 +65,7 @@ public class Production extends SdfElement {
 	}
 
 	public void setAttributes(ArrayList<ATerm> attributes) {
+		modified();
 		this.attributes = attributes;
 	}
 	
@@ -71,6 +74,7 @@ public class Production extends SdfElement {
 	}
 	
 	public void addAttributes(ArrayList<ATerm> newAttributes) {
+		modified();
 		if (hasAttributes()) {
 			for (ATerm attr : newAttributes) {
 				if (!this.attributes.contains(attr)) {
@@ -41,6 +41,7 @@ public class RepetitionSymbol extends Symbol {
 	}
 
 	public void setSymbol(Symbol symbol) {
+		modified();
 		this.symbol = symbol;
 	}
 
@@ -49,6 +50,7 @@ public class RepetitionSymbol extends Symbol {
 	}
 
 	public void setAtLeastOnce(boolean atLeastOnce) {
+		modified();
 		this.atLeastOnce = atLeastOnce;
 	}
 
@@ -63,7 +65,7 @@ public class RepetitionSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (atLeastOnce ? 1231 : 1237);
@@ -72,7 +74,7 @@ public class RepetitionSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
@@ -1,5 +1,7 @@
 package sdf.model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Superclass for all elements of a SDF grammar.
  * 
@@ -7,5 +9,25 @@ package sdf.model;
  *
  */
 public abstract class SdfElement {
+	private static final AtomicLong modificationCount = new AtomicLong();
+	
 	public abstract Object visit(Visitor visitor, Object o);
+	
+	/**
+	 * Returns how often the setters (and adders) of any SDF element have been called so far.
+	 * Caches can compare the count with an earlier value to find out cheaply whether elements may
+	 * have been modified in place. Modifications of the lists returned by the getters are not counted.
+	 * 
+	 * @return the number of modifications of all SDF elements
+	 */
+	public static long getModificationCount() {
+		return modificationCount.get();
+	}
+	
+	/**
+	 * Must be called by all methods modifying an element.
+	 */
+	protected void modified() {
+		modificationCount.incrementAndGet();
+	}
 }
@@ -34,6 +34,7 @@ public class SequenceSymbol extends Symbol {
 	}
 
 	public void setSymbols(ArrayList<Symbol> symbols) {
+		modified();
 		this.symbols = symbols;
 	}
 
@@ -61,7 +62,7 @@ public class SequenceSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((symbols == null) ? 0 : symbols.hashCode());
@@ -69,7 +70,7 @@ public class SequenceSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
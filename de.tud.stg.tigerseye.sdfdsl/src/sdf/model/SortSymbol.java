@@ -36,6 +36,7 @@ public class SortSymbol extends Symbol {
 	}
 
 	public void setName(String name) {
+		modified();
 		this.name = name;
 	}
 
@@ -50,7 +51,7 @@ public class SortSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((name == null) ? 0 : name.hashCode());
@@ -58,7 +59,7 @@ public class SortSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
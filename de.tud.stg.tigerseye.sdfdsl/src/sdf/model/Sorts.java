@@ -29,6 +29,7 @@ public class Sorts extends GrammarElement {
 	}
 
 	public void setSymbols(ArrayList<SortSymbol> symbols) {
+		modified();
 		this.symbols = symbols;
 	}
 
@@ -26,6 +26,7 @@ public abstract class StartSymbols extends GrammarElement {
 	}
 
 	public void setSymbols(ArrayList<Symbol> symbols) {
+		modified();
 		this.symbols = symbols;
 	}
 
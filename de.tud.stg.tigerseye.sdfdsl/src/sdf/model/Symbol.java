@@ -1,16 +1,29 @@
 package sdf.model;
 
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
 /**
  * Superclass for all SDF symbols
  * All symbols can have an optional label (SDF syntax: <tt><i>label</i>:<i>Symbol</i></tt>).
  * Symbols can be compared using the {@link #equals(Object) equals} method.
- * 
+ *
+ * <p>For each unlabeled symbol, there is a canonical instance (see {@link #intern(Symbol)}). Canonical
+ * symbols cache their hash code and are compared by identity with each other, so lookups of symbols
+ * consisting of canonical symbols do not have to walk nested symbol structures.
+ *
  * @author Pablo Hoch
  * @see <a href="http://homepages.cwi.nl/~daybuild/daily-books/syntax/sdf/sdf.html#section.symbols">SDF Documentation</a>
  * @see <a href="http://homepages.cwi.nl/~daybuild/daily-books/syntax/sdf/sdf.html#section.labels">Labelled symbols</a>
  *
  */
 public abstract class Symbol extends SdfElement {
+	/**
+	 * The canonical instances of all symbols that have been interned and are still referenced.
+	 */
+	private static final WeakHashMap<Symbol, WeakReference<Symbol>> canonicalSymbols =
+		new WeakHashMap<Symbol, WeakReference<Symbol>>();
+
 	/**
 	 * Label for the symbol. Can be null (default) or a String.
 	 * Example (left and right are labels for the sort symbols):
@@ -18,18 +31,93 @@ public abstract class Symbol extends SdfElement {
 	 */
 	String label;
 
+	/**
+	 * True if this is the canonical instance of the symbol (set after {@link #hash}).
+	 */
+	private volatile boolean canonical;
+
+	/**
+	 * The hash code of a canonical symbol.
+	 */
+	private int hash;
+
+	/**
+	 * Returns the canonical instance of a symbol, i.e. the first interned symbol that is equal to the given symbol
+	 * and is still referenced. If there is no such symbol, the given symbol becomes the canonical instance.
+	 *
+	 * <p>Canonical symbols cannot be modified anymore, their setters throw an {@link IllegalStateException}.
+	 * The symbols contained in a canonical symbol must not be modified either, they should be canonical themselves.
+	 * Labeled symbols are returned unchanged, since the label belongs to one occurrence of the symbol.
+	 *
+	 * @param symbol	the symbol
+	 * @return the canonical instance, or the given symbol if it is labeled
+	 */
+	public static Symbol intern(Symbol symbol) {
+		if (symbol.canonical || symbol.label != null) {
+			return symbol;
+		}
+		synchronized (canonicalSymbols) {
+			WeakReference<Symbol> ref = canonicalSymbols.get(symbol);
+			Symbol canonicalSymbol = ref != null ? ref.get() : null;
+			if (canonicalSymbol == null) {
+				symbol.hash = symbol.structuralHashCode();
+				symbol.canonical = true;
+				canonicalSymbols.put(symbol, new WeakReference<Symbol>(symbol));
+				canonicalSymbol = symbol;
+			}
+			return canonicalSymbol;
+		}
+	}
+
+	/**
+	 * @return true if this is the canonical instance of the symbol (see {@link #intern(Symbol)})
+	 */
+	public boolean isCanonical() {
+		return canonical;
+	}
+
+	@Override
+	protected void modified() {
+		if (canonical) {
+			throw new IllegalStateException("The canonical symbol " + this + " must not be modified");
+		}
+		super.modified();
+	}
+
 	@Override
-	public abstract boolean equals(Object other);
-	
+	public final boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (canonical && other instanceof Symbol && ((Symbol)other).canonical) {
+			// there is only one canonical instance of each symbol
+			return false;
+		}
+		return structurallyEquals(other);
+	}
+
 	@Override
-	public abstract int hashCode();
+	public final int hashCode() {
+		return canonical ? hash : structuralHashCode();
+	}
+
+	/**
+	 * Compares the structure of the symbols, ignoring the labels.
+	 */
+	protected abstract boolean structurallyEquals(Object other);
+
+	/**
+	 * Computes the hash code from the structure of the symbol, ignoring the label.
+	 */
+	protected abstract int structuralHashCode();
 
 	public String getLabel() {
 		return label;
 	}
 
 	public void setLabel(String label) {
+		modified();
 		this.label = label;
 	}
-	
+
 }
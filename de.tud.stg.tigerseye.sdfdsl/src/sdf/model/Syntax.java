@@ -25,6 +25,7 @@ public abstract class Syntax extends GrammarElement {
 	}
 
 	public void setProductions(ArrayList<Production> productions) {
+		modified();
 		this.productions = productions;
 	}
 	
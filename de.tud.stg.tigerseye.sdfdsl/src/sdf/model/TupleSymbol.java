@@ -42,6 +42,7 @@ public class TupleSymbol extends Symbol {
 	}
 
 	public void setSymbols(ArrayList<Symbol> symbols) {
+		modified();
 		this.symbols = symbols;
 	}
 
@@ -70,7 +71,7 @@ public class TupleSymbol extends Symbol {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int structuralHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((symbols == null) ? 0 : symbols.hashCode());
@@ -78,7 +79,7 @@ public class TupleSymbol extends Symbol {
 	}
 
 	@Override
-	public boolean equals(Object obj) {
+	protected boolean structurallyEquals(Object obj) {
 		if (this == obj)
 			return true;
 		if (obj == null)
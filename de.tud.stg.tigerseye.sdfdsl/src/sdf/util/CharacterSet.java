@@ -0,0 +1,304 @@
+package sdf.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable set of characters (Unicode code points), used to represent SDF character classes.
+ *
+ * <p>The set is stored as a sorted list of disjoint, non-adjacent code point ranges. Membership of
+ * Latin-1 characters (0-255) is additionally stored in a 256 bit bitset, so that {@link #contains(int)}
+ * does not have to search the ranges for these characters.
+ *
+ * <p>The set operations (union, intersection, difference and complement) are computed on the ranges.
+ * The complement is relative to all code points (0 to {@link Character#MAX_CODE_POINT}), which
+ * corresponds to a negated character class in a Java regular expression.
+ *
+ * @see sdf.model.CharacterClass#getCharacterSet()
+ *
+ */
+public final class CharacterSet {
+
+	public static final CharacterSet EMPTY = new CharacterSet(new int[0]);
+	public static final CharacterSet ALL = new CharacterSet(new int[] { 0, Character.MAX_CODE_POINT });
+
+	/**
+	 * Pairs of inclusive range bounds (start, end), sorted, disjoint and non-adjacent.
+	 */
+	private final int[] ranges;
+	private final long[] latin1;
+
+	private static final Comparator<int[]> RANGE_START_COMPARATOR = new Comparator<int[]>() {
+		@Override
+		public int compare(int[] a, int[] b) {
+			return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+		}
+	};
+
+	private CharacterSet(int[] ranges) {
+		this.ranges = ranges;
+		this.latin1 = new long[4];
+		for (int i = 0; i < ranges.length && ranges[i] < 256; i += 2) {
+			int end = Math.min(ranges[i + 1], 255);
+			for (int c = ranges[i]; c <= end; c++) {
+				latin1[c >>> 6] |= 1L << c;
+			}
+		}
+	}
+
+	/**
+	 * Returns the set containing all characters from <code>from</code> to <code>to</code> (inclusive).
+	 */
+	public static CharacterSet range(int from, int to) {
+		if (from < 0 || to > Character.MAX_CODE_POINT || from > to) {
+			throw new IllegalArgumentException("Invalid character range: " + from + "-" + to);
+		}
+		return new CharacterSet(new int[] { from, to });
+	}
+
+	public static CharacterSet of(int c) {
+		return range(c, c);
+	}
+
+	/**
+	 * Parses the contents of an SDF character class (without the enclosing brackets), e.g.
+	 * <code>a-zA-Z\-0-9</code> or <code>\0-\31\n\t\"\\</code>.
+	 *
+	 * <p>The escape sequences <code>\n</code>, <code>\r</code>, <code>\t</code> and <code>\</code><i>decimal</i>
+	 * (one to three digits) are supported, a backslash followed by any other character stands for that character.
+	 *
+	 * @param pattern	the character class
+	 * @return the set of characters matched by the character class
+	 */
+	public static CharacterSet parse(String pattern) {
+		List<int[]> parsed = new ArrayList<int[]>();
+		int[] pos = new int[] { 0 };
+		while (pos[0] < pattern.length()) {
+			int from = parseChar(pattern, pos);
+			int to = from;
+			// a '-' is only a range if it is followed by another character
+			if (pos[0] + 1 < pattern.length() && pattern.charAt(pos[0]) == '-') {
+				pos[0]++;
+				to = parseChar(pattern, pos);
+				if (to < from) {
+					throw new IllegalArgumentException("Invalid character range in [" + pattern + "]");
+				}
+			}
+			parsed.add(new int[] { from, to });
+		}
+
+		Collections.sort(parsed, RANGE_START_COMPARATOR);
+		int[] ranges = new int[parsed.size() * 2];
+		for (int i = 0; i < parsed.size(); i++) {
+			ranges[2 * i] = parsed.get(i)[0];
+			ranges[2 * i + 1] = parsed.get(i)[1];
+		}
+		return new CharacterSet(normalize(ranges, ranges.length));
+	}
+
+	private static int parseChar(String pattern, int[] pos) {
+		int c = pattern.codePointAt(pos[0]);
+		pos[0] += Character.charCount(c);
+		if (c != '\\' || pos[0] >= pattern.length()) {
+			return c;
+		}
+
+		int escaped = pattern.codePointAt(pos[0]);
+		pos[0] += Character.charCount(escaped);
+		switch (escaped) {
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		}
+		if (escaped >= '0' && escaped <= '9') {
+			int value = escaped - '0';
+			for (int i = 1; i < 3 && pos[0] < pattern.length()
+					&& pattern.charAt(pos[0]) >= '0' && pattern.charAt(pos[0]) <= '9'; i++) {
+				value = value * 10 + (pattern.charAt(pos[0]++) - '0');
+			}
+			return value;
+		}
+		return escaped;
+	}
+
+	/**
+	 * Merges overlapping and adjacent ranges. The ranges must be sorted by their start.
+	 */
+	private static int[] normalize(int[] ranges, int length) {
+		int[] result = new int[length];
+		int count = 0;
+		for (int i = 0; i < length; i += 2) {
+			if (count > 0 && ranges[i] <= result[count - 1] + 1) {
+				result[count - 1] = Math.max(result[count - 1], ranges[i + 1]);
+			} else {
+				result[count++] = ranges[i];
+				result[count++] = ranges[i + 1];
+			}
+		}
+		return count == length ? result : Arrays.copyOf(result, count);
+	}
+
+	public boolean contains(int c) {
+		if (c < 256) {
+			return c >= 0 && (latin1[c >>> 6] & (1L << c)) != 0;
+		}
+
+		// binary search for the last range starting at or before c
+		int low = 0;
+		int high = ranges.length / 2 - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (ranges[2 * mid] <= c) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high >= 0 && c <= ranges[2 * high + 1];
+	}
+
+	public boolean isEmpty() {
+		return ranges.length == 0;
+	}
+
+	public int getRangeCount() {
+		return ranges.length / 2;
+	}
+
+	public int getRangeStart(int index) {
+		return ranges[2 * index];
+	}
+
+	public int getRangeEnd(int index) {
+		return ranges[2 * index + 1];
+	}
+
+	public CharacterSet union(CharacterSet other) {
+		int[] merged = new int[ranges.length + other.ranges.length];
+		int i = 0, j = 0, k = 0;
+		while (i < ranges.length || j < other.ranges.length) {
+			if (j >= other.ranges.length || (i < ranges.length && ranges[i] <= other.ranges[j])) {
+				merged[k++] = ranges[i++];
+				merged[k++] = ranges[i++];
+			} else {
+				merged[k++] = other.ranges[j++];
+				merged[k++] = other.ranges[j++];
+			}
+		}
+		return new CharacterSet(normalize(merged, k));
+	}
+
+	public CharacterSet intersection(CharacterSet other) {
+		int[] result = new int[ranges.length + other.ranges.length];
+		int i = 0, j = 0, k = 0;
+		while (i < ranges.length && j < other.ranges.length) {
+			int start = Math.max(ranges[i], other.ranges[j]);
+			int end = Math.min(ranges[i + 1], other.ranges[j + 1]);
+			if (start <= end) {
+				result[k++] = start;
+				result[k++] = end;
+			}
+			if (ranges[i + 1] < other.ranges[j + 1]) {
+				i += 2;
+			} else {
+				j += 2;
+			}
+		}
+		return new CharacterSet(Arrays.copyOf(result, k));
+	}
+
+	public CharacterSet difference(CharacterSet other) {
+		return intersection(other.complement());
+	}
+
+	public CharacterSet complement() {
+		int[] result = new int[ranges.length + 2];
+		int k = 0;
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > next) {
+				result[k++] = next;
+				result[k++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= Character.MAX_CODE_POINT) {
+			result[k++] = next;
+			result[k++] = Character.MAX_CODE_POINT;
+		}
+		return new CharacterSet(Arrays.copyOf(result, k));
+	}
+
+	/**
+	 * Returns the contents of a Java regular expression character class (without the enclosing brackets)
+	 * that matches exactly the characters of this set. The result is a flat list of characters and ranges;
+	 * sets containing {@link Character#MAX_CODE_POINT} are written as a negated class.
+	 *
+	 * @return a regular expression character class
+	 */
+	public String toRegexpPattern() {
+		if (isEmpty()) {
+			// [] is not a valid regular expression
+			return "\\x00&&[^\\x00]";
+		}
+		if (this.equals(ALL)) {
+			return rangesToRegexp();
+		}
+		if (ranges[ranges.length - 1] == Character.MAX_CODE_POINT) {
+			return "^" + complement().rangesToRegexp();
+		}
+		return rangesToRegexp();
+	}
+
+	private String rangesToRegexp() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < ranges.length; i += 2) {
+			appendChar(sb, ranges[i]);
+			if (ranges[i + 1] > ranges[i]) {
+				if (ranges[i + 1] > ranges[i] + 1) {
+					sb.append('-');
+				}
+				appendChar(sb, ranges[i + 1]);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendChar(StringBuilder sb, int c) {
+		if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+			sb.append((char)c);
+		} else if (c < 256) {
+			sb.append(String.format("\\x%02x", c));
+		} else if (c < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			sb.append(String.format("\\u%04x", c));
+		} else {
+			sb.appendCodePoint(c);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(ranges);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return Arrays.equals(ranges, ((CharacterSet)obj).ranges);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + toRegexpPattern() + "]";
+	}
+
+}